@@ -0,0 +1,61 @@
+package benchmark01;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * 基准测试使用的请求报文
+ *  - 模拟浏览器发出的请求头（Host、User-Agent、Accept、Accept-Encoding、Cookie 等）
+ *  - 报文预先编码好，每次调用使用 retainedDuplicate，请求本身不计入被测代码的分配
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class BenchmarkRequests {
+    private BenchmarkRequests() {
+    }
+
+    /**
+     * 编码一个 GET 请求
+     * @param uri 请求地址
+     * @param gzip 是否带 Accept-Encoding: gzip
+     * @return 请求报文（非池化的只读 ByteBuf，长期持有）
+     */
+    public static ByteBuf get(String uri, boolean gzip) {
+        String request = "GET " + uri + " HTTP/1.1\r\n"
+                + "Host: 127.0.0.1:8800\r\n"
+                + "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/118.0 Safari/537.36\r\n"
+                + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+                + (gzip ? "Accept-Encoding: gzip, deflate\r\n" : "")
+                + "Accept-Language: zh-CN,zh;q=0.9,en;q=0.8\r\n"
+                + "Cookie: session=3f1c2a9e7b; theme=dark\r\n"
+                + "Connection: keep-alive\r\n"
+                + "\r\n";
+        return Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(request, CharsetUtil.US_ASCII).asReadOnly());
+    }
+
+    /**
+     * 把请求写入通道，读出并释放所有响应
+     * @param channel 通道
+     * @param request get 返回的请求报文
+     * @return 响应的字节数（交给 Blackhole）
+     */
+    public static int exchange(EmbeddedChannel channel, ByteBuf request) {
+        channel.writeInbound(request.retainedDuplicate());
+        int bytes = 0;
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            if (msg instanceof ByteBuf) {
+                bytes += ((ByteBuf) msg).readableBytes();
+            }
+            ReferenceCountUtil.release(msg);
+        }
+        // 服务端处理器可能向入站方向传递消息，一并释放
+        while ((msg = channel.readInbound()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,97 @@
+package compress01;
+
+import benchmark01.BenchmarkRequests;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应压缩的基准测试：Netty 自带的 HttpContentCompressor 与 AdaptiveContentCompressor 对比
+ *  - 响应体为约 16KB 的 JSON，cacheable 为 true 时带 ETag（AdaptiveContentCompressor 命中压缩结果缓存）
+ *  - small 为 12 字节的 "Hello, netty"（AdaptiveContentCompressor 不压缩）
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AdaptiveContentCompressorBenchmark {
+    @Param({"netty", "adaptive"})
+    public String compressor;
+
+    @Param({"json", "cacheableJson", "small"})
+    public String response;
+
+    private EmbeddedChannel channel;
+
+    private ByteBuf request;
+
+    @Setup
+    public void setup() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; json.length() < 16 * 1024; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i)
+                    .append("\",\"tags\":[\"netty\",\"gateway\"],\"price\":").append(i * 7 % 1000).append("},");
+        }
+        json.setCharAt(json.length() - 1, ']');
+        String text = "small".equals(response) ? "Hello, netty" : json.toString();
+        ByteBuf body = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(text, CharsetUtil.UTF_8).asReadOnly());
+        boolean cacheable = "cacheableJson".equals(response);
+
+        channel = new EmbeddedChannel(new HttpServerCodec(), new HttpObjectAggregator(1024 * 1024),
+                "netty".equals(compressor) ? new HttpContentCompressor() : new AdaptiveContentCompressor(),
+                new SimpleChannelInboundHandler<FullHttpRequest>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+                        FullHttpResponse res = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                body.retainedDuplicate());
+                        res.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+                        res.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, body.readableBytes());
+                        if (cacheable) {
+                            res.headers().set(HttpHeaderNames.ETAG, "\"v1\"");
+                        }
+                        ctx.writeAndFlush(res);
+                    }
+                });
+        request = BenchmarkRequests.get("/items", true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int exchange() {
+        return BenchmarkRequests.exchange(channel, request);
+    }
+}
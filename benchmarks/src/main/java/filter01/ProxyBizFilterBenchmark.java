@@ -0,0 +1,68 @@
+package filter01;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import router01.Route;
+import router01.RouteTables;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 白名单过滤器 ProxyBizFilter.filter 的基准测试（路由已匹配，请求通过）
+ *  - 每次调用会往请求头里加一个 biz-tag，调用前先删掉，避免请求头无限增长
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ProxyBizFilterBenchmark {
+    private final ProxyBizFilter filter = new ProxyBizFilter();
+
+    private EmbeddedChannel channel;
+
+    private ChannelHandlerContext ctx;
+
+    private HttpRequest request;
+
+    @Setup
+    public void setup() {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+        String uri = "/test01api/get?id=42";
+        channel.attr(Route.KEY).set(RouteTables.match(uri));
+        request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        request.headers().set("Host", "127.0.0.1:8800");
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public CompletionStage<?> filter() {
+        request.headers().remove("biz-tag");
+        return filter.filter(request, ctx);
+    }
+}
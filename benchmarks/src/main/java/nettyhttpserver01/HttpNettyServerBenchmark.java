@@ -0,0 +1,74 @@
+package nettyhttpserver01;
+
+import benchmark01.BenchmarkRequests;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * nettyhttpserver01 的基准测试
+ *  - handler：只有编解码和 HttpNettyServerHandler（响应内容的拼装）
+ *  - pipeline：HttpNettyServerInitializer 建立的完整 pipeline（含聚合与 gzip 压缩）
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HttpNettyServerBenchmark {
+    private EmbeddedChannel handler;
+
+    private EmbeddedChannel pipeline;
+
+    private ByteBuf request;
+
+    private ByteBuf gzipRequest;
+
+    @Setup
+    public void setup() {
+        handler = new EmbeddedChannel(new HttpRequestDecoder(), new HttpObjectAggregator(1024 * 1024),
+                new HttpResponseEncoder(), HttpNettyServerHandler.INSTANCE);
+        pipeline = new EmbeddedChannel(new HttpNettyServerInitializer(null));
+        request = BenchmarkRequests.get("/hello?name=netty&lang=zh", false);
+        gzipRequest = BenchmarkRequests.get("/hello?name=netty&lang=zh", true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        handler.finishAndReleaseAll();
+        pipeline.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int handler() {
+        return BenchmarkRequests.exchange(handler, request);
+    }
+
+    @Benchmark
+    public int pipeline() {
+        return BenchmarkRequests.exchange(pipeline, request);
+    }
+
+    @Benchmark
+    public int pipelineGzip() {
+        return BenchmarkRequests.exchange(pipeline, gzipRequest);
+    }
+}
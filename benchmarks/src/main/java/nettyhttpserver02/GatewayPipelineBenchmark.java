@@ -0,0 +1,71 @@
+package nettyhttpserver02;
+
+import benchmark01.BenchmarkRequests;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关（nettyhttpserver02）完整 pipeline 的基准测试
+ *  - 用 EmbeddedChannel 驱动 HttpNettyServerInitializer 建立的 pipeline：解码 -> 排队 -> 路由 -> 聚合 -> 指标 -> 压缩 -> 过滤器 -> 处理器 -> 编码
+ *  - local：网关自身响应的路由（/）；gzip：带 Accept-Encoding 的请求；streaming：流式转发模式的 pipeline
+ *  - 转发给后端的请求需要真实的后端连接，用 nettyhttpclient01.HttpLoadGenerator 压测
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GatewayPipelineBenchmark {
+    private EmbeddedChannel aggregated;
+
+    private EmbeddedChannel streaming;
+
+    private ByteBuf local;
+
+    private ByteBuf localGzip;
+
+    @Setup
+    public void setup() {
+        aggregated = new EmbeddedChannel(new HttpNettyServerInitializer(false));
+        streaming = new EmbeddedChannel(new HttpNettyServerInitializer(true));
+        local = BenchmarkRequests.get("/", false);
+        localGzip = BenchmarkRequests.get("/", true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        aggregated.finishAndReleaseAll();
+        streaming.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int local() {
+        return BenchmarkRequests.exchange(aggregated, local);
+    }
+
+    @Benchmark
+    public int localGzip() {
+        return BenchmarkRequests.exchange(aggregated, localGzip);
+    }
+
+    @Benchmark
+    public int localStreaming() {
+        return BenchmarkRequests.exchange(streaming, local);
+    }
+}
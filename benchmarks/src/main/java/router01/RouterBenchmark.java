@@ -0,0 +1,42 @@
+package router01;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由的基准测试
+ *  - getApiHost：匹配路由表并由负载均衡策略选出后端节点
+ *  - match：只匹配路由表
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RouterBenchmark {
+    @Param({"/", "/test01api/get?id=42", "/test02api/a/b/c", "/unknown/path"})
+    private String uri;
+
+    @Benchmark
+    public String getApiHost() {
+        return HttpEndpointRouter.getApiHost(uri);
+    }
+
+    @Benchmark
+    public Route match() {
+        return RouteTables.match(uri);
+    }
+}
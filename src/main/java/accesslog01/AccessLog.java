@@ -0,0 +1,411 @@
+package accesslog01;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步访问日志（-Dgateway.accessLog=文件路径，不指定时不记录）
+ *  - IO 线程只把请求信息按固定格式写入自己线程的环形缓冲区（单生产者/单消费者，无锁、不格式化、不分配对象）
+ *  - 后台线程批量取出记录，格式化成一行文本，通过 FileChannel 写入文件，文件超过大小时滚动
+ *  - 缓冲区满时（写文件跟不上）直接丢弃记录并计数，绝不阻塞 IO 线程
+ *  - 线程退出（或移除线程变量）后缓冲区被标记为退役，后台线程取完其中的记录后移除并释放堆外内存
+ * 每行格式：时间 客户端地址 方法 uri 路由 状态码 请求体字节数 响应体字节数 耗时(微秒)
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class AccessLog {
+    /**
+     * 访问日志文件路径
+     */
+    private static final String PATH = System.getProperty("gateway.accessLog");
+
+    /**
+     * 单个文件的最大字节数，超过后滚动为 文件名.1、文件名.2 ...
+     */
+    private static final long MAX_FILE_BYTES = Long.getLong("gateway.accessLog.maxBytes", 100L * 1024 * 1024);
+
+    /**
+     * 滚动后最多保留的文件数
+     */
+    private static final int MAX_FILES = Integer.getInteger("gateway.accessLog.maxFiles", 5);
+
+    /**
+     * 每个 IO 线程缓冲区可容纳的记录数（2 的幂）
+     */
+    private static final int BUFFER_RECORDS = Integer.highestOneBit(
+            Math.max(Integer.getInteger("gateway.accessLog.bufferRecords", 4096), 16));
+
+    /**
+     * 一条记录的布局（固定 256 字节）
+     */
+    private static final int RECORD_SIZE = 256;
+    private static final int TIME = 0;
+    private static final int DURATION = 8;
+    private static final int REQUEST_BYTES = 16;
+    private static final int RESPONSE_BYTES = 24;
+    private static final int STATUS = 32;
+    private static final int METHOD = 34;
+    private static final int ADDRESS_LENGTH = 35;
+    private static final int PORT = 36;
+    private static final int URI_LENGTH = 38;
+    private static final int ADDRESS = 40;
+    private static final int ROUTE_LENGTH = 56;
+    private static final int ROUTE = 57;
+    private static final int ROUTE_MAX = 32;
+    private static final int URI = ROUTE + ROUTE_MAX;
+    private static final int URI_MAX = RECORD_SIZE - URI;
+
+    /**
+     * 方法的编号（记录中保存下标，其它方法记为 -）
+     */
+    private static final String[] METHODS = {"-", "GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH", "TRACE", "CONNECT"};
+
+    /**
+     * 后台线程一次写文件的批量大小
+     */
+    private static final int WRITE_BATCH_BYTES = 256 * 1024;
+
+    /**
+     * 没有记录时后台线程的休眠时间
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    /**
+     * 进程内共享的访问日志（没有开启时为 null）
+     */
+    public static final AccessLog INSTANCE = PATH == null || PATH.isEmpty() ? null : new AccessLog(Paths.get(PATH));
+
+    private final Path path;
+
+    private final CopyOnWriteArrayList<Ring> rings = new CopyOnWriteArrayList<>();
+
+    private final FastThreadLocal<Ring> local = new FastThreadLocal<Ring>() {
+        @Override
+        protected Ring initialValue() {
+            Ring ring = new Ring(Thread.currentThread());
+            rings.add(ring);
+            return ring;
+        }
+
+        /**
+         * FastThreadLocalThread 退出时（FastThreadLocal.removeAll）回调，普通线程退出由后台线程检查 owner 发现
+         */
+        @Override
+        protected void onRemoval(Ring ring) {
+            ring.retired = true;
+        }
+    };
+
+    /**
+     * 因缓冲区满而丢弃的记录数
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    AccessLog(Path path) {
+        this.path = path;
+        this.writer = new Thread(this::run, "gateway-access-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "gateway-access-log-shutdown"));
+    }
+
+    /**
+     * 记录一个请求（在 IO 线程上调用，缓冲区满时丢弃）
+     * @param durationNanos 耗时
+     * @param status 响应状态码
+     * @param method 请求方法
+     * @param uri 请求 uri（超出部分截断）
+     * @param route 路由名称
+     * @param address 客户端 IP 地址（4 或 16 字节，未知时为 null）
+     * @param port 客户端端口
+     * @param requestBytes 请求体字节数
+     * @param responseBytes 响应体字节数
+     */
+    public void log(long durationNanos, int status, String method, String uri, String route,
+                    byte[] address, int port, long requestBytes, long responseBytes) {
+        Ring ring = local.get();
+        long tail = ring.tail.get();
+        if (tail - ring.head.get() >= BUFFER_RECORDS) {
+            dropped.increment();
+            return;
+        }
+        ByteBuffer buf = ring.buffer;
+        int base = (int) (tail & (BUFFER_RECORDS - 1)) * RECORD_SIZE;
+        buf.putLong(base + TIME, System.currentTimeMillis());
+        buf.putLong(base + DURATION, durationNanos);
+        buf.putLong(base + REQUEST_BYTES, requestBytes);
+        buf.putLong(base + RESPONSE_BYTES, responseBytes);
+        buf.putShort(base + STATUS, (short) status);
+        buf.put(base + METHOD, methodIndex(method));
+        int addressLength = address == null ? 0 : Math.min(address.length, ROUTE_LENGTH - ADDRESS);
+        buf.put(base + ADDRESS_LENGTH, (byte) addressLength);
+        for (int i = 0; i < addressLength; i++) {
+            buf.put(base + ADDRESS + i, address[i]);
+        }
+        buf.putShort(base + PORT, (short) port);
+        buf.put(base + ROUTE_LENGTH, (byte) putAscii(buf, base + ROUTE, route, ROUTE_MAX));
+        buf.putShort(base + URI_LENGTH, (short) putAscii(buf, base + URI, uri, URI_MAX));
+        // 写完记录后再发布（有序写），后台线程读到新的 tail 时一定能看到完整的记录
+        ring.tail.lazySet(tail + 1);
+    }
+
+    /**
+     * 因缓冲区满而丢弃的记录数
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private static byte methodIndex(String method) {
+        for (int i = 1; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) {
+                return (byte) i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 写入字符串（请求行和路由名称都是 ASCII，按字节截断）
+     * @return 写入的字节数
+     */
+    private static int putAscii(ByteBuffer buf, int index, String value, int max) {
+        int n = value == null ? 0 : Math.min(value.length(), max);
+        for (int i = 0; i < n; i++) {
+            buf.put(index + i, (byte) value.charAt(i));
+        }
+        return n;
+    }
+
+    /**
+     * 后台线程：循环取出所有缓冲区的记录并写入文件
+     */
+    private void run() {
+        ByteBuffer out = ByteBuffer.allocate(WRITE_BATCH_BYTES);
+        StringBuilder line = new StringBuilder(RECORD_SIZE * 2);
+        FileChannel file = null;
+        long fileBytes = 0;
+        try {
+            file = open();
+            fileBytes = file.size();
+            boolean stopping = false;
+            while (true) {
+                boolean drained = false;
+                for (Ring ring : rings) {
+                    // 先读退役标记再读 tail：退役前写入的记录一定都能取到
+                    boolean retired = ring.isRetired();
+                    long head = ring.head.get();
+                    long tail = ring.tail.get();
+                    for (; head < tail; head++) {
+                        format(ring.buffer, (int) (head & (BUFFER_RECORDS - 1)) * RECORD_SIZE, line);
+                        if (out.remaining() < line.length()) {
+                            fileBytes += flush(file, out);
+                        }
+                        for (int i = 0; i < line.length(); i++) {
+                            out.put((byte) line.charAt(i));
+                        }
+                        drained = true;
+                    }
+                    // 释放已取出的位置，IO 线程可以继续写入
+                    ring.head.lazySet(head);
+                    if (retired) {
+                        // 所属线程已不会再写入，记录取完后移除并释放堆外内存
+                        rings.remove(ring);
+                        PlatformDependent.freeDirectBuffer(ring.buffer);
+                    }
+                }
+                if (out.position() > 0) {
+                    fileBytes += flush(file, out);
+                }
+                if (fileBytes >= MAX_FILE_BYTES) {
+                    file.close();
+                    rotate();
+                    file = open();
+                    fileBytes = 0;
+                }
+                if (stopping) {
+                    break;
+                }
+                if (!drained) {
+                    if (!running) {
+                        // 最后再取一次，保证关闭前写入的记录都落盘
+                        stopping = true;
+                        continue;
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("####【ERROR】访问日志写入失败，停止记录: " + e);
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                    // 关闭失败无需处理
+                }
+            }
+        }
+    }
+
+    private void format(ByteBuffer buf, int base, StringBuilder line) {
+        line.setLength(0);
+        long time = buf.getLong(base + TIME);
+        TIME_FORMAT.formatTo(Instant.ofEpochMilli(time), line);
+        int millis = (int) (time % 1000);
+        line.append('.').append((char) ('0' + millis / 100)).append((char) ('0' + millis / 10 % 10))
+                .append((char) ('0' + millis % 10)).append(' ');
+        int addressLength = buf.get(base + ADDRESS_LENGTH);
+        if (addressLength == 4) {
+            for (int i = 0; i < 4; i++) {
+                line.append(i == 0 ? "" : ".").append(buf.get(base + ADDRESS + i) & 0xFF);
+            }
+        } else if (addressLength == 16) {
+            line.append('[');
+            for (int i = 0; i < 16; i += 2) {
+                line.append(i == 0 ? "" : ":").append(Integer.toHexString(buf.getShort(base + ADDRESS + i) & 0xFFFF));
+            }
+            line.append(']');
+        } else {
+            line.append('-');
+        }
+        line.append(':').append(buf.getShort(base + PORT) & 0xFFFF).append(' ')
+                .append(METHODS[buf.get(base + METHOD)]).append(' ');
+        appendAscii(buf, base + URI, buf.getShort(base + URI_LENGTH), line);
+        line.append(' ');
+        int routeLength = buf.get(base + ROUTE_LENGTH);
+        if (routeLength == 0) {
+            line.append('-');
+        } else {
+            appendAscii(buf, base + ROUTE, routeLength, line);
+        }
+        line.append(' ').append(buf.getShort(base + STATUS))
+                .append(' ').append(buf.getLong(base + REQUEST_BYTES))
+                .append(' ').append(buf.getLong(base + RESPONSE_BYTES))
+                .append(' ').append(buf.getLong(base + DURATION) / 1000)
+                .append('\n');
+    }
+
+    private static void appendAscii(ByteBuffer buf, int index, int length, StringBuilder line) {
+        for (int i = 0; i < length; i++) {
+            line.append((char) (buf.get(index + i) & 0xFF));
+        }
+    }
+
+    private static long flush(FileChannel file, ByteBuffer out) throws IOException {
+        out.flip();
+        long written = 0;
+        while (out.hasRemaining()) {
+            written += file.write(out);
+        }
+        out.clear();
+        return written;
+    }
+
+    private FileChannel open() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 滚动：文件名.(n-1) -> 文件名.n ... 文件名 -> 文件名.1，超出保留数量的最旧文件被覆盖
+     */
+    private void rotate() throws IOException {
+        for (int i = MAX_FILES - 1; i >= 1; i--) {
+            Path from = Paths.get(path + "." + i);
+            if (Files.exists(from)) {
+                Files.move(from, Paths.get(path + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (MAX_FILES > 0) {
+            Files.move(path, Paths.get(path + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * 当前的缓冲区数量（每个仍在记录的线程一个）
+     */
+    int ringCount() {
+        return rings.size();
+    }
+
+    /**
+     * 停止后台线程（写完缓冲区中剩余的记录）
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 一个 IO 线程的环形缓冲区：IO 线程写 tail，后台线程写 head
+     */
+    private static final class Ring {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE);
+
+        private final AtomicLong head = new AtomicLong();
+
+        private final AtomicLong tail = new AtomicLong();
+
+        /**
+         * 所属线程（弱引用，不阻止线程对象被回收）
+         */
+        private final WeakReference<Thread> owner;
+
+        /**
+         * 所属线程移除了线程变量，不会再写入
+         */
+        private volatile boolean retired;
+
+        private Ring(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        /**
+         * 是否已退役：线程变量被移除，或所属线程已退出
+         */
+        private boolean isRetired() {
+            if (retired) {
+                return true;
+            }
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package cache01;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.*;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存的后端响应
+ *  - 响应体保存为堆外 ByteBuf，每次命中时返回 retainedDuplicate，不复制数据
+ *  - 条目自己维护引用计数：缓存持有一个引用，查找时用 tryRetain 取得一个引用（条目已被淘汰、计数归零时失败，按未命中处理），
+ *    用完（生成响应后，或回源重新验证结束时）调用 release；计数归零时释放响应体
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class CachedResponse {
+    /**
+     * 估算的对象和响应头开销（字节）
+     */
+    private static final int OVERHEAD = 256;
+
+    final HttpResponseStatus status;
+
+    final HttpHeaders headers;
+
+    final ByteBuf body;
+
+    /**
+     * 强校验器 ETag（没有则为 null）
+     */
+    final String etag;
+
+    /**
+     * Vary 列出的请求头名称，以及存入时请求中这些头的值
+     */
+    final String[] varyNames;
+
+    final String[] varyValues;
+
+    /**
+     * 存入（或最近一次重新验证）的时间（纳秒）
+     */
+    volatile long storedAtNanos;
+
+    /**
+     * 过期时间（纳秒）
+     */
+    volatile long expiresAtNanos;
+
+    /**
+     * 存入时后端给出的 Age（秒）
+     */
+    volatile long initialAgeSeconds;
+
+    /**
+     * 占用的字节数（估算）
+     */
+    final int weight;
+
+    /**
+     * 引用计数（缓存本身持有一个）
+     */
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    CachedResponse(HttpResponseStatus status, HttpHeaders headers, ByteBuf body, String etag,
+                   String[] varyNames, String[] varyValues, long storedAtNanos, long expiresAtNanos,
+                   long initialAgeSeconds) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.etag = etag;
+        this.varyNames = varyNames;
+        this.varyValues = varyValues;
+        this.storedAtNanos = storedAtNanos;
+        this.expiresAtNanos = expiresAtNanos;
+        this.initialAgeSeconds = initialAgeSeconds;
+
+        int headerBytes = 0;
+        for (Map.Entry<String, String> header : headers) {
+            headerBytes += header.getKey().length() + header.getValue().length();
+        }
+        this.weight = OVERHEAD + 2 * headerBytes + body.capacity();
+    }
+
+    boolean isFresh(long nowNanos) {
+        return expiresAtNanos - nowNanos > 0;
+    }
+
+    /**
+     * 请求的 Vary 头是否与存入时一致
+     */
+    boolean matchesVary(HttpHeaders requestHeaders) {
+        for (int i = 0; i < varyNames.length; i++) {
+            String value = requestHeaders.get(varyNames[i]);
+            if (value == null ? varyValues[i] != null : !value.equals(varyValues[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 取得一个引用
+     * @return false 表示条目已被淘汰（响应体已经或即将释放）
+     */
+    boolean tryRetain() {
+        for (;;) {
+            int current = refs.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (refs.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 生成响应（响应头复制一份，响应体是 retainedDuplicate；调用方必须持有一个引用）
+     * @param nowNanos 当前时间（用于计算 Age）
+     * @return 响应
+     */
+    FullHttpResponse toResponse(long nowNanos) {
+        ByteBuf content = body.retainedDuplicate();
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content,
+                headers.copy(), EmptyHttpHeaders.INSTANCE);
+        response.headers().setInt(HttpHeaderNames.AGE, (int) ageSeconds(nowNanos));
+        return response;
+    }
+
+    long ageSeconds(long nowNanos) {
+        return initialAgeSeconds + (nowNanos - storedAtNanos) / 1_000_000_000L;
+    }
+
+    /**
+     * 归还一个引用，最后一个引用归还时释放响应体
+     */
+    void release() {
+        if (refs.decrementAndGet() == 0) {
+            body.release();
+        }
+    }
+}
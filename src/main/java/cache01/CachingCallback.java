@@ -0,0 +1,64 @@
+package cache01;
+
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import nettyhttpclient02.HttpClientCallback;
+
+/**
+ * 套在转发回调外层的缓存回调：后端响应写给用户之前存入缓存，回源重新验证得到 304 时换成缓存的响应
+ *  - 重新验证时持有缓存条目的一个引用，响应或失败时归还；304 只可能来自网关加上的 If-None-Match，不会原样交给用户
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class CachingCallback implements HttpClientCallback {
+    private final HttpResponseCache cache;
+
+    private final HttpClientCallback delegate;
+
+    private final String key;
+
+    private final HttpHeaders requestHeaders;
+
+    /**
+     * 正在重新验证的缓存条目（持有一个引用，没有则为 null）
+     */
+    private final CachedResponse validator;
+
+    CachingCallback(HttpResponseCache cache, HttpClientCallback delegate, String key,
+                    HttpHeaders requestHeaders, CachedResponse validator) {
+        this.cache = cache;
+        this.delegate = delegate;
+        this.key = key;
+        this.requestHeaders = requestHeaders;
+        this.validator = validator;
+    }
+
+    @Override
+    public void onResponse(HttpObject msg) {
+        // 聚合模式下 msg 就是完整的 FullHttpResponse
+        FullHttpResponse response = (FullHttpResponse) msg;
+        if (validator != null && response.status().code() == HttpResponseStatus.NOT_MODIFIED.code()) {
+            FullHttpResponse full = cache.revalidated(validator, response);
+            validator.release();
+            response.release();
+            delegate.onResponse(full);
+            return;
+        }
+        if (validator != null) {
+            cache.invalidate(key, validator);
+            validator.release();
+        }
+        cache.store(key, requestHeaders, response);
+        delegate.onResponse(response);
+    }
+
+    @Override
+    public void onFailure(HttpResponseStatus status) {
+        if (validator != null) {
+            validator.release();
+        }
+        delegate.onFailure(status);
+    }
+}
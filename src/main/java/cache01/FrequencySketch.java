@@ -0,0 +1,95 @@
+package cache01;
+
+/**
+ * 访问频率估计（4 位计数器的 Count-Min Sketch），W-TinyLFU 准入策略使用
+ *  - 每个键对应 4 个计数器，估计值取其中最小的，计数器最大为 15
+ *  - 累计增加次数达到采样数后，所有计数器减半（老化），让频率反映最近一段时间的访问
+ *  - 不是线程安全的，由 ResponseCache 在锁内调用（读路径拿不到锁时直接放弃记录，允许有损）
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * 每个 long 存放 16 个 4 位计数器
+     */
+    private final long[] table;
+
+    /**
+     * 计数器总数 - 1（计数器总数是 2 的幂）
+     */
+    private final int counterMask;
+
+    /**
+     * 老化的采样数
+     */
+    private final int sampleSize;
+
+    /**
+     * 上次老化之后累计增加的次数
+     */
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int size = Integer.highestOneBit(Math.max(64, expectedEntries) - 1) << 1;
+        this.table = new long[size];
+        this.counterMask = size * 16 - 1;
+        this.sampleSize = 10 * size;
+    }
+
+    /**
+     * 估计键的访问频率
+     * @param hash 键的哈希值
+     * @return 频率（0 ~ 15）
+     */
+    int frequency(int hash) {
+        int frequency = 15;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, counter(indexOf(hash, i)));
+        }
+        return frequency;
+    }
+
+    /**
+     * 记录一次访问
+     * @param hash 键的哈希值
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            if (counter(index) < 15) {
+                table[index >>> 4] += 1L << ((index & 15) << 2);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private int counter(int index) {
+        return (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 0xfL);
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & counterMask;
+    }
+
+    /**
+     * 所有计数器减半
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+}
@@ -0,0 +1,411 @@
+package cache01;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.*;
+import io.netty.util.AsciiString;
+import nettyhttpclient02.HttpClientCallback;
+import router01.Route;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+/**
+ * 网关的响应缓存（聚合模式下转发的 GET 请求）
+ *  - 位于 HttpNettyServerHandler 和 HttpClient#proxyRequest 之间：命中新鲜的缓存时直接在用户侧 EventLoop 上响应，
+ *    响应体是缓存 ByteBuf 的 retainedDuplicate；未命中时转发，后端响应可缓存则存入
+ *  - 遵循 Cache-Control（no-store / no-cache / private / max-age / s-maxage）、Expires、ETag 和 Vary：
+ *    过期的条目有 ETag 时带上 If-None-Match 回源重新验证，后端返回 304 时继续使用缓存的响应体；
+ *    重新验证期间持有条目的引用，即使条目被淘汰也能用它生成完整的响应，网关加上的条件请求不会让用户收到 304
+ *  - 容量按字节数限制，淘汰策略为 W-TinyLFU（参见 ResponseCache）
+ *  - 开启方式：-Dgateway.cache.maxBytes=字节数（默认 0，不缓存）；单条路由可以配置 route.name.cache=false 关闭
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class HttpResponseCache {
+    /**
+     * 缓存容量（字节），0 表示不缓存
+     */
+    private static final long MAX_BYTES = Long.getLong("gateway.cache.maxBytes", 0L);
+
+    /**
+     * 估算的平均条目大小（用于确定访问频率统计的规模）
+     */
+    private static final int AVERAGE_ENTRY_BYTES = 8 * 1024;
+
+    private static final AsciiString X_CACHE = AsciiString.cached("x-cache");
+
+    private static final AsciiString KEEP_ALIVE = AsciiString.cached("keep-alive");
+
+    /**
+     * 进程内共享的响应缓存
+     */
+    public static final HttpResponseCache INSTANCE = new HttpResponseCache(MAX_BYTES);
+
+    /**
+     * 缓存条目（没有开启缓存时为 null）
+     */
+    private final ResponseCache cache;
+
+    /**
+     * @param maxBytes 缓存容量（字节），0 表示不缓存（包内可见，单元测试使用独立的实例）
+     */
+    HttpResponseCache(long maxBytes) {
+        this.cache = maxBytes > 0 ? new ResponseCache(maxBytes,
+                (int) Math.min(1 << 22, maxBytes / AVERAGE_ENTRY_BYTES)) : null;
+    }
+
+    /**
+     * 是否开启了缓存
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * 请求是否使用缓存（开启了缓存、转发给后端的 GET 请求）
+     * @param route 请求匹配到的路由
+     * @param request 请求（头）
+     * @return 是否使用缓存
+     */
+    public boolean appliesTo(Route route, HttpRequest request) {
+        return cache != null && route != null && !route.isLocal()
+                && HttpMethod.GET.equals(request.method())
+                && !"false".equals(route.getAttribute("cache"));
+    }
+
+    /**
+     * 查找缓存
+     *  - 命中新鲜的缓存：直接响应用户，释放请求，返回 null
+     *  - 否则返回需要套在转发回调外层的装饰器（后端响应可缓存时存入缓存；必要时已给请求加上 If-None-Match）
+     * @param ctx 用户侧连接的通道处理器上下文
+     * @param request 完整请求
+     * @return null 表示已由缓存响应，否则为转发回调的装饰器
+     */
+    public UnaryOperator<HttpClientCallback> lookup(ChannelHandlerContext ctx, FullHttpRequest request) {
+        HttpHeaders headers = request.headers();
+        CacheControl requestControl = CacheControl.parse(headers.get(HttpHeaderNames.CACHE_CONTROL));
+        if (requestControl.noStore) {
+            return UnaryOperator.identity();
+        }
+        boolean noCache = requestControl.noCache || requestControl.maxAge == 0
+                || headers.contains(HttpHeaderNames.PRAGMA, HttpHeaderValues.NO_CACHE, true);
+
+        String key = request.uri();
+        long now = System.nanoTime();
+        CachedResponse cached = cache.get(key);
+        if (cached != null && !cached.matchesVary(headers)) {
+            cache.recordStale();
+            cached.release();
+            cached = null;
+        }
+        if (cached != null && cached.isFresh(now) && !noCache) {
+            serve(ctx, request, cached, now);
+            cached.release();
+            return null;
+        }
+
+        CachedResponse validator = null;
+        if (cached != null) {
+            cache.recordStale();
+            // 用户没有自带条件请求头时，由网关带上 ETag 回源重新验证，条目的引用交给 CachingCallback
+            if (cached.etag != null && !headers.contains(HttpHeaderNames.IF_NONE_MATCH)
+                    && !headers.contains(HttpHeaderNames.IF_MODIFIED_SINCE)) {
+                headers.set(HttpHeaderNames.IF_NONE_MATCH, cached.etag);
+                validator = cached;
+            } else {
+                cached.release();
+            }
+        }
+        CachedResponse revalidating = validator;
+        return callback -> new CachingCallback(this, callback, key, headers, revalidating);
+    }
+
+    /**
+     * 用缓存响应用户（用户带了匹配的 If-None-Match 时响应 304；调用方持有条目的引用）
+     */
+    private void serve(ChannelHandlerContext ctx, FullHttpRequest request, CachedResponse cached, long now) {
+        FullHttpResponse response;
+        if (cached.etag != null && etagMatches(request.headers().get(HttpHeaderNames.IF_NONE_MATCH), cached.etag)) {
+            response = notModified(cached, now);
+        } else {
+            response = cached.toResponse(now);
+        }
+        response.headers().set(X_CACHE, "HIT");
+
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        request.release();
+        HttpUtil.setKeepAlive(response, keepAlive);
+        if (keepAlive) {
+            ctx.writeAndFlush(response);
+        } else {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private static FullHttpResponse notModified(CachedResponse cached, long now) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_MODIFIED);
+        HttpHeaders headers = response.headers();
+        for (AsciiString name : new AsciiString[]{HttpHeaderNames.ETAG, HttpHeaderNames.CACHE_CONTROL,
+                HttpHeaderNames.EXPIRES, HttpHeaderNames.VARY, HttpHeaderNames.DATE}) {
+            String value = cached.headers.get(name);
+            if (value != null) {
+                headers.set(name, value);
+            }
+        }
+        headers.setInt(HttpHeaderNames.AGE, (int) cached.ageSeconds(now));
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        return response;
+    }
+
+    /**
+     * 后端响应到达：可缓存则存入缓存（复制一份响应体到堆外内存），并带上 X-Cache: MISS
+     *  - 不可缓存的响应（no-store、没有有效期等）不经过缓存，不带 X-Cache
+     * @param key 缓存键
+     * @param requestHeaders 转发给后端的请求头（用于记录 Vary 的取值）
+     * @param response 后端响应
+     */
+    void store(String key, HttpHeaders requestHeaders, FullHttpResponse response) {
+        long now = System.nanoTime();
+        CachedResponse cached = toCached(requestHeaders, response, now);
+        if (cached != null) {
+            cache.put(key, cached);
+            response.headers().set(X_CACHE, "MISS");
+        }
+    }
+
+    /**
+     * 后端返回 304：刷新缓存条目的有效期，并生成完整的响应
+     *  - 调用方持有条目的引用，条目在重新验证期间被淘汰时仍能生成响应（只是不再刷新缓存）
+     * @return 完整的响应
+     */
+    FullHttpResponse revalidated(CachedResponse cached, HttpResponse notModified) {
+        long now = System.nanoTime();
+        long ttlNanos = cached.expiresAtNanos - cached.storedAtNanos;
+        long lifetime = freshnessLifetimeSeconds(notModified.headers(),
+                CacheControl.parse(notModified.headers().get(HttpHeaderNames.CACHE_CONTROL)));
+        long age = notModified.headers().getInt(HttpHeaderNames.AGE, 0);
+        if (lifetime >= 0) {
+            ttlNanos = (lifetime - age) * 1_000_000_000L;
+        }
+        cached.storedAtNanos = now;
+        cached.initialAgeSeconds = age;
+        cached.expiresAtNanos = now + ttlNanos;
+        FullHttpResponse response = cached.toResponse(now);
+        response.headers().set(X_CACHE, "REVALIDATED");
+        return response;
+    }
+
+    /**
+     * 回源重新验证时后端返回了新的响应：新响应不可缓存时删除旧条目
+     */
+    void invalidate(String key, CachedResponse cached) {
+        cache.remove(key, cached);
+    }
+
+    /**
+     * 将后端响应转换为缓存条目，不可缓存时返回 null
+     */
+    private static CachedResponse toCached(HttpHeaders requestHeaders, FullHttpResponse response, long now) {
+        HttpHeaders headers = response.headers();
+        if (response.status().code() != HttpResponseStatus.OK.code()
+                || requestHeaders.contains(HttpHeaderNames.AUTHORIZATION)
+                || headers.contains(HttpHeaderNames.SET_COOKIE)) {
+            return null;
+        }
+        CacheControl control = CacheControl.parse(headers.get(HttpHeaderNames.CACHE_CONTROL));
+        if (control.noStore || control.noCache || control.privateResponse) {
+            return null;
+        }
+
+        String[] varyNames = varyNames(headers.get(HttpHeaderNames.VARY));
+        if (varyNames == null) {
+            return null;
+        }
+        long age = headers.getInt(HttpHeaderNames.AGE, 0);
+        long ttl = freshnessLifetimeSeconds(headers, control) - age;
+        if (ttl <= 0) {
+            return null;
+        }
+
+        String[] varyValues = new String[varyNames.length];
+        for (int i = 0; i < varyNames.length; i++) {
+            varyValues[i] = requestHeaders.get(varyNames[i]);
+        }
+        HttpHeaders stored = headers.copy();
+        stored.remove(HttpHeaderNames.CONNECTION);
+        stored.remove(KEEP_ALIVE);
+        stored.remove(HttpHeaderNames.AGE);
+
+        ByteBuf content = response.content();
+        ByteBuf body = Unpooled.directBuffer(content.readableBytes());
+        body.writeBytes(content, content.readerIndex(), content.readableBytes());
+        String etag = headers.get(HttpHeaderNames.ETAG);
+        return new CachedResponse(response.status(), stored, body, etag, varyNames, varyValues,
+                now, now + ttl * 1_000_000_000L, age);
+    }
+
+    /**
+     * 新鲜度（秒）：s-maxage 优先，其次 max-age，最后是 Expires - Date；都没有则返回 -1
+     */
+    private static long freshnessLifetimeSeconds(HttpHeaders headers, CacheControl control) {
+        if (control.sMaxAge >= 0) {
+            return control.sMaxAge;
+        }
+        if (control.maxAge >= 0) {
+            return control.maxAge;
+        }
+        String expires = headers.get(HttpHeaderNames.EXPIRES);
+        if (expires == null) {
+            return -1;
+        }
+        Date expiresAt = DateFormatter.parseHttpDate(expires);
+        if (expiresAt == null) {
+            // 无法解析的 Expires 视为已过期
+            return 0;
+        }
+        String dateHeader = headers.get(HttpHeaderNames.DATE);
+        Date date = dateHeader == null ? null : DateFormatter.parseHttpDate(dateHeader);
+        long base = date == null ? System.currentTimeMillis() : date.getTime();
+        return Math.max(0, (expiresAt.getTime() - base) / 1000);
+    }
+
+    /**
+     * 解析 Vary 头，返回小写的请求头名称；Vary: * 时返回 null（不可缓存）
+     */
+    private static String[] varyNames(String vary) {
+        if (vary == null || vary.trim().isEmpty()) {
+            return new String[0];
+        }
+        String[] names = vary.split(",");
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim().toLowerCase(Locale.ROOT);
+            if ("*".equals(names[i])) {
+                return null;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * If-None-Match 是否匹配 ETag（弱比较）
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String target = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if ("*".equals(trimmed) || stripWeak(trimmed).equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * 命中次数
+     */
+    public long hitCount() {
+        return cache == null ? 0 : cache.hitCount();
+    }
+
+    /**
+     * 未命中次数（包括过期回源、Vary 不匹配）
+     */
+    public long missCount() {
+        return cache == null ? 0 : cache.missCount();
+    }
+
+    /**
+     * 命中率
+     */
+    public double hitRatio() {
+        long hits = hitCount();
+        long total = hits + missCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * 因容量不足被淘汰的条目数
+     */
+    public long evictionCount() {
+        return cache == null ? 0 : cache.evictionCount();
+    }
+
+    /**
+     * 当前占用的字节数（估算）
+     */
+    public long weightedSize() {
+        return cache == null ? 0 : cache.weightedSize();
+    }
+
+    /**
+     * 当前的条目数
+     */
+    public int size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HttpResponseCache{entries=%d, bytes=%d/%d, hitRatio=%.3f, evictions=%d}",
+                size(), weightedSize(), cache == null ? 0 : cache.maxBytes(), hitRatio(), evictionCount());
+    }
+
+    /**
+     * 解析后的 Cache-Control
+     */
+    private static final class CacheControl {
+        private static final CacheControl NONE = new CacheControl();
+
+        private boolean noStore;
+
+        private boolean noCache;
+
+        private boolean privateResponse;
+
+        private long maxAge = -1;
+
+        private long sMaxAge = -1;
+
+        private static CacheControl parse(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            CacheControl control = new CacheControl();
+            for (String directive : value.split(",")) {
+                String d = directive.trim().toLowerCase(Locale.ROOT);
+                if (d.equals("no-store")) {
+                    control.noStore = true;
+                } else if (d.startsWith("no-cache")) {
+                    control.noCache = true;
+                } else if (d.startsWith("private")) {
+                    control.privateResponse = true;
+                } else if (d.startsWith("max-age=")) {
+                    control.maxAge = parseSeconds(d.substring("max-age=".length()));
+                } else if (d.startsWith("s-maxage=")) {
+                    control.sMaxAge = parseSeconds(d.substring("s-maxage=".length()));
+                }
+            }
+            return control;
+        }
+
+        private static long parseSeconds(String value) {
+            try {
+                return Math.max(0, Long.parseLong(value.replace("\"", "").trim()));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
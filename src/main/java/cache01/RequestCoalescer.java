@@ -0,0 +1,221 @@
+package cache01;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import io.netty.util.AsciiString;
+import nettyhttpclient02.HttpClientCallback;
+import router01.Route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.UnaryOperator;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * 相同请求合并（single-flight）
+ *  - 同一时刻对同一资源的多个相同 GET 请求只有第一个（leader）转发给后端，其余请求（follower）等待同一个响应
+ *  - 响应到达后，follower 各自得到一份 retainedDuplicate 的响应体（共享同一块内存，不复制）
+ *  - 请求的键由方法、URI 以及会影响响应内容的请求头（内容协商、认证、条件请求）组成
+ *  - 与响应缓存互补：缓存过期的瞬间大量请求同时回源时，后端只会收到一个请求
+ *  - 开启方式：-Dgateway.coalesce=true（默认关闭）；单条路由可以配置 route.name.coalesce=false 关闭
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class RequestCoalescer {
+    /**
+     * 是否开启请求合并
+     */
+    private static final boolean ENABLED = Boolean.getBoolean("gateway.coalesce");
+
+    /**
+     * 参与构成请求键的请求头（这些头不同的请求可能得到不同的响应）
+     */
+    private static final AsciiString[] KEY_HEADERS = {
+            HttpHeaderNames.ACCEPT, HttpHeaderNames.ACCEPT_ENCODING, HttpHeaderNames.ACCEPT_LANGUAGE,
+            HttpHeaderNames.AUTHORIZATION, HttpHeaderNames.COOKIE, HttpHeaderNames.RANGE,
+            HttpHeaderNames.IF_NONE_MATCH, HttpHeaderNames.IF_MODIFIED_SINCE
+    };
+
+    /**
+     * 进程内共享的请求合并器
+     */
+    public static final RequestCoalescer INSTANCE = new RequestCoalescer();
+
+    /**
+     * 请求键 -> 正在等待后端响应的请求
+     */
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private RequestCoalescer() {
+    }
+
+    /**
+     * 请求是否参与合并（开启了合并、转发给后端的 GET 请求）
+     * @param route 请求匹配到的路由
+     * @param request 请求（头）
+     * @return 是否参与合并
+     */
+    public boolean appliesTo(Route route, HttpRequest request) {
+        return ENABLED && route != null && !route.isLocal()
+                && HttpMethod.GET.equals(request.method())
+                && !"false".equals(route.getAttribute("coalesce"));
+    }
+
+    /**
+     * 加入合并
+     *  - 已有相同的请求在等待后端响应：登记为 follower，释放请求，返回 null
+     *  - 否则成为 leader，返回需要套在转发回调外层的装饰器（响应到达时分发给所有 follower）
+     * @param ctx 用户侧连接的通道处理器上下文
+     * @param request 完整请求
+     * @return null 表示等待其它请求的响应，否则为转发回调的装饰器
+     */
+    public UnaryOperator<HttpClientCallback> join(ChannelHandlerContext ctx, FullHttpRequest request) {
+        String key = keyOf(request);
+        Follower follower = new Follower(ctx, HttpUtil.isKeepAlive(request));
+        Flight flight = new Flight();
+        for (;;) {
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                return callback -> new CoalescingCallback(callback, key, flight);
+            }
+            if (existing.add(follower)) {
+                request.release();
+                return null;
+            }
+            // leader 的响应刚好到达，等它从表中移除后重试
+            flights.remove(key, existing);
+        }
+    }
+
+    /**
+     * 请求键：方法 + URI + 相关请求头
+     */
+    private static String keyOf(HttpRequest request) {
+        StringBuilder key = new StringBuilder(64)
+                .append(request.method().name()).append(' ').append(request.uri());
+        HttpHeaders headers = request.headers();
+        for (AsciiString name : KEY_HEADERS) {
+            String value = headers.get(name);
+            if (value != null) {
+                key.append('\n').append(name).append(':').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 当前正在等待后端响应的请求数（leader）
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    /**
+     * 一次转发：leader 之外等待同一个响应的请求
+     */
+    private static final class Flight {
+        private List<Follower> followers;
+
+        private boolean done;
+
+        /**
+         * 登记 follower
+         * @return false 表示响应已经开始分发，无法再加入
+         */
+        private synchronized boolean add(Follower follower) {
+            if (done) {
+                return false;
+            }
+            if (followers == null) {
+                followers = new ArrayList<>();
+            }
+            followers.add(follower);
+            return true;
+        }
+
+        /**
+         * 结束登记，返回所有 follower
+         */
+        private synchronized List<Follower> finish() {
+            done = true;
+            return followers;
+        }
+    }
+
+    /**
+     * 等待响应的用户请求
+     */
+    private static final class Follower {
+        private final ChannelHandlerContext ctx;
+
+        private final boolean keepAlive;
+
+        private Follower(ChannelHandlerContext ctx, boolean keepAlive) {
+            this.ctx = ctx;
+            this.keepAlive = keepAlive;
+        }
+
+        private void write(FullHttpResponse response) {
+            HttpUtil.setKeepAlive(response, keepAlive);
+            if (keepAlive) {
+                ctx.writeAndFlush(response);
+            } else {
+                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+    }
+
+    /**
+     * 套在 leader 转发回调外层的回调：响应交给 leader 之前，先分发给所有 follower
+     */
+    private final class CoalescingCallback implements HttpClientCallback {
+        private final HttpClientCallback delegate;
+
+        private final String key;
+
+        private final Flight flight;
+
+        private CoalescingCallback(HttpClientCallback delegate, String key, Flight flight) {
+            this.delegate = delegate;
+            this.key = key;
+            this.flight = flight;
+        }
+
+        @Override
+        public void onResponse(HttpObject msg) {
+            // 聚合模式下 msg 就是完整的 FullHttpResponse
+            FullHttpResponse response = (FullHttpResponse) msg;
+            List<Follower> followers = finish();
+            if (followers != null) {
+                for (Follower follower : followers) {
+                    follower.write(new DefaultFullHttpResponse(response.protocolVersion(), response.status(),
+                            response.content().retainedDuplicate(), response.headers().copy(),
+                            response.trailingHeaders().copy()));
+                }
+            }
+            delegate.onResponse(response);
+        }
+
+        @Override
+        public void onFailure(HttpResponseStatus status) {
+            List<Follower> followers = finish();
+            if (followers != null) {
+                for (Follower follower : followers) {
+                    FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status);
+                    response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+                    follower.write(response);
+                }
+            }
+            delegate.onFailure(status);
+        }
+
+        private List<Follower> finish() {
+            flights.remove(key, flight);
+            return flight.finish();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package cache01;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按字节数限制容量的 W-TinyLFU 缓存
+ *  - 窗口区（约 1% 容量，LRU）接收新条目；从窗口区淘汰出来的条目作为候选者，
+ *    与主区试用段（probation）最久未访问的条目比较访问频率（FrequencySketch），频率更高的留下
+ *  - 主区分为试用段和保护段（约 80%），试用段中再次被访问的条目晋升到保护段
+ *  - 查找只读 ConcurrentHashMap，不加锁；访问记录（调整顺序、频率加一）用 tryLock，拿不到锁就放弃（有损，与 Caffeine 的读缓冲一致）
+ *  - 写入和淘汰在锁内完成
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class ResponseCache {
+    private static final int WINDOW = 0;
+
+    private static final int PROBATION = 1;
+
+    private static final int PROTECTED = 2;
+
+    private final ConcurrentHashMap<String, Node> map = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final FrequencySketch sketch;
+
+    private final long maxBytes;
+
+    private final long windowMaxBytes;
+
+    private final long protectedMaxBytes;
+
+    /**
+     * 三个 LRU 队列（表头是最久未访问的）
+     */
+    private final AccessOrderQueue window = new AccessOrderQueue();
+
+    private final AccessOrderQueue probation = new AccessOrderQueue();
+
+    private final AccessOrderQueue protectedQueue = new AccessOrderQueue();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 当前占用的字节数（锁内更新）
+     */
+    private volatile long weightedSize;
+
+    ResponseCache(long maxBytes, int expectedEntries) {
+        this.maxBytes = maxBytes;
+        this.windowMaxBytes = Math.max(1, maxBytes / 100);
+        this.protectedMaxBytes = (long) ((maxBytes - windowMaxBytes) * 0.8);
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    /**
+     * 查找缓存（统计命中率）
+     * @param key 键
+     * @return 缓存的响应（已取得一个引用，用完必须调用 release），没有则返回 null
+     */
+    CachedResponse get(String key) {
+        Node node = map.get(key);
+        CachedResponse value = node == null ? null : node.value;
+        if (value == null || !value.tryRetain()) {
+            // 没有条目，或条目刚好被淘汰 / 替换
+            misses.increment();
+            recordMiss(key);
+            return null;
+        }
+        hits.increment();
+        if (lock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 命中的条目不可用（已过期且需要回源，或者 Vary 不匹配），把刚才记的命中改记为未命中
+     */
+    void recordStale() {
+        hits.decrement();
+        misses.increment();
+    }
+
+    /**
+     * 存入缓存（替换同一个键原有的条目）
+     * @param key 键
+     * @param value 响应（引用计数转交给缓存）
+     */
+    void put(String key, CachedResponse value) {
+        if (value.weight > maxBytes / 2) {
+            value.release();
+            return;
+        }
+        lock.lock();
+        try {
+            sketch.increment(key.hashCode());
+            Node node = map.get(key);
+            if (node != null) {
+                CachedResponse old = node.value;
+                node.value = value;
+                queueOf(node).weight += value.weight - old.weight;
+                weightedSize += value.weight - old.weight;
+                old.release();
+                onAccess(node);
+            } else {
+                node = new Node(key, value);
+                map.put(key, node);
+                window.addLast(node);
+                weightedSize += value.weight;
+            }
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 删除条目（例如过期且无法重新验证）
+     * @param key 键
+     * @param value 只有当前条目仍是这个响应时才删除
+     */
+    void remove(String key, CachedResponse value) {
+        lock.lock();
+        try {
+            Node node = map.get(key);
+            if (node != null && node.value == value) {
+                removeNode(node, false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordMiss(String key) {
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key.hashCode());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 访问条目：频率加一，并调整所在队列的顺序（锁内调用）
+     */
+    private void onAccess(Node node) {
+        if (node.queue < 0) {
+            // 已被淘汰
+            return;
+        }
+        sketch.increment(node.key.hashCode());
+        if (node.queue == WINDOW) {
+            window.moveToLast(node);
+        } else if (node.queue == PROBATION) {
+            // 试用段中再次被访问，晋升到保护段，保护段超出容量时把最久未访问的降回试用段
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedQueue.addLast(node);
+            while (protectedQueue.weight > protectedMaxBytes) {
+                Node demoted = protectedQueue.pollFirst();
+                demoted.queue = PROBATION;
+                probation.addLast(demoted);
+            }
+        } else {
+            protectedQueue.moveToLast(node);
+        }
+    }
+
+    /**
+     * 淘汰（锁内调用）
+     *  - 窗口区超出容量时，最久未访问的条目作为候选者移入试用段末尾
+     *  - 总容量超出时，比较候选者与试用段表头（受害者）的频率，淘汰频率低的一方
+     */
+    private void evict() {
+        int candidateCount = 0;
+        while (window.weight > windowMaxBytes && window.head != null) {
+            Node node = window.pollFirst();
+            node.queue = PROBATION;
+            probation.addLast(node);
+            candidateCount++;
+        }
+
+        while (weightedSize > maxBytes) {
+            Node victim = probation.head;
+            if (victim == null) {
+                victim = protectedQueue.head != null ? protectedQueue.head : window.head;
+                removeNode(victim, true);
+                continue;
+            }
+            Node candidate = candidateCount > 0 ? probation.tail : null;
+            if (candidate == null || candidate == victim) {
+                removeNode(victim, true);
+                if (candidate == victim) {
+                    candidateCount--;
+                }
+                continue;
+            }
+            // 频率相同时淘汰候选者，避免新条目冲掉已经证明有价值的条目
+            if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                removeNode(victim, true);
+            } else {
+                removeNode(candidate, true);
+                candidateCount--;
+            }
+        }
+    }
+
+    private void removeNode(Node node, boolean evicted) {
+        queueOf(node).remove(node);
+        node.queue = -1;
+        map.remove(node.key, node);
+        weightedSize -= node.value.weight;
+        node.value.release();
+        if (evicted) {
+            evictions.increment();
+        }
+    }
+
+    private AccessOrderQueue queueOf(Node node) {
+        return node.queue == WINDOW ? window : node.queue == PROBATION ? probation : protectedQueue;
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    long weightedSize() {
+        return weightedSize;
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static final class Node {
+        private final String key;
+
+        private volatile CachedResponse value;
+
+        private int queue = WINDOW;
+
+        private Node prev;
+
+        private Node next;
+
+        private Node(String key, CachedResponse value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的双向链表（表头是最久未访问的），记录队列中条目的总字节数
+     */
+    private static final class AccessOrderQueue {
+        private Node head;
+
+        private Node tail;
+
+        private long weight;
+
+        private void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.value.weight;
+        }
+
+        private Node pollFirst() {
+            Node node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        private void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.value.weight;
+        }
+
+        private void moveToLast(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package compress01;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.*;
+import io.netty.util.AsciiString;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按需压缩的 HttpContentCompressor
+ *  - 响应体小于 -Dgateway.compress.minBytes（默认 1024）字节时不压缩（流式响应按 Content-Length 判断，没有时照常压缩）
+ *  - 已经压缩过的内容类型不压缩（图片、音视频、压缩包等，-Dgateway.compress.skipTypes 按前缀配置，
+ *    以 +xml / +json 结尾的类型例如 image/svg+xml 仍然压缩）
+ *  - 已带有 Content-Encoding 的响应（例如后端已压缩）原样透传
+ *  - 压缩级别默认 -Dgateway.compress.level（默认 6，0 表示不压缩），子类可以按请求（例如按路由）选择
+ *  - 可缓存的完整响应（200，带 ETag / Last-Modified / Expires / Cache-Control: max-age 等，且不是 no-store / private）
+ *    的压缩结果按内容哈希缓存在 CompressedVariantCache 中，相同的响应体只压缩一次
+ *  - 按 Accept-Encoding 的 q 值在 gzip / deflate 之间选择（相同时优先 gzip），不支持其它压缩格式
+ * 每个请求的 Accept-Encoding 和压缩级别按请求顺序排队，与 HttpContentEncoder 自身的队列一一对应
+ * （流水线上的响应由 HttpRequestSequencer 保证按请求顺序写出）
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class AdaptiveContentCompressor extends HttpContentCompressor {
+    /**
+     * 默认压缩级别
+     */
+    static final int DEFAULT_LEVEL = Integer.getInteger("gateway.compress.level", 6);
+
+    /**
+     * 压缩的最小响应体大小（字节）
+     */
+    static final int MIN_BYTES = Integer.getInteger("gateway.compress.minBytes", 1024);
+
+    /**
+     * 不压缩的内容类型（前缀，小写）
+     */
+    private static final String[] INCOMPRESSIBLE_TYPES = System.getProperty("gateway.compress.skipTypes",
+            "image/,video/,audio/,font/woff,application/zip,application/gzip,application/x-gzip,"
+                    + "application/x-bzip2,application/x-xz,application/x-7z-compressed,application/x-rar-compressed,"
+                    + "application/zstd,application/pdf,application/octet-stream")
+            .toLowerCase(Locale.ROOT).split("\\s*,\\s*");
+
+    private static final int WINDOW_BITS = 15;
+
+    private static final int MEM_LEVEL = 8;
+
+    private static final AsciiString GZIP = HttpHeaderValues.GZIP;
+
+    private static final AsciiString DEFLATE = HttpHeaderValues.DEFLATE;
+
+    /**
+     * HEAD / CONNECT 请求的响应不压缩，排队时用空字符串占位
+     */
+    private static final String NO_COMPRESSION = "";
+
+    private static final LongAdder COMPRESSED = new LongAdder();
+
+    private static final LongAdder SKIPPED = new LongAdder();
+
+    /**
+     * 还没有响应的请求的 Accept-Encoding 和压缩级别（按请求顺序）
+     */
+    private final ArrayDeque<CharSequence> acceptEncodings = new ArrayDeque<>();
+
+    private final ArrayDeque<Integer> levels = new ArrayDeque<>();
+
+    private ChannelHandlerContext ctx;
+
+    /**
+     * 当前响应的压缩级别
+     */
+    private int level = DEFAULT_LEVEL;
+
+    /**
+     * 当前响应已使用缓存的压缩结果（父类透传，不计入跳过的响应）
+     */
+    private boolean precompressed;
+
+    public AdaptiveContentCompressor() {
+        super(StandardCompressionOptions.gzip(DEFAULT_LEVEL, WINDOW_BITS, MEM_LEVEL),
+                StandardCompressionOptions.deflate(DEFAULT_LEVEL, WINDOW_BITS, MEM_LEVEL));
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        super.handlerAdded(ctx);
+    }
+
+    /**
+     * 请求的压缩级别
+     * @param ctx 通道处理器上下文
+     * @param request 请求（头）
+     * @return 0-9，0 表示不压缩
+     */
+    protected int compressionLevel(ChannelHandlerContext ctx, HttpRequest request) {
+        return DEFAULT_LEVEL;
+    }
+
+    /**
+     * 响应是否可以缓存压缩结果
+     * @param response 完整响应
+     */
+    protected boolean isCacheable(FullHttpResponse response) {
+        if (response.status().code() != HttpResponseStatus.OK.code()) {
+            return false;
+        }
+        HttpHeaders headers = response.headers();
+        String cacheControl = headers.get(HttpHeaderNames.CACHE_CONTROL);
+        if (cacheControl != null) {
+            String lower = cacheControl.toLowerCase(Locale.ROOT);
+            if (lower.contains("no-store") || lower.contains("private")) {
+                return false;
+            }
+            if (lower.contains("max-age") || lower.contains("public") || lower.contains("immutable")) {
+                return true;
+            }
+        }
+        return headers.contains(HttpHeaderNames.ETAG) || headers.contains(HttpHeaderNames.LAST_MODIFIED)
+                || headers.contains(HttpHeaderNames.EXPIRES);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, HttpRequest msg, List<Object> out) throws Exception {
+        HttpMethod method = msg.method();
+        String acceptEncoding = msg.headers().get(HttpHeaderNames.ACCEPT_ENCODING);
+        acceptEncodings.add(acceptEncoding == null || HttpMethod.HEAD.equals(method)
+                || HttpMethod.CONNECT.equals(method) ? NO_COMPRESSION : acceptEncoding);
+        levels.add(compressionLevel(ctx, msg));
+        super.decode(ctx, msg, out);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+        if (msg instanceof HttpResponse && ((HttpResponse) msg).status().code() != HttpResponseStatus.CONTINUE.code()) {
+            // 新的响应：取出对应请求的 Accept-Encoding 和压缩级别（100 Continue 不对应请求）
+            CharSequence acceptEncoding = acceptEncodings.poll();
+            Integer requestLevel = levels.poll();
+            level = requestLevel == null ? DEFAULT_LEVEL : requestLevel;
+
+            if (msg instanceof FullHttpResponse && acceptEncoding != null && acceptEncoding.length() > 0) {
+                FullHttpResponse compressed = compressCached((FullHttpResponse) msg, acceptEncoding);
+                if (compressed != null) {
+                    // 已带有 Content-Encoding，父类直接透传（并消费它自己队列中的 Accept-Encoding）
+                    precompressed = true;
+                    try {
+                        super.encode(ctx, compressed, out);
+                    } finally {
+                        precompressed = false;
+                        compressed.release();
+                    }
+                    return;
+                }
+            }
+        }
+        super.encode(ctx, msg, out);
+    }
+
+    /**
+     * 可缓存的完整响应使用缓存的压缩结果
+     * @return 压缩后的响应，不压缩或不可缓存时返回 null
+     */
+    private FullHttpResponse compressCached(FullHttpResponse response, CharSequence acceptEncoding) {
+        CompressedVariantCache cache = CompressedVariantCache.INSTANCE;
+        if (!cache.isEnabled() || !shouldCompress(response, response.content().readableBytes())
+                || !isCacheable(response)) {
+            // 交给 beginEncode 处理（不压缩的响应在那里统计）
+            return null;
+        }
+        ZlibWrapper wrapper = selectWrapper(acceptEncoding);
+        if (wrapper == null) {
+            return null;
+        }
+        byte[] bytes = cache.getOrCompress(response.content(), wrapper, level);
+        FullHttpResponse compressed = response.replace(Unpooled.wrappedBuffer(bytes));
+        compressed.headers().set(HttpHeaderNames.CONTENT_ENCODING, wrapper == ZlibWrapper.GZIP ? GZIP : DEFLATE);
+        compressed.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, bytes.length);
+        COMPRESSED.increment();
+        return compressed;
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+        if (precompressed) {
+            return null;
+        }
+        long length = response instanceof HttpContent
+                ? ((HttpContent) response).content().readableBytes() : HttpUtil.getContentLength(response, -1L);
+        if (!shouldCompress(response, length)) {
+            SKIPPED.increment();
+            return null;
+        }
+        ZlibWrapper wrapper = selectWrapper(acceptEncoding);
+        if (wrapper == null) {
+            return null;
+        }
+        COMPRESSED.increment();
+        return new Result(wrapper == ZlibWrapper.GZIP ? GZIP.toString() : DEFLATE.toString(),
+                new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(), ctx.channel().config(),
+                        ZlibCodecFactory.newZlibEncoder(wrapper, level, WINDOW_BITS, MEM_LEVEL)));
+    }
+
+    /**
+     * 按 Accept-Encoding 选择压缩格式（gzip / x-gzip、deflate 各自取 q 值，没有列出时使用 * 的 q 值）
+     * @param acceptEncoding 请求的 Accept-Encoding
+     * @return GZIP / ZLIB（deflate），都不接受时返回 null
+     */
+    static ZlibWrapper selectWrapper(CharSequence acceptEncoding) {
+        float gzipQ = -1f;
+        float deflateQ = -1f;
+        float starQ = -1f;
+        int length = acceptEncoding.length();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && acceptEncoding.charAt(end) != ',') {
+                end++;
+            }
+            int codingEnd = start;
+            while (codingEnd < end && acceptEncoding.charAt(codingEnd) != ';') {
+                codingEnd++;
+            }
+            float q = codingEnd < end ? qValue(acceptEncoding, codingEnd + 1, end) : 1f;
+            int codingStart = start;
+            while (codingStart < codingEnd && acceptEncoding.charAt(codingStart) == ' ') {
+                codingStart++;
+            }
+            while (codingEnd > codingStart && acceptEncoding.charAt(codingEnd - 1) == ' ') {
+                codingEnd--;
+            }
+            if (regionEquals(acceptEncoding, codingStart, codingEnd, "gzip")
+                    || regionEquals(acceptEncoding, codingStart, codingEnd, "x-gzip")) {
+                gzipQ = Math.max(gzipQ, q);
+            } else if (regionEquals(acceptEncoding, codingStart, codingEnd, "deflate")) {
+                deflateQ = Math.max(deflateQ, q);
+            } else if (regionEquals(acceptEncoding, codingStart, codingEnd, "*")) {
+                starQ = Math.max(starQ, q);
+            }
+            start = end + 1;
+        }
+        if (gzipQ < 0) {
+            gzipQ = starQ;
+        }
+        if (deflateQ < 0) {
+            deflateQ = starQ;
+        }
+        if (gzipQ <= 0 && deflateQ <= 0) {
+            return null;
+        }
+        return gzipQ >= deflateQ ? ZlibWrapper.GZIP : ZlibWrapper.ZLIB;
+    }
+
+    /**
+     * 解析 ;q=0.5 形式的参数，没有 q 参数时为 1，格式不对时为 0
+     */
+    private static float qValue(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) == ' ') {
+            start++;
+        }
+        if (end - start < 2 || (s.charAt(start) != 'q' && s.charAt(start) != 'Q') || s.charAt(start + 1) != '=') {
+            return 1f;
+        }
+        try {
+            return Float.parseFloat(s.subSequence(start + 2, end).toString().trim());
+        } catch (NumberFormatException e) {
+            return 0f;
+        }
+    }
+
+    private static boolean regionEquals(CharSequence s, int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.toLowerCase(s.charAt(start + i)) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否值得压缩：压缩级别大于 0、没有 Content-Encoding、足够大、内容类型可压缩
+     * @param response 响应（头）
+     * @param length 响应体大小，-1 表示未知
+     */
+    private boolean shouldCompress(HttpResponse response, long length) {
+        HttpHeaders headers = response.headers();
+        return level > 0 && !headers.contains(HttpHeaderNames.CONTENT_ENCODING)
+                && (length < 0 || length >= MIN_BYTES) && isCompressible(headers.get(HttpHeaderNames.CONTENT_TYPE));
+    }
+
+    /**
+     * 内容类型是否可压缩（不区分大小写，忽略参数，不创建字符串）
+     */
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        int start = 0;
+        int end = contentType.indexOf(';');
+        if (end < 0) {
+            end = contentType.length();
+        }
+        while (start < end && contentType.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && contentType.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (regionEndsWith(contentType, start, end, "+xml") || regionEndsWith(contentType, start, end, "+json")) {
+            return true;
+        }
+        for (String prefix : INCOMPRESSIBLE_TYPES) {
+            if (!prefix.isEmpty() && end - start >= prefix.length()
+                    && contentType.regionMatches(true, start, prefix, 0, prefix.length())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEndsWith(String s, int start, int end, String suffix) {
+        return end - start >= suffix.length() && s.regionMatches(true, end - suffix.length(), suffix, 0, suffix.length());
+    }
+
+    /**
+     * 压缩过的响应数
+     */
+    public static long compressedCount() {
+        return COMPRESSED.sum();
+    }
+
+    /**
+     * 因为太小、内容类型、已有 Content-Encoding 等原因没有压缩的响应数
+     */
+    public static long skippedCount() {
+        return SKIPPED.sum();
+    }
+}
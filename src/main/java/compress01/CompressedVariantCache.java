@@ -0,0 +1,223 @@
+package compress01;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压缩结果缓存：相同的响应体（按内容哈希）只压缩一次
+ *  - 键为内容哈希 + 长度 + 压缩格式 + 压缩级别，命中后再逐字节比较原文，哈希冲突不会返回错误的结果
+ *  - 原文和压缩结果都保存为堆上的字节数组，响应时包装成 ByteBuf（不复制），淘汰时不需要考虑引用计数
+ *  - 超出容量时按哈希表的遍历顺序淘汰（近似随机淘汰），单个条目不超过容量的 1/8
+ *  - 容量：-Dgateway.compress.cacheBytes=16777216，0 表示不缓存
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class CompressedVariantCache {
+    /**
+     * 缓存容量（字节）
+     */
+    private static final long MAX_BYTES = Long.getLong("gateway.compress.cacheBytes", 16L * 1024 * 1024);
+
+    /**
+     * 每个条目额外占用的字节数（估算）
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * 进程内共享的压缩结果缓存
+     */
+    public static final CompressedVariantCache INSTANCE = new CompressedVariantCache(MAX_BYTES);
+
+    private final ConcurrentHashMap<Key, Variant> map = new ConcurrentHashMap<>();
+
+    private final long maxBytes;
+
+    private final AtomicLong weightedSize = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private CompressedVariantCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * 获取响应体的压缩结果，缓存中没有时压缩并放入缓存
+     * @param content 响应体（不改变读写位置）
+     * @param wrapper 压缩格式（gzip / deflate）
+     * @param level 压缩级别（1-9）
+     * @return 压缩后的字节
+     */
+    byte[] getOrCompress(ByteBuf content, ZlibWrapper wrapper, int level) {
+        Key key = new Key(hash(content), content.readableBytes(), wrapper, level);
+        Variant variant = map.get(key);
+        if (variant != null && ByteBufUtil.equals(content, content.readerIndex(),
+                variant.original, 0, content.readableBytes())) {
+            hits.increment();
+            return variant.compressed;
+        }
+        misses.increment();
+
+        byte[] compressed = compress(content, wrapper, level);
+        long weight = (long) content.readableBytes() + compressed.length + ENTRY_OVERHEAD;
+        if (weight <= maxBytes / 8) {
+            Variant created = new Variant(Unpooled.wrappedBuffer(ByteBufUtil.getBytes(content)), compressed, weight);
+            Variant previous = map.put(key, created);
+            weightedSize.addAndGet(previous == null ? weight : weight - previous.weight);
+            evictIfNeeded();
+        }
+        return compressed;
+    }
+
+    /**
+     * 压缩（与 HttpContentCompressor 使用相同的编码器，输出格式一致）
+     */
+    private static byte[] compress(ByteBuf content, ZlibWrapper wrapper, int level) {
+        EmbeddedChannel encoder = new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(wrapper, level, 15, 8));
+        encoder.writeOutbound(content.retainedDuplicate());
+        encoder.finish();
+        ByteBuf out = Unpooled.buffer(Math.max(64, content.readableBytes() / 2));
+        try {
+            ByteBuf buf;
+            while ((buf = encoder.readOutbound()) != null) {
+                out.writeBytes(buf);
+                buf.release();
+            }
+            return ByteBufUtil.getBytes(out);
+        } finally {
+            out.release();
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Key, Variant>> iterator = map.entrySet().iterator();
+        while (weightedSize.get() > maxBytes && iterator.hasNext()) {
+            Map.Entry<Key, Variant> e = iterator.next();
+            if (map.remove(e.getKey(), e.getValue())) {
+                weightedSize.addAndGet(-e.getValue().weight);
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 64 位内容哈希（每次读 8 个字节）
+     */
+    private static long hash(ByteBuf content) {
+        long h = 0x9E3779B97F4A7C15L ^ content.readableBytes();
+        int i = content.readerIndex();
+        int end = content.writerIndex();
+        for (; i + 8 <= end; i += 8) {
+            h = mix(h ^ content.getLong(i));
+        }
+        for (; i < end; i++) {
+            h = mix(h ^ content.getByte(i));
+        }
+        return h;
+    }
+
+    private static long mix(long h) {
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * 命中次数
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * 未命中（需要压缩）的次数
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 因容量不足被淘汰的条目数
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * 当前占用的字节数（估算）
+     */
+    public long weightedSize() {
+        return weightedSize.get();
+    }
+
+    /**
+     * 当前的条目数
+     */
+    public int size() {
+        return map.size();
+    }
+
+    private static final class Key {
+        private final long hash;
+
+        private final int length;
+
+        private final ZlibWrapper wrapper;
+
+        private final int level;
+
+        private Key(long hash, int length, ZlibWrapper wrapper, int level) {
+            this.hash = hash;
+            this.length = length;
+            this.wrapper = wrapper;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && length == other.length && wrapper == other.wrapper && level == other.level;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32)) * 31 + wrapper.ordinal() * 10 + level;
+        }
+    }
+
+    private static final class Variant {
+        /**
+         * 原文（用于确认哈希命中的确实是相同的内容）
+         */
+        private final ByteBuf original;
+
+        private final byte[] compressed;
+
+        private final long weight;
+
+        private Variant(ByteBuf original, byte[] compressed, long weight) {
+            this.original = original;
+            this.compressed = compressed;
+            this.weight = weight;
+        }
+    }
+}
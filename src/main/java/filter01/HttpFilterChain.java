@@ -0,0 +1,113 @@
+package filter01;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 一条路由编译后的过滤器链（不可变）
+ *  - 只包含作用于该路由的过滤器，已按 order 排好序
+ *  - 过滤器全部同步通过时不分配任何对象；遇到异步过滤器时，剩余的过滤器在其完成后回到用户侧 EventLoop 上继续执行
+ * 获取方式参见：HttpFilterChains#chainFor
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class HttpFilterChain {
+    private final HttpRequestFilter[] requestFilters;
+
+    private final HttpResponseFilter[] responseFilters;
+
+    HttpFilterChain(HttpRequestFilter[] requestFilters, HttpResponseFilter[] responseFilters) {
+        this.requestFilters = requestFilters;
+        this.responseFilters = responseFilters;
+    }
+
+    /**
+     * 依次执行请求过滤器
+     * @param request 请求
+     * @param ctx 用户侧连接的通道处理器上下文
+     * @return null 表示全部同步通过；否则在 CompletionStage 完成后决定（完成值为 null 表示通过，非 null 为拒绝的状态码），
+     *         完成回调在用户侧 EventLoop 上执行
+     */
+    public CompletionStage<HttpResponseStatus> filterRequest(HttpRequest request, ChannelHandlerContext ctx) {
+        return filterRequest(request, ctx, 0);
+    }
+
+    private CompletionStage<HttpResponseStatus> filterRequest(HttpRequest request, ChannelHandlerContext ctx, int from) {
+        for (int i = from; i < requestFilters.length; i++) {
+            CompletionStage<HttpResponseStatus> stage = requestFilters[i].filter(request, ctx);
+            if (stage == null) {
+                continue;
+            }
+            if (stage instanceof CompletableFuture && ((CompletableFuture<?>) stage).isDone()
+                    && !((CompletableFuture<?>) stage).isCompletedExceptionally()) {
+                // 同步完成：拒绝则直接返回，通过则继续下一个过滤器
+                if (((CompletableFuture<HttpResponseStatus>) stage).getNow(null) != null) {
+                    return stage;
+                }
+                continue;
+            }
+            return continueAsync(stage, request, ctx, i + 1);
+        }
+        return null;
+    }
+
+    /**
+     * 异步过滤器完成后，回到用户侧 EventLoop 上执行剩余的过滤器
+     */
+    private CompletionStage<HttpResponseStatus> continueAsync(CompletionStage<HttpResponseStatus> stage,
+                                                              HttpRequest request, ChannelHandlerContext ctx, int next) {
+        CompletableFuture<HttpResponseStatus> result = new CompletableFuture<>();
+        stage.whenComplete((status, cause) -> ctx.executor().execute(() -> {
+            if (cause != null) {
+                System.err.println("####【ERROR】请求过滤器执行失败:" + cause);
+                result.complete(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                return;
+            }
+            if (status != null) {
+                result.complete(status);
+                return;
+            }
+            try {
+                CompletionStage<HttpResponseStatus> rest = filterRequest(request, ctx, next);
+                if (rest == null) {
+                    result.complete(null);
+                } else {
+                    rest.whenComplete((s, e) -> {
+                        if (e != null) {
+                            result.complete(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                        } else {
+                            result.complete(s);
+                        }
+                    });
+                }
+            } catch (RuntimeException e) {
+                System.err.println("####【ERROR】请求过滤器执行失败:" + e);
+                result.complete(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            }
+        }));
+        return result;
+    }
+
+    /**
+     * 依次执行响应过滤器（写出响应头之前调用）
+     * @param response 响应（头）
+     * @param ctx 用户侧连接的通道处理器上下文
+     */
+    public void filterResponse(HttpResponse response, ChannelHandlerContext ctx) {
+        for (HttpResponseFilter filter : responseFilters) {
+            filter.filter(response, ctx);
+        }
+    }
+
+    /**
+     * 是否没有任何过滤器
+     */
+    public boolean isEmpty() {
+        return requestFilters.length == 0 && responseFilters.length == 0;
+    }
+}
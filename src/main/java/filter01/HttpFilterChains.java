@@ -0,0 +1,130 @@
+package filter01;
+
+import router01.Route;
+import router01.RouteTable;
+import router01.RouteTables;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 过滤器注册表，以及按路由预编译的过滤器链
+ *  - 路由表变化（或注册了新的过滤器）后，为新路由表中的每条路由重新编译一次过滤器链，整体替换
+ *  - 请求路径上只有一次 IdentityHashMap 查找，不分配对象
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class HttpFilterChains {
+    /**
+     * 已注册的请求过滤器
+     */
+    private static final List<HttpRequestFilter> REQUEST_FILTERS = new CopyOnWriteArrayList<>();
+
+    /**
+     * 已注册的响应过滤器
+     */
+    private static final List<HttpResponseFilter> RESPONSE_FILTERS = new CopyOnWriteArrayList<>();
+
+    /**
+     * 当前路由表编译出的过滤器链
+     */
+    private static volatile Compiled compiled;
+
+    static {
+        // 默认的后端服务白名单过滤器，以及限流过滤器（没有配置限流时不作用于任何路由）
+        REQUEST_FILTERS.add(new ProxyBizFilter());
+        REQUEST_FILTERS.add(new RateLimitFilter());
+    }
+
+    private HttpFilterChains() {
+    }
+
+    /**
+     * 注册请求过滤器（通常在服务启动前调用）
+     * @param filter 请求过滤器
+     */
+    public static synchronized void registerRequestFilter(HttpRequestFilter filter) {
+        REQUEST_FILTERS.add(filter);
+        compiled = null;
+    }
+
+    /**
+     * 注册响应过滤器（通常在服务启动前调用）
+     * @param filter 响应过滤器
+     */
+    public static synchronized void registerResponseFilter(HttpResponseFilter filter) {
+        RESPONSE_FILTERS.add(filter);
+        compiled = null;
+    }
+
+    /**
+     * 获取路由对应的过滤器链
+     * @param route 路由，没有匹配到路由的请求为 null
+     * @return 过滤器链
+     */
+    public static HttpFilterChain chainFor(Route route) {
+        RouteTable table = RouteTables.current();
+        Compiled current = compiled;
+        if (current == null || current.table != table) {
+            current = compileTable(table);
+        }
+        if (route == null) {
+            return current.noRouteChain;
+        }
+        HttpFilterChain chain = current.chains.get(route);
+        // 请求匹配的是刚被替换掉的旧路由表中的路由，单独编译一次
+        return chain != null ? chain : compile(route);
+    }
+
+    private static synchronized Compiled compileTable(RouteTable table) {
+        Compiled current = compiled;
+        if (current != null && current.table == table) {
+            return current;
+        }
+        Map<Route, HttpFilterChain> chains = new IdentityHashMap<>();
+        for (Route route : table.routes()) {
+            chains.put(route, compile(route));
+        }
+        current = new Compiled(table, chains, compile((Route) null));
+        compiled = current;
+        return current;
+    }
+
+    private static HttpFilterChain compile(Route route) {
+        List<HttpRequestFilter> requestFilters = new ArrayList<>();
+        for (HttpRequestFilter filter : REQUEST_FILTERS) {
+            if (filter.appliesTo(route)) {
+                requestFilters.add(filter);
+            }
+        }
+        requestFilters.sort(Comparator.comparingInt(HttpRequestFilter::order));
+
+        List<HttpResponseFilter> responseFilters = new ArrayList<>();
+        for (HttpResponseFilter filter : RESPONSE_FILTERS) {
+            if (filter.appliesTo(route)) {
+                responseFilters.add(filter);
+            }
+        }
+        responseFilters.sort(Comparator.comparingInt(HttpResponseFilter::order));
+
+        return new HttpFilterChain(requestFilters.toArray(new HttpRequestFilter[0]),
+                responseFilters.toArray(new HttpResponseFilter[0]));
+    }
+
+    /**
+     * 某个路由表编译出的所有过滤器链
+     */
+    private static final class Compiled {
+        private final RouteTable table;
+
+        private final Map<Route, HttpFilterChain> chains;
+
+        private final HttpFilterChain noRouteChain;
+
+        private Compiled(RouteTable table, Map<Route, HttpFilterChain> chains, HttpFilterChain noRouteChain) {
+            this.table = table;
+            this.chains = chains;
+            this.noRouteChain = noRouteChain;
+        }
+    }
+}
@@ -1,19 +1,53 @@
 package filter01;
 
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import router01.Route;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
- * HTTP 请求过滤器接口
+ * HTTP 请求过滤器接口（入站过滤器）
+ *  - 同一条路由上的过滤器按 order 从小到大依次执行，参见 HttpFilterChain
+ *  - 在用户侧连接的 EventLoop 上调用，不能阻塞；需要等待外部结果（查询令牌、配额等）时返回未完成的 CompletionStage
  * @author junyangwei
  * @date 2021-10-09
  */
 public interface HttpRequestFilter {
     /**
      * 过滤方法
-     * @param fullHttpRequest 完整的请求
+     * @param request 请求（聚合模式下是完整的 FullHttpRequest，流式模式或透传路由下只有请求头）
      * @param ctx netty 的通道处理器的上下文
-     * @return true or false 是否过滤通过
+     * @return null 表示同步通过，继续执行下一个过滤器（不分配对象）；
+     *         否则在 CompletionStage 完成后决定：完成值为 null 表示通过，非 null 表示拒绝请求并以该状态码响应用户
+     */
+    CompletionStage<HttpResponseStatus> filter(HttpRequest request, ChannelHandlerContext ctx);
+
+    /**
+     * 执行顺序，越小越先执行
+     * @return 执行顺序
+     */
+    default int order() {
+        return 0;
+    }
+
+    /**
+     * 是否作用于某条路由（路由表编译后对每条路由只判断一次）
+     * @param route 路由，没有匹配到路由的请求为 null
+     * @return 是否作用于该路由
+     */
+    default boolean appliesTo(Route route) {
+        return true;
+    }
+
+    /**
+     * 拒绝请求
+     * @param status 响应给用户的状态码
+     * @return 已完成的过滤结果
      */
-    boolean filter(FullHttpRequest fullHttpRequest, ChannelHandlerContext ctx);
+    static CompletionStage<HttpResponseStatus> reject(HttpResponseStatus status) {
+        return CompletableFuture.completedFuture(status);
+    }
 }
@@ -0,0 +1,38 @@
+package filter01;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpResponse;
+import router01.Route;
+
+/**
+ * HTTP 响应过滤器接口（出站过滤器）
+ *  - 响应头写给用户之前，按 order 从小到大依次执行，可以修改响应头
+ *  - 响应体可能是流式/透传转发的，出站过滤器只处理响应头，并且是同步的
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public interface HttpResponseFilter {
+    /**
+     * 过滤方法
+     * @param response 响应（头）
+     * @param ctx netty 的通道处理器的上下文（用户侧连接）
+     */
+    void filter(HttpResponse response, ChannelHandlerContext ctx);
+
+    /**
+     * 执行顺序，越小越先执行
+     * @return 执行顺序
+     */
+    default int order() {
+        return 0;
+    }
+
+    /**
+     * 是否作用于某条路由（路由表编译后对每条路由只判断一次）
+     * @param route 路由，没有匹配到路由的请求为 null
+     * @return 是否作用于该路由
+     */
+    default boolean appliesTo(Route route) {
+        return true;
+    }
+}
@@ -2,7 +2,9 @@ package filter01;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
-import router01.ApiTagEnum;
+import router01.Route;
+
+import java.util.concurrent.CompletionStage;
 
 /**
  * 在接收来自客户端的请求时的过滤器
@@ -12,22 +14,26 @@ import router01.ApiTagEnum;
 public class ProxyBizFilter implements HttpRequestFilter {
     /**
      * 重写filter方法，做一个后端服务白名单过滤器
-     *  - 只给：/test01api/ 以及 /test02api/
+     *  - 只给路由表中存在的路由（默认是：/test01api/ 以及 /test02api/，参见 RouteTables）
+     *  - 路由已由 HttpRouteHandler 匹配好，保存在通道属性 Route.KEY 上
      */
     @Override
-    public boolean filter(FullHttpRequest request, ChannelHandlerContext ctx) {
-        String uri = request.uri();
-
-        boolean validUri = uri.startsWith(ApiTagEnum.TEST01.getApiTag())
-                || uri.startsWith(ApiTagEnum.TEST02.getApiTag())
-                || ApiTagEnum.DEFAULT.getApiTag().equals(uri);
-
-        if (!validUri) {
-            System.err.println("####【ERROR】不支持的 uri:" + uri);
-            return false;
+    public CompletionStage<HttpResponseStatus> filter(HttpRequest request, ChannelHandlerContext ctx) {
+        Route route = ctx.channel().attr(Route.KEY).get();
+        if (route == null) {
+            System.err.println("####【ERROR】不支持的 uri:" + request.uri());
+            return HttpRequestFilter.reject(HttpResponseStatus.NO_CONTENT);
         }
 
         request.headers().add("biz-tag", "uri-valid");
-        return true;
+        return null;
+    }
+
+    /**
+     * 白名单最先执行
+     */
+    @Override
+    public int order() {
+        return Integer.MIN_VALUE;
     }
 }
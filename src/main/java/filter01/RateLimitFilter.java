@@ -0,0 +1,158 @@
+package filter01;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import router01.Route;
+import router01.RouteTable;
+import router01.RouteTables;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 限流过滤器（令牌桶），超出限制时直接响应 429，不访问后端服务
+ *  - 按客户端 IP 限流：所有路由共用，-Dgateway.rateLimit.clientPerSecond=每秒请求数（默认 0，不限流）
+ *  - 按路由限流：路由配置 route.name.rateLimit=每秒请求数、route.name.rateLimitBurst=突发请求数
+ *  - 客户端 IP 的令牌桶放在固定容量的无锁表中（TokenBucketTable），空闲的桶会被回收
+ *  - 每条路由一个令牌桶（GCRA，取令牌是一次 CAS），所有 IO 线程共用，限流的是路由的整体速率，
+ *    不受用户连接在 IO 线程之间分布是否均匀的影响
+ *  - 路由表重新加载后，不在新路由表中的路由的令牌桶被清理
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class RateLimitFilter implements HttpRequestFilter {
+    private static final String PREFIX = "gateway.rateLimit.";
+
+    /**
+     * 每个客户端 IP 每秒允许的请求数（0 表示不限流）
+     */
+    private static final double CLIENT_PER_SECOND = Double.parseDouble(System.getProperty(PREFIX + "clientPerSecond", "0"));
+
+    /**
+     * 每个客户端 IP 允许的突发请求数（默认与每秒请求数相同）
+     */
+    private static final double CLIENT_BURST = Double.parseDouble(
+            System.getProperty(PREFIX + "clientBurst", String.valueOf(CLIENT_PER_SECOND)));
+
+    /**
+     * 最多同时跟踪的客户端 IP 数
+     */
+    private static final int MAX_CLIENTS = Integer.getInteger(PREFIX + "maxClients", 65536);
+
+    /**
+     * 客户端 IP 的令牌桶（不限流时为 null）
+     */
+    private final TokenBucketTable clientBuckets = CLIENT_PER_SECOND > 0
+            ? new TokenBucketTable(MAX_CLIENTS, CLIENT_PER_SECOND, CLIENT_BURST) : null;
+
+    /**
+     * 路由名称 -> 令牌桶（路由表重新加载后，限流配置没有变化的路由沿用原来的令牌桶）
+     */
+    private final Map<String, RouteBucket> routeBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * 上一次清理 routeBuckets 时的路由表
+     */
+    private volatile RouteTable prunedFor;
+
+    @Override
+    public CompletionStage<HttpResponseStatus> filter(HttpRequest request, ChannelHandlerContext ctx) {
+        long now = System.nanoTime();
+
+        Route route = ctx.channel().attr(Route.KEY).get();
+        RouteBucket bucket = route == null ? null : routeBucket(route);
+        if (bucket != null && !bucket.tryAcquire(now)) {
+            return HttpRequestFilter.reject(HttpResponseStatus.TOO_MANY_REQUESTS);
+        }
+
+        if (clientBuckets != null) {
+            SocketAddress remote = ctx.channel().remoteAddress();
+            // InetAddress 在连接上是同一个实例，直接作为键，不生成 IP 字符串
+            if (remote instanceof InetSocketAddress
+                    && !clientBuckets.tryAcquire(((InetSocketAddress) remote).getAddress(), now)) {
+                return HttpRequestFilter.reject(HttpResponseStatus.TOO_MANY_REQUESTS);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 只作用于配置了路由限流的路由；开启了客户端 IP 限流时作用于所有路由
+     */
+    @Override
+    public boolean appliesTo(Route route) {
+        return clientBuckets != null || (route != null && route.getAttribute("rateLimit") != null);
+    }
+
+    /**
+     * 在白名单之后、其它过滤器之前执行，被限流的请求不再执行其它过滤器
+     */
+    @Override
+    public int order() {
+        return Integer.MIN_VALUE + 1;
+    }
+
+    /**
+     * 获取路由的令牌桶，没有配置路由限流时返回 null
+     */
+    private RouteBucket routeBucket(Route route) {
+        String rateLimit = route.getAttribute("rateLimit");
+        if (rateLimit == null) {
+            return null;
+        }
+        RouteTable table = RouteTables.current();
+        if (table != prunedFor) {
+            prune(table);
+        }
+        String burst = route.getAttribute("rateLimitBurst");
+        RouteBucket bucket = routeBuckets.get(route.getName());
+        if (bucket != null && bucket.matches(rateLimit, burst)) {
+            return bucket;
+        }
+        // 首次使用或限流配置已变化：在 ConcurrentHashMap 的原子计算中创建，并发的请求共用同一个令牌桶
+        return routeBuckets.compute(route.getName(), (name, current) ->
+                current != null && current.matches(rateLimit, burst) ? current : new RouteBucket(rateLimit, burst));
+    }
+
+    /**
+     * 路由表重新加载后清理已经不存在的路由的令牌桶（每个路由表只清理一次）
+     */
+    private synchronized void prune(RouteTable table) {
+        if (table == prunedFor) {
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        for (Route route : table.routes()) {
+            names.add(route.getName());
+        }
+        routeBuckets.keySet().retainAll(names);
+        prunedFor = table;
+    }
+
+    /**
+     * 一条路由的令牌桶，以及创建它的限流配置
+     */
+    private static final class RouteBucket extends TokenBucket {
+        private final String rateLimit;
+
+        private final String burst;
+
+        private RouteBucket(String rateLimit, String burst) {
+            super(null, Double.parseDouble(rateLimit),
+                    burst == null ? Double.parseDouble(rateLimit) : Double.parseDouble(burst), System.nanoTime());
+            this.rateLimit = rateLimit;
+            this.burst = burst;
+        }
+
+        private boolean matches(String rateLimit, String burst) {
+            return this.rateLimit.equals(rateLimit) && Objects.equals(this.burst, burst);
+        }
+    }
+}
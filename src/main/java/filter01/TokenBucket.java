@@ -0,0 +1,65 @@
+package filter01;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 令牌桶（按 GCRA 算法实现，与令牌桶等价）
+ *  - 只保存一个「理论到达时间」（TAT），每次取令牌是一次 CAS，无锁、不分配对象
+ *  - 每 intervalNanos 补充一个令牌，最多积攒 burst 个
+ *  - TAT 不晚于当前时间说明桶已装满，此时丢弃这个桶与新建一个桶效果相同（空闲回收的依据）
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class TokenBucket {
+    /**
+     * 桶的键（客户端 IP 等），路由级的桶为 null
+     */
+    final Object key;
+
+    /**
+     * 补充一个令牌的间隔（纳秒）
+     */
+    private final long intervalNanos;
+
+    /**
+     * 允许超前的时间（纳秒），即 (burst - 1) 个令牌的补充时间
+     */
+    private final long toleranceNanos;
+
+    /**
+     * 理论到达时间（纳秒）
+     */
+    private final AtomicLong tat;
+
+    TokenBucket(Object key, double permitsPerSecond, double burst, long nowNanos) {
+        this.key = key;
+        this.intervalNanos = Math.max(1L, (long) (1_000_000_000L / permitsPerSecond));
+        this.toleranceNanos = (long) (intervalNanos * (Math.max(1.0, burst) - 1));
+        this.tat = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * 尝试取一个令牌
+     * @param nowNanos 当前时间（System.nanoTime）
+     * @return 是否取到
+     */
+    boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long current = tat.get();
+            long start = Math.max(current, nowNanos);
+            if (start - nowNanos > toleranceNanos) {
+                return false;
+            }
+            if (tat.compareAndSet(current, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 桶是否已装满（空闲），可以被回收
+     */
+    boolean isIdle(long nowNanos) {
+        return tat.get() - nowNanos <= 0;
+    }
+}
@@ -0,0 +1,119 @@
+package filter01;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 固定容量的令牌桶表（按客户端 IP 等键存放令牌桶）
+ *  - 开放寻址的数组，按键的哈希分散到不同的槽；查找已有的桶不加锁
+ *  - 插入新键时按键的哈希分段加锁并重新探测：同一个键的并发插入串行化，不会在两个槽里各建一个桶
+ *    （否则两个桶各自计算 GCRA，放行的请求数最多是配置的两倍）；不同分段的插入和回收对槽的写入仍然是 CAS，
+ *    CAS 失败时重新探测；容量固定，内存有上限，不会扩容
+ *  - 查找时顺带回收空闲（已装满）的桶：探测范围内没有空槽时，复用空闲桶的槽
+ *  - 探测范围内既没有空槽也没有空闲桶时（表满），这些键共用一个溢出桶，宁可多限流也不突破内存上限
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class TokenBucketTable {
+    /**
+     * 每个键最多探测的槽数
+     */
+    private static final int MAX_PROBES = 8;
+
+    /**
+     * 插入锁的分段数
+     */
+    private static final int INSERT_STRIPES = 64;
+
+    private final AtomicReferenceArray<TokenBucket> slots;
+
+    private final int mask;
+
+    private final double permitsPerSecond;
+
+    private final double burst;
+
+    /**
+     * 表满时共用的溢出桶
+     */
+    private final TokenBucket overflow;
+
+    /**
+     * 按键的哈希分段的插入锁
+     */
+    private final Object[] insertLocks = new Object[INSERT_STRIPES];
+
+    TokenBucketTable(int capacity, double permitsPerSecond, double burst) {
+        int size = Integer.highestOneBit(Math.max(MAX_PROBES, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.overflow = new TokenBucket(null, permitsPerSecond, burst, System.nanoTime());
+        for (int i = 0; i < INSERT_STRIPES; i++) {
+            insertLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * 为键取一个令牌
+     * @param key 键（需要实现 equals / hashCode）
+     * @param nowNanos 当前时间（System.nanoTime）
+     * @return 是否取到
+     */
+    boolean tryAcquire(Object key, long nowNanos) {
+        return bucket(key, nowNanos).tryAcquire(nowNanos);
+    }
+
+    private TokenBucket bucket(Object key, long nowNanos) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            TokenBucket bucket = slots.get((h + i) & mask);
+            if (bucket != null && bucket.key.equals(key)) {
+                return bucket;
+            }
+        }
+        synchronized (insertLocks[h & (INSERT_STRIPES - 1)]) {
+            return insert(key, h, nowNanos);
+        }
+    }
+
+    /**
+     * 在分段锁内重新探测并插入（其它线程可能刚刚插入了同一个键）
+     */
+    private TokenBucket insert(Object key, int h, long nowNanos) {
+        while (true) {
+            int reusable = -1;
+            for (int i = 0; i < MAX_PROBES; i++) {
+                int index = (h + i) & mask;
+                TokenBucket bucket = slots.get(index);
+                if (bucket == null) {
+                    if (reusable < 0) {
+                        reusable = index;
+                    }
+                    continue;
+                }
+                if (bucket.key.equals(key)) {
+                    return bucket;
+                }
+                if (reusable < 0 && bucket.isIdle(nowNanos)) {
+                    reusable = index;
+                }
+            }
+            if (reusable < 0) {
+                return overflow;
+            }
+
+            TokenBucket expected = slots.get(reusable);
+            if (expected != null && !expected.isIdle(nowNanos)) {
+                // 槽在探测之后被其它键占用，重新探测
+                continue;
+            }
+            TokenBucket created = new TokenBucket(key, permitsPerSecond, burst, nowNanos);
+            if (slots.compareAndSet(reusable, expected, created)) {
+                return created;
+            }
+            // 其它分段的线程同时写入了这个槽，重新探测
+        }
+    }
+}
@@ -1,42 +1,312 @@
 package httpserver;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * 最简单的 HTTP 服务公共模块
+ *  - 带缓冲地读取并解析请求（请求行、请求头，请求体按 Content-Length 跳过），同一个连接上循环处理 keep-alive 和流水线请求
+ *  - 响应是预先编码好的字节数组，一次 write 写出；流水线中后续请求已经到达时先攒着，最后一起写出
+ *  - 启动参数：
+ *    -DkeepAlive.maxRequests=100 一个连接上最多处理的请求数，之后响应 Connection:close 并关闭连接
+ *     （HttpServer01 的单线程、HttpServer03 的固定线程池靠它把线程让给排队中的其它连接）
+ *    -DkeepAlive.timeoutMillis=5000 连接空闲（等待下一个请求）多久后关闭
  * @author junyangwei
  * @date 2021-10-11
  */
 public class HttpCommon {
+    /**
+     * 一个连接上最多处理的请求数
+     */
+    static final int MAX_KEEP_ALIVE_REQUESTS = Integer.getInteger("keepAlive.maxRequests", 100);
+
+    /**
+     * 连接空闲的超时时间（毫秒）
+     */
+    static final int KEEP_ALIVE_TIMEOUT_MILLIS = Integer.getInteger("keepAlive.timeoutMillis", 5000);
+
+    /**
+     * 读/写缓冲区大小（一行请求行或请求头不能超过它）
+     */
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 模拟返回一个固定的字符串给客户端
+     */
+    private static final byte[] BODY = "Hello, http server!".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 预先编码的响应（保持连接 / 响应后关闭连接）
+     */
+    static final byte[] KEEP_ALIVE_RESPONSE = response("keep-alive");
+
+    static final byte[] CLOSE_RESPONSE = response("close");
+
+    static final byte[] BAD_REQUEST_RESPONSE = ("HTTP/1.1 400 Bad Request\r\nContent-Length:0\r\nConnection:close\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+
     /**
      * 与客户端通信 server 方法，响应客户端的请求
+     *  - 循环读取同一个连接上的请求，直到客户端关闭、不再保持连接、达到最大请求数或空闲超时
      * @param socket 服务器创建的 Socket 对象，用于与客户端进行通信
      */
     public static void server(Socket socket) {
         try {
-            // 打开双方的 socket 的通道，并且打开一个输入流，模拟向请求客户端响应数据
-            PrintWriter printWriter = new PrintWriter(socket.getOutputStream(), true);
-            // 输出的就是 HTTP 的报文协议
-            printWriter.println("HTTP/1.1 200 OK");
-            printWriter.println("Content-Type:text/html;charset=utf-8");
-            // 模拟返回一个固定的字符串给客户端
-            String body = "Hello, http server!";
-            // 再输出一个请求头，显示的告诉客户端当前报文体的长度（用字节数表示）
-            // 如果没有这个参数，客户端会不知道整个报文体到哪里是结束，导致出错
-            printWriter.println("Content-Length:" + body.getBytes().length);
-            // 输出一个空行，隔开"报文头"和"报文体"
-            printWriter.println();
-
-            // 写入报文体，并关闭输入流，结束与客户端的通信
-            printWriter.write(body);
-            printWriter.close();
-
-            // 关闭 socket
-            socket.close();
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(KEEP_ALIVE_TIMEOUT_MILLIS);
+            RequestReader reader = new RequestReader(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+
+            for (int served = 1; ; served++) {
+                int request = reader.readRequest();
+                if (request == RequestReader.EOF) {
+                    break;
+                }
+                if (request == RequestReader.BAD_REQUEST) {
+                    out.write(BAD_REQUEST_RESPONSE);
+                    out.flush();
+                    break;
+                }
+                if (request == RequestReader.CLOSE || served >= MAX_KEEP_ALIVE_REQUESTS) {
+                    out.write(CLOSE_RESPONSE);
+                    out.flush();
+                    break;
+                }
+                out.write(KEEP_ALIVE_RESPONSE);
+                // 流水线：下一个请求已经在读缓冲区中时先不写出，处理完这一批后一次写出
+                if (!reader.hasBuffered()) {
+                    out.flush();
+                }
+            }
+        } catch (SocketTimeoutException | SocketException e) {
+            // 空闲超时，或客户端重置了连接，直接关闭
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            close(socket);
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // 关闭失败时无需处理
+        }
+    }
+
+    private static byte[] response(String connection) {
+        // 输出的就是 HTTP 的报文协议，Content-Length 显示地告诉客户端报文体的长度（用字节数表示），空行隔开"报文头"和"报文体"
+        String head = "HTTP/1.1 200 OK\r\n"
+                + "Content-Type:text/html;charset=utf-8\r\n"
+                + "Content-Length:" + BODY.length + "\r\n"
+                + "Connection:" + connection + "\r\n"
+                + "\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.US_ASCII);
+        byte[] bytes = new byte[headBytes.length + BODY.length];
+        System.arraycopy(headBytes, 0, bytes, 0, headBytes.length);
+        System.arraycopy(BODY, 0, bytes, headBytes.length, BODY.length);
+        return bytes;
+    }
+
+    /**
+     * 带缓冲的请求读取器：每次从 socket 尽量多读，请求行、请求头直接在缓冲区中按字节解析，不创建字符串
+     */
+    private static final class RequestReader {
+        /**
+         * readRequest 的返回值：保持连接 / 响应后关闭 / 连接已关闭 / 请求不合法
+         */
+        static final int KEEP_ALIVE = 1;
+        static final int CLOSE = 0;
+        static final int EOF = -1;
+        static final int BAD_REQUEST = -2;
+
+        private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] CONNECTION = "connection".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] CLOSE_VALUE = "close".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] KEEP_ALIVE_VALUE = "keep-alive".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] HTTP_1_0 = "HTTP/1.0".getBytes(StandardCharsets.US_ASCII);
+
+        private final InputStream in;
+
+        private final byte[] buf = new byte[BUFFER_SIZE];
+
+        /**
+         * 缓冲区中未解析部分的起止位置
+         */
+        private int pos;
+        private int limit;
+
+        /**
+         * 最近读到的一行（不含换行符）的起止位置
+         */
+        private int lineStart;
+        private int lineEnd;
+
+        private RequestReader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * 缓冲区中是否还有未处理的数据（流水线中的下一个请求）
+         */
+        private boolean hasBuffered() {
+            return pos < limit;
+        }
+
+        /**
+         * 读取一个完整的请求（请求体直接跳过）
+         * @return KEEP_ALIVE / CLOSE / EOF / BAD_REQUEST
+         */
+        private int readRequest() throws IOException {
+            // 请求行（跳过请求之间多余的空行）
+            int length;
+            do {
+                length = readLine();
+                if (length < 0) {
+                    return length;
+                }
+            } while (length == 0);
+            boolean keepAlive = !endsWith(HTTP_1_0);
+
+            // 请求头，直到空行
+            long contentLength = 0;
+            while ((length = readLine()) != 0) {
+                if (length < 0) {
+                    return length;
+                }
+                int colon = lineStart;
+                while (colon < lineEnd && buf[colon] != ':') {
+                    colon++;
+                }
+                int value = colon + 1;
+                while (value < lineEnd && (buf[value] == ' ' || buf[value] == '\t')) {
+                    value++;
+                }
+                if (nameEquals(colon, CONTENT_LENGTH)) {
+                    contentLength = 0;
+                    for (int i = value; i < lineEnd && buf[i] >= '0' && buf[i] <= '9'; i++) {
+                        contentLength = contentLength * 10 + (buf[i] - '0');
+                    }
+                } else if (nameEquals(colon, CONNECTION)) {
+                    if (containsIgnoreCase(value, CLOSE_VALUE)) {
+                        keepAlive = false;
+                    } else if (containsIgnoreCase(value, KEEP_ALIVE_VALUE)) {
+                        keepAlive = true;
+                    }
+                } else if (nameEquals(colon, TRANSFER_ENCODING)) {
+                    // 不支持分块的请求体
+                    return BAD_REQUEST;
+                }
+            }
+
+            if (!skip(contentLength)) {
+                return EOF;
+            }
+            return keepAlive ? KEEP_ALIVE : CLOSE;
+        }
+
+        /**
+         * 读取一行，记录到 lineStart/lineEnd
+         * @return 行的长度；EOF 表示连接已关闭，BAD_REQUEST 表示行超出了缓冲区
+         */
+        private int readLine() throws IOException {
+            int scan = pos;
+            while (true) {
+                for (; scan < limit; scan++) {
+                    if (buf[scan] == '\n') {
+                        lineStart = pos;
+                        lineEnd = scan > pos && buf[scan - 1] == '\r' ? scan - 1 : scan;
+                        pos = scan + 1;
+                        return lineEnd - lineStart;
+                    }
+                }
+                // 行还没到齐：未解析的部分移到缓冲区开头，继续读
+                if (pos > 0) {
+                    System.arraycopy(buf, pos, buf, 0, limit - pos);
+                    limit -= pos;
+                    scan -= pos;
+                    pos = 0;
+                }
+                if (limit == buf.length) {
+                    return BAD_REQUEST;
+                }
+                int n = in.read(buf, limit, buf.length - limit);
+                if (n < 0) {
+                    return EOF;
+                }
+                limit += n;
+            }
+        }
+
+        /**
+         * 跳过请求体
+         * @return false 表示请求体还没读完连接就关闭了
+         */
+        private boolean skip(long length) throws IOException {
+            while (length > 0) {
+                if (pos == limit) {
+                    pos = 0;
+                    limit = in.read(buf, 0, buf.length);
+                    if (limit < 0) {
+                        limit = 0;
+                        return false;
+                    }
+                }
+                int n = (int) Math.min(length, limit - pos);
+                pos += n;
+                length -= n;
+            }
+            return true;
+        }
+
+        private boolean endsWith(byte[] suffix) {
+            int start = lineEnd - suffix.length;
+            if (start < lineStart) {
+                return false;
+            }
+            for (int i = 0; i < suffix.length; i++) {
+                if (buf[start + i] != suffix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean nameEquals(int colon, byte[] lowerName) {
+            if (colon - lineStart != lowerName.length) {
+                return false;
+            }
+            for (int i = 0; i < lowerName.length; i++) {
+                if (toLower(buf[lineStart + i]) != lowerName[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean containsIgnoreCase(int start, byte[] lowerValue) {
+            for (int i = start; i + lowerValue.length <= lineEnd; i++) {
+                int j = 0;
+                while (j < lowerValue.length && toLower(buf[i + j]) == lowerValue[j]) {
+                    j++;
+                }
+                if (j == lowerValue.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static byte toLower(byte b) {
+            return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
         }
     }
 }
@@ -6,9 +6,13 @@ import java.net.Socket;
 
 /**
  * 实现一个最简单的 HTTP 服务器（单线程）
+ *  - 同一时间只服务一个连接：保持连接但不再发送请求的客户端会一直占用这个线程，
+ *    直到空闲超时（-DkeepAlive.timeoutMillis，默认 5000 毫秒）或处理满 -DkeepAlive.maxRequests 个请求，
+ *    其间其它连接都在 accept 队列中等待；多个客户端交替访问时可以调小空闲超时，例如 -DkeepAlive.timeoutMillis=50
  *  - 访问：http://localhost:8001
  *  - 启动参数：-Xmx512m
  *  - 压测命令：wrk -c 40 -d 30s http://localhost:8001
+ *    或（JVM 内，可复现）：java -Durl=http://localhost:8001/ -Dload.connections=40 -Dload.duration=30 nettyhttpclient01.HttpLoadGenerator
  * @author junyangwei
  * @date 2021-10-11
  */
@@ -9,6 +9,7 @@ import java.net.Socket;
  *  - 访问：http://localhost:8002
  *  - 启动参数：-Xmx512m
  *  - 压测命令：wrk -c 40 -d 30s http://localhost:8002
+ *    或（JVM 内，可复现）：java -Durl=http://localhost:8002/ -Dload.connections=40 -Dload.duration=30 nettyhttpclient01.HttpLoadGenerator
  * @author junyangwei
  * @date 2021-10-11
  */
@@ -11,6 +11,7 @@ import java.util.concurrent.Executors;
  *  - 访问：http://localhost:8003
  *  - 启动参数：-Xmx512m
  *  - 压测命令：wrk -c 40 -d 30s http://localhost:8003
+ *    或（JVM 内，可复现）：java -Durl=http://localhost:8003/ -Dload.connections=40 -Dload.duration=30 nettyhttpclient01.HttpLoadGenerator
  * @author junyangwei
  * @date 2021-10-11
  */
@@ -0,0 +1,392 @@
+package httpserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 实现一个最简单的 HTTP 服务器（JDK NIO 主从 Reactor，不依赖 Netty）
+ *  - 主 Reactor（main 线程）只负责 accept，新连接轮流交给 N 个从 Reactor（默认 CPU 核数，-Dreactors 指定）
+ *  - 每个从 Reactor 一个线程、一个 Selector，负责所有连接的读写；连接的读/写缓冲区是各自复用的堆外 ByteBuffer
+ *  - 请求行和请求头按字节增量解析（报文可以分多次到达），支持 keep-alive 和流水线，请求体按 Content-Length 跳过
+ *  - 响应内容与 HttpCommon 相同，用来对比 Netty 的优势有多少来自 Reactor 模型本身
+ *  - 访问：http://localhost:8004
+ *  - 启动参数：-Xmx512m
+ *  - 压测命令：wrk -c 40 -d 30s http://localhost:8004
+ *    或（JVM 内，可复现）：java -Durl=http://localhost:8004/ -Dload.connections=40 -Dload.duration=30 nettyhttpclient01.HttpLoadGenerator
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HttpServer04 {
+    /**
+     * 从 Reactor 的数量
+     */
+    static final int REACTORS = Integer.getInteger("reactors", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 每个连接的读/写缓冲区大小（一行请求行或请求头不能超过它）
+     */
+    static final int BUFFER_SIZE = 4096;
+
+    public static void main(String[] args) throws IOException {
+        SubReactor[] reactors = new SubReactor[Math.max(1, REACTORS)];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new SubReactor(i);
+            reactors[i].start();
+        }
+
+        // 创建一个绑定 8004 端口的非阻塞 ServerSocketChannel，由主 Reactor 轮询 accept 事件
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(new InetSocketAddress(8004), 1024);
+        server.configureBlocking(false);
+        Selector selector = Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        System.err.println("## HttpServer04 已启动，端口: 8004，从 Reactor 数: " + reactors.length);
+
+        int next = 0;
+        while (true) {
+            selector.select();
+            selector.selectedKeys().clear();
+            SocketChannel ch;
+            while ((ch = server.accept()) != null) {
+                try {
+                    ch.configureBlocking(false);
+                    ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    reactors[next].register(ch);
+                    next = (next + 1) % reactors.length;
+                } catch (IOException e) {
+                    ch.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 从 Reactor：一个线程轮询一个 Selector 上所有连接的读写事件
+     */
+    static final class SubReactor extends Thread {
+        private final Selector selector;
+
+        /**
+         * 主 Reactor 交过来、还没注册的连接（注册必须在 Selector 所在线程上进行）
+         */
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        SubReactor(int index) throws IOException {
+            super("http-server04-reactor-" + index);
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel ch) {
+            pending.offer(ch);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    SocketChannel ch;
+                    while ((ch = pending.poll()) != null) {
+                        ch.register(selector, SelectionKey.OP_READ, new Connection(ch));
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable(key);
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable(key);
+                            }
+                        } catch (IOException e) {
+                            connection.close(key);
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个连接：增量解析请求，把响应写入写缓冲区
+     */
+    static final class Connection {
+        private static final int REQUEST_LINE = 0;
+        private static final int HEADERS = 1;
+        private static final int BODY_CONTENT = 2;
+
+        private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] CONNECTION = "connection".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] CLOSE = "close".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] KEEP_ALIVE = "keep-alive".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] HTTP_1_0 = "HTTP/1.0".getBytes(StandardCharsets.US_ASCII);
+
+        private final SocketChannel channel;
+
+        /**
+         * 读缓冲区（写模式：position 之前是还没解析完的字节）
+         */
+        private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * 写缓冲区（写模式：position 之前是还没写出的响应）
+         */
+        private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private int state = REQUEST_LINE;
+
+        /**
+         * 当前请求是否保持连接（HTTP/1.1 默认保持，HTTP/1.0 默认不保持）
+         */
+        private boolean keepAlive;
+
+        /**
+         * 当前请求还需要跳过的请求体字节数
+         */
+        private long remainingBody;
+
+        /**
+         * 因为写缓冲区满还没放进去的保持连接的响应数
+         */
+        private int queuedResponses;
+
+        /**
+         * 排在它们之后、还没放进写缓冲区的最后一个响应（之后关闭连接）
+         */
+        private byte[] finalResponse;
+
+        /**
+         * 写完已有的响应后关闭连接
+         */
+        private boolean closeAfterWrite;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void onReadable(SelectionKey key) throws IOException {
+            int n = channel.read(in);
+            if (n < 0) {
+                close(key);
+                return;
+            }
+            in.flip();
+            parse();
+            in.compact();
+            if (!in.hasRemaining() && state != BODY_CONTENT) {
+                // 一行超过了缓冲区大小
+                closeAfterWrite = true;
+                enqueue(HttpCommon.BAD_REQUEST_RESPONSE);
+            }
+            flush(key);
+        }
+
+        void onWritable(SelectionKey key) throws IOException {
+            flush(key);
+        }
+
+        /**
+         * 解析读缓冲区中所有完整的行（读模式），每读完一个请求写入一个响应
+         */
+        private void parse() {
+            while (!closeAfterWrite && in.hasRemaining()) {
+                if (state == BODY_CONTENT) {
+                    int skip = (int) Math.min(remainingBody, in.remaining());
+                    in.position(in.position() + skip);
+                    remainingBody -= skip;
+                    if (remainingBody == 0) {
+                        onRequestComplete();
+                    }
+                    continue;
+                }
+                int start = in.position();
+                int end = indexOfLf(start, in.limit());
+                if (end < 0) {
+                    // 行还没到齐，等下一次读
+                    return;
+                }
+                in.position(end + 1);
+                int lineEnd = end > start && in.get(end - 1) == '\r' ? end - 1 : end;
+                if (state == REQUEST_LINE) {
+                    if (lineEnd == start) {
+                        // 请求之间多余的空行
+                        continue;
+                    }
+                    keepAlive = !endsWith(start, lineEnd, HTTP_1_0);
+                    remainingBody = 0;
+                    state = HEADERS;
+                } else if (lineEnd == start) {
+                    // 空行：请求头结束
+                    if (remainingBody > 0) {
+                        state = BODY_CONTENT;
+                    } else {
+                        onRequestComplete();
+                    }
+                } else {
+                    onHeader(start, lineEnd);
+                }
+            }
+        }
+
+        private void onHeader(int start, int end) {
+            int colon = start;
+            while (colon < end && in.get(colon) != ':') {
+                colon++;
+            }
+            int value = colon + 1;
+            while (value < end && (in.get(value) == ' ' || in.get(value) == '\t')) {
+                value++;
+            }
+            if (nameEquals(start, colon, CONTENT_LENGTH)) {
+                long length = 0;
+                for (int i = value; i < end && in.get(i) >= '0' && in.get(i) <= '9'; i++) {
+                    length = length * 10 + (in.get(i) - '0');
+                }
+                remainingBody = length;
+            } else if (nameEquals(start, colon, CONNECTION)) {
+                if (containsIgnoreCase(value, end, CLOSE)) {
+                    keepAlive = false;
+                } else if (containsIgnoreCase(value, end, KEEP_ALIVE)) {
+                    keepAlive = true;
+                }
+            } else if (nameEquals(start, colon, TRANSFER_ENCODING)) {
+                // 不支持分块的请求体：响应 400 后关闭
+                closeAfterWrite = true;
+                enqueue(HttpCommon.BAD_REQUEST_RESPONSE);
+            }
+        }
+
+        private void onRequestComplete() {
+            state = REQUEST_LINE;
+            if (keepAlive) {
+                enqueue(HttpCommon.KEEP_ALIVE_RESPONSE);
+            } else {
+                enqueue(HttpCommon.CLOSE_RESPONSE);
+                closeAfterWrite = true;
+            }
+        }
+
+        /**
+         * 把响应放入写缓冲区，放不下时先记下来，写出一部分后再补上
+         */
+        private void enqueue(byte[] response) {
+            if (queuedResponses == 0 && finalResponse == null && out.remaining() >= response.length) {
+                out.put(response);
+            } else if (response == HttpCommon.KEEP_ALIVE_RESPONSE) {
+                queuedResponses++;
+            } else {
+                finalResponse = response;
+            }
+        }
+
+        /**
+         * 写出写缓冲区；没写完时关注写事件，写完后取消关注
+         */
+        private void flush(SelectionKey key) throws IOException {
+            while (true) {
+                while (queuedResponses > 0 && out.remaining() >= HttpCommon.KEEP_ALIVE_RESPONSE.length) {
+                    out.put(HttpCommon.KEEP_ALIVE_RESPONSE);
+                    queuedResponses--;
+                }
+                if (queuedResponses == 0 && finalResponse != null && out.remaining() >= finalResponse.length) {
+                    out.put(finalResponse);
+                    finalResponse = null;
+                }
+                out.flip();
+                channel.write(out);
+                boolean drained = !out.hasRemaining();
+                out.compact();
+                if (!drained) {
+                    // 内核发送缓冲区满：等待可写事件，期间不再读取新的请求
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (queuedResponses == 0 && finalResponse == null) {
+                    break;
+                }
+            }
+            if (closeAfterWrite) {
+                close(key);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void close(SelectionKey key) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 关闭失败无需处理
+            }
+        }
+
+        private int indexOfLf(int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (in.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean endsWith(int start, int end, byte[] suffix) {
+            if (end - start < suffix.length) {
+                return false;
+            }
+            for (int i = 0; i < suffix.length; i++) {
+                if (in.get(end - suffix.length + i) != suffix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean nameEquals(int start, int end, byte[] lowerName) {
+            if (end - start != lowerName.length) {
+                return false;
+            }
+            for (int i = 0; i < lowerName.length; i++) {
+                if (toLower(in.get(start + i)) != lowerName[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean containsIgnoreCase(int start, int end, byte[] lowerValue) {
+            for (int i = start; i + lowerValue.length <= end; i++) {
+                int j = 0;
+                while (j < lowerValue.length && toLower(in.get(i + j)) == lowerValue[j]) {
+                    j++;
+                }
+                if (j == lowerValue.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static byte toLower(byte b) {
+            return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package httpserver;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 实现一个最简单的 HTTP 服务器（一个连接一个虚拟线程）
+ *  - 与 HttpServer02 一样用阻塞的方式处理每个连接（HttpCommon），但每个连接运行在一个虚拟线程上，
+ *    阻塞时虚拟线程让出载体线程，少量平台线程即可支撑大量慢客户端
+ *  - 需要 Java 21+ 运行，更低版本上退化为平台线程（参见 VirtualThreads）
+ *  - 访问：http://localhost:8005
+ *  - 启动参数：-Xmx512m
+ *  - 压测命令：wrk -c 40 -d 30s http://localhost:8005
+ *    或（JVM 内，可复现）：java -Durl=http://localhost:8005/ -Dload.connections=40 -Dload.duration=30 nettyhttpclient01.HttpLoadGenerator
+ *    与 HttpServer02/03/04 使用相同的命令（端口 8002/8003/8004）对比
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HttpServer05 {
+    public static void main(String[] args) throws IOException {
+        // 每个连接一个虚拟线程（不支持时为平台线程）
+        ExecutorService executorService = VirtualThreads.newThreadPerTaskExecutor();
+        // 创建一个绑定 8005 端口的 ServerSocket 类对象（大量并发连接时加大 accept 队列）
+        ServerSocket serverSocket = new ServerSocket(8005, 4096);
+        System.err.println("## HttpServer05 已启动，端口: 8005，虚拟线程: " + VirtualThreads.isSupported());
+
+        while (true) {
+            try {
+                // 等待客户端的请求过来，交给一个新的虚拟线程处理
+                final Socket socket = serverSocket.accept();
+                executorService.execute(() -> HttpCommon.server(socket));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
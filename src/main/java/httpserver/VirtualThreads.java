@@ -0,0 +1,44 @@
+package httpserver;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程（Java 21+）的兼容入口
+ *  - 本类按 Java 8 编译：通过反射查找 Executors.newVirtualThreadPerTaskExecutor，找不到时退化为平台线程
+ *  - 在 JDK 21 上构建时（pom.xml 的 jdk21 profile），src/main/java21 下的同名类被编译进多版本 jar 的 META-INF/versions/21，
+ *    从 jar 运行时直接调用虚拟线程 API，不再经过反射
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * 创建每个任务一个线程的线程池
+     * @return 运行在 Java 21+ 上时每个任务一个虚拟线程，否则为可复用的平台线程（CachedThreadPool）
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("####【ERROR】当前 JDK 不支持虚拟线程（需要 Java 21+），退化为平台线程");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * 是否支持虚拟线程
+     */
+    static boolean isSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
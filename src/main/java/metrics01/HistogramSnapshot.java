@@ -0,0 +1,58 @@
+package metrics01;
+
+/**
+ * 直方图快照（ShardedHistogram 合并后的结果）
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HistogramSnapshot {
+    private final long[] counts;
+
+    private final long count;
+
+    private final long sum;
+
+    HistogramSnapshot(long[] counts, long count, long sum) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+    }
+
+    /**
+     * 记录的总次数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 所有值的总和
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * 百分位数（取所在桶的上界）
+     * @param percentile 百分位（0 ~ 100），例如 99.9
+     * @return 值，没有记录时返回 0
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.upperBoundMicros(i);
+            }
+        }
+        return LatencyHistogram.upperBoundMicros(counts.length - 1);
+    }
+}
@@ -0,0 +1,128 @@
+package metrics01;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图（微秒精度，对数-线性分桶）
+ *  - 每个 2 的幂区间再均分为 16 个子桶，相对误差不超过 1/16（约 6%），最大记录约 19 小时
+ *  - 记录只是一次原子自增，不加锁、不分配对象，可以在任意 IO 线程上调用
+ *  - 百分位数取所在桶的上界，结果略偏大
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class LatencyHistogram {
+    /**
+     * 每个 2 的幂区间的子桶数（2^SUB_BUCKET_BITS）
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 可记录的最大值（微秒），超过的计入最后一个桶
+     */
+    static final long MAX_VALUE = (1L << 36) - 1;
+
+    /**
+     * 桶的数量
+     */
+    static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sumMicros = new LongAdder();
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        long micros = Math.min(Math.max(nanos / 1000, 0), MAX_VALUE);
+        counts.incrementAndGet(index(micros));
+        count.increment();
+        sumMicros.add(micros);
+    }
+
+    /**
+     * 记录的总次数
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 耗时总和（微秒）
+     */
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    /**
+     * 百分位数
+     * @param percentile 百分位（0 ~ 100），例如 99.9
+     * @return 耗时（纳秒），没有记录时返回 0
+     */
+    public long percentileNanos(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return upperBoundMicros(i) * 1000;
+            }
+        }
+        return upperBoundMicros(BUCKETS - 1) * 1000;
+    }
+
+    /**
+     * 第 i 个桶的计数（导出指标时使用）
+     */
+    public long bucketCount(int i) {
+        return counts.get(i);
+    }
+
+    /**
+     * 清空（滚动窗口切换时使用，与并发记录的竞争会丢失少量样本）
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sumMicros.reset();
+    }
+
+    /**
+     * 耗时（微秒）所在的桶
+     */
+    static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 第 i 个桶的上界（微秒，包含）
+     */
+    static long upperBoundMicros(int i) {
+        if (i < SUB_BUCKETS) {
+            return i;
+        }
+        int exponent = i / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = i % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,77 @@
+package metrics01;
+
+/**
+ * 滚动的耗时直方图（只反映最近一段时间的耗时）
+ *  - 两个直方图轮流使用：每过一个周期，上一个周期的数据被丢弃，当前直方图清空后继续记录
+ *  - 百分位数取上一个完整周期的数据，样本不足时退回当前周期
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class RollingLatencyHistogram {
+    /**
+     * 计算百分位数至少需要的样本数
+     */
+    private static final long MIN_SAMPLES = 100;
+
+    private final long periodNanos;
+
+    private final LatencyHistogram[] histograms = {new LatencyHistogram(), new LatencyHistogram()};
+
+    /**
+     * 当前周期的序号（决定当前使用哪个直方图）
+     */
+    private volatile long period;
+
+    public RollingLatencyHistogram(long periodMillis) {
+        this.periodNanos = periodMillis * 1_000_000L;
+        this.period = System.nanoTime() / periodNanos;
+    }
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        current().record(nanos);
+    }
+
+    /**
+     * 最近的耗时百分位数
+     * @param percentile 百分位（0 ~ 100）
+     * @return 耗时（纳秒），样本不足时返回 -1
+     */
+    public long percentileNanos(double percentile) {
+        long p = rotate();
+        LatencyHistogram previous = histograms[(int) ((p + 1) & 1)];
+        if (previous.getCount() >= MIN_SAMPLES) {
+            return previous.percentileNanos(percentile);
+        }
+        LatencyHistogram current = histograms[(int) (p & 1)];
+        return current.getCount() >= MIN_SAMPLES ? current.percentileNanos(percentile) : -1;
+    }
+
+    private LatencyHistogram current() {
+        return histograms[(int) (rotate() & 1)];
+    }
+
+    /**
+     * 进入新周期时清空即将使用的直方图（相隔超过一个周期时上一个周期也已过期）
+     */
+    private long rotate() {
+        long now = System.nanoTime() / periodNanos;
+        long p = period;
+        if (now != p) {
+            synchronized (this) {
+                p = period;
+                if (now != p) {
+                    histograms[(int) (now & 1)].reset();
+                    if (now - p > 1) {
+                        histograms[(int) ((now + 1) & 1)].reset();
+                    }
+                    period = p = now;
+                }
+            }
+        }
+        return p;
+    }
+}
@@ -0,0 +1,137 @@
+package metrics01;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个路由的用户侧请求指标（按路由名称登记，路由表重新加载后继续累计）
+ *  - 耗时（微秒）、请求体/响应体大小（字节）使用按线程分片的直方图，读取时合并
+ *  - 响应状态码计数、在途请求数、转发策略的事件（对冲、重试、超时）计数使用 LongAdder，IO 线程之间没有争用
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@Getter
+public class RouteMetrics {
+    /**
+     * 没有匹配到路由的请求登记的名称
+     */
+    public static final String UNMATCHED = "unmatched";
+
+    private static final ConcurrentMap<String, RouteMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * 路由名称
+     */
+    private final String route;
+
+    /**
+     * 请求耗时（从收到请求头到写出最后一段响应，微秒）
+     */
+    private final ShardedHistogram latency = new ShardedHistogram();
+
+    /**
+     * 请求体大小（字节）
+     */
+    private final ShardedHistogram requestBytes = new ShardedHistogram();
+
+    /**
+     * 响应体大小（写出的字节，压缩后）
+     */
+    private final ShardedHistogram responseBytes = new ShardedHistogram();
+
+    /**
+     * 在途请求数
+     */
+    private final LongAdder inFlight = new LongAdder();
+
+    /**
+     * 转发策略的事件计数：发出的对冲请求、重试、因重试预算用尽放弃的重试、超时
+     */
+    private final LongAdder hedges = new LongAdder();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder retryBudgetExhausted = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * 响应状态码 -> 次数（用到时才创建计数器）
+     */
+    private final AtomicReferenceArray<LongAdder> statuses = new AtomicReferenceArray<>(600);
+
+    private RouteMetrics(String route) {
+        this.route = route;
+    }
+
+    /**
+     * 获取路由的指标（不存在时创建）
+     * @param route 路由名称
+     * @return 路由指标
+     */
+    public static RouteMetrics of(String route) {
+        RouteMetrics metrics = REGISTRY.get(route);
+        return metrics != null ? metrics : REGISTRY.computeIfAbsent(route, RouteMetrics::new);
+    }
+
+    /**
+     * 所有登记过的路由指标
+     */
+    public static Collection<RouteMetrics> all() {
+        return Collections.unmodifiableCollection(REGISTRY.values());
+    }
+
+    /**
+     * 请求开始（收到请求头）
+     */
+    public void onRequestStart() {
+        inFlight.increment();
+    }
+
+    /**
+     * 请求结束（响应写出或连接关闭）
+     * @param status 响应状态码，连接在响应前关闭时为 0（只减少在途请求数）
+     * @param elapsedNanos 耗时
+     * @param requestSize 请求体大小
+     * @param responseSize 响应体大小
+     */
+    public void onRequestEnd(int status, long elapsedNanos, long requestSize, long responseSize) {
+        inFlight.decrement();
+        if (status <= 0) {
+            return;
+        }
+        latency.record(elapsedNanos / 1000);
+        requestBytes.record(requestSize);
+        responseBytes.record(responseSize);
+        int i = Math.min(status, statuses.length() - 1);
+        LongAdder counter = statuses.get(i);
+        if (counter == null) {
+            statuses.compareAndSet(i, null, new LongAdder());
+            counter = statuses.get(i);
+        }
+        counter.increment();
+    }
+
+    /**
+     * 某个状态码的响应次数
+     * @param status 状态码
+     * @return 次数
+     */
+    public long getStatusCount(int status) {
+        LongAdder counter = status > 0 && status < statuses.length() ? statuses.get(status) : null;
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * 状态码上限（不含），遍历 getStatusCount 时使用
+     */
+    public int getStatusLimit() {
+        return statuses.length();
+    }
+}
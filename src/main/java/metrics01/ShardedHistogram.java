@@ -0,0 +1,114 @@
+package metrics01;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按线程分片的直方图（分桶方式与 LatencyHistogram 相同，单位由调用方决定，例如微秒、字节）
+ *  - 每个线程只写自己的分片：不需要 CAS，也没有缓存行争用，记录的开销只是一次 FastThreadLocal 查找、一次数组访问和几次 lazySet
+ *  - 读取时合并所有分片（导出指标时调用，频率很低），读到的是近似一致的快照
+ *  - 所有直方图共用一个 FastThreadLocal，它只给每个线程分配一个分片下标；分片数组由直方图自己持有，
+ *    路由表重新加载后被替换的 Endpoint 连同它的分片一起回收，不会在线程上留下 FastThreadLocal 下标和分片
+ *  - 分片在线程第一次记录时创建；FastThreadLocalThread（例如 IO 线程）退出时归还下标，新线程复用它和对应的分片
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class ShardedHistogram {
+    /**
+     * 分片中计数之后的两个位置：总次数、总和
+     */
+    private static final int COUNT = LatencyHistogram.BUCKETS;
+
+    private static final int SUM = COUNT + 1;
+
+    /**
+     * 下一个没有分配过的分片下标
+     */
+    private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+
+    /**
+     * 已退出的线程归还的分片下标
+     */
+    private static final ConcurrentLinkedQueue<Integer> FREE_SLOTS = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 当前线程的分片下标
+     */
+    private static final FastThreadLocal<Integer> SLOT = new FastThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            Integer slot = FREE_SLOTS.poll();
+            return slot != null ? slot : NEXT_SLOT.getAndIncrement();
+        }
+
+        @Override
+        protected void onRemoval(Integer slot) {
+            FREE_SLOTS.add(slot);
+        }
+    };
+
+    /**
+     * 分片（按线程的分片下标，没有记录过的线程为 null；只在创建分片时整体替换）
+     */
+    private volatile AtomicLongArray[] shards = new AtomicLongArray[0];
+
+    /**
+     * 记录一个值
+     * @param value 值（负数按 0 记录）
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        AtomicLongArray shard = shard(SLOT.get());
+        int i = LatencyHistogram.index(Math.min(v, LatencyHistogram.MAX_VALUE));
+        // 只有当前线程写这个分片，lazySet 即可保证读取方最终可见
+        shard.lazySet(i, shard.get(i) + 1);
+        shard.lazySet(COUNT, shard.get(COUNT) + 1);
+        shard.lazySet(SUM, shard.get(SUM) + v);
+    }
+
+    private AtomicLongArray shard(int slot) {
+        AtomicLongArray[] current = shards;
+        AtomicLongArray shard = slot < current.length ? current[slot] : null;
+        return shard != null ? shard : createShard(slot);
+    }
+
+    /**
+     * 创建当前线程的分片（每个线程每个直方图只发生一次）
+     */
+    private synchronized AtomicLongArray createShard(int slot) {
+        AtomicLongArray[] current = shards;
+        if (slot < current.length && current[slot] != null) {
+            return current[slot];
+        }
+        AtomicLongArray[] grown = Arrays.copyOf(current, Math.max(current.length, slot + 1));
+        AtomicLongArray shard = new AtomicLongArray(SUM + 1);
+        grown[slot] = shard;
+        shards = grown;
+        return shard;
+    }
+
+    /**
+     * 合并所有分片
+     * @return 快照
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        long count = 0;
+        long sum = 0;
+        for (AtomicLongArray shard : shards) {
+            if (shard == null) {
+                continue;
+            }
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += shard.get(i);
+            }
+            count += shard.get(COUNT);
+            sum += shard.get(SUM);
+        }
+        return new HistogramSnapshot(counts, count, sum);
+    }
+}
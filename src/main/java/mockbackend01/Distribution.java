@@ -0,0 +1,184 @@
+package mockbackend01;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 随机分布（模拟后端的响应耗时、响应体大小）
+ * 配置格式：
+ *  - 100ms / const:100ms：固定值
+ *  - uniform:1ms-10ms：均匀分布
+ *  - exp:5ms：指数分布（参数为均值）
+ *  - lognormal:5ms,0.8：对数正态分布（参数为中位数和 sigma，长尾）
+ *  - 多个分布按百分比混合，用 | 分隔，例如 95%:uniform:1ms-3ms|5%:const:200ms（5% 的请求耗时 200ms）
+ * 数值的单位由调用方解析（耗时为微秒，大小为字节），参见 MockBackend
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class Distribution {
+    private enum Kind {
+        CONST, UNIFORM, EXP, LOGNORMAL
+    }
+
+    private final Kind[] kinds;
+
+    private final double[] a;
+
+    private final double[] b;
+
+    /**
+     * 累计权重（最后一个为 1）
+     */
+    private final double[] cumulative;
+
+    private final String spec;
+
+    private Distribution(Kind[] kinds, double[] a, double[] b, double[] cumulative, String spec) {
+        this.kinds = kinds;
+        this.a = a;
+        this.b = b;
+        this.cumulative = cumulative;
+        this.spec = spec;
+    }
+
+    /**
+     * 解析分布配置
+     * @param spec 配置
+     * @param unit 带单位的数值 -> 基本单位的数值
+     * @return 分布
+     */
+    static Distribution parse(String spec, ToDoubleFunction<String> unit) {
+        String[] parts = spec.trim().split("\\|");
+        List<Kind> kinds = new ArrayList<>();
+        List<double[]> params = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        double totalWeight = 0;
+        for (String part : parts) {
+            part = part.trim();
+            double weight = 100.0 / parts.length;
+            int percent = part.indexOf("%:");
+            if (percent > 0) {
+                weight = Double.parseDouble(part.substring(0, percent));
+                part = part.substring(percent + 2);
+            }
+            int colon = part.indexOf(':');
+            String kind = colon < 0 ? "const" : part.substring(0, colon).toLowerCase(Locale.ROOT);
+            String args = colon < 0 ? part : part.substring(colon + 1);
+            switch (kind) {
+                case "const":
+                    kinds.add(Kind.CONST);
+                    params.add(new double[]{unit.applyAsDouble(args), 0});
+                    break;
+                case "uniform": {
+                    int dash = args.indexOf('-');
+                    kinds.add(Kind.UNIFORM);
+                    params.add(new double[]{unit.applyAsDouble(args.substring(0, dash)),
+                            unit.applyAsDouble(args.substring(dash + 1))});
+                    break;
+                }
+                case "exp":
+                    kinds.add(Kind.EXP);
+                    params.add(new double[]{unit.applyAsDouble(args), 0});
+                    break;
+                case "lognormal": {
+                    int comma = args.indexOf(',');
+                    kinds.add(Kind.LOGNORMAL);
+                    params.add(new double[]{Math.log(unit.applyAsDouble(args.substring(0, comma))),
+                            Double.parseDouble(args.substring(comma + 1).trim())});
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("unknown distribution: " + part);
+            }
+            weights.add(weight);
+            totalWeight += weight;
+        }
+        int n = kinds.size();
+        double[] a = new double[n];
+        double[] b = new double[n];
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            a[i] = params.get(i)[0];
+            b[i] = params.get(i)[1];
+            sum += weights.get(i) / totalWeight;
+            cumulative[i] = sum;
+        }
+        cumulative[n - 1] = 1;
+        return new Distribution(kinds.toArray(new Kind[0]), a, b, cumulative, spec);
+    }
+
+    /**
+     * 取一个随机值（不小于 0）
+     * @return 随机值
+     */
+    long sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = 0;
+        if (kinds.length > 1) {
+            double r = random.nextDouble();
+            while (cumulative[i] < r) {
+                i++;
+            }
+        }
+        double value;
+        switch (kinds[i]) {
+            case UNIFORM:
+                value = a[i] + (b[i] - a[i]) * random.nextDouble();
+                break;
+            case EXP:
+                value = -a[i] * Math.log(1 - random.nextDouble());
+                break;
+            case LOGNORMAL:
+                value = Math.exp(a[i] + b[i] * random.nextGaussian());
+                break;
+            default:
+                value = a[i];
+        }
+        return Math.max(0, Math.round(value));
+    }
+
+    /**
+     * 解析耗时：数字加单位 us / ms / s，没有单位时为毫秒
+     * @return 微秒
+     */
+    static double parseMicros(String value) {
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        if (v.endsWith("us")) {
+            return Double.parseDouble(v.substring(0, v.length() - 2));
+        }
+        if (v.endsWith("ms")) {
+            return Double.parseDouble(v.substring(0, v.length() - 2)) * 1000;
+        }
+        if (v.endsWith("s")) {
+            return Double.parseDouble(v.substring(0, v.length() - 1)) * 1_000_000;
+        }
+        return Double.parseDouble(v) * 1000;
+    }
+
+    /**
+     * 解析大小：数字加单位 k / m，没有单位时为字节
+     * @return 字节数
+     */
+    static double parseBytes(String value) {
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        if (v.endsWith("b")) {
+            v = v.substring(0, v.length() - 1);
+        }
+        if (v.endsWith("k")) {
+            return Double.parseDouble(v.substring(0, v.length() - 1)) * 1024;
+        }
+        if (v.endsWith("m")) {
+            return Double.parseDouble(v.substring(0, v.length() - 1)) * 1024 * 1024;
+        }
+        return Double.parseDouble(v);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
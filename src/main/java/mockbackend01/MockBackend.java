@@ -0,0 +1,133 @@
+package mockbackend01;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http.HttpServerCodec;
+import router01.Endpoint;
+import router01.Route;
+import router01.RouteTables;
+import transport01.Transports;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 模拟后端服务（替代 test01 jar，用于在本机重复地压测网关的转发路径）
+ *  - 默认监听路由表（ApiTagEnum 或 -Dgateway.routes 指定的路由配置文件）中所有本机后端节点的端口，也可以用 mock.ports 指定
+ *  - 响应耗时、响应体大小按配置的分布随机取值（参见 Distribution），耗时通过 EventLoop 定时任务模拟，不阻塞线程
+ *  - 可以按比例注入错误响应和连接重置（RST），可以选择定长或分块（chunked）响应
+ * 参数（-D参数=值）：
+ *  - mock.ports：监听的端口，多个用逗号分隔，默认取路由表中本机后端节点的端口
+ *  - mock.latency：响应耗时分布，默认 0
+ *  - mock.size：响应体大小分布，默认 128
+ *  - mock.maxSize：响应体大小上限，默认 4m
+ *  - mock.errorRate / mock.errorStatus：错误响应的比例 / 状态码，默认 0 / 503
+ *  - mock.resetRate：不响应、直接重置连接的比例，默认 0
+ *  - mock.chunked / mock.chunkSize：是否分块响应 / 每块大小，默认 false / 8k
+ * 单个请求可以用查询参数覆盖：?latency=50ms&size=10k&status=500
+ * 示例：java -Dmock.latency="95%:uniform:1ms-3ms|5%:const:200ms" -Dmock.size="exp:2k" mockbackend01.MockBackend
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class MockBackend {
+    static final Distribution LATENCY = Distribution.parse(
+            System.getProperty("mock.latency", "0"), Distribution::parseMicros);
+
+    static final Distribution SIZE = Distribution.parse(
+            System.getProperty("mock.size", "128"), Distribution::parseBytes);
+
+    static final int MAX_SIZE = (int) Distribution.parseBytes(System.getProperty("mock.maxSize", "4m"));
+
+    static final double ERROR_RATE = Double.parseDouble(System.getProperty("mock.errorRate", "0"));
+
+    static final int ERROR_STATUS = Integer.getInteger("mock.errorStatus", 503);
+
+    static final double RESET_RATE = Double.parseDouble(System.getProperty("mock.resetRate", "0"));
+
+    static final boolean CHUNKED = Boolean.getBoolean("mock.chunked");
+
+    static final int CHUNK_SIZE = (int) Distribution.parseBytes(System.getProperty("mock.chunkSize", "8k"));
+
+    /**
+     * 所有响应共用的响应体内容（按需要的大小切片，不可释放）
+     */
+    static final ByteBuf BODY = createBody(MAX_SIZE);
+
+    public static void main(String[] args) throws Exception {
+        Set<Integer> ports = ports();
+        if (ports.isEmpty()) {
+            System.err.println("####【ERROR】没有需要监听的端口，请通过 -Dmock.ports 指定");
+            return;
+        }
+
+        EventLoopGroup group = Transports.newEventLoopGroup(0);
+        try {
+            ServerBootstrap b = new ServerBootstrap();
+            b.group(group, group)
+                    .channel(Transports.serverChannelClass())
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(new HttpServerCodec(), new MockBackendHandler());
+                        }
+                    });
+            Transports.configureServer(b);
+
+            List<Channel> channels = new ArrayList<>();
+            for (int port : ports) {
+                channels.addAll(Transports.bind(b, port));
+            }
+            System.err.println("## 模拟后端已启动，端口: " + ports + "，耗时: " + LATENCY + "，大小: " + SIZE
+                    + (CHUNKED ? "（分块）" : "") + "，错误率: " + ERROR_RATE + "，重置率: " + RESET_RATE);
+            for (Channel ch : channels) {
+                ch.closeFuture().sync();
+            }
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    /**
+     * 需要监听的端口：mock.ports，或路由表中本机后端节点的端口
+     */
+    private static Set<Integer> ports() {
+        Set<Integer> ports = new LinkedHashSet<>();
+        String configured = System.getProperty("mock.ports");
+        if (configured != null) {
+            for (String port : configured.split(",")) {
+                if (!port.trim().isEmpty()) {
+                    ports.add(Integer.parseInt(port.trim()));
+                }
+            }
+            return ports;
+        }
+        for (Route route : RouteTables.current().routes()) {
+            if (!route.isLocal()) {
+                for (Endpoint endpoint : route.getRouter().endpoints()) {
+                    if (isLocalHost(endpoint.getHost())) {
+                        ports.add(endpoint.getPort());
+                    }
+                }
+            }
+        }
+        return ports;
+    }
+
+    private static boolean isLocalHost(String host) {
+        return "127.0.0.1".equals(host) || "localhost".equalsIgnoreCase(host) || "::1".equals(host);
+    }
+
+    private static ByteBuf createBody(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+        return Unpooled.unreleasableBuffer(Unpooled.directBuffer(size).writeBytes(bytes).asReadOnly());
+    }
+}
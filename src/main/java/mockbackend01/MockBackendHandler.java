@@ -0,0 +1,174 @@
+package mockbackend01;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * 模拟后端的请求处理器（参见 MockBackend）
+ *  - 读到请求头时决定本次的状态码、耗时和响应体大小，读完请求（丢弃请求体）后开始计时，到期后在连接所属的 EventLoop 上写出响应
+ *  - 同一连接上的流水线请求可以同时计时，但按请求顺序写出响应
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class MockBackendHandler extends ChannelInboundHandlerAdapter {
+    /**
+     * 按请求顺序排队、等待写出的响应
+     */
+    private final Deque<Pending> pending = new ArrayDeque<>();
+
+    /**
+     * 正在读取的请求（已读到请求头，还没读完请求体）
+     */
+    private Pending current;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        try {
+            if (msg instanceof HttpRequest) {
+                current = newPending((HttpRequest) msg);
+            }
+            if (msg instanceof LastHttpContent && current != null) {
+                Pending p = current;
+                current = null;
+                if (p.reset) {
+                    // 不响应，SO_LINGER=0 关闭连接时发送 RST
+                    ctx.channel().config().setOption(ChannelOption.SO_LINGER, 0);
+                    ctx.close();
+                    return;
+                }
+                pending.add(p);
+                if (p.latencyMicros > 0) {
+                    ctx.executor().schedule(() -> onReady(ctx, p), p.latencyMicros, TimeUnit.MICROSECONDS);
+                } else {
+                    onReady(ctx, p);
+                }
+            }
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    /**
+     * 读取到请求头：决定本次响应的方式（查询参数优先）
+     */
+    private static Pending newPending(HttpRequest request) {
+        Pending p = new Pending();
+        p.keepAlive = HttpUtil.isKeepAlive(request);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        p.reset = MockBackend.RESET_RATE > 0 && random.nextDouble() < MockBackend.RESET_RATE;
+        p.status = MockBackend.ERROR_RATE > 0 && random.nextDouble() < MockBackend.ERROR_RATE
+                ? MockBackend.ERROR_STATUS : HttpResponseStatus.OK.code();
+        p.latencyMicros = MockBackend.LATENCY.sample();
+        long bytes = MockBackend.SIZE.sample();
+
+        if (request.uri().indexOf('?') >= 0) {
+            Map<String, List<String>> params = new QueryStringDecoder(request.uri()).parameters();
+            if (params.containsKey("latency")) {
+                p.latencyMicros = (long) Distribution.parseMicros(params.get("latency").get(0));
+            }
+            if (params.containsKey("size")) {
+                bytes = (long) Distribution.parseBytes(params.get("size").get(0));
+            }
+            if (params.containsKey("status")) {
+                p.status = Integer.parseInt(params.get("status").get(0));
+            }
+        }
+        p.size = (int) Math.min(bytes, MockBackend.MAX_SIZE);
+        return p;
+    }
+
+    /**
+     * 一个响应的耗时到期：按顺序写出队首所有已到期的响应
+     */
+    private void onReady(ChannelHandlerContext ctx, Pending p) {
+        p.ready = true;
+        boolean wrote = false;
+        while (!pending.isEmpty() && pending.peek().ready && ctx.channel().isActive()) {
+            Pending head = pending.poll();
+            write(ctx, head);
+            wrote = true;
+            if (!head.keepAlive) {
+                pending.clear();
+                ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+                return;
+            }
+        }
+        if (wrote) {
+            ctx.flush();
+        }
+    }
+
+    /**
+     * 写出响应（定长或分块）
+     */
+    private static void write(ChannelHandlerContext ctx, Pending p) {
+        HttpResponseStatus status = HttpResponseStatus.valueOf(p.status);
+        HttpResponse head;
+        if (MockBackend.CHUNKED) {
+            head = new DefaultHttpResponse(HTTP_1_1, status);
+            HttpUtil.setTransferEncodingChunked(head, true);
+        } else {
+            FullHttpResponse full = new DefaultFullHttpResponse(HTTP_1_1, status, MockBackend.BODY.slice(0, p.size));
+            HttpUtil.setContentLength(full, p.size);
+            head = full;
+        }
+        head.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.TEXT_PLAIN);
+        head.headers().set(HttpHeaderNames.CONNECTION, p.keepAlive ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE);
+        ctx.write(head);
+        if (MockBackend.CHUNKED) {
+            for (int offset = 0; offset < p.size; offset += MockBackend.CHUNK_SIZE) {
+                int length = Math.min(MockBackend.CHUNK_SIZE, p.size - offset);
+                ctx.write(new DefaultHttpContent(MockBackend.BODY.slice(offset, length)));
+            }
+            ctx.write(new DefaultLastHttpContent());
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        ctx.close();
+    }
+
+    /**
+     * 一个待写出的响应
+     */
+    private static final class Pending {
+        private boolean keepAlive;
+
+        private boolean reset;
+
+        private int status;
+
+        private long latencyMicros;
+
+        private int size;
+
+        private boolean ready;
+    }
+}
@@ -0,0 +1,223 @@
+package nettyhttpclient01;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseDecoder;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测的一个连接（参见 HttpLoadGenerator）
+ *  - 连接上一次只有一个请求（不使用流水线），收到完整响应后发送下一个
+ *  - 闭环模式：收到响应立即发送下一个请求，耗时从实际发送时开始计算
+ *  - 恒定吞吐量模式：请求按固定间隔排定计划发送时间，连接忙（上一个响应没回来）时计划时间过了就立即发送，
+ *    耗时从计划发送时间开始计算（修正协调遗漏：服务端卡顿期间本应发出的请求的等待时间也被统计）
+ *  - 停止时：计划发送时间在统计结束之前的请求继续发送（恒定吞吐量模式），等待在途请求完成一段时间后，
+ *    仍没有响应的请求以及因连接忙没能发出的计划请求，都按「结束统计时刻 - 计划发送时间」计入耗时（finish）
+ *  - 服务端不保持连接时（Connection: close 或主动关闭）重新建立连接后继续发送；
+ *    复用的连接在收到任何响应前被关闭（服务端没有声明就关闭了连接）时，在新连接上重发同一个请求，计为重连而不是错误
+ * 所有方法都在连接所属的 EventLoop 上执行；同一时刻只在一个 pipeline 中（重连前旧连接已关闭），因此可以标记为 Sharable
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@ChannelHandler.Sharable
+final class HttpLoadConnection extends ChannelInboundHandlerAdapter {
+    /**
+     * 连接失败后重连的间隔
+     */
+    private static final long RECONNECT_DELAY_MILLIS = 10;
+
+    private final HttpLoadGenerator generator;
+
+    private final Bootstrap bootstrap;
+
+    private final EventLoop loop;
+
+    /**
+     * 恒定吞吐量模式下两次请求的计划间隔（纳秒），0 表示闭环模式
+     */
+    private final long intervalNanos;
+
+    /**
+     * 下一个请求的计划发送时间（恒定吞吐量模式）
+     */
+    private long nextIntendedNanos;
+
+    /**
+     * 当前请求的计划发送时间 / 实际发送时间
+     */
+    private long intendedNanos;
+
+    private long sentNanos;
+
+    private boolean inFlight;
+
+    private int status;
+
+    private long responseBytes;
+
+    private boolean keepAlive;
+
+    /**
+     * 当前连接上已发送的请求数
+     */
+    private int requestsOnChannel;
+
+    /**
+     * 新连接建立后是否重发当前请求（沿用原来的计划发送时间）
+     */
+    private boolean resend;
+
+    HttpLoadConnection(HttpLoadGenerator generator, Bootstrap bootstrap, EventLoop loop,
+                       long intervalNanos, long firstIntendedNanos) {
+        this.generator = generator;
+        this.bootstrap = bootstrap.clone(loop).handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(new HttpResponseDecoder(), HttpLoadConnection.this);
+            }
+        });
+        this.loop = loop;
+        this.intervalNanos = intervalNanos;
+        this.nextIntendedNanos = firstIntendedNanos;
+    }
+
+    EventLoop getLoop() {
+        return loop;
+    }
+
+    /**
+     * 建立连接，连接成功后开始发送请求
+     */
+    void connect() {
+        if (generator.isStopping()) {
+            return;
+        }
+        bootstrap.connect().addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                generator.onConnectError();
+                loop.schedule(this::connect, RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            requestsOnChannel = 0;
+            sendNext(f.channel());
+        });
+    }
+
+    /**
+     * 发送下一个请求（恒定吞吐量模式下没到计划时间则定时发送）
+     * @param ch 连接
+     */
+    private void sendNext(Channel ch) {
+        if (!ch.isActive()) {
+            return;
+        }
+        if (generator.isStopping()) {
+            // 停止后只补发计划时间在统计结束之前的请求（闭环模式没有计划时间，直接停止）
+            long end = generator.getMeasureEndNanos();
+            boolean due = resend ? intendedNanos < end : intervalNanos > 0 && nextIntendedNanos < end;
+            if (!due) {
+                return;
+            }
+        }
+        long now = System.nanoTime();
+        if (resend) {
+            resend = false;
+        } else if (intervalNanos > 0) {
+            if (now < nextIntendedNanos) {
+                loop.schedule(() -> sendNext(ch), nextIntendedNanos - now, TimeUnit.NANOSECONDS);
+                return;
+            }
+            intendedNanos = nextIntendedNanos;
+            nextIntendedNanos += intervalNanos;
+        } else {
+            intendedNanos = now;
+        }
+        sentNanos = now;
+        requestsOnChannel++;
+        inFlight = true;
+        status = 0;
+        responseBytes = 0;
+        ch.writeAndFlush(generator.getMix().next()).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    /**
+     * 结束统计（在连接所属的 EventLoop 上调用）：仍没有响应的请求、计划时间在统计结束之前却没能发出的请求，
+     * 都按当前时刻计入耗时；之后到达的响应不再统计
+     * @param measureEndNanos 统计结束时间
+     */
+    void finish(long measureEndNanos) {
+        long now = System.nanoTime();
+        if ((inFlight || resend) && intendedNanos < measureEndNanos) {
+            generator.onUnfinished(intendedNanos, now - intendedNanos, inFlight ? now - sentNanos : -1);
+        }
+        inFlight = false;
+        resend = false;
+        if (intervalNanos > 0) {
+            for (long t = nextIntendedNanos; t < measureEndNanos; t += intervalNanos) {
+                generator.onUnfinished(t, now - t, -1);
+            }
+            nextIntendedNanos = Math.max(nextIntendedNanos, measureEndNanos);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        try {
+            if (msg instanceof HttpResponse) {
+                HttpResponse response = (HttpResponse) msg;
+                status = response.status().code();
+                keepAlive = HttpUtil.isKeepAlive(response);
+            }
+            if (msg instanceof HttpContent) {
+                responseBytes += ((HttpContent) msg).content().readableBytes();
+                if (msg instanceof LastHttpContent && inFlight && status >= 200) {
+                    inFlight = false;
+                    long now = System.nanoTime();
+                    generator.onResponse(status, intendedNanos, now - intendedNanos, now - sentNanos, responseBytes);
+                    if (keepAlive) {
+                        sendNext(ctx.channel());
+                    } else {
+                        // 服务端不保持连接：关闭后在 channelInactive 中重连
+                        ctx.close();
+                    }
+                }
+            }
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        if (inFlight) {
+            inFlight = false;
+            if (status == 0 && requestsOnChannel > 1) {
+                // 复用的连接已被服务端关闭：在新连接上重发
+                resend = true;
+                generator.onReconnect();
+            } else {
+                // 响应之前连接被关闭
+                generator.onRequestError(intendedNanos);
+            }
+        }
+        connect();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        // 连接重置等异常只计数，不打印（压测期间可能大量出现）
+        ctx.close();
+    }
+}
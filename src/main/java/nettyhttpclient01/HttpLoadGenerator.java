@@ -0,0 +1,278 @@
+package nettyhttpclient01;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import metrics01.HistogramSnapshot;
+import metrics01.ShardedHistogram;
+import transport01.Transports;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP 压测工具（基于 Netty 客户端，可以替代 wrk 在 JVM 内压测 httpserver01~03 与 Netty 服务端）
+ *  - N 个保持连接的连接分布在多个 EventLoop 上，每个连接同一时刻只有一个请求
+ *  - 闭环模式（默认）：收到响应立即发送下一个请求
+ *  - 恒定吞吐量模式（-Dload.rate=每秒请求数）：请求按计划时间发送，耗时从计划时间开始计算，修正协调遗漏（coordinated omission）
+ *  - 请求组合：-Dload.mix="GET /a=3,POST /b=1"（方法 路径=权重），POST/PUT/PATCH 的请求体大小为 -Dload.bodySize
+ *  - 结束后打印吞吐量、响应状态统计，以及耗时的百分位（对数线性直方图，相对误差约 6%）
+ *  - 只统计计划发送时间（闭环模式为实际发送时间）落在统计区间内的请求，吞吐量也按这些请求的响应数计算；
+ *    停止时还没有响应（或恒定吞吐量模式下没能按计划发出）的请求按停止等待结束时刻计入耗时，单独计数，不计入吞吐量
+ * 参数（-D参数=值）：
+ *  - url：压测地址，默认 http://127.0.0.1:8800/（没有 load.mix 时对该路径发 GET 请求）
+ *  - load.connections：连接数，默认 16
+ *  - load.threads：IO 线程数，默认 min(连接数, CPU 核数)
+ *  - load.duration / load.warmup：压测时长 / 预热时长（秒），默认 10 / 2，预热期间的请求不统计
+ *  - load.rate：恒定吞吐量模式下每秒的请求数，0 表示闭环模式
+ * 示例：java -Durl=http://127.0.0.1:8801/ -Dload.connections=40 -Dload.duration=30 nettyhttpclient01.HttpLoadGenerator
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HttpLoadGenerator {
+    static final String URL = System.getProperty("url", "http://127.0.0.1:8800/");
+
+    static final int CONNECTIONS = Integer.getInteger("load.connections", 16);
+
+    static final int THREADS = Integer.getInteger("load.threads",
+            Math.min(CONNECTIONS, Runtime.getRuntime().availableProcessors()));
+
+    static final int DURATION_SECONDS = Integer.getInteger("load.duration", 10);
+
+    static final int WARMUP_SECONDS = Integer.getInteger("load.warmup", 2);
+
+    static final int RATE = Integer.getInteger("load.rate", 0);
+
+    static final int BODY_SIZE = Integer.getInteger("load.bodySize", 0);
+
+    /**
+     * 停止后等待在途请求完成的最长时间
+     */
+    private static final long DRAIN_MILLIS = 2000;
+
+    /**
+     * 打印的百分位
+     */
+    private static final double[] PERCENTILES = {50, 75, 90, 99, 99.9, 99.99, 100};
+
+    private final RequestMix mix;
+
+    /**
+     * 耗时（微秒）：修正协调遗漏（从计划发送时间开始） / 未修正（从实际发送时间开始）
+     */
+    private final ShardedHistogram corrected = new ShardedHistogram();
+
+    private final ShardedHistogram uncorrected = new ShardedHistogram();
+
+    private final LongAdder responses = new LongAdder();
+
+    /**
+     * 停止时仍没有响应（或没能按计划发出）的请求数
+     */
+    private final LongAdder unfinished = new LongAdder();
+
+    private final LongAdder errorResponses = new LongAdder();
+
+    private final LongAdder requestErrors = new LongAdder();
+
+    private final LongAdder connectErrors = new LongAdder();
+
+    private final LongAdder reconnects = new LongAdder();
+
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * 统计开始时间：计划发送时间早于它的请求（预热期间）不统计
+     */
+    private volatile long measureStartNanos = Long.MAX_VALUE;
+
+    /**
+     * 统计结束时间：计划发送时间不早于它的请求不统计
+     */
+    private volatile long measureEndNanos = Long.MAX_VALUE;
+
+    private volatile boolean stopping;
+
+    private HttpLoadGenerator(RequestMix mix) {
+        this.mix = mix;
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI uri = new URI(URL);
+        String host = uri.getHost() == null ? "127.0.0.1" : uri.getHost();
+        int port = uri.getPort() == -1 ? 80 : uri.getPort();
+        if (!"http".equalsIgnoreCase(uri.getScheme())) {
+            System.err.println("仅支持 HTTP.");
+            return;
+        }
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        String hostHeader = uri.getPort() == -1 ? host : host + ":" + port;
+        RequestMix mix = RequestMix.parse(System.getProperty("load.mix", "GET " + path), hostHeader, BODY_SIZE);
+        new HttpLoadGenerator(mix).run(host, port);
+    }
+
+    private void run(String host, int port) throws InterruptedException {
+        System.err.println("## 压测 " + URL + "，连接数: " + CONNECTIONS + "，IO 线程数: " + THREADS
+                + "，模式: " + (RATE > 0 ? "恒定吞吐量 " + RATE + " 请求/秒" : "闭环")
+                + "，请求组合: " + mix + "，时长: " + DURATION_SECONDS + "s（预热 " + WARMUP_SECONDS + "s）");
+
+        EventLoopGroup group = Transports.newEventLoopGroup(THREADS);
+        try {
+            Bootstrap b = new Bootstrap();
+            b.group(group)
+                    .channel(Transports.socketChannelClass(group))
+                    .option(ChannelOption.TCP_NODELAY, true)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
+                    .remoteAddress(host, port);
+            Transports.configureClient(b);
+
+            // 连接轮流分配到各个 EventLoop；恒定吞吐量模式下各连接的计划时间错开，总体均匀
+            long intervalNanos = RATE > 0 ? TimeUnit.SECONDS.toNanos(1) * CONNECTIONS / RATE : 0;
+            long start = System.nanoTime();
+            Iterator<EventExecutor> loops = group.iterator();
+            List<HttpLoadConnection> connections = new ArrayList<>(CONNECTIONS);
+            for (int i = 0; i < CONNECTIONS; i++) {
+                if (!loops.hasNext()) {
+                    loops = group.iterator();
+                }
+                EventLoop loop = (EventLoop) loops.next();
+                connections.add(new HttpLoadConnection(this, b, loop, intervalNanos,
+                        start + intervalNanos * i / CONNECTIONS));
+            }
+            for (HttpLoadConnection connection : connections) {
+                connection.connect();
+            }
+
+            TimeUnit.SECONDS.sleep(WARMUP_SECONDS);
+            long measureStart = System.nanoTime();
+            measureStartNanos = measureStart;
+            TimeUnit.SECONDS.sleep(DURATION_SECONDS);
+            long measureEnd = System.nanoTime();
+            measureEndNanos = measureEnd;
+            stopping = true;
+            TimeUnit.MILLISECONDS.sleep(DRAIN_MILLIS);
+            for (HttpLoadConnection connection : connections) {
+                connection.getLoop().submit(() -> connection.finish(measureEnd)).syncUninterruptibly();
+            }
+
+            report(measureEnd - measureStart);
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    RequestMix getMix() {
+        return mix;
+    }
+
+    boolean isStopping() {
+        return stopping;
+    }
+
+    long getMeasureEndNanos() {
+        return measureEndNanos;
+    }
+
+    /**
+     * 计划发送时间是否在统计区间内
+     */
+    private boolean inWindow(long intendedNanos) {
+        return intendedNanos >= measureStartNanos && intendedNanos < measureEndNanos;
+    }
+
+    /**
+     * 收到完整响应（在 IO 线程上调用）
+     */
+    void onResponse(int status, long intendedNanos, long correctedNanos, long uncorrectedNanos, long responseBytes) {
+        if (!inWindow(intendedNanos)) {
+            return;
+        }
+        corrected.record(correctedNanos / 1000);
+        uncorrected.record(uncorrectedNanos / 1000);
+        responses.increment();
+        bytes.add(responseBytes);
+        if (status >= 400) {
+            errorResponses.increment();
+        }
+    }
+
+    /**
+     * 停止时仍没有响应，或没能按计划发出的请求（在 IO 线程上调用）
+     * @param uncorrectedNanos 从实际发送开始的耗时，没有发出时为 -1
+     */
+    void onUnfinished(long intendedNanos, long correctedNanos, long uncorrectedNanos) {
+        if (!inWindow(intendedNanos)) {
+            return;
+        }
+        corrected.record(correctedNanos / 1000);
+        if (uncorrectedNanos >= 0) {
+            uncorrected.record(uncorrectedNanos / 1000);
+        }
+        unfinished.increment();
+    }
+
+    /**
+     * 请求发出后连接被关闭，没有收到响应
+     */
+    void onRequestError(long intendedNanos) {
+        if (inWindow(intendedNanos)) {
+            requestErrors.increment();
+        }
+    }
+
+    /**
+     * 复用的连接已被服务端关闭，请求在新连接上重发
+     */
+    void onReconnect() {
+        reconnects.increment();
+    }
+
+    void onConnectError() {
+        if (System.nanoTime() >= measureStartNanos) {
+            connectErrors.increment();
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        HistogramSnapshot c = corrected.snapshot();
+        HistogramSnapshot u = uncorrected.snapshot();
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "## 请求数: %d，吞吐量: %.1f 请求/秒，传输: %.2f MB/秒%n",
+                responses.sum(), responses.sum() / seconds, bytes.sum() / seconds / (1024 * 1024)));
+        out.append(String.format(Locale.ROOT, "## 4xx/5xx 响应: %d，请求错误（无响应）: %d，连接错误: %d，服务端关闭连接后重发: %d，"
+                        + "停止时未完成（按停止时刻计入耗时）: %d%n",
+                errorResponses.sum(), requestErrors.sum(), connectErrors.sum(), reconnects.sum(), unfinished.sum()));
+        out.append(String.format(Locale.ROOT, "## 耗时百分位 %12s %12s%n",
+                RATE > 0 ? "已修正" : "", RATE > 0 ? "按实际发送" : "耗时"));
+        for (double p : PERCENTILES) {
+            out.append(String.format(Locale.ROOT, "   %8.3f%%  %12s %12s%n", p,
+                    RATE > 0 ? formatMicros(c.percentile(p)) : "", formatMicros(u.percentile(p))));
+        }
+        if (u.getCount() > 0) {
+            out.append(String.format(Locale.ROOT, "   平均       %12s %12s%n",
+                    RATE > 0 ? formatMicros(c.getSum() / c.getCount()) : "", formatMicros(u.getSum() / u.getCount())));
+        }
+        System.err.print(out);
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros < 1000) {
+            return micros + "us";
+        }
+        if (micros < 1_000_000) {
+            return String.format(Locale.ROOT, "%.2fms", micros / 1000.0);
+        }
+        return String.format(Locale.ROOT, "%.2fs", micros / 1e6);
+    }
+}
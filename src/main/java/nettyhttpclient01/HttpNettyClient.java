@@ -3,14 +3,13 @@ package nettyhttpclient01;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.cookie.ClientCookieEncoder;
 import io.netty.handler.codec.http.cookie.DefaultCookie;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import transport01.Transports;
 
 import java.net.URI;
 
@@ -19,6 +18,7 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 /**
  * 一个 HTTP 客户端
  *  - 以一种非常简单的形式，发送 HTTP 请求
+ *  - 压测使用 HttpLoadGenerator（多个保持连接的连接、可配置的请求组合与请求速率）
  * 参考：
  *  - https://netty.io/4.0/xref/io/netty/example/http/snoop/HttpSnoopClient.html
  *  - https://netty.io/4.0/xref/io/netty/example/http/snoop/package-summary.html
@@ -68,13 +68,14 @@ public class HttpNettyClient {
             sslCtx = null;
         }
 
-        // 配置客户端
-        EventLoopGroup group = new NioEventLoopGroup();
+        // 配置客户端（Linux 上使用 epoll 传输，参见 transport01.Transports）
+        EventLoopGroup group = Transports.newEventLoopGroup(0);
         try {
             Bootstrap b = new Bootstrap();
             b.group(group)
-                    .channel(NioSocketChannel.class)
+                    .channel(Transports.socketChannelClass(group))
                     .handler(new HttpNettyClientInitializer(sslCtx));
+            Transports.configureClient(b);
 
             // 尝试进行连接（这里是要尝试连接服务端指定 host 和 port）
             Channel ch = b.connect(host, port).sync().channel();
@@ -0,0 +1,137 @@
+package nettyhttpclient01;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequestEncoder;
+import io.netty.handler.codec.http.HttpUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * 压测的请求组合（按权重随机选择）
+ *  - 配置格式：方法 路径[=权重]，多个之间用逗号分隔，例如：GET /test01api/get=3,POST /echo=1
+ *  - 每种请求在启动时编码成报文，发送时只复制 ByteBuf 的读写下标（不重新编码、不修改引用计数）
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class RequestMix {
+    /**
+     * 编码好的请求报文（不可释放，所有连接共用）
+     */
+    private final ByteBuf[] requests;
+
+    /**
+     * 累计权重，requests[i] 对应 (cumulative[i-1], cumulative[i]]
+     */
+    private final int[] cumulative;
+
+    private final String description;
+
+    private RequestMix(ByteBuf[] requests, int[] cumulative, String description) {
+        this.requests = requests;
+        this.cumulative = cumulative;
+        this.description = description;
+    }
+
+    /**
+     * 解析请求组合
+     * @param spec 配置，例如：GET /a=3,POST /b=1
+     * @param host Host 请求头
+     * @param bodySize POST/PUT/PATCH 请求体的字节数
+     * @return 请求组合
+     */
+    static RequestMix parse(String spec, String host, int bodySize) {
+        List<ByteBuf> requests = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int weight = 1;
+            int eq = entry.lastIndexOf('=');
+            if (eq > 0 && entry.indexOf(' ') < eq && entry.substring(eq + 1).matches("\\d+")) {
+                weight = Integer.parseInt(entry.substring(eq + 1));
+                entry = entry.substring(0, eq).trim();
+            }
+            String[] parts = entry.split("\\s+", 2);
+            if (parts.length != 2 || weight <= 0) {
+                throw new IllegalArgumentException("invalid request mix entry: " + entry);
+            }
+            requests.add(encode(HttpMethod.valueOf(parts[0].toUpperCase()), parts[1], host, bodySize));
+            weights.add(weight);
+        }
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("empty request mix: " + spec);
+        }
+        int[] cumulative = new int[weights.size()];
+        int total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += weights.get(i);
+            cumulative[i] = total;
+        }
+        return new RequestMix(requests.toArray(new ByteBuf[0]), cumulative, spec);
+    }
+
+    /**
+     * 按权重随机选择一个请求
+     * @return 请求报文（duplicate，写出后由 Netty 释放，不影响共用的报文）
+     */
+    ByteBuf next() {
+        int i = 0;
+        if (requests.length > 1) {
+            int r = ThreadLocalRandom.current().nextInt(cumulative[cumulative.length - 1]);
+            while (cumulative[i] <= r) {
+                i++;
+            }
+        }
+        return requests[i].duplicate();
+    }
+
+    /**
+     * 编码一个请求
+     */
+    private static ByteBuf encode(HttpMethod method, String path, String host, int bodySize) {
+        boolean hasBody = bodySize > 0 && (HttpMethod.POST.equals(method)
+                || HttpMethod.PUT.equals(method) || HttpMethod.PATCH.equals(method));
+        ByteBuf body = Unpooled.buffer(hasBody ? bodySize : 0);
+        for (int i = 0; hasBody && i < bodySize; i++) {
+            body.writeByte('a');
+        }
+        FullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, method, path, body);
+        request.headers().set(HttpHeaderNames.HOST, host);
+        request.headers().set(HttpHeaderNames.ACCEPT, "*/*");
+        request.headers().set(HttpHeaderNames.USER_AGENT, "netty-practices-load");
+        request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        if (hasBody) {
+            request.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_OCTET_STREAM);
+        }
+        HttpUtil.setContentLength(request, body.readableBytes());
+
+        EmbeddedChannel encoder = new EmbeddedChannel(new HttpRequestEncoder());
+        encoder.writeOutbound(request);
+        ByteBuf encoded = Unpooled.buffer();
+        ByteBuf part;
+        while ((part = encoder.readOutbound()) != null) {
+            encoded.writeBytes(part);
+            part.release();
+        }
+        encoder.finishAndReleaseAll();
+        return Unpooled.unreleasableBuffer(encoded);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -1,21 +1,37 @@
 package nettyhttpclient02;
 
-import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.FullHttpRequest;
-import lombok.Data;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.FutureListener;
+import lombok.Getter;
+import router01.Endpoint;
+import transport01.Transports;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
 
 /**
- * Netty 客户端
- * TODO: 这里有个致命的问题，当连接中途断开时，会出现：java.lang.IllegalStateException: failed to create a child event loop 异常
- *  - 还有高并发场景如何能够保证对象数据的更新正确
+ * Netty 客户端（一个后端服务地址对应一个客户端，进程内共享）
+ *  - 每个后端连接维护有序的在途队列，支持 HTTP/1.1 流水线（pipeliningDepth）
+ *  - 默认模式：所有用户请求共用一个连接池，连接注册在共享的 EventLoopGroup 上
+ *  - 事件循环亲和模式（eventLoopAffinity）：每个用户侧 EventLoop 拥有自己的连接池，
+ *    后端连接注册在用户连接所在的 EventLoop 上，请求和响应全程在同一个线程内完成，没有跨线程的任务投递
+ * 获取方式参见：HttpClients#get
  * @author junyangwei
  * @date 2021-10-12
  */
-@Data
+@Getter
 public class HttpClient {
+    /**
+     * 后端连接当前是否被借出（借出的连接不会被空闲回收）
+     */
+    static final AttributeKey<Boolean> IN_USE = AttributeKey.valueOf("inUse");
+
     /**
      * 定义后端 API 服务开放的端口
      */
@@ -27,135 +43,211 @@ public class HttpClient {
     final private String host;
 
     /**
-     * 定义与后端 API 服务的链接通道
+     * 连接池配置
      */
-    private ChannelFuture apiCh;
+    final private HttpClientPoolConfig config;
+
     /**
-     * 定义处理 IO 的线程池 EventLoopGroup
+     * 不经过路由直接使用本客户端时记录统计的后端节点
      */
-    private EventLoopGroup group;
+    final private Endpoint endpoint;
 
     /**
-     * 定义 Netty Http 服务端当前调用的通道
-     * 目的是知道需要响应请求到哪个用户客户端(通信管道)
+     * 共享的连接池（默认模式，以及用户连接不在 NIO/epoll EventLoop 上时使用）
      */
-    private ChannelHandlerContext serverCtx;
+    final private HttpClientPool sharedPool;
 
     /**
-     * Http 客户端通道配置初始化类
+     * 用户侧 EventLoop -> 该 EventLoop 独占的连接池（事件循环亲和模式）
      */
-    private HttpClientInitializer clientInitializer;
+    final private ConcurrentMap<EventLoop, HttpClientPool> loopPools = new ConcurrentHashMap<>();
 
-    public HttpClient(int port, String host) {
-        this.port = port;
+    public HttpClient(String host, int port, EventLoopGroup group, HttpClientPoolConfig config) {
         this.host = host;
+        this.port = port;
+        this.config = config;
+        this.endpoint = new Endpoint("http://" + host + ":" + port + "/", 1);
+        this.sharedPool = new HttpClientPool(host, port, group, config);
     }
 
     /**
-     * 获取 Netty客户端 与 指定Host及端口的后端服务 的通信通道
-     * @param serverCtx 用户侧 与 Netty服务端 的通信通道，用于最终响应用户请求
+     * 预热连接池（亲和模式下的连接池在首次使用时各自预热）
      */
-    public Channel getChannel(ChannelHandlerContext serverCtx) {
-        // 校验是否已初始化，已初始化则绑定新的"用户侧与Netty服务端的通信通道"
-        if (this.apiCh != null && this.apiCh.channel().isActive()) {
-            this.resetClientHandler(serverCtx);
-            return this.apiCh.channel();
+    void warmUp() {
+        if (!config.isEventLoopAffinity()) {
+            sharedPool.warmUp();
         }
+    }
 
-        // 未初始化则直接进行初始化连接操作，连接后端服务
-        try {
-            // 重置客户端处理器（绑定的用户侧与Netty服务端通信通道）
-            this.resetClientHandler(serverCtx);
-
-            // 连接后端服务
-            this.connect();
-        } catch (Exception e) {
-            e.printStackTrace();
-            this.close();
+    /**
+     * 获取用户侧 EventLoop 对应的连接池
+     * @param loop 用户连接所在的 EventLoop
+     * @return 连接池
+     */
+    HttpClientPool poolFor(EventLoop loop) {
+        if (!config.isEventLoopAffinity() || !Transports.isTransportEventLoop(loop)) {
+            return sharedPool;
+        }
+        HttpClientPool pool = loopPools.get(loop);
+        if (pool != null) {
+            return pool;
         }
-        return this.apiCh.channel();
+        return loopPools.computeIfAbsent(loop, l -> {
+            HttpClientPool created = new HttpClientPool(host, port, l, config);
+            created.warmUp();
+            return created;
+        });
+    }
+
+    /**
+     * 转发用户端的请求到服务端，后端服务的响应直接写回用户侧通道
+     * @param serverCtx 用户侧 与 Netty服务端 的通信通道，用于最终响应用户请求
+     * @param request 用户的完整请求
+     */
+    public void proxyRequest(ChannelHandlerContext serverCtx, FullHttpRequest request) {
+        proxyRequest(serverCtx, request, endpoint);
     }
 
     /**
-     * 连接后端服务
-     * @throws Exception
+     * 转发用户端的请求到服务端，后端服务的响应直接写回用户侧通道
+     * @param serverCtx 用户侧 与 Netty服务端 的通信通道，用于最终响应用户请求
+     * @param request 用户的完整请求
+     * @param endpoint 路由选中的后端节点（记录在途请求数和耗时，地址与本客户端一致）
      */
-    private void connect() throws Exception {
-        // 连接前先检查当前是否已经建立了连接
-        if (this.apiCh != null && this.apiCh.channel().isActive()) {
+    public void proxyRequest(ChannelHandlerContext serverCtx, FullHttpRequest request, Endpoint endpoint) {
+        proxyRequest(serverCtx, request, endpoint, UnaryOperator.identity());
+    }
+
+    /**
+     * 转发用户端的请求到服务端，后端服务的响应经过装饰后的回调写回用户侧通道
+     *  - 节点被熔断（Endpoint#tryAcquire 失败）时直接响应 503
+     * @param serverCtx 用户侧 与 Netty服务端 的通信通道，用于最终响应用户请求
+     * @param request 用户的完整请求
+     * @param endpoint 路由选中的后端节点（记录在途请求数和耗时，地址与本客户端一致）
+     * @param decorator 回调的装饰器（例如响应缓存在响应写回用户之前存入缓存）
+     */
+    public void proxyRequest(ChannelHandlerContext serverCtx, FullHttpRequest request, Endpoint endpoint,
+                             UnaryOperator<HttpClientCallback> decorator) {
+        // 与后端服务之间始终保持长连接，用户侧是否保持连接单独记录
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        if (!endpoint.tryAcquire()) {
+            // 节点被熔断：不转发，直接响应 503（装饰器同样会收到失败通知，例如等待合并的请求）
+            request.release();
+            decorator.apply(HttpClientCallback.toServer(serverCtx, keepAlive))
+                    .onFailure(HttpResponseStatus.SERVICE_UNAVAILABLE);
             return;
         }
+        HttpProxyHeaders.rewriteRequest(request.headers(), host, port, serverCtx.channel().remoteAddress());
+        proxyRequest(serverCtx.channel().eventLoop(), request,
+                decorator.apply(HttpClientCallback.toServer(serverCtx, keepAlive, endpoint)));
+    }
 
-        // 连接前再检查 EventLoopGroup 类对象是否不为空，不为空则关闭
-        if (this.group != null) {
-            this.group.shutdownGracefully();
-        }
+    /**
+     * 转发请求到服务端
+     *  - 从连接池中借出一个连接发送请求，回调进入该连接的在途队列，响应按顺序交给对应的回调
+     * @param loop 发起请求的用户连接所在的 EventLoop（事件循环亲和模式下决定使用哪个连接池）
+     * @param request 完整请求（引用计数转交给本方法）
+     * @param callback 响应回调
+     */
+    public void proxyRequest(EventLoop loop, FullHttpRequest request, HttpClientCallback callback) {
+        HttpUtil.setKeepAlive(request, true);
+
+        HttpClientPool pool = poolFor(loop);
+        // 非幂等请求只在空闲的连接上发送（不排在其它流水线请求之后）
+        pool.acquire(!HttpClientRequest.isIdempotent(request.method())).addListener((FutureListener<Channel>) f -> {
+            if (!f.isSuccess()) {
+                request.release();
+                System.err.println("#### Netty 客户端获取后端服务连接失败，原因:" + f.cause());
+                callback.onFailure(failureStatus(f.cause()));
+                return;
+            }
 
-        System.err.println("#### Netty 客户端准备与后端服务建立连接...");
-
-        // 初始化线程池执行器
-        this.group = new NioEventLoopGroup(5);
-
-        // 创建一个 ServerBootstrap 类对象，绑定作为启动的入口点
-        Bootstrap b = new Bootstrap();
-        b.group(group);
-        b.channel(NioSocketChannel.class);
-        b.handler(clientInitializer);
-        b.option(ChannelOption.SO_BACKLOG, 128)
-                .option(ChannelOption.TCP_NODELAY, true)
-                .option(ChannelOption.SO_REUSEADDR, true)
-                .option(ChannelOption.SO_KEEPALIVE, true)
-                .option(ChannelOption.SO_SNDBUF, 1024 * 1024)
-                .option(ChannelOption.SO_RCVBUF, 1024 * 1024);
-
-
-        // 尝试进行连接与后端服务
-        try {
-            this.apiCh = b.connect(host, port).sync();
-            System.err.println("#### Netty 客户端与后端服务连接成功，后端服务地址:"
-                    + "http://" + this.host + ":" + this.port);
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("#### Netty 客户端与后端服务连接失败，原因:" + e.getMessage());
-            this.close();
-        }
+            Channel ch = f.getNow();
+            if (callback.isCancelled()) {
+                request.release();
+                pool.release(ch);
+                callback.onFailure(HttpResponseStatus.SERVICE_UNAVAILABLE);
+                return;
+            }
+            ch.writeAndFlush(new HttpClientRequest(request, callback)).addListener((ChannelFutureListener) wf -> {
+                if (!wf.isSuccess()) {
+                    // 写入失败时关闭连接，由 HttpClientHandler#channelInactive 响应用户并归还连接
+                    wf.channel().close();
+                }
+            });
+        });
     }
 
     /**
-     * 重置客户端处理器（绑定新的用户与Netty服务端通信通道）
+     * 创建一次流式转发（流式模式下使用，参见 HttpClientStream）
+     * @param serverCtx 用户侧 与 Netty服务端 的通信通道，用于最终响应用户请求
+     * @param onComplete 转发结束后的回调，在用户侧 EventLoop 上执行
+     * @return 流式转发
      */
-    private void resetClientHandler(ChannelHandlerContext serverCtx) {
-        if (clientInitializer == null) {
-            clientInitializer = new HttpClientInitializer();
-        }
-        clientInitializer.setClientHandler(serverCtx);
+    public HttpClientStream newStream(ChannelHandlerContext serverCtx, Runnable onComplete) {
+        return newStream(serverCtx, endpoint, onComplete);
     }
 
     /**
-     * 转发用户端的请求到服务端
-     * @param serverCtx
-     * @param request
+     * 创建一次流式转发（流式模式下使用，参见 HttpClientStream）
+     * @param serverCtx 用户侧 与 Netty服务端 的通信通道，用于最终响应用户请求
+     * @param endpoint 路由选中的后端节点（记录在途请求数和耗时，地址与本客户端一致）
+     * @param onComplete 转发结束后的回调，在用户侧 EventLoop 上执行
+     * @return 流式转发
      */
-    public void proxyRequest(ChannelHandlerContext serverCtx, FullHttpRequest request) {
-        Channel ch = this.getChannel(serverCtx);
-        ch.writeAndFlush(request);
-        System.err.println("## Netty 客户端已将请求转发给后端服务:"
-                + "http://" + this.host + ":" + this.port + request.uri());
+    public HttpClientStream newStream(ChannelHandlerContext serverCtx, Endpoint endpoint, Runnable onComplete) {
+        return new HttpClientStream(poolFor(serverCtx.channel().eventLoop()), serverCtx, endpoint, onComplete);
     }
 
     /**
-     * 关闭当前Http客户端连接，并且退出执行器线程
+     * 取消已写入后端连接的请求
+     *  - 连接上只有这一个在途请求时关闭连接：后端不再继续处理，回调以 onFailure 结束
+     *  - 否则（流水线上还有其它请求）保留连接，响应到达后由回调自行丢弃
+     * @param backend 请求所在的后端连接（参见 HttpClientCallback#onWritten）
+     * @param callback 请求的回调
      */
-    public void close() {
-        if (this.apiCh != null && this.apiCh.channel().isActive()) {
-            try {
-                this.apiCh.channel().closeFuture().sync();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+    public static void cancel(Channel backend, HttpClientCallback callback) {
+        backend.eventLoop().execute(() -> {
+            HttpClientHandler handler = backend.pipeline().get(HttpClientHandler.class);
+            if (handler != null && handler.isOnlyRequest(callback)) {
+                backend.close();
             }
+        });
+    }
+
+    /**
+     * 根据获取连接失败的原因，决定响应给用户的状态码
+     *  - 等待连接超时或排队已满：后端过载，返回 503
+     *  - 其它（如连接被拒绝）：返回 502
+     */
+    static HttpResponseStatus failureStatus(Throwable cause) {
+        if (cause instanceof TimeoutException || cause instanceof IllegalStateException) {
+            return HttpResponseStatus.SERVICE_UNAVAILABLE;
+        }
+        return HttpResponseStatus.BAD_GATEWAY;
+    }
+
+    /**
+     * 所有连接池是否都已空闲（没有借出的连接和在途的请求）
+     */
+    boolean isIdle() {
+        if (!sharedPool.isIdle()) {
+            return false;
         }
-        if (this.group != null) {
-            this.group.shutdownGracefully();
+        for (HttpClientPool pool : loopPools.values()) {
+            if (!pool.isIdle()) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    /**
+     * 关闭所有连接池，共享的 EventLoopGroup 由 HttpClients 负责关闭
+     */
+    public void close() {
+        sharedPool.close();
+        loopPools.values().forEach(HttpClientPool::close);
+        loopPools.clear();
     }
 }
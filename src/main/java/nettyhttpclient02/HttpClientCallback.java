@@ -0,0 +1,83 @@
+package nettyhttpclient02;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import router01.Endpoint;
+
+/**
+ * 后端服务响应回调
+ *  - 每个发往后端的请求都对应一个回调，按请求发送的顺序排在后端连接的在途队列中
+ *  - 回调在后端连接所在的 EventLoop 上执行，不能阻塞
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public interface HttpClientCallback {
+    /**
+     * 收到后端服务的响应片段（引用计数由回调负责释放或转交）
+     *  - 聚合模式下只调用一次，参数是 FullHttpResponse
+     *  - 流式模式下依次是 HttpResponse、若干 HttpContent，最后是 LastHttpContent
+     * @param msg 后端服务的响应片段
+     */
+    void onResponse(HttpObject msg);
+
+    /**
+     * 无法从后端服务获得（完整的）响应（获取连接失败、连接断开等）
+     * @param status 建议响应给用户的状态码（响应头已经发给用户时无法再使用）
+     */
+    void onFailure(HttpResponseStatus status);
+
+    /**
+     * 是否为流式/透传转发（响应不聚合，逐段交给 onResponse，且独占后端连接直到响应结束）
+     * @return 是否为流式转发
+     */
+    default boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * 请求体写出过程中，后端连接的可写状态发生变化（在后端连接的 EventLoop 上调用）
+     *  - 流式转发时据此暂停/恢复读取用户侧的请求体
+     * @param writable 后端连接当前是否可写
+     */
+    default void onBackendWritabilityChanged(boolean writable) {
+    }
+
+    /**
+     * 请求是否已被取消（例如对冲请求中落败的一方）
+     *  - 借出连接时已取消的请求不再写出，直接以 onFailure 结束
+     * @return 是否已取消
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * 请求已写入后端连接（在后端连接的 EventLoop 上调用），取消请求时通过 HttpClient#cancel 关闭该连接
+     * @param backend 后端连接
+     */
+    default void onWritten(Channel backend) {
+    }
+
+    /**
+     * 创建一个直接将响应写回用户侧通道的回调
+     * @param serverCtx 用户侧 - Netty服务端 的通道处理器上下文
+     * @param keepAlive 用户请求是否要求保持连接
+     * @param endpoint 请求发往的后端节点（记录在途请求数和耗时）
+     * @return 回调
+     */
+    static HttpClientCallback toServer(ChannelHandlerContext serverCtx, boolean keepAlive, Endpoint endpoint) {
+        return new ServerResponseCallback(serverCtx, keepAlive, endpoint);
+    }
+
+    /**
+     * 创建一个直接将响应写回用户侧通道、但不记录后端节点统计的回调（请求没有发往后端时使用，例如被熔断器拒绝）
+     * @param serverCtx 用户侧 - Netty服务端 的通道处理器上下文
+     * @param keepAlive 用户请求是否要求保持连接
+     * @return 回调
+     */
+    static HttpClientCallback toServer(ChannelHandlerContext serverCtx, boolean keepAlive) {
+        return new ServerResponseCallback(serverCtx, keepAlive, null);
+    }
+}
@@ -1,47 +1,209 @@
 package nettyhttpclient02;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.handler.codec.http.DefaultFullHttpResponse;
-import io.netty.handler.codec.http.FullHttpResponse;
-import io.netty.handler.codec.http.HttpObject;
-import io.netty.util.CharsetUtil;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
 
-import static io.netty.handler.codec.http.HttpResponseStatus.OK;
-import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
 
 /**
- * Netty 客户端处理器
+ * Netty 客户端处理器（每个后端连接一个实例）
+ *  - 维护一个有序的在途队列：请求写出时回调入队，响应到达时队首回调出队，
+ *    HTTP/1.1 保证响应顺序与请求顺序一致，因此每个响应都能回到发出它的用户
+ *  - 流水线（pipelining）：在途请求数小于 pipeliningDepth 时，请求写出后立即归还连接，
+ *    同一个连接可以同时承载多个在途请求；达到上限后暂扣连接，直到有响应返回
+ *  - 非幂等请求不排在其它在途请求之后：借到的连接上还有在途请求时，等它们全部响应后才交给调用方（whenIdle）
+ *  - 流式请求在请求体写完（LastHttpContent）之前不会归还连接，避免不同请求的请求体交错；
+ *    响应结束之前也不会追加新的请求
+ *  - 所有方法都在后端连接所在的 EventLoop 上执行，在途队列不需要加锁
  * @author junyangwei
  * @date 2021-10-12
  */
-public class HttpClientHandler extends SimpleChannelInboundHandler<HttpObject> {
-    final ChannelHandlerContext serverCtx;
+public class HttpClientHandler extends ChannelDuplexHandler {
+    /**
+     * 连接所属的连接池（用于归还连接）
+     */
+    private final HttpClientPool pool;
+
+    /**
+     * 在途请求的响应回调（按请求发送顺序排列，尚未开始接收响应）
+     */
+    private final ArrayDeque<HttpClientCallback> inFlight = new ArrayDeque<>();
+
+    /**
+     * 正在接收响应的回调（流式模式下响应头已到达、LastHttpContent 尚未到达）
+     */
+    private HttpClientCallback receiving;
+
+    /**
+     * 正在写出请求体的回调（流式模式下请求头已写出、LastHttpContent 尚未写出）
+     */
+    private HttpClientCallback writing;
+
+    /**
+     * 连接是否被暂扣（达到流水线深度、请求体未写完或存在非幂等请求时，不归还连接池）
+     */
+    private boolean held;
+
+    /**
+     * 是否存在在途的非幂等请求（非幂等请求之后不再追加流水线请求）
+     */
+    private boolean exclusive;
+
+    /**
+     * 当前响应是否为 1xx 信息性响应（其后的 LastHttpContent 不代表请求结束）
+     *  - 流式模式下 1xx 响应头和其后的 LastHttpContent 都会交给队首请求的回调
+     */
+    private boolean informational;
+
+    /**
+     * 后端是否要求在当前响应结束后关闭连接
+     */
+    private boolean closeAfterResponse;
+
+    /**
+     * 等待连接空闲（没有在途请求）的任务，借出连接的一方持有连接期间最多只有一个
+     */
+    private Runnable idleWaiter;
 
-    public HttpClientHandler(ChannelHandlerContext serverCtx) {
-        this.serverCtx = serverCtx;
+    HttpClientHandler(HttpClientPool pool) {
+        this.pool = pool;
     }
 
+    /**
+     * 写出请求：回调进入在途队列，请求（体）写完后再决定是否立即归还连接
+     * @param ctx 通道处理器上下文
+     * @param msg 请求消息
+     * @param promise 写出结果
+     */
     @Override
-    public void channelRead0(ChannelHandlerContext ctx, HttpObject msg) {
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (msg instanceof HttpClientRequest) {
+            writeRequest(ctx, (HttpClientRequest) msg, promise);
+            return;
+        }
+
+        ctx.write(msg, promise);
+        if (msg instanceof LastHttpContent) {
+            writing = null;
+            tryRelease(ctx);
+        }
+    }
+
+    /**
+     * 写出请求（头）
+     */
+    private void writeRequest(ChannelHandlerContext ctx, HttpClientRequest clientRequest, ChannelPromise promise) {
+        if (!ctx.channel().isActive()) {
+            // 借出后连接已断开，channelInactive 已经执行过，这里直接失败并归还连接
+            ReferenceCountUtil.release(clientRequest.request);
+            promise.setFailure(new ClosedChannelException());
+            pool.release(ctx.channel());
+            clientRequest.callback.onFailure(HttpResponseStatus.BAD_GATEWAY);
+            return;
+        }
+
+        held = true;
+        inFlight.add(clientRequest.callback);
+        pool.getInFlightRequests().incrementAndGet();
+        clientRequest.callback.onWritten(ctx.channel());
+        // 非幂等请求、流式请求（会随用户侧反压切换连接的 autoRead）之后都不再追加流水线请求
+        exclusive = clientRequest.callback.isStreaming() || !HttpClientRequest.isIdempotent(clientRequest.request.method());
+        writing = clientRequest.request instanceof LastHttpContent ? null : clientRequest.callback;
+        ctx.write(clientRequest.request, promise);
+        tryRelease(ctx);
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        // 解析后端服务的响应体
-        if (msg instanceof FullHttpResponse) {
-            FullHttpResponse response = (FullHttpResponse) msg;
+        // 解析后端服务的响应
+        if (msg instanceof HttpResponse) {
+            HttpResponse response = (HttpResponse) msg;
+            if (response.status().codeClass() == HttpStatusClass.INFORMATIONAL) {
+                readInformational(ctx, response);
+                return;
+            }
+            receiving = inFlight.poll();
+            if (receiving == null) {
+                // 没有请求在等待的响应，说明连接状态已经错乱，直接关闭
+                ReferenceCountUtil.release(msg);
+                ctx.close();
+                return;
+            }
+            closeAfterResponse = !HttpUtil.isKeepAlive(response);
+        } else if (informational) {
+            // 1xx 响应之后的空 LastHttpContent，同样交给队首请求，但不代表请求结束
+            informational = !(msg instanceof LastHttpContent);
+            HttpClientCallback callback = inFlight.peek();
+            if (callback == null) {
+                ReferenceCountUtil.release(msg);
+            } else {
+                callback.onResponse((HttpObject) msg);
+            }
+            return;
+        }
+
+        HttpClientCallback callback = receiving;
+        if (callback == null) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (msg instanceof LastHttpContent) {
+            receiving = null;
+            pool.getInFlightRequests().decrementAndGet();
+            if (closeAfterResponse) {
+                // 后端不再保持连接，剩余的在途请求在 channelInactive 中失败
+                ctx.close();
+            } else {
+                tryRelease(ctx);
+            }
+        }
+        callback.onResponse((HttpObject) msg);
+        if (receiving == null && inFlight.isEmpty()) {
+            runIdleWaiter();
+        }
+    }
 
-            // TODO: 过滤器过滤响应体
+    /**
+     * 连接上没有在途请求时执行 task（在后端连接的 EventLoop 上调用，调用方已借出连接，不会再有新的请求追加）
+     *  - 连接已断开时立即执行，之后的写入按连接断开处理
+     * @param ch 后端连接
+     * @param task 任务
+     */
+    void whenIdle(Channel ch, Runnable task) {
+        if (!ch.isActive() || (receiving == null && inFlight.isEmpty())) {
+            task.run();
+        } else {
+            idleWaiter = task;
+        }
+    }
 
-            this.serverCtx.writeAndFlush(response);
-            System.err.println("#### Netty 客户端已收到后端服务响应，并调用 Netty服务端与用户的通信通道响应用户的请求");
+    private void runIdleWaiter() {
+        Runnable task = idleWaiter;
+        if (task != null) {
+            idleWaiter = null;
+            task.run();
         }
     }
 
+    /**
+     * 处理 1xx 信息性响应：流式模式下转交给队首请求（例如 100 Continue），聚合模式下直接丢弃
+     */
+    private void readInformational(ChannelHandlerContext ctx, HttpResponse response) {
+        HttpClientCallback callback = inFlight.peek();
+        if (response instanceof FullHttpResponse || callback == null) {
+            ReferenceCountUtil.release(response);
+            return;
+        }
+        informational = true;
+        callback.onResponse(response);
+    }
+
     /**
      * 结束通道的读取任务后调用
      *  - flush 方法将刷新通道中还未写入的内容，防止下一次 channelRead 时存在遗留的内容
@@ -52,6 +214,61 @@ public class HttpClientHandler extends SimpleChannelInboundHandler<HttpObject> {
         ctx.flush();
     }
 
+    /**
+     * 连接断开时，所有在途请求响应 502，若连接被暂扣则归还连接池
+     * @param ctx 通道处理器上下文
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        HttpClientCallback callback = receiving;
+        receiving = null;
+        writing = null;
+        if (callback != null) {
+            pool.getInFlightRequests().decrementAndGet();
+            callback.onFailure(HttpResponseStatus.BAD_GATEWAY);
+        }
+        while ((callback = inFlight.poll()) != null) {
+            pool.getInFlightRequests().decrementAndGet();
+            callback.onFailure(HttpResponseStatus.BAD_GATEWAY);
+        }
+        if (held) {
+            held = false;
+            pool.release(ctx.channel());
+        }
+        runIdleWaiter();
+        ctx.fireChannelInactive();
+    }
+
+    /**
+     * 后端连接可写状态变化时通知正在写请求体的回调（流式转发的反压）
+     * @param ctx 通道处理器上下文
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (writing != null) {
+            writing.onBackendWritabilityChanged(ctx.channel().isWritable());
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    /**
+     * 空闲回收：连接未被借出、没有在途请求，且连接数超过最小连接数时关闭连接
+     *  - 连接数的检查和减少由 HttpClientPool#reserveEviction 一次 CAS 完成
+     * @param ctx 通道处理器上下文
+     * @param evt 事件
+     */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+        if (evt instanceof IdleStateEvent) {
+            boolean inUse = Boolean.TRUE.equals(ctx.channel().attr(HttpClient.IN_USE).get());
+            if (!inUse && inFlight.isEmpty() && receiving == null && pool.reserveEviction(ctx.channel())) {
+                ctx.close();
+            }
+            return;
+        }
+        ctx.fireUserEventTriggered(evt);
+    }
+
     /**
      * 异常捕获回调（打印异常，并且关闭通信通道）
      * @param ctx 通道处理器上下文
@@ -62,4 +279,43 @@ public class HttpClientHandler extends SimpleChannelInboundHandler<HttpObject> {
         cause.printStackTrace();
         ctx.close();
     }
+
+    /**
+     * 请求（体）已经写完，且还能继续追加流水线请求时，归还连接
+     */
+    private void tryRelease(ChannelHandlerContext ctx) {
+        if (held && writing == null && canPipeline()) {
+            held = false;
+            pool.release(ctx.channel());
+        }
+    }
+
+    /**
+     * 当前连接是否还能继续追加流水线请求
+     */
+    private boolean canPipeline() {
+        int outstanding = inFlight.size() + (receiving == null ? 0 : 1);
+        if (exclusive) {
+            return outstanding == 0;
+        }
+        return outstanding < pool.getConfig().getPipeliningDepth();
+    }
+
+    /**
+     * 连接上是否只有这一个在途请求（取消请求时据此决定能否直接关闭连接）
+     */
+    boolean isOnlyRequest(HttpClientCallback callback) {
+        if (receiving != null) {
+            return receiving == callback && inFlight.isEmpty();
+        }
+        return inFlight.size() == 1 && inFlight.peek() == callback;
+    }
+
+    /**
+     * 下一个到达的响应是否属于流式请求（供 HttpClientObjectAggregator 判断是否聚合）
+     */
+    boolean isNextResponseStreaming() {
+        HttpClientCallback next = inFlight.peek();
+        return next != null && next.isStreaming();
+    }
 }
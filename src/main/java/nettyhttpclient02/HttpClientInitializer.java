@@ -1,36 +1,52 @@
 package nettyhttpclient02;
 
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelInitializer;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.pool.ChannelPoolHandler;
 import io.netty.handler.codec.http.HttpClientCodec;
-import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.timeout.IdleStateHandler;
 
 /**
- * Netty 客户端初始化
+ * Netty 客户端初始化（连接池回调）
+ *  - 连接池新建连接时初始化通道，借出/归还时标记连接的使用状态
  * @author junyangwei
  * @date 2021-10-12
  */
-public class HttpClientInitializer extends ChannelInitializer<SocketChannel> {
-    private HttpClientHandler clientHandler;
-
+public class HttpClientInitializer implements ChannelPoolHandler {
     /**
-     * 每次通过 Netty 客户端向后端服务发起请求前，
-     * 先绑定当前用户侧请求到 Netty 服务端的"通信管道"
-     * 目的是为了在后端服务响应后，能够直接将信息响应给用户
-     * @param serverCtx 用户侧 - Netty服务端 的通道处理器上下文
+     * 连接所属的连接池
      */
-    void setClientHandler(ChannelHandlerContext serverCtx) {
-        this.clientHandler = new HttpClientHandler(serverCtx);
-        System.err.println("#### Netty 客户端处理器绑定新的 用户-Netty服务端 通信通道成功.");
+    private final HttpClientPool pool;
+
+    HttpClientInitializer(HttpClientPool pool) {
+        this.pool = pool;
     }
 
     @Override
-    public void initChannel(SocketChannel ch) {
+    public void channelCreated(Channel ch) {
+        pool.getOpenConnections().incrementAndGet();
+        ch.closeFuture().addListener(f -> pool.onChannelClosed(ch));
+
         ChannelPipeline p = ch.pipeline();
         p.addLast(new HttpClientCodec());
-        p.addLast(new HttpObjectAggregator(1024 * 1024));
+        // 每个连接独立的客户端处理器，维护该连接的在途请求队列
+        HttpClientHandler clientHandler = new HttpClientHandler(pool);
+        // 流式模式下不聚合响应，HttpContent 到达即交给回调转发；否则只聚合非透传请求的响应
+        if (!pool.getConfig().isStreaming()) {
+            p.addLast(new HttpClientObjectAggregator(1024 * 1024, clientHandler));
+        }
+        // 连接读写均空闲超过指定时间后触发 IdleStateEvent，由客户端处理器决定是否回收
+        p.addLast(new IdleStateHandler(0, 0, pool.getConfig().getIdleTimeoutSeconds()));
         p.addLast(clientHandler);
     }
+
+    @Override
+    public void channelAcquired(Channel ch) {
+        ch.attr(HttpClient.IN_USE).set(Boolean.TRUE);
+    }
+
+    @Override
+    public void channelReleased(Channel ch) {
+        ch.attr(HttpClient.IN_USE).set(Boolean.FALSE);
+    }
 }
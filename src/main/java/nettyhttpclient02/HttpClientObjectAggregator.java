@@ -0,0 +1,33 @@
+package nettyhttpclient02;
+
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponse;
+
+/**
+ * 按在途请求决定是否聚合后端响应的 HttpObjectAggregator
+ *  - 队首请求是流式/透传转发（HttpClientCallback#isStreaming）时不聚合，响应原样交给 HttpClientHandler
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class HttpClientObjectAggregator extends HttpObjectAggregator {
+    /**
+     * 同一连接上的客户端处理器（持有在途队列）
+     */
+    private final HttpClientHandler clientHandler;
+
+    HttpClientObjectAggregator(int maxContentLength, HttpClientHandler clientHandler) {
+        super(maxContentLength);
+        this.clientHandler = clientHandler;
+    }
+
+    /**
+     * 流式请求的响应头不被接收，之后的响应体因为不在聚合过程中，也不会被接收
+     */
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+        if (msg instanceof HttpResponse && clientHandler.isNextResponseStreaming()) {
+            return false;
+        }
+        return super.acceptInboundMessage(msg);
+    }
+}
@@ -0,0 +1,216 @@
+package nettyhttpclient02;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import lombok.Getter;
+import transport01.Transports;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 与某个后端服务地址的连接池
+ *  - 使用 FixedChannelPool 管理连接，连接数有上限，获取连接有超时
+ *  - 连接的建立是非阻塞的，不会阻塞 Netty 服务端的 IO 线程
+ *  - 连接池的 IO 线程由 group 决定：可以是共享的 EventLoopGroup，也可以是单个 EventLoop，Channel 类型随之选择 NIO 或 epoll
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@Getter
+public class HttpClientPool {
+    /**
+     * 被空闲回收的连接（关闭之前已经从 openConnections 中减去）
+     */
+    private static final AttributeKey<Boolean> EVICTED = AttributeKey.valueOf("evicted");
+
+    /**
+     * 定义后端 API 服务的 host
+     */
+    final private String host;
+
+    /**
+     * 定义后端 API 服务开放的端口
+     */
+    final private int port;
+
+    /**
+     * 连接池配置
+     */
+    final private HttpClientPoolConfig config;
+
+    /**
+     * 连接池
+     */
+    final private FixedChannelPool pool;
+
+    /**
+     * 连接池的 IO 线程（借出空闲连接时用于创建结果）
+     */
+    final private EventLoopGroup group;
+
+    /**
+     * 当前已建立的连接数（包括空闲和借出的连接）
+     */
+    final private AtomicInteger openConnections = new AtomicInteger();
+
+    /**
+     * 已写入连接、还没有结束（收到完整响应或失败）的请求数，包括流水线上归还了连接的请求
+     */
+    final private AtomicInteger inFlightRequests = new AtomicInteger();
+
+    HttpClientPool(String host, int port, EventLoopGroup group, HttpClientPoolConfig config) {
+        this.host = host;
+        this.port = port;
+        this.config = config;
+        this.group = group;
+
+        // 连接池通过 Bootstrap 异步地建立新连接
+        Bootstrap b = new Bootstrap();
+        b.group(group)
+                .channel(Transports.socketChannelClass(group))
+                .remoteAddress(host, port)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMillis())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        config.getWriteBufferLowWaterMark(), config.getWriteBufferHighWaterMark()));
+        Transports.configureClient(b);
+
+        // 连接数达到上限时排队等待，等待超时则直接失败，借出和归还时均检查连接是否可用
+        this.pool = new FixedChannelPool(b, new HttpClientInitializer(this),
+                ChannelHealthChecker.ACTIVE, FixedChannelPool.AcquireTimeoutAction.FAIL,
+                config.getAcquireTimeoutMillis(), config.getMaxConnections(),
+                config.getMaxPendingAcquires(), true, true);
+    }
+
+    /**
+     * 预热连接池，提前建立最小连接数的连接
+     */
+    void warmUp() {
+        int min = Math.min(config.getMinConnections(), config.getMaxConnections());
+        if (min <= 0) {
+            return;
+        }
+
+        // 先全部借出再统一归还，避免归还后被下一次借出复用，导致实际建立的连接数不足
+        List<Channel> channels = new ArrayList<>(min);
+        AtomicInteger remaining = new AtomicInteger(min);
+        for (int i = 0; i < min; i++) {
+            pool.acquire().addListener((FutureListener<Channel>) f -> {
+                if (f.isSuccess()) {
+                    synchronized (channels) {
+                        channels.add(f.getNow());
+                    }
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    synchronized (channels) {
+                        channels.forEach(pool::release);
+                    }
+                    System.err.println("#### Netty 客户端连接池预热完成，后端服务地址:"
+                            + "http://" + host + ":" + port + "，连接数:" + openConnections.get());
+                }
+            });
+        }
+    }
+
+    /**
+     * 从连接池借出一个连接
+     * @return 借出结果
+     */
+    Future<Channel> acquire() {
+        return pool.acquire();
+    }
+
+    /**
+     * 从连接池借出一个连接
+     *  - idle 为 true（非幂等请求）且开启了流水线时，借到的连接上还有在途的流水线请求则继续持有它（不会再被追加请求），
+     *    等这些请求全部响应后再交给调用方，保证非幂等请求只在空闲的连接上发送，连接中断时不会不确定它是否已被处理
+     * @param idle 是否需要空闲的连接
+     * @return 借出结果
+     */
+    Future<Channel> acquire(boolean idle) {
+        if (!idle || config.getPipeliningDepth() <= 1) {
+            // 没有流水线时，借出的连接上一定没有在途请求
+            return pool.acquire();
+        }
+        Promise<Channel> promise = group.next().newPromise();
+        pool.acquire().addListener((FutureListener<Channel>) f -> {
+            if (!f.isSuccess()) {
+                promise.setFailure(f.cause());
+                return;
+            }
+            Channel ch = f.getNow();
+            HttpClientHandler handler = ch.pipeline().get(HttpClientHandler.class);
+            if (handler == null) {
+                promise.setSuccess(ch);
+                return;
+            }
+            ch.eventLoop().execute(() -> handler.whenIdle(ch, () -> promise.setSuccess(ch)));
+        });
+        return promise;
+    }
+
+    /**
+     * 将连接归还连接池（连接上可能仍有在途的流水线请求）
+     * @param ch 与后端服务的连接
+     * @return 归还结果
+     */
+    Future<Void> release(Channel ch) {
+        return pool.release(ch);
+    }
+
+    /**
+     * 为空闲回收预留名额：连接数大于最小连接数时用 CAS 把连接数减一
+     *  - 不同 EventLoop 上的连接同时空闲时，检查和减少是一步完成的，回收之后的连接数不会低于最小连接数
+     * @param ch 准备回收的连接（预留成功后由调用方关闭）
+     * @return 是否可以回收
+     */
+    boolean reserveEviction(Channel ch) {
+        int min = config.getMinConnections();
+        for (;;) {
+            int open = openConnections.get();
+            if (open <= min) {
+                return false;
+            }
+            if (openConnections.compareAndSet(open, open - 1)) {
+                ch.attr(EVICTED).set(Boolean.TRUE);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 连接关闭：减少连接数（被空闲回收的连接已经在预留名额时减过）
+     * @param ch 与后端服务的连接
+     */
+    void onChannelClosed(Channel ch) {
+        if (!Boolean.TRUE.equals(ch.attr(EVICTED).get())) {
+            openConnections.decrementAndGet();
+        }
+    }
+
+    /**
+     * 连接池是否空闲：没有借出的连接，也没有在途的请求
+     */
+    boolean isIdle() {
+        return pool.acquiredChannelCount() == 0 && inFlightRequests.get() == 0;
+    }
+
+    /**
+     * 关闭连接池（关闭所有连接）
+     */
+    void close() {
+        pool.close();
+    }
+}
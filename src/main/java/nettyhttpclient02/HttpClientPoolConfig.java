@@ -0,0 +1,87 @@
+package nettyhttpclient02;
+
+import lombok.Data;
+
+/**
+ * Netty 客户端连接池配置
+ *  - 默认值可以通过启动参数覆盖，例如：-Dgateway.client.maxConnections=128
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@Data
+public class HttpClientPoolConfig {
+    /**
+     * 启动参数前缀
+     */
+    private static final String PREFIX = "gateway.client.";
+
+    /**
+     * 每个后端服务地址允许建立的最大连接数
+     */
+    private int maxConnections = Integer.getInteger(PREFIX + "maxConnections", 64);
+
+    /**
+     * 每个后端服务地址保持的最小连接数（启动时预热，空闲回收时不会低于该值）
+     */
+    private int minConnections = Integer.getInteger(PREFIX + "minConnections", 2);
+
+    /**
+     * 连接数达到上限时，允许排队等待获取连接的最大请求数
+     */
+    private int maxPendingAcquires = Integer.getInteger(PREFIX + "maxPendingAcquires", 1024);
+
+    /**
+     * 等待获取连接的超时时间（毫秒）
+     */
+    private long acquireTimeoutMillis = Long.getLong(PREFIX + "acquireTimeoutMillis", 3000L);
+
+    /**
+     * 与后端服务建立连接的超时时间（毫秒）
+     */
+    private int connectTimeoutMillis = Integer.getInteger(PREFIX + "connectTimeoutMillis", 3000);
+
+    /**
+     * 连接空闲多久后被回收（秒）
+     */
+    private int idleTimeoutSeconds = Integer.getInteger(PREFIX + "idleTimeoutSeconds", 60);
+
+    /**
+     * 后端服务地址从路由表中移除后，等待在途请求结束的最长时间（秒），超时后直接关闭连接池
+     */
+    private int drainTimeoutSeconds = Integer.getInteger(PREFIX + "drainTimeoutSeconds", 60);
+
+    /**
+     * 单个连接上允许同时在途的请求数（HTTP/1.1 流水线深度），1 表示不使用流水线
+     *  - 仅幂等请求之后会继续追加请求，非幂等请求会独占连接直到响应返回
+     */
+    private int pipeliningDepth = Integer.getInteger(PREFIX + "pipeliningDepth", 1);
+
+    /**
+     * 流式转发模式：不聚合请求/响应，HttpContent 到达即转发，并根据两端连接的可写状态做反压
+     *  - 与 Netty 服务端共用同一个启动参数：-Dgateway.streaming=true
+     *  - 流式请求独占后端连接直到响应结束，不使用流水线
+     */
+    private boolean streaming = Boolean.getBoolean("gateway.streaming");
+
+    /**
+     * 后端连接写缓冲区的低水位（字节），写缓冲区降到低水位以下时恢复可写
+     */
+    private int writeBufferLowWaterMark = Integer.getInteger(PREFIX + "writeBufferLowWaterMark", 32 * 1024);
+
+    /**
+     * 后端连接写缓冲区的高水位（字节），写缓冲区超过高水位后变为不可写
+     */
+    private int writeBufferHighWaterMark = Integer.getInteger(PREFIX + "writeBufferHighWaterMark", 64 * 1024);
+
+    /**
+     * 事件循环亲和模式：后端连接注册在用户连接所在的 EventLoop 上，每个 EventLoop 拥有独立的连接池
+     *  - 开启后 maxConnections / minConnections 均为每个 EventLoop 的连接数
+     */
+    private boolean eventLoopAffinity = Boolean.getBoolean(PREFIX + "eventLoopAffinity");
+
+    /**
+     * 所有后端连接共享的 IO 线程数（事件循环亲和模式下仅在用户连接不在 NIO/epoll EventLoop 上时使用）
+     */
+    private int ioThreads = Integer.getInteger(PREFIX + "ioThreads",
+            Runtime.getRuntime().availableProcessors());
+}
@@ -0,0 +1,32 @@
+package nettyhttpclient02;
+
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+
+/**
+ * 写入后端连接的请求消息（请求 + 对应的响应回调）
+ *  - 由 HttpClientHandler 拆开：回调进入在途队列，请求继续向下编码发送
+ *  - 聚合模式下 request 是 FullHttpRequest；流式模式下只是请求头，请求体随后以 HttpContent 写出
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class HttpClientRequest {
+    final HttpRequest request;
+    final HttpClientCallback callback;
+
+    HttpClientRequest(HttpRequest request, HttpClientCallback callback) {
+        this.request = request;
+        this.callback = callback;
+    }
+
+    /**
+     * 是否为幂等且可以安全重复发送的方法
+     *  - 只有幂等请求可以对冲、重试，也只有幂等请求之后才允许继续追加流水线请求
+     *  - 非幂等请求只在空闲的连接上发送（参见 HttpClientPool#acquire(boolean)）
+     */
+    static boolean isIdempotent(HttpMethod method) {
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)
+                || HttpMethod.OPTIONS.equals(method) || HttpMethod.PUT.equals(method)
+                || HttpMethod.DELETE.equals(method) || HttpMethod.TRACE.equals(method);
+    }
+}
@@ -0,0 +1,445 @@
+package nettyhttpclient02;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.ScheduledFuture;
+import router01.Endpoint;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * 一次流式转发（不使用 HttpObjectAggregator）
+ *  - 流式模式下的所有请求，以及聚合模式下透传路由（ApiTagEnum#isPassThrough）的请求都使用流式转发
+ *  - 零拷贝：请求体/响应体的 ByteBuf 直接转交给另一侧连接写出，不复制、不解码；
+ *    响应头包装为 PassThroughHttpResponse，用户侧不会再次压缩
+ *  - 请求方向：用户侧的 HttpContent 到达即写给后端，后端连接不可写时暂停读取用户侧连接
+ *  - 响应方向：后端的 HttpContent 到达即写给用户，用户侧连接不可写时暂停读取后端连接
+ *  - 两个方向都以连接的写缓冲区水位（WriteBufferWaterMark）为界，每个请求占用的内存有上限
+ * 线程约定：
+ *  - start / write / flush / abort / onServerWritabilityChanged 在用户侧 EventLoop 上调用
+ *  - onResponse / onFailure / onBackendWritabilityChanged 在后端连接的 EventLoop 上调用
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HttpClientStream implements HttpClientCallback {
+    /**
+     * 后端服务的连接池
+     */
+    private final HttpClientPool pool;
+
+    /**
+     * 用户侧 - Netty服务端 的通道处理器上下文
+     */
+    private final ChannelHandlerContext serverCtx;
+
+    /**
+     * 转发结束（响应已写完或已失败）后的回调，在用户侧 EventLoop 上执行
+     */
+    private final Runnable onComplete;
+
+    /**
+     * 请求发往的后端节点
+     */
+    private final Endpoint endpoint;
+
+    /**
+     * 请求开始时间（纳秒）
+     */
+    private long startNanos;
+
+    /**
+     * 用户请求是否要求保持连接
+     */
+    private volatile boolean keepAlive;
+
+    /**
+     * 借出的后端连接（借出成功前为 null）
+     */
+    private volatile Channel backend;
+
+    /**
+     * 借出后端连接之前已经到达的请求体（按需创建，多个分段合并为一个 CompositeByteBuf，不复制数据）
+     */
+    private CompositeByteBuf pending;
+
+    /**
+     * 借出后端连接之前已经到达的 LastHttpContent（只保留尾部头，内容已并入 pending）
+     */
+    private LastHttpContent pendingLast;
+
+    /**
+     * 请求体是否已经全部到达
+     */
+    private volatile boolean requestDone;
+
+    /**
+     * 本次转发是否已结束
+     */
+    private boolean finished;
+
+    /**
+     * 是否因用户断开而中止（之后的失败不是后端的问题，不计入节点的失败）
+     */
+    private volatile boolean aborted;
+
+    /**
+     * 响应头是否已经写给用户（之后出错只能关闭用户连接）
+     */
+    private volatile boolean responseStarted;
+
+    /**
+     * 等待响应头的截止时间定时器（没有截止时间时为 null）
+     */
+    private ScheduledFuture<?> deadline;
+
+    /**
+     * 是否已经超时（超时后关闭后端连接，由此产生的失败响应 504）
+     */
+    private volatile boolean timedOut;
+
+    /**
+     * 响应是否已经全部写给用户
+     */
+    private boolean responseDone;
+
+    /**
+     * 正在转发 1xx 信息性响应（例如 100 Continue）
+     */
+    private boolean informational;
+
+    /**
+     * 后端响应是否为 5xx（计为失败）
+     */
+    private boolean serverError;
+
+    HttpClientStream(HttpClientPool pool, ChannelHandlerContext serverCtx, Endpoint endpoint, Runnable onComplete) {
+        this.pool = pool;
+        this.serverCtx = serverCtx;
+        this.endpoint = endpoint;
+        this.onComplete = onComplete;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    /**
+     * 开始转发：暂停读取用户侧连接，借出后端连接后写出请求头以及已到达的请求体
+     * @param head 请求头
+     */
+    public void start(HttpRequest head) {
+        start(head, 0);
+    }
+
+    /**
+     * 开始转发，并限制等待响应头的时间（响应头到达之后的响应体不受限制）
+     * @param head 请求头
+     * @param timeoutNanos 截止时间（纳秒），0 表示不限
+     */
+    public void start(HttpRequest head, long timeoutNanos) {
+        keepAlive = HttpUtil.isKeepAlive(head);
+        HttpProxyHeaders.rewriteRequest(head.headers(), pool.getHost(), pool.getPort(),
+                serverCtx.channel().remoteAddress());
+        HttpUtil.setKeepAlive(head, true);
+        requestDone = head instanceof LastHttpContent;
+        if (!endpoint.tryAcquire()) {
+            // 节点被熔断：不转发，直接响应 503，之后到达的请求体被丢弃
+            ReferenceCountUtil.release(head);
+            reject(HttpResponseStatus.SERVICE_UNAVAILABLE);
+            return;
+        }
+        startNanos = endpoint.onRequestStart();
+        if (timeoutNanos > 0) {
+            deadline = serverCtx.executor().schedule(this::onDeadline, timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        serverCtx.channel().config().setAutoRead(false);
+        pool.acquire(!HttpClientRequest.isIdempotent(head.method()))
+                .addListener((FutureListener<Channel>) f -> runOnServer(() -> onAcquired(f, head)));
+    }
+
+    /**
+     * 截止时间已到而响应头还没到达：关闭后端连接，由 onFailure 响应 504（在用户侧 EventLoop 上执行）
+     *  - 仍在等待借出连接时不处理，由连接池的获取超时结束
+     */
+    private void onDeadline() {
+        Channel ch = backend;
+        if (finished || responseStarted || ch == null) {
+            return;
+        }
+        timedOut = true;
+        System.err.println("####【ERROR】Netty 服务端转发超时，关闭后端连接:" + ch.remoteAddress());
+        ch.close();
+    }
+
+    /**
+     * 借出后端连接的结果（在用户侧 EventLoop 上执行）
+     */
+    private void onAcquired(Future<Channel> f, HttpRequest head) {
+        if (!f.isSuccess()) {
+            ReferenceCountUtil.release(head);
+            if (finished) {
+                endpoint.onRequestCancelled(startNanos);
+                return;
+            }
+            System.err.println("#### Netty 客户端获取后端服务连接失败，原因:" + f.cause());
+            onFailure(HttpClient.failureStatus(f.cause()));
+            return;
+        }
+
+        Channel ch = f.getNow();
+        if (finished) {
+            // 等待期间用户已断开，连接原样归还
+            ReferenceCountUtil.release(head);
+            endpoint.onRequestCancelled(startNanos);
+            pool.release(ch);
+            return;
+        }
+
+        backend = ch;
+        ch.write(new HttpClientRequest(head, this)).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        if (pending != null) {
+            ch.write(new DefaultHttpContent(pending)).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            pending = null;
+        }
+        if (pendingLast != null) {
+            ch.write(pendingLast).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            pendingLast = null;
+        }
+        ch.flush();
+        updateServerAutoRead();
+    }
+
+    /**
+     * 转发一段请求体
+     * @param content 请求体
+     */
+    public void write(HttpContent content) {
+        if (finished) {
+            content.release();
+            return;
+        }
+        boolean last = content instanceof LastHttpContent;
+        if (last) {
+            requestDone = true;
+        }
+
+        Channel ch = backend;
+        if (ch == null) {
+            holdPending(content, last);
+            return;
+        }
+        ch.write(content).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        if (last || !ch.isWritable()) {
+            ch.flush();
+            updateServerAutoRead();
+        }
+    }
+
+    /**
+     * 暂存借出连接之前到达的请求体：内容的引用计数转交给 pending，LastHttpContent 只保留尾部头
+     */
+    private void holdPending(HttpContent content, boolean last) {
+        ByteBuf buf = content.content();
+        if (buf.isReadable()) {
+            if (pending == null) {
+                pending = serverCtx.alloc().compositeBuffer();
+            }
+            pending.addComponent(true, buf);
+        } else {
+            buf.release();
+        }
+        if (last) {
+            HttpHeaders trailers = ((LastHttpContent) content).trailingHeaders();
+            if (trailers.isEmpty()) {
+                pendingLast = LastHttpContent.EMPTY_LAST_CONTENT;
+            } else {
+                pendingLast = new DefaultLastHttpContent();
+                pendingLast.trailingHeaders().set(trailers);
+            }
+        }
+    }
+
+    /**
+     * 刷新已写出的请求体（用户侧连接一次读取结束时调用）
+     */
+    public void flush() {
+        Channel ch = backend;
+        if (ch != null && !finished) {
+            ch.flush();
+        }
+    }
+
+    /**
+     * 根据后端连接的可写状态决定是否继续读取用户侧连接（在用户侧 EventLoop 上执行）
+     *  - 请求体全部到达后不再读取，直到响应结束，保证同一用户连接上同时只有一个转发
+     */
+    private void updateServerAutoRead() {
+        if (finished) {
+            return;
+        }
+        Channel ch = backend;
+        serverCtx.channel().config().setAutoRead(!requestDone && ch != null && ch.isWritable());
+    }
+
+    @Override
+    public void onBackendWritabilityChanged(boolean writable) {
+        runOnServer(this::updateServerAutoRead);
+    }
+
+    /**
+     * 用户侧连接的可写状态变化（在用户侧 EventLoop 上调用）：据此暂停/恢复读取后端连接
+     */
+    public void onServerWritabilityChanged() {
+        Channel ch = backend;
+        if (ch == null || finished) {
+            return;
+        }
+        ch.eventLoop().execute(() -> {
+            if (responseStarted && !responseDone) {
+                ch.config().setAutoRead(serverCtx.channel().isWritable());
+            }
+        });
+    }
+
+    @Override
+    public void onResponse(HttpObject msg) {
+        if (informational) {
+            // 1xx 响应之后的 LastHttpContent，用户侧的编码器需要它来结束 1xx 响应
+            informational = !(msg instanceof LastHttpContent);
+            serverCtx.writeAndFlush(msg);
+            return;
+        }
+        if (msg instanceof HttpResponse) {
+            HttpResponse response = (HttpResponse) msg;
+            if (response.status().codeClass() == HttpStatusClass.INFORMATIONAL) {
+                // 例如 100 Continue，原样转给用户，之后还会有真正的响应
+                informational = !(msg instanceof LastHttpContent);
+                serverCtx.writeAndFlush(msg);
+                return;
+            }
+            responseStarted = true;
+            serverError = response.status().codeClass() == HttpStatusClass.SERVER_ERROR;
+            // 包装为透传响应：复用原响应头，用户侧的压缩器不会再次编码
+            if (!(response instanceof LastHttpContent)) {
+                response = new PassThroughHttpResponse(response);
+            }
+            HttpProxyHeaders.rewriteResponse(response.headers());
+            HttpUtil.setKeepAlive(response, keepAlive);
+            msg = response;
+        }
+
+        if (!(msg instanceof LastHttpContent)) {
+            serverCtx.writeAndFlush(msg);
+            if (!serverCtx.channel().isWritable()) {
+                backend.config().setAutoRead(false);
+            }
+            return;
+        }
+
+        responseDone = true;
+        endpoint.onRequestEnd(startNanos, !serverError);
+        backend.config().setAutoRead(true);
+        if (keepAlive) {
+            serverCtx.writeAndFlush(msg);
+        } else {
+            serverCtx.writeAndFlush(msg).addListener(ChannelFutureListener.CLOSE);
+        }
+        runOnServer(this::complete);
+    }
+
+    @Override
+    public void onFailure(HttpResponseStatus status) {
+        if (aborted) {
+            // abort 关闭了后端连接，只释放在途请求数
+            endpoint.onRequestCancelled(startNanos);
+            return;
+        }
+        endpoint.onRequestEnd(startNanos, false);
+        reject(timedOut ? HttpResponseStatus.GATEWAY_TIMEOUT : status);
+    }
+
+    /**
+     * 响应失败：响应头还没发出时响应给用户指定的状态码，否则关闭用户连接
+     */
+    private void reject(HttpResponseStatus status) {
+        if (responseStarted) {
+            // 响应头已经发出，无法再改变状态码，只能关闭用户连接
+            serverCtx.close();
+        } else {
+            FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status);
+            response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+            // 请求体还没读完时无法继续复用用户连接
+            boolean reusable = keepAlive && requestDone;
+            HttpUtil.setKeepAlive(response, reusable);
+            if (reusable) {
+                serverCtx.writeAndFlush(response);
+            } else {
+                serverCtx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+        runOnServer(this::complete);
+    }
+
+    /**
+     * 用户侧连接断开（在用户侧 EventLoop 上调用）：后端连接若仍在转发则关闭
+     */
+    public void abort() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+        releasePending();
+        Channel ch = backend;
+        if (ch != null) {
+            aborted = true;
+            ch.close();
+        }
+    }
+
+    /**
+     * 转发结束（在用户侧 EventLoop 上执行）
+     */
+    private void complete() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+        releasePending();
+        onComplete.run();
+    }
+
+    private void releasePending() {
+        if (pending != null) {
+            pending.release();
+            pending = null;
+        }
+        pendingLast = null;
+    }
+
+    private void runOnServer(Runnable task) {
+        EventExecutor executor = serverCtx.executor();
+        if (executor.inEventLoop()) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+}
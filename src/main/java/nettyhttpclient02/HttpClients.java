@@ -0,0 +1,135 @@
+package nettyhttpclient02;
+
+import io.netty.channel.EventLoopGroup;
+import router01.ApiTagEnum;
+import router01.Endpoint;
+import router01.Route;
+import router01.RouteTable;
+import transport01.Transports;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty 客户端注册表
+ *  - 每个后端服务地址在进程内只有一个 HttpClient（一个连接池）
+ *  - 所有 HttpClient 共享同一个 EventLoopGroup，线程数和连接数不会随用户连接数增长
+ *  - 路由表重新加载后（retain），不再使用的后端服务地址的客户端从注册表移除，在途请求结束后关闭
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class HttpClients {
+    /**
+     * 连接池配置（所有后端服务共用）
+     */
+    private static final HttpClientPoolConfig CONFIG = new HttpClientPoolConfig();
+
+    /**
+     * 所有后端连接共享的 IO 线程池
+     */
+    private static final EventLoopGroup GROUP = Transports.newEventLoopGroup(CONFIG.getIoThreads());
+
+    /**
+     * 后端服务地址 -> Netty 客户端
+     */
+    private static final ConcurrentMap<String, HttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+    private HttpClients() {
+    }
+
+    /**
+     * 获取后端 API 标记对应的 Netty 客户端
+     * @param apiTag 后端 API 标记
+     * @return Netty 客户端
+     */
+    public static HttpClient get(ApiTagEnum apiTag) {
+        return get(apiTag.getApiAddress());
+    }
+
+    /**
+     * 获取后端节点对应的 Netty 客户端
+     * @param endpoint 后端节点
+     * @return Netty 客户端
+     */
+    public static HttpClient get(Endpoint endpoint) {
+        return get(endpoint.getAddress());
+    }
+
+    /**
+     * 获取后端服务地址对应的 Netty 客户端，不存在则创建并预热连接池
+     * @param apiAddress 后端服务地址，例如：http://127.0.0.1:8801/
+     * @return Netty 客户端
+     */
+    public static HttpClient get(String apiAddress) {
+        HttpClient client = CLIENTS.get(apiAddress);
+        if (client != null) {
+            return client;
+        }
+        return CLIENTS.computeIfAbsent(apiAddress, address -> {
+            URI uri = URI.create(address);
+            HttpClient created = new HttpClient(uri.getHost(), uri.getPort(), GROUP, CONFIG);
+            created.warmUp();
+            return created;
+        });
+    }
+
+    /**
+     * 只保留路由表中仍在使用的后端服务地址的客户端（路由表重新加载后调用）
+     *  - 其它客户端立即从注册表移除，新的请求不会再使用它们；等它们的在途请求全部结束后关闭连接池，
+     *    最多等待 drainTimeoutSeconds
+     *  - 旧路由表上稍后发出的重试、对冲请求会重新创建客户端，下一次重新加载时再次清理
+     * @param table 新的路由表
+     */
+    public static void retain(RouteTable table) {
+        Set<String> addresses = new HashSet<>();
+        for (Route route : table.routes()) {
+            if (!route.isLocal()) {
+                for (Endpoint endpoint : route.getRouter().endpoints()) {
+                    addresses.add(endpoint.getAddress());
+                }
+            }
+        }
+        for (Map.Entry<String, HttpClient> entry : CLIENTS.entrySet()) {
+            if (!addresses.contains(entry.getKey()) && CLIENTS.remove(entry.getKey(), entry.getValue())) {
+                System.err.println("## 后端服务地址已从路由表移除，在途请求结束后关闭连接池:" + entry.getKey());
+                closeWhenIdle(entry.getValue(), System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * 客户端空闲或等待超时后关闭，否则 1 秒后再检查
+     */
+    private static void closeWhenIdle(HttpClient client, long sinceNanos) {
+        boolean expired = System.nanoTime() - sinceNanos >= TimeUnit.SECONDS.toNanos(CONFIG.getDrainTimeoutSeconds());
+        if (client.isIdle() || expired) {
+            if (!client.isIdle()) {
+                System.err.println("####【ERROR】等待在途请求结束超时，关闭连接池:"
+                        + "http://" + client.getHost() + ":" + client.getPort() + "/");
+            }
+            client.close();
+            return;
+        }
+        try {
+            GROUP.schedule(() -> closeWhenIdle(client, sinceNanos), 1, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // 进程正在退出
+            client.close();
+        }
+    }
+
+    /**
+     * 关闭所有 Netty 客户端，并退出共享的执行器线程
+     */
+    public static void closeAll() {
+        CLIENTS.values().forEach(HttpClient::close);
+        CLIENTS.clear();
+        GROUP.shutdownGracefully();
+    }
+}
@@ -0,0 +1,428 @@
+package nettyhttpclient02;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import io.netty.util.concurrent.ScheduledFuture;
+import metrics01.RouteMetrics;
+import router01.Endpoint;
+import router01.HttpEndpointRouter;
+import router01.Route;
+import router01.RoutePolicy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * 一次按路由策略（RoutePolicy）进行的转发（聚合模式）
+ *  - 截止时间：由用户侧 EventLoop 的定时器触发，超时后响应 504，并取消仍在等待的后端请求
+ *  - 对冲请求：幂等请求的耗时超过路由最近的 pN（例如 p95）仍未响应时，向另一个节点发送相同的请求，
+ *    先到的响应返回给用户，另一个请求被取消（连接上只有它时直接关闭连接），迟到的响应直接释放
+ *  - 重试：幂等请求连接失败（或响应了 retryOn 中的状态码）时，退避一段随机时间后优先换一个节点重试，
+ *    次数受 retries 和路由的重试预算限制，且不会超过截止时间
+ *  - 需要对冲或重试时保留一份请求模板：请求头单独复制，请求体只增加引用计数，每次重发都是模板的 retainedDuplicate
+ *  - 每次发往后端的请求（Attempt）各自记录节点的在途请求数、耗时和熔断统计：对冲中落后而被取消的请求不计为失败，
+ *    截止时间到达时仍在等待的请求计为失败（与流式转发 HttpClientStream 一致）
+ * 线程约定：
+ *  - 定时任务在用户侧 EventLoop 上执行，后端响应在后端连接的 EventLoop 上到达，状态变化在 synchronized 中完成
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class HttpProxyExchange {
+    private final ChannelHandlerContext serverCtx;
+
+    private final Route route;
+
+    private final RoutePolicy policy;
+
+    /**
+     * 写回用户的回调（已经过装饰器，例如响应缓存、请求合并）
+     */
+    private final HttpClientCallback downstream;
+
+    /**
+     * 对冲、重试使用的请求模板（请求头单独复制，请求体共享），转发结束时释放
+     */
+    private FullHttpRequest template;
+
+    /**
+     * 转发开始的时间（纳秒）
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 已经重试的次数
+     */
+    private int retries;
+
+    private Attempt primary;
+
+    private Attempt hedge;
+
+    private ScheduledFuture<?> deadline;
+
+    private ScheduledFuture<?> hedgeTimer;
+
+    private ScheduledFuture<?> retryTimer;
+
+    /**
+     * 是否已经响应用户
+     */
+    private boolean done;
+
+    /**
+     * 是否因截止时间到达而结束（只在 synchronized 中访问）
+     */
+    private boolean timedOut;
+
+    private HttpProxyExchange(ChannelHandlerContext serverCtx, Route route, HttpClientCallback downstream) {
+        this.serverCtx = serverCtx;
+        this.route = route;
+        this.policy = route.getPolicy();
+        this.downstream = downstream;
+    }
+
+    /**
+     * 按路由转发请求，后端服务的响应经过装饰后的回调写回用户侧通道
+     * @param serverCtx 用户侧 与 Netty服务端 的通信通道，用于最终响应用户请求
+     * @param request 用户的完整请求（引用计数转交给本方法）
+     * @param route 请求匹配到的路由（需要有后端节点）
+     * @param decorator 回调的装饰器
+     */
+    public static void start(ChannelHandlerContext serverCtx, FullHttpRequest request, Route route,
+                             UnaryOperator<HttpClientCallback> decorator) {
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        HttpClientCallback downstream = decorator.apply(HttpClientCallback.toServer(serverCtx, keepAlive));
+        new HttpProxyExchange(serverCtx, route, downstream).start(request);
+    }
+
+    private void start(FullHttpRequest request) {
+        Endpoint endpoint = route.getRouter().route();
+        if (!endpoint.tryAcquire()) {
+            // 节点被熔断：不转发，直接响应 503
+            request.release();
+            downstream.onFailure(HttpResponseStatus.SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        boolean idempotent = HttpClientRequest.isIdempotent(request.method());
+        long hedgeDelay = idempotent && route.getRouter().endpoints().length > 1 ? policy.hedgeDelayNanos() : -1;
+        boolean retryable = idempotent && policy.getMaxRetries() > 0;
+        if (retryable) {
+            policy.getRetryBudget().deposit();
+        }
+        synchronized (this) {
+            if (policy.getTimeoutNanos() > 0) {
+                deadline = serverCtx.executor().schedule(this::onDeadline, policy.getTimeoutNanos(), TimeUnit.NANOSECONDS);
+            }
+            if (hedgeDelay >= 0 || retryable) {
+                // 请求头改写之前复制，重发时按选中的节点重新改写
+                template = request.replace(request.content().retainedDuplicate());
+            }
+            if (hedgeDelay >= 0) {
+                hedgeTimer = serverCtx.executor().schedule(this::sendHedge, hedgeDelay, TimeUnit.NANOSECONDS);
+            }
+            primary = new Attempt(endpoint);
+        }
+        send(primary, request);
+    }
+
+    private void send(Attempt attempt, FullHttpRequest request) {
+        HttpClient client = HttpClients.get(attempt.endpoint);
+        HttpProxyHeaders.rewriteRequest(request.headers(), client.getHost(), client.getPort(),
+                serverCtx.channel().remoteAddress());
+        client.proxyRequest(serverCtx.channel().eventLoop(), request, attempt);
+    }
+
+    /**
+     * 对冲：主请求仍未响应时，向另一个节点发送相同的请求（在用户侧 EventLoop 上执行）
+     */
+    private void sendHedge() {
+        Attempt attempt;
+        FullHttpRequest request;
+        synchronized (this) {
+            // 主请求已经失败（等待重试）时不再对冲
+            if (done || hedge != null || primary.failed) {
+                return;
+            }
+            Endpoint endpoint = pickOther(primary.endpoint);
+            if (endpoint == null || !endpoint.tryAcquire()) {
+                return;
+            }
+            attempt = hedge = new Attempt(endpoint);
+            request = copyOfTemplate();
+        }
+        metrics().getHedges().increment();
+        send(attempt, request);
+    }
+
+    /**
+     * 安排一次重试（在 synchronized 中调用）
+     * @param failed 刚刚失败的请求
+     * @return 是否会重试
+     */
+    private boolean scheduleRetry(Attempt failed) {
+        if (template == null || retries >= policy.getMaxRetries()) {
+            return false;
+        }
+        long backoff = policy.retryBackoffNanos(retries + 1);
+        if (policy.getTimeoutNanos() > 0 && System.nanoTime() + backoff - startNanos >= policy.getTimeoutNanos()) {
+            return false;
+        }
+        if (!policy.getRetryBudget().tryWithdraw()) {
+            metrics().getRetryBudgetExhausted().increment();
+            return false;
+        }
+        retries++;
+        retryTimer = serverCtx.executor().schedule(() -> sendRetry(failed.endpoint), backoff, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    /**
+     * 重试：优先选择另一个节点（在用户侧 EventLoop 上执行）
+     */
+    private void sendRetry(Endpoint previous) {
+        Attempt attempt;
+        FullHttpRequest request;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            Endpoint endpoint = pickOther(previous);
+            if (endpoint == null) {
+                endpoint = previous;
+            }
+            if (!endpoint.tryAcquire()) {
+                finish(null);
+                attempt = null;
+                request = null;
+            } else {
+                attempt = primary = new Attempt(endpoint);
+                hedge = null;
+                request = copyOfTemplate();
+            }
+        }
+        if (attempt == null) {
+            downstream.onFailure(HttpResponseStatus.SERVICE_UNAVAILABLE);
+            return;
+        }
+        metrics().getRetries().increment();
+        send(attempt, request);
+    }
+
+    /**
+     * 路由的指标（对冲、重试、超时只计数，在 /metrics 导出，不在请求路径上打印日志）
+     */
+    private RouteMetrics metrics() {
+        return RouteMetrics.of(route.getName());
+    }
+
+    /**
+     * 由模板生成一个新的请求（复制请求头，请求体增加引用计数）
+     */
+    private FullHttpRequest copyOfTemplate() {
+        return template.replace(template.content().retainedDuplicate());
+    }
+
+    /**
+     * 选择主请求之外的一个可用节点
+     */
+    private Endpoint pickOther(Endpoint exclude) {
+        HttpEndpointRouter router = route.getRouter();
+        Endpoint[] endpoints = router.endpoints();
+        for (int i = 0; i < endpoints.length; i++) {
+            Endpoint candidate = router.route();
+            if (candidate != exclude && candidate.isAvailable()) {
+                return candidate;
+            }
+        }
+        for (Endpoint candidate : endpoints) {
+            if (candidate != exclude && candidate.isAvailable()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 截止时间已到：仍在等待的请求按超时取消（在用户侧 EventLoop 上执行）
+     */
+    private void onDeadline() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            timedOut = true;
+            finish(null);
+        }
+        metrics().getTimeouts().increment();
+        downstream.onFailure(HttpResponseStatus.GATEWAY_TIMEOUT);
+    }
+
+    /**
+     * 某次请求收到了响应：第一个响应返回给用户，之后的直接释放；需要重试的状态码按失败处理
+     */
+    private void onAttemptResponse(Attempt attempt, FullHttpResponse response) {
+        synchronized (this) {
+            if (done) {
+                response.release();
+                return;
+            }
+            if (policy.isRetryable(response.status().code())) {
+                attempt.failed = true;
+                if (isOtherPending(attempt) || scheduleRetry(attempt)) {
+                    response.release();
+                    return;
+                }
+            }
+            finish(attempt);
+        }
+        downstream.onResponse(response);
+    }
+
+    /**
+     * 某次请求失败：另一个请求仍在等待时继续等待，可以重试时重试，否则响应用户
+     */
+    private void onAttemptFailure(Attempt attempt, HttpResponseStatus status) {
+        synchronized (this) {
+            attempt.failed = true;
+            if (done || isOtherPending(attempt) || scheduleRetry(attempt)) {
+                return;
+            }
+            finish(attempt);
+        }
+        downstream.onFailure(status);
+    }
+
+    /**
+     * 除了 attempt 之外是否还有请求在等待响应（在 synchronized 中调用）
+     */
+    private boolean isOtherPending(Attempt attempt) {
+        Attempt other = attempt == primary ? hedge : primary;
+        return other != null && !other.failed;
+    }
+
+    /**
+     * 结束转发：取消定时任务、释放请求副本、取消仍在等待的请求（在 synchronized 中调用）
+     * @param completed 已经结束的请求（不需要取消），超时时为 null
+     */
+    private void finish(Attempt completed) {
+        done = true;
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+        if (hedgeTimer != null) {
+            hedgeTimer.cancel(false);
+        }
+        if (retryTimer != null) {
+            retryTimer.cancel(false);
+        }
+        if (template != null) {
+            template.release();
+            template = null;
+        }
+        if (primary != completed) {
+            primary.cancel(timedOut);
+        }
+        if (hedge != null && hedge != completed) {
+            hedge.cancel(timedOut);
+        }
+    }
+
+    /**
+     * 发往某个节点的一次请求
+     */
+    private final class Attempt implements HttpClientCallback {
+        private final Endpoint endpoint;
+
+        private final long startNanos;
+
+        /**
+         * 是否已被取消（已响应用户，或另一个请求先完成）
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * 是否因截止时间到达而被取消（计为节点的失败）
+         */
+        private volatile boolean timedOut;
+
+        /**
+         * 请求所在的后端连接（写入后才有）
+         */
+        private volatile Channel backend;
+
+        /**
+         * 是否已失败（只在 synchronized 中访问）
+         */
+        private boolean failed;
+
+        private Attempt(Endpoint endpoint) {
+            this.endpoint = endpoint;
+            this.startNanos = endpoint.onRequestStart();
+        }
+
+        @Override
+        public void onResponse(HttpObject msg) {
+            // 聚合模式下 msg 就是完整的 FullHttpResponse
+            FullHttpResponse response = (FullHttpResponse) msg;
+            long elapsed = System.nanoTime() - startNanos;
+            boolean serverError = response.status().codeClass() == HttpStatusClass.SERVER_ERROR;
+            // 超时之后才到达的响应仍然按超时计为失败
+            endpoint.onRequestEnd(startNanos, !serverError && !timedOut);
+            if (cancelled) {
+                response.release();
+                return;
+            }
+            if (!serverError) {
+                policy.getLatency().record(elapsed);
+            }
+            onAttemptResponse(this, response);
+        }
+
+        @Override
+        public void onFailure(HttpResponseStatus status) {
+            if (cancelled) {
+                if (timedOut) {
+                    // 超时：节点没有在截止时间内响应，计入耗时和熔断统计
+                    endpoint.onRequestEnd(startNanos, false);
+                } else {
+                    // 对冲中落后的请求被取消（例如关闭了连接）不是节点的问题，只释放在途请求数
+                    endpoint.onRequestCancelled(startNanos);
+                }
+                return;
+            }
+            endpoint.onRequestEnd(startNanos, false);
+            onAttemptFailure(this, status);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void onWritten(Channel backend) {
+            this.backend = backend;
+            if (cancelled) {
+                HttpClient.cancel(backend, this);
+            }
+        }
+
+        /**
+         * 取消请求（在 synchronized 中调用）
+         * @param timedOut 是否因截止时间到达而取消
+         */
+        private void cancel(boolean timedOut) {
+            if (cancelled || failed) {
+                return;
+            }
+            this.timedOut = timedOut;
+            cancelled = true;
+            Channel ch = backend;
+            if (ch != null) {
+                HttpClient.cancel(ch, this);
+            }
+        }
+    }
+}
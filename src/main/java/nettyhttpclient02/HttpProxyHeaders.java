@@ -0,0 +1,90 @@
+package nettyhttpclient02;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.AsciiString;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+
+/**
+ * 代理转发时的请求头/响应头改写
+ *  - 去掉逐跳（hop-by-hop）头，这些头只对当前这一段连接有效，不能转发给下一跳
+ *  - 请求头补充 X-Forwarded-For，并将 Host 改为后端服务地址
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class HttpProxyHeaders {
+    /**
+     * 逐跳头（Connection 由网关根据两端连接各自设置，Transfer-Encoding 由编解码器处理，均不在此列）
+     */
+    private static final AsciiString[] HOP_BY_HOP = {
+            AsciiString.cached("keep-alive"),
+            HttpHeaderNames.PROXY_AUTHENTICATE,
+            HttpHeaderNames.PROXY_AUTHORIZATION,
+            HttpHeaderNames.TE,
+            HttpHeaderNames.UPGRADE,
+            AsciiString.cached("proxy-connection"),
+    };
+
+    private static final AsciiString X_FORWARDED_FOR = AsciiString.cached("x-forwarded-for");
+
+    private HttpProxyHeaders() {
+    }
+
+    /**
+     * 改写发往后端的请求头
+     * @param headers 请求头
+     * @param host 后端服务 host
+     * @param port 后端服务端口
+     * @param remote 用户侧连接的远端地址
+     */
+    static void rewriteRequest(HttpHeaders headers, String host, int port, SocketAddress remote) {
+        removeHopByHop(headers);
+        headers.set(HttpHeaderNames.HOST, host + ":" + port);
+        if (remote instanceof InetSocketAddress) {
+            String clientIp = ((InetSocketAddress) remote).getAddress().getHostAddress();
+            String forwarded = headers.get(X_FORWARDED_FOR);
+            headers.set(X_FORWARDED_FOR, forwarded == null ? clientIp : forwarded + ", " + clientIp);
+        }
+    }
+
+    /**
+     * 改写返回给用户的响应头
+     * @param headers 响应头
+     */
+    static void rewriteResponse(HttpHeaders headers) {
+        removeHopByHop(headers);
+    }
+
+    /**
+     * 是否为 Connection 头自身的取值（keep-alive / close），而不是列出的逐跳头名称
+     */
+    private static boolean isConnectionToken(String value) {
+        return HttpHeaderValues.KEEP_ALIVE.contentEqualsIgnoreCase(value)
+                || HttpHeaderValues.CLOSE.contentEqualsIgnoreCase(value);
+    }
+
+    /**
+     * 去掉逐跳头，以及 Connection 头中列出的头
+     */
+    private static void removeHopByHop(HttpHeaders headers) {
+        List<String> connectionOptions = headers.getAll(HttpHeaderNames.CONNECTION);
+        for (String option : connectionOptions) {
+            if (isConnectionToken(option)) {
+                continue;
+            }
+            for (String name : option.split(",")) {
+                String trimmed = name.trim();
+                if (!trimmed.isEmpty() && !isConnectionToken(trimmed)) {
+                    headers.remove(trimmed);
+                }
+            }
+        }
+        for (AsciiString name : HOP_BY_HOP) {
+            headers.remove(name);
+        }
+    }
+}
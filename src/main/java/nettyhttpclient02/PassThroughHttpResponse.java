@@ -0,0 +1,18 @@
+package nettyhttpclient02;
+
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpResponse;
+
+/**
+ * 透传的后端响应头
+ *  - 复用后端响应头的 HttpHeaders 对象，不复制任何头信息
+ *  - 用户侧的压缩处理器据此跳过重新压缩，参见 nettyhttpserver02.HttpProxyContentCompressor
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class PassThroughHttpResponse extends DefaultHttpResponse {
+
+    PassThroughHttpResponse(HttpResponse response) {
+        super(response.protocolVersion(), response.status(), response.headers());
+    }
+}
@@ -0,0 +1,78 @@
+package nettyhttpclient02;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import router01.Endpoint;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * 将后端服务的响应写回用户侧通道的回调（聚合模式）
+ *  - 流式模式参见 HttpClientStream
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class ServerResponseCallback implements HttpClientCallback {
+    /**
+     * 用户侧 - Netty服务端 的通道处理器上下文
+     */
+    private final ChannelHandlerContext serverCtx;
+
+    /**
+     * 用户请求是否要求保持连接
+     */
+    private final boolean keepAlive;
+
+    /**
+     * 请求发往的后端节点（为 null 表示请求被熔断器拒绝，没有发往后端，不记录统计）
+     */
+    private final Endpoint endpoint;
+
+    /**
+     * 请求开始时间（纳秒）
+     */
+    private final long startNanos;
+
+    ServerResponseCallback(ChannelHandlerContext serverCtx, boolean keepAlive, Endpoint endpoint) {
+        this.serverCtx = serverCtx;
+        this.keepAlive = keepAlive;
+        this.endpoint = endpoint;
+        this.startNanos = endpoint == null ? 0 : endpoint.onRequestStart();
+    }
+
+    @Override
+    public void onResponse(HttpObject msg) {
+        // 响应过滤器在用户侧连接的 HttpFilterHandler 中执行
+        // 聚合模式下 msg 就是完整的 FullHttpResponse
+        FullHttpResponse response = (FullHttpResponse) msg;
+        if (endpoint != null) {
+            // 5xx 响应计为失败（熔断器据此摘除异常节点）
+            endpoint.onRequestEnd(startNanos, response.status().codeClass() != HttpStatusClass.SERVER_ERROR);
+        }
+        writeResponse(response);
+    }
+
+    @Override
+    public void onFailure(HttpResponseStatus status) {
+        if (endpoint != null) {
+            endpoint.onRequestEnd(startNanos, false);
+        }
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status);
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        writeResponse(response);
+    }
+
+    /**
+     * 将响应写给用户，并按用户请求决定是否保持连接
+     * @param response 响应
+     */
+    private void writeResponse(FullHttpResponse response) {
+        HttpUtil.setKeepAlive(response, keepAlive);
+        if (keepAlive) {
+            serverCtx.writeAndFlush(response);
+        } else {
+            serverCtx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
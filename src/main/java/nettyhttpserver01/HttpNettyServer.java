@@ -3,13 +3,14 @@ package nettyhttpserver01;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
+import transport01.Transports;
+
+import java.util.List;
 
 /**
  * 一个 HTTP 服务器
@@ -52,9 +53,11 @@ public class HttpNettyServer {
             - Worker Group 作为 IO 线程，负责 IO 的读写（通过 SocketChannel 的类对象）
             - Boss Group 作为服务端 Acceptor 线程，用于 accept 客户端链接，并转发给 WorkerGroup 中的线程
               作用类似于 HttpServer01/02/03 示例中，循环中调用 ServerSocket 类对象的 accept 方法
+            - Linux 上使用原生 epoll 传输，并开启 SO_REUSEPORT：每个 Worker 线程各有一个监听 Channel，
+              由内核分发新连接，此时不再需要单独的 Boss Group（参见 transport01.Transports）
          */
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        EventLoopGroup workerGroup = Transports.newEventLoopGroup(0);
+        EventLoopGroup bossGroup = Transports.isReusePort() ? workerGroup : Transports.newEventLoopGroup(1);
 
         try {
             // 构造 ServerBootstrap 实例，ServerBootstrap 是 Netty 服务端的启动辅助类
@@ -63,7 +66,7 @@ public class HttpNettyServer {
             /*
                 这里主要做了几件事说明，以及注意：
                  - 绑定接收请求的处理器和处理请求的处理器
-                 - 绑定服务器Channel，因为 Netty Server 需要创建 NioServerSocketChannel 对象
+                 - 绑定服务器Channel（NioServerSocketChannel 或 EpollServerSocketChannel）
                  - 绑定日志打印处理器（打印的日志级别大于等于INFO）
                  - 绑定子处理器（自定义的 Netty Server 初始化类）
 
@@ -72,19 +75,22 @@ public class HttpNettyServer {
                  - 添加并设置 ChannelHandler，ChannelHandler 将串行的加入 ChannelPipeline 中
              */
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(Transports.serverChannelClass())
                     .handler(new LoggingHandler(LogLevel.INFO))
                     .childHandler(new HttpNettyServerInitializer(sslCtx));
+            Transports.configureServer(b);
 
             /*
                绑定监听端口并启动服务端，将 NioServerSocketChannel 注册到 Selector 上
                Selector 轮询，由 EventLoop 负责调度和执行 Selector 轮询操作
              */
-            Channel ch = b.bind(PORT).sync().channel();
+            List<Channel> channels = Transports.bind(b, PORT);
 
             System.err.println("打开你的浏览器，并且导航到 " +
                     (SSL ? "https" : "http") + "://127.0.0.1:" + PORT + "/");
-            ch.closeFuture().sync();
+            for (Channel ch : channels) {
+                ch.closeFuture().sync();
+            }
         } finally {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
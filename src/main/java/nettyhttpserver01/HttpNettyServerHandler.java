@@ -1,8 +1,9 @@
 package nettyhttpserver01;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.DecoderResult;
@@ -10,9 +11,10 @@ import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
 import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
+import io.netty.util.AsciiString;
 import io.netty.util.CharsetUtil;
 
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -23,23 +25,48 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 /**
  * 一个 HTTP 服务器
  *  - 以一种非常简单的形式，响应接收到的 HTTP 请求内容
+ *  - 无状态，所有连接共用一个实例（INSTANCE），请求由 HttpObjectAggregator 聚合为 FullHttpRequest 后到达
+ *  - 响应内容直接写入通道分配器（默认池化）分配的堆外 ByteBuf：固定文字预先编码为字节数组，
+ *    请求头、参数用 ByteBufUtil.writeUtf8 写入，请求体按字节复制，不经过 StringBuilder / String
+ *  - 请求由 SimpleChannelInboundHandler 在 channelRead0 返回后释放；响应的 ByteBuf 交给编码器写出后释放
  * 参考：
  *  - https://netty.io/4.0/xref/io/netty/example/http/snoop/HttpSnoopServerHandler.html
  *  - https://netty.io/4.0/xref/io/netty/example/http/snoop/package-summary.html
  * @author junyangwei
  * @date 2021-10-11
  */
-public class HttpNettyServerHandler extends SimpleChannelInboundHandler<Object> {
+@ChannelHandler.Sharable
+public class HttpNettyServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    static final HttpNettyServerHandler INSTANCE = new HttpNettyServerHandler();
 
     /**
-     * Http 请求
+     * 预先编码的响应内容片段
      */
-    private HttpRequest request;
+    private static final byte[] WELCOME = utf8("欢迎来到示例网络服务器\r\n===================\r\n");
+    private static final byte[] VERSION = utf8("版本：");
+    private static final byte[] HOST_NAME = utf8("主机名：");
+    private static final byte[] UNKNOWN_HOST = utf8("未知");
+    private static final byte[] URI = utf8("请求地址：");
+    private static final byte[] HEADER = utf8("请求头：");
+    private static final byte[] PARAM = utf8("参数：");
+    private static final byte[] CONTENT = utf8("内容：");
+    private static final byte[] CONTENT_END = utf8("内容的结尾\r\n");
+    private static final byte[] TRAILER = utf8("结尾头：");
+    private static final byte[] DECODE_FAILURE = utf8(".. 解码失败：");
+    private static final byte[] EQUALS = utf8(" = ");
+    private static final byte[] CRLF = utf8("\r\n");
+
+    private static final AsciiString TEXT_PLAIN_UTF8 = AsciiString.cached("text/plain; charset=UTF-8");
 
     /**
-     * 响应内容缓存在 StringBuilder 类对象 buf 中
+     * 请求没有携带 cookie 时响应的 cookie（预先编码）
      */
-    private final StringBuilder buf = new StringBuilder();
+    private static final String DEFAULT_COOKIE_1 = ServerCookieEncoder.LAX.encode("key1", "value1");
+    private static final String DEFAULT_COOKIE_2 = ServerCookieEncoder.LAX.encode("key2", "value2");
+
+    private HttpNettyServerHandler() {
+    }
 
     /**
      * 结束通道的读取任务后调用
@@ -52,184 +79,201 @@ public class HttpNettyServerHandler extends SimpleChannelInboundHandler<Object>
         ctx.flush();
     }
 
-    @Override
-    public void channelRead0(ChannelHandlerContext ctx, Object msg) {
-    }
-
     /**
      * 通道的读取操作（获取客户端发送 HTTP 请求到 Netty 服务器的请求）
-     * 一个完整的 HTTP 请求将被分为两个部分：
+     * 一个完整的 HTTP 请求包括两个部分（由 HttpObjectAggregator 合并为 FullHttpRequest）：
      *  - HttpRequest：请求信息
      *  - HttpContent：请求体
+     * 100 Continue 已由 HttpObjectAggregator 处理
      * @param ctx 通道处理器上下文
-     * @param msg 请求体
+     * @param request 完整的请求（返回后由 SimpleChannelInboundHandler 释放）
      */
     @Override
-    public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        // 对请求信息做解析
-        if (msg instanceof HttpRequest) {
-            // 将 msg 强制转换为 HttpRequest 类对象，获取本次请求
-            this.request = (HttpRequest) msg;
-            HttpRequest request = this.request;
-
-            // 处理 100 Continue 请求以符合 HTTP 1.1 规范
-            if (HttpUtil.is100ContinueExpected(request)) {
-                send100Continue(ctx);
-            }
+    public void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        ByteBuf content = request.content();
+        HttpHeaders headers = request.headers();
+        ByteBuf buf = ctx.alloc().directBuffer(512 + request.uri().length() + headers.size() * 64 + content.readableBytes());
+
+        // 拼接版本，主机名和请求地址
+        buf.writeBytes(WELCOME);
+        buf.writeBytes(VERSION);
+        ByteBufUtil.writeAscii(buf, request.protocolVersion().text());
+        buf.writeBytes(CRLF);
+        buf.writeBytes(HOST_NAME);
+        CharSequence host = headers.get(HttpHeaderNames.HOST);
+        if (host != null) {
+            ByteBufUtil.writeUtf8(buf, host);
+        } else {
+            buf.writeBytes(UNKNOWN_HOST);
+        }
+        buf.writeBytes(CRLF);
+        buf.writeBytes(URI);
+        ByteBufUtil.writeUtf8(buf, request.uri());
+        buf.writeBytes(CRLF).writeBytes(CRLF);
+
+        // 提取请求头的信息，若不为空则拼接
+        if (!headers.isEmpty()) {
+            writeHeaders(buf, HEADER, headers);
+            buf.writeBytes(CRLF);
+        }
 
-            // 重置 buf 长度，并且拼接版本，主机名和请求地址到 buf 中
-            buf.setLength(0);
-            buf.append("欢迎来到示例网络服务器\r\n");
-            buf.append("===================\r\n");
-
-            buf.append("版本：").append(request.protocolVersion()).append("\r\n");
-            buf.append("主机名：").append(request.headers().get(HttpHeaderNames.HOST, "未知")).append("\r\n");
-            buf.append("请求地址：").append(request.uri()).append("\r\n\r\n");
-
-            // 提取请求头的信息，若不为空则拼接到 buf 中
-            HttpHeaders headers = request.headers();
-            if (!headers.isEmpty()) {
-                for (Map.Entry<String, String> h : headers) {
-                    String key = h.getKey();
-                    String value = h.getValue();
-                    buf.append("请求头：").append(key).append(" = ").append(value).append("\r\n");
-                }
-                buf.append("\r\n");
-            }
+        // 提取 query 参数，若参数不为空则拼接
+        writeParams(buf, request.uri());
+        writeDecoderResult(buf, request);
 
-            // 解码请求的 uri，并且提取 query 参数，若参数不为空则拼接到 buf 中
-            QueryStringDecoder queryStringDecoder = new QueryStringDecoder(request.uri());
-            Map<String, List<String>> params = queryStringDecoder.parameters();
-            if (!params.isEmpty()) {
-                for (Map.Entry<String, List<String>> p : params.entrySet()) {
-                    String key = p.getKey();
-                    List<String> vals = p.getValue();
-                    for (String val : vals) {
-                        buf.append("参数：").append(key).append(" = ").append(val).append("\r\n");
-                    }
-                }
-                buf.append("\r\n");
-            }
+        // 拼接请求体（按字节复制）
+        if (content.isReadable()) {
+            buf.writeBytes(CONTENT);
+            buf.writeBytes(content, content.readerIndex(), content.readableBytes());
+            buf.writeBytes(CRLF);
+            writeDecoderResult(buf, request);
+        }
+        buf.writeBytes(CONTENT_END);
 
-            // 拼接解码结果
-            appendDecoderResult(buf, request);
+        HttpHeaders trailers = request.trailingHeaders();
+        if (!trailers.isEmpty()) {
+            buf.writeBytes(CRLF);
+            writeHeaders(buf, TRAILER, trailers);
+            buf.writeBytes(CRLF);
         }
 
-        // 对请求体做解析
-        if (msg instanceof HttpContent) {
-            HttpContent httpContent = (HttpContent) msg;
+        writeResponse(request, buf, ctx);
+    }
 
-            ByteBuf content = httpContent.content();
-            if (content.isReadable()) {
-                buf.append("内容：");
-                buf.append(content.toString(CharsetUtil.UTF_8));
-                buf.append("\r\n");
-                appendDecoderResult(buf, request);
-            }
+    /**
+     * 逐个拼接头（名称 = 值）
+     */
+    private static void writeHeaders(ByteBuf buf, byte[] prefix, HttpHeaders headers) {
+        Iterator<Map.Entry<CharSequence, CharSequence>> iterator = headers.iteratorCharSequence();
+        while (iterator.hasNext()) {
+            Map.Entry<CharSequence, CharSequence> h = iterator.next();
+            buf.writeBytes(prefix);
+            ByteBufUtil.writeUtf8(buf, h.getKey());
+            buf.writeBytes(EQUALS);
+            ByteBufUtil.writeUtf8(buf, h.getValue());
+            buf.writeBytes(CRLF);
+        }
+    }
 
-            if (msg instanceof LastHttpContent) {
-                buf.append("内容的结尾\r\n");
-
-                LastHttpContent trailer = (LastHttpContent) msg;
-                if (!trailer.trailingHeaders().isEmpty()) {
-                    buf.append("\r\n");
-                    for (String name: trailer.trailingHeaders().names()) {
-                        for (String value : trailer.trailingHeaders().getAll(name)) {
-                            buf.append("结尾头：");
-                            buf.append(name).append(" = ").append(value).append("\r\n");
-                        }
-                    }
-                    buf.append("\r\n");
+    /**
+     * 直接在 uri 上解析 query 参数（& 或 ; 分隔，# 之后忽略），按出现顺序拼接
+     *  - 参数名、参数值没有经过 URL 编码时原样写入，否则才用 QueryStringDecoder 解码
+     */
+    private static void writeParams(ByteBuf buf, String uri) {
+        int start = uri.indexOf('?');
+        if (start < 0) {
+            return;
+        }
+        int end = uri.indexOf('#', start);
+        if (end < 0) {
+            end = uri.length();
+        }
+        boolean written = false;
+        int nameStart = start + 1;
+        while (nameStart < end) {
+            int valueStart = -1;
+            int paramEnd = nameStart;
+            for (; paramEnd < end; paramEnd++) {
+                char c = uri.charAt(paramEnd);
+                if (c == '&' || c == ';') {
+                    break;
                 }
-
-                // 写入响应给客户端的响应体，并且获取是否需要保持连接
-                boolean keepAlive = writeResponse(trailer, ctx);
-
-                // 若不需要保持连接，则编写完毕后直接关闭连接
-                if (!keepAlive) {
-                    ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+                if (c == '=' && valueStart < 0) {
+                    valueStart = paramEnd + 1;
                 }
             }
+            int nameEnd = valueStart < 0 ? paramEnd : valueStart - 1;
+            if (nameEnd > nameStart) {
+                buf.writeBytes(PARAM);
+                writeComponent(buf, uri, nameStart, nameEnd);
+                buf.writeBytes(EQUALS);
+                if (valueStart >= 0) {
+                    writeComponent(buf, uri, valueStart, paramEnd);
+                }
+                buf.writeBytes(CRLF);
+                written = true;
+            }
+            nameStart = paramEnd + 1;
+        }
+        if (written) {
+            buf.writeBytes(CRLF);
+        }
+    }
 
-            // 生成ByteBuf对象后，需要调用release方法，防止出现内存泄漏
-            // 详情参考：https://www.cnblogs.com/zhaoshizi/p/13122467.html
-            content.release();
+    private static void writeComponent(ByteBuf buf, String uri, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = uri.charAt(i);
+            if (c == '%' || c == '+') {
+                ByteBufUtil.writeUtf8(buf, QueryStringDecoder.decodeComponent(uri.substring(start, end)));
+                return;
+            }
         }
+        ByteBufUtil.writeUtf8(buf, uri, start, end);
     }
 
     /**
      * 拼接当前 HTTP 请求解码的结果
-     * @param buf 响应内容缓存的对象
+     * @param buf 响应内容
      * @param o HTTP 请求对象
      */
-    private static void appendDecoderResult(StringBuilder buf, HttpObject o) {
+    private static void writeDecoderResult(ByteBuf buf, HttpObject o) {
         DecoderResult result = o.decoderResult();
         if (result.isSuccess()) {
             return;
         }
 
-        buf.append(".. 解码失败：");
-        buf.append(result.cause());
-        buf.append("\r\n");
+        buf.writeBytes(DECODE_FAILURE);
+        ByteBufUtil.writeUtf8(buf, String.valueOf(result.cause()));
+        buf.writeBytes(CRLF);
     }
 
     /**
-     * 写入响应给客户端的响应体，并且返回是否需要保持连接状态
-     * @param currentObj Http 请求对象
+     * 写入响应给客户端的响应体
+     * @param request Http 请求对象
+     * @param buf 响应内容（所有权交给响应）
      * @param ctx 通道处理器上下文
-     * @return 是否需要保持连接状态
      */
-    private boolean writeResponse(HttpObject currentObj, ChannelHandlerContext ctx) {
+    private static void writeResponse(FullHttpRequest request, ByteBuf buf, ChannelHandlerContext ctx) {
         // 根据当前请求头信息，决定是否需要保持连接状态
         boolean keepAlive = HttpUtil.isKeepAlive(request);
 
         // 建立响应对象（响应内容直接使用当前解析的请求头以及请求体）
         FullHttpResponse response = new DefaultFullHttpResponse(
-                HTTP_1_1, currentObj.decoderResult().isSuccess() ? OK : BAD_REQUEST,
-                Unpooled.copiedBuffer(buf.toString(), CharsetUtil.UTF_8));
+                HTTP_1_1, request.decoderResult().isSuccess() ? OK : BAD_REQUEST, buf);
 
         // 设置请求头 —— 内容类型为文本，格式为UTF-8
-        response.headers().set(CONTENT_TYPE, "text/plain; charset=UTF-8");
-
+        HttpHeaders headers = response.headers();
+        headers.set(CONTENT_TYPE, TEXT_PLAIN_UTF8);
+        headers.setInt(CONTENT_LENGTH, buf.readableBytes());
         if (keepAlive) {
-            // 当 keep-alive 参数开启(保持连接状态），则添加 'Content-Length' 头
-            response.headers().set(CONTENT_LENGTH, response.content().readableBytes());
             // 按要求添加保持连接的头
-            response.headers().set(CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+            headers.set(CONNECTION, HttpHeaderValues.KEEP_ALIVE);
         }
 
         // 提取请求头中的 cookie，若存在，那么响应头也设置相同的 cookies
         String cookieString = request.headers().get(COOKIE);
         if (cookieString != null) {
             Set<Cookie> cookies = ServerCookieDecoder.LAX.decode(cookieString);
-
-            if (!cookies.isEmpty()) {
-                // 在需要的情况下，可以重新设置响应头的 cookie
-                for (Cookie cookie : cookies) {
-                    response.headers().add(SET_COOKIE, ServerCookieEncoder.LAX.encode(cookie));
-                }
+            for (Cookie cookie : cookies) {
+                headers.add(SET_COOKIE, ServerCookieEncoder.LAX.encode(cookie));
             }
         } else {
             // 若请求没有携带 cookie，则可以自定义一些响应的 cookie
-            response.headers().add(SET_COOKIE, ServerCookieEncoder.LAX.encode("key1", "value1"));
-            response.headers().add(SET_COOKIE, ServerCookieEncoder.LAX.encode("key2", "value2"));
+            headers.add(SET_COOKIE, DEFAULT_COOKIE_1);
+            headers.add(SET_COOKIE, DEFAULT_COOKIE_2);
         }
 
-        // 编写响应（最终响应客户端请求的操作）
+        // 编写响应（最终响应客户端请求的操作），若不需要保持连接，则写出后直接关闭连接
         // 关于 write 方法可参见：https://stackoverflow.com/questions/52794066/can-anyone-explain-netty-channelhandlercontext-flush
-        ctx.write(response);
-
-        return keepAlive;
+        if (keepAlive) {
+            ctx.write(response);
+        } else {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
     }
 
-    /**
-     * 处理 100 Continue 请求以符合 HTTP 1.1 规范
-     * 详情参见：https://developer.mozilla.org/zh-CN/docs/Web/HTTP/Status/100
-     * @param ctx 通道处理器上下文
-     */
-    private static void send100Continue(ChannelHandlerContext ctx) {
-        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, CONTINUE);
-        ctx.write(response);
+    private static byte[] utf8(String s) {
+        return s.getBytes(CharsetUtil.UTF_8);
     }
 
     /**
@@ -1,8 +1,9 @@
 package nettyhttpserver01;
 
+import compress01.AdaptiveContentCompressor;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.ssl.SslContext;
 
@@ -14,7 +15,7 @@ import io.netty.handler.ssl.SslContext;
  * @author junyangwei
  * @date 2021-10-11
  */
-public class HttpNettyServerInitializer extends ChannelInitializer<SocketChannel> {
+public class HttpNettyServerInitializer extends ChannelInitializer<Channel> {
 
     /**
      * SSL 证书内容（在 HttpNettyServer 中获取）
@@ -28,6 +29,7 @@ public class HttpNettyServerInitializer extends ChannelInitializer<SocketChannel
     /**
      * 重写初始化通道方法
      *  - SocketChannel 是客户端和服务端的通信通道，可从中读取报文，或向其写入报文
+     *    （参数类型声明为 Channel，基准测试中可以用 EmbeddedChannel 驱动同一条 pipeline）
      * 扩展：
      *  - Worker Group 作为 IO 线程，负责 IO 的读写就是通过 SocketChannel 的类对象
      *  - Boss Group 作为服务端 Acceptor 线程，用于 accept 客户端链接，并转发给 WorkerGroup 中的线程
@@ -35,7 +37,7 @@ public class HttpNettyServerInitializer extends ChannelInitializer<SocketChannel
      * @param ch 通信通道
      */
     @Override
-    public void initChannel(SocketChannel ch) {
+    public void initChannel(Channel ch) {
         ChannelPipeline p = ch.pipeline();
         if (sslCtx != null) {
             p.addLast(sslCtx.newHandler(ch.alloc()));
@@ -44,17 +46,17 @@ public class HttpNettyServerInitializer extends ChannelInitializer<SocketChannel
         // 对客户端发送过来的 HTTP 请求进行解码
         p.addLast(new HttpRequestDecoder());
 
-        // 如果想要自己处理 Http 分块形式发送的数据，就注释掉下面一行
+        // 把请求聚合为 FullHttpRequest（HttpNettyServerHandler 只处理完整的请求，同时负责响应 100 Continue）
         p.addLast(new HttpObjectAggregator(1024 * 1024));
 
         // 对发送(响应)给客户端的 HTTP 响应体进行编码
         p.addLast(new HttpResponseEncoder());
 
-        // 如果不想自动压缩内容，就删除下面一行内容
-        p.addLast(new HttpContentCompressor());
+        // 如果不想自动压缩内容，就删除下面一行内容（小响应、已压缩的内容类型不会被压缩，参见 AdaptiveContentCompressor）
+        p.addLast(new AdaptiveContentCompressor());
 
-        // 添加自定义 Http Netty 服务端处理器
-        p.addLast(new HttpNettyServerHandler());
+        // 添加自定义 Http Netty 服务端处理器（无状态，所有连接共用一个实例）
+        p.addLast(HttpNettyServerHandler.INSTANCE);
     }
 
 }
@@ -0,0 +1,74 @@
+package nettyhttpserver02;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.util.CharsetUtil;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * 管理端口的请求处理器
+ *  - GET /metrics：Prometheus 文本格式的网关指标（参见 HttpMetricsExporter）
+ *  - 其它路径响应 404
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@ChannelHandler.Sharable
+public class HttpAdminHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+    /**
+     * 无状态，所有连接共用一个实例
+     */
+    static final HttpAdminHandler INSTANCE = new HttpAdminHandler();
+
+    private static final String METRICS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private HttpAdminHandler() {
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        FullHttpResponse response;
+        String path = request.uri();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (!"/metrics".equals(path)) {
+            response = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.NOT_FOUND);
+        } else if (!HttpMethod.GET.equals(request.method()) && !HttpMethod.HEAD.equals(request.method())) {
+            response = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.METHOD_NOT_ALLOWED);
+        } else {
+            ByteBuf body = ctx.alloc().buffer();
+            body.writeCharSequence(HttpMetricsExporter.scrape(), CharsetUtil.UTF_8);
+            response = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.OK, body);
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, METRICS_CONTENT_TYPE);
+        }
+        HttpUtil.setContentLength(response, response.content().readableBytes());
+        if (HttpMethod.HEAD.equals(request.method())) {
+            response.content().clear();
+        }
+        if (!HttpUtil.isKeepAlive(request)) {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        } else {
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+            ctx.writeAndFlush(response);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        System.err.println("####【ERROR】管理端口请求处理异常: " + cause);
+        ctx.close();
+    }
+}
@@ -0,0 +1,52 @@
+package nettyhttpserver02;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import transport01.Transports;
+
+/**
+ * 网关的管理端口（-Dgateway.admin.port，默认 9900，0 表示不开启）
+ *  - 与网关共用 worker 线程和传输层（参见 Transports），只监听一个 Channel
+ *  - 目前只提供 /metrics（参见 HttpAdminHandler）
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class HttpAdminServer {
+    /**
+     * 管理端口
+     */
+    static final int PORT = Integer.getInteger("gateway.admin.port", 9900);
+
+    private HttpAdminServer() {
+    }
+
+    /**
+     * 启动管理端口
+     * @param bossGroup 接收连接的线程池
+     * @param workerGroup 处理请求的线程池
+     * @return 监听的 Channel，不开启时返回 null
+     */
+    static Channel start(EventLoopGroup bossGroup, EventLoopGroup workerGroup) throws InterruptedException {
+        if (PORT <= 0) {
+            return null;
+        }
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup)
+                .channel(Transports.serverChannelClass())
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(8 * 1024),
+                                HttpAdminHandler.INSTANCE);
+                    }
+                });
+        Channel channel = b.bind(PORT).sync().channel();
+        System.err.println("## 网关管理端口已启动，指标地址: http://127.0.0.1:" + PORT + "/metrics");
+        return channel;
+    }
+}
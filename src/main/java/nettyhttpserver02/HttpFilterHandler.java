@@ -0,0 +1,195 @@
+package nettyhttpserver02;
+
+import filter01.HttpFilterChain;
+import filter01.HttpFilterChains;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ReferenceCountUtil;
+import router01.Route;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * 过滤器处理器（每个用户连接一个实例，位于 HttpNettyServerHandler 之前）
+ *  - 入站：每个请求头到达时执行所属路由的请求过滤器，通过后才交给后面的处理器，拒绝则直接以过滤器给出的状态码响应
+ *  - 异步过滤器未完成期间暂停读取用户连接，已经解码出来的消息（例如流式请求体）先暂存，结果出来后按顺序重放或丢弃
+ *  - 出站：按请求顺序记录每个请求的过滤器链，对应的响应头写出前执行响应过滤器（与 HttpContentCompressor 的做法一致）；
+ *    按顺序出队依赖前面的 HttpRequestSequencer 保证响应按请求顺序写出。被拒绝的请求不入队，
+ *    它的响应从本处理器的上下文写出，不经过本处理器的 write
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HttpFilterHandler extends ChannelDuplexHandler {
+    /**
+     * 已通过过滤的请求的过滤器链（按请求顺序，等待对应的响应）
+     */
+    private final ArrayDeque<HttpFilterChain> responseChains = new ArrayDeque<>();
+
+    /**
+     * 异步过滤器未完成期间到达的消息
+     */
+    private final ArrayDeque<Object> pending = new ArrayDeque<>();
+
+    /**
+     * 是否正在等待异步过滤器的结果
+     */
+    private boolean waiting;
+
+    /**
+     * 是否正在丢弃被拒绝请求的剩余请求体
+     */
+    private boolean discarding;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest) {
+            Route route = ctx.channel().attr(Route.KEY).get();
+            if (waiting) {
+                // 通道属性会被之后的请求覆盖，暂存时一并记下该请求匹配到的路由
+                pending.add(new PendingRequest((HttpRequest) msg, route));
+            } else {
+                filterRequest(ctx, (HttpRequest) msg, route);
+            }
+            return;
+        }
+        if (waiting) {
+            pending.add(msg);
+            return;
+        }
+        if (discarding && msg instanceof HttpContent) {
+            discarding = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    /**
+     * 执行请求所属路由的请求过滤器
+     */
+    private void filterRequest(ChannelHandlerContext ctx, HttpRequest request, Route route) {
+        HttpFilterChain chain = HttpFilterChains.chainFor(route);
+        CompletionStage<HttpResponseStatus> stage = chain.filterRequest(request, ctx);
+        if (stage == null) {
+            accept(ctx, chain, request, route);
+            return;
+        }
+        if (stage instanceof CompletableFuture && ((CompletableFuture<?>) stage).isDone()) {
+            decide(ctx, chain, request, route, ((CompletableFuture<HttpResponseStatus>) stage).getNow(null));
+            return;
+        }
+
+        // 异步过滤：暂停读取，结果在用户侧 EventLoop 上回调
+        waiting = true;
+        ctx.channel().config().setAutoRead(false);
+        stage.whenComplete((status, cause) -> {
+            waiting = false;
+            if (!ctx.channel().isActive()) {
+                // 等待期间用户已断开
+                ReferenceCountUtil.release(request);
+                handlerRemoved(ctx);
+                return;
+            }
+            ctx.channel().config().setAutoRead(true);
+            decide(ctx, chain, request, route, cause != null ? HttpResponseStatus.INTERNAL_SERVER_ERROR : status);
+            replayPending(ctx);
+        });
+    }
+
+    private void decide(ChannelHandlerContext ctx, HttpFilterChain chain, HttpRequest request, Route route,
+                        HttpResponseStatus status) {
+        if (status == null) {
+            accept(ctx, chain, request, route);
+        } else {
+            reject(ctx, request, status);
+        }
+    }
+
+    /**
+     * 请求通过过滤，交给后面的处理器（重新设置通道属性，异步过滤期间它可能已被之后的请求覆盖）
+     */
+    private void accept(ChannelHandlerContext ctx, HttpFilterChain chain, HttpRequest request, Route route) {
+        responseChains.add(chain);
+        ctx.channel().attr(Route.KEY).set(route);
+        ctx.fireChannelRead(request);
+    }
+
+    /**
+     * 拒绝请求：直接响应过滤器给出的状态码，请求体没有读完时丢弃剩余部分
+     */
+    private void reject(ChannelHandlerContext ctx, HttpRequest request, HttpResponseStatus status) {
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        discarding = !(request instanceof LastHttpContent);
+        ReferenceCountUtil.release(request);
+
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status);
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        HttpUtil.setKeepAlive(response, keepAlive);
+        if (keepAlive) {
+            ctx.writeAndFlush(response);
+        } else {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    /**
+     * 按顺序重放等待期间到达的消息（其中可能又有需要异步过滤的请求）
+     */
+    private void replayPending(ChannelHandlerContext ctx) {
+        Object msg;
+        while (!waiting && (msg = pending.poll()) != null) {
+            if (msg instanceof PendingRequest) {
+                PendingRequest pendingRequest = (PendingRequest) msg;
+                ctx.channel().attr(Route.KEY).set(pendingRequest.route);
+                filterRequest(ctx, pendingRequest.request, pendingRequest.route);
+            } else {
+                channelRead(ctx, msg);
+            }
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    /**
+     * 响应头写出前执行对应请求的响应过滤器（1xx 信息性响应不对应请求结束，不执行）
+     */
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof HttpResponse
+                && ((HttpResponse) msg).status().codeClass() != HttpStatusClass.INFORMATIONAL) {
+            HttpFilterChain chain = responseChains.poll();
+            if (chain != null) {
+                chain.filterResponse((HttpResponse) msg, ctx);
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        Object msg;
+        while ((msg = pending.poll()) != null) {
+            ReferenceCountUtil.release(msg instanceof PendingRequest ? ((PendingRequest) msg).request : msg);
+        }
+    }
+
+    /**
+     * 异步过滤期间到达的请求头，以及它匹配到的路由
+     */
+    private static final class PendingRequest {
+        private final HttpRequest request;
+
+        private final Route route;
+
+        private PendingRequest(HttpRequest request, Route route) {
+            this.request = request;
+            this.route = route;
+        }
+    }
+}
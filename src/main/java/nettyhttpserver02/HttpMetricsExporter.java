@@ -0,0 +1,230 @@
+package nettyhttpserver02;
+
+import accesslog01.AccessLog;
+import cache01.HttpResponseCache;
+import cache01.RequestCoalescer;
+import compress01.AdaptiveContentCompressor;
+import compress01.CompressedVariantCache;
+import metrics01.HistogramSnapshot;
+import metrics01.RouteMetrics;
+import router01.CircuitBreaker;
+import router01.Endpoint;
+import router01.Route;
+import router01.RouteTables;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 以 Prometheus 文本格式（0.0.4）导出网关指标
+ *  - 路由：请求数（按状态码）、在途请求数、对冲/重试/重试预算用尽/超时次数、耗时和请求/响应体大小的分位数（summary）
+ *  - 后端节点：请求数（成功/失败）、在途请求数、耗时分位数、耗时 EWMA、熔断器状态
+ *  - 响应缓存、请求合并、响应压缩、访问日志的统计
+ * 直方图在这里才合并各线程的分片，导出的频率（抓取间隔）远低于记录的频率
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class HttpMetricsExporter {
+    /**
+     * 导出的分位数
+     */
+    private static final double[] QUANTILES = {50, 90, 99, 99.9};
+
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    /**
+     * 微秒 -> 秒
+     */
+    private static final double MICROS_PER_SECOND = 1e6;
+
+    private HttpMetricsExporter() {
+    }
+
+    /**
+     * 生成当前所有指标的文本
+     * @return Prometheus 文本格式
+     */
+    static String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        writeRoutes(out);
+        writeEndpoints(out);
+        writeCache(out);
+        return out.toString();
+    }
+
+    private static void writeRoutes(StringBuilder out) {
+        type(out, "gateway_requests_total", "counter");
+        for (RouteMetrics metrics : RouteMetrics.all()) {
+            for (int code = 100; code < metrics.getStatusLimit(); code++) {
+                long count = metrics.getStatusCount(code);
+                if (count > 0) {
+                    out.append("gateway_requests_total{route=\"").append(escape(metrics.getRoute()))
+                            .append("\",code=\"").append(code).append("\"} ").append(count).append('\n');
+                }
+            }
+        }
+        type(out, "gateway_requests_in_flight", "gauge");
+        for (RouteMetrics metrics : RouteMetrics.all()) {
+            sample(out, "gateway_requests_in_flight", "route", metrics.getRoute(), metrics.getInFlight().sum());
+        }
+        counter(out, "gateway_hedged_requests_total", RouteMetrics::getHedges);
+        counter(out, "gateway_retries_total", RouteMetrics::getRetries);
+        counter(out, "gateway_retry_budget_exhausted_total", RouteMetrics::getRetryBudgetExhausted);
+        counter(out, "gateway_timeouts_total", RouteMetrics::getTimeouts);
+        type(out, "gateway_request_duration_seconds", "summary");
+        for (RouteMetrics metrics : RouteMetrics.all()) {
+            summary(out, "gateway_request_duration_seconds", "route", metrics.getRoute(),
+                    metrics.getLatency().snapshot(), MICROS_PER_SECOND);
+        }
+        type(out, "gateway_request_size_bytes", "summary");
+        for (RouteMetrics metrics : RouteMetrics.all()) {
+            summary(out, "gateway_request_size_bytes", "route", metrics.getRoute(),
+                    metrics.getRequestBytes().snapshot(), 1);
+        }
+        type(out, "gateway_response_size_bytes", "summary");
+        for (RouteMetrics metrics : RouteMetrics.all()) {
+            summary(out, "gateway_response_size_bytes", "route", metrics.getRoute(),
+                    metrics.getResponseBytes().snapshot(), 1);
+        }
+    }
+
+    private static void writeEndpoints(StringBuilder out) {
+        type(out, "gateway_backend_requests_total", "counter");
+        forEachEndpoint((route, endpoint) -> {
+            String labels = endpointLabels(route, endpoint);
+            out.append("gateway_backend_requests_total{").append(labels).append(",result=\"success\"} ")
+                    .append(endpoint.getSuccesses().sum()).append('\n');
+            out.append("gateway_backend_requests_total{").append(labels).append(",result=\"failure\"} ")
+                    .append(endpoint.getFailures().sum()).append('\n');
+        });
+        type(out, "gateway_backend_requests_in_flight", "gauge");
+        forEachEndpoint((route, endpoint) -> out.append("gateway_backend_requests_in_flight{")
+                .append(endpointLabels(route, endpoint)).append("} ")
+                .append(endpoint.getOutstandingRequests()).append('\n'));
+        type(out, "gateway_backend_ewma_seconds", "gauge");
+        forEachEndpoint((route, endpoint) -> out.append("gateway_backend_ewma_seconds{")
+                .append(endpointLabels(route, endpoint)).append("} ")
+                .append(endpoint.getEwmaNanos() / 1e9).append('\n'));
+        type(out, "gateway_backend_circuit_state", "gauge");
+        forEachEndpoint((route, endpoint) -> {
+            CircuitBreaker breaker = endpoint.getBreaker();
+            if (breaker != null) {
+                for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                    out.append("gateway_backend_circuit_state{").append(endpointLabels(route, endpoint))
+                            .append(",state=\"").append(state).append("\"} ")
+                            .append(breaker.getState() == state ? 1 : 0).append('\n');
+                }
+            }
+        });
+        type(out, "gateway_backend_duration_seconds", "summary");
+        forEachEndpoint((route, endpoint) -> summary(out, "gateway_backend_duration_seconds",
+                endpointLabels(route, endpoint), endpoint.getLatency().snapshot(), MICROS_PER_SECOND));
+    }
+
+    private static void writeCache(StringBuilder out) {
+        HttpResponseCache cache = HttpResponseCache.INSTANCE;
+        if (cache.isEnabled()) {
+            type(out, "gateway_cache_hits_total", "counter");
+            out.append("gateway_cache_hits_total ").append(cache.hitCount()).append('\n');
+            type(out, "gateway_cache_misses_total", "counter");
+            out.append("gateway_cache_misses_total ").append(cache.missCount()).append('\n');
+            type(out, "gateway_cache_evictions_total", "counter");
+            out.append("gateway_cache_evictions_total ").append(cache.evictionCount()).append('\n');
+            type(out, "gateway_cache_entries", "gauge");
+            out.append("gateway_cache_entries ").append(cache.size()).append('\n');
+            type(out, "gateway_cache_bytes", "gauge");
+            out.append("gateway_cache_bytes ").append(cache.weightedSize()).append('\n');
+        }
+        type(out, "gateway_coalesce_in_flight", "gauge");
+        out.append("gateway_coalesce_in_flight ").append(RequestCoalescer.INSTANCE.inFlight()).append('\n');
+
+        type(out, "gateway_compress_responses_total", "counter");
+        out.append("gateway_compress_responses_total{result=\"compressed\"} ")
+                .append(AdaptiveContentCompressor.compressedCount()).append('\n');
+        out.append("gateway_compress_responses_total{result=\"skipped\"} ")
+                .append(AdaptiveContentCompressor.skippedCount()).append('\n');
+        CompressedVariantCache variants = CompressedVariantCache.INSTANCE;
+        if (variants.isEnabled()) {
+            type(out, "gateway_compress_cache_hits_total", "counter");
+            out.append("gateway_compress_cache_hits_total ").append(variants.hitCount()).append('\n');
+            type(out, "gateway_compress_cache_misses_total", "counter");
+            out.append("gateway_compress_cache_misses_total ").append(variants.missCount()).append('\n');
+            type(out, "gateway_compress_cache_evictions_total", "counter");
+            out.append("gateway_compress_cache_evictions_total ").append(variants.evictionCount()).append('\n');
+            type(out, "gateway_compress_cache_bytes", "gauge");
+            out.append("gateway_compress_cache_bytes ").append(variants.weightedSize()).append('\n');
+        }
+        if (AccessLog.INSTANCE != null) {
+            type(out, "gateway_access_log_dropped_total", "counter");
+            out.append("gateway_access_log_dropped_total ").append(AccessLog.INSTANCE.getDropped()).append('\n');
+        }
+    }
+
+    /**
+     * 写出每个路由的一个计数器
+     */
+    private static void counter(StringBuilder out, String name, Function<RouteMetrics, LongAdder> counter) {
+        type(out, name, "counter");
+        for (RouteMetrics metrics : RouteMetrics.all()) {
+            sample(out, name, "route", metrics.getRoute(), counter.apply(metrics).sum());
+        }
+    }
+
+    private interface EndpointVisitor {
+        void visit(Route route, Endpoint endpoint);
+    }
+
+    private static void forEachEndpoint(EndpointVisitor visitor) {
+        for (Route route : RouteTables.current().routes()) {
+            if (!route.isLocal()) {
+                for (Endpoint endpoint : route.getRouter().endpoints()) {
+                    visitor.visit(route, endpoint);
+                }
+            }
+        }
+    }
+
+    private static String endpointLabels(Route route, Endpoint endpoint) {
+        return "route=\"" + escape(route.getName()) + "\",endpoint=\"" + escape(endpoint.getAddress()) + "\"";
+    }
+
+    private static void type(StringBuilder out, String name, String type) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, long sample) {
+        out.append(name).append('{').append(label).append("=\"").append(escape(value)).append("\"} ")
+                .append(sample).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String label, String value,
+                                HistogramSnapshot snapshot, double divisor) {
+        summary(out, name, label + "=\"" + escape(value) + "\"", snapshot, divisor);
+    }
+
+    /**
+     * 写出一个 summary：各分位数、_sum、_count
+     * @param divisor 直方图记录的值换算成导出单位时除以的数（微秒 -> 秒为 1e6，字节为 1）
+     */
+    private static void summary(StringBuilder out, String name, String labels,
+                                HistogramSnapshot snapshot, double divisor) {
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ");
+            value(out, snapshot.percentile(QUANTILES[i]), divisor).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ");
+        value(out, snapshot.getSum(), divisor).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(snapshot.getCount()).append('\n');
+    }
+
+    private static StringBuilder value(StringBuilder out, long value, double divisor) {
+        return divisor == 1 ? out.append(value) : out.append(value / divisor);
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,174 @@
+package nettyhttpserver02;
+
+import accesslog01.AccessLog;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import metrics01.RouteMetrics;
+import router01.Route;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * 用户侧请求指标处理器（位于 HttpResponseEncoder 与 HttpProxyContentCompressor 之间）
+ *  - 入站：请求头到达时记下开始时间、路由、方法和 uri，累计请求体大小
+ *  - 出站：写出最后一段响应时把耗时、状态码、请求/响应体大小记入路由指标（RouteMetrics），响应体大小为压缩后的大小；
+ *    开启了访问日志时同时写一条记录（参见 AccessLog，只写入缓冲区，不格式化）
+ *  - 记录按请求顺序出队，依赖前面的 HttpRequestSequencer：同一连接上同时只有一个请求在等待响应，
+ *    响应一定按请求顺序写出，出队的记录总是对应正在写出的响应（缓存命中、合并请求先完成也不会错位）
+ *  - 未完成的请求保存在定长数组做的环形队列中，处理请求时不分配对象
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HttpMetricsHandler extends ChannelDuplexHandler {
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * 未完成请求的环形队列（容量为 2 的幂），head 为最早的请求
+     */
+    private long[] starts = new long[INITIAL_CAPACITY];
+
+    private long[] requestSizes = new long[INITIAL_CAPACITY];
+
+    private RouteMetrics[] routes = new RouteMetrics[INITIAL_CAPACITY];
+
+    private String[] methods = new String[INITIAL_CAPACITY];
+
+    private String[] uris = new String[INITIAL_CAPACITY];
+
+    private int head;
+
+    private int size;
+
+    /**
+     * 最早的请求已经写出的响应状态码和响应体大小（还没写出响应头时状态码为 0）
+     */
+    private int status;
+
+    private long responseSize;
+
+    /**
+     * 客户端地址（访问日志使用，第一个请求到达时解析）
+     */
+    private byte[] remoteAddress;
+
+    private int remotePort;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest) {
+            Route route = ctx.channel().attr(Route.KEY).get();
+            RouteMetrics metrics = RouteMetrics.of(route == null ? RouteMetrics.UNMATCHED : route.getName());
+            metrics.onRequestStart();
+            HttpRequest request = (HttpRequest) msg;
+            push(metrics, request.method().name(), request.uri());
+            if (remoteAddress == null && AccessLog.INSTANCE != null) {
+                resolveRemoteAddress(ctx.channel().remoteAddress());
+            }
+        }
+        if (msg instanceof HttpContent && size > 0) {
+            requestSizes[(head + size - 1) & (starts.length - 1)] += ((HttpContent) msg).content().readableBytes();
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (size > 0) {
+            if (msg instanceof HttpResponse) {
+                HttpResponseStatus s = ((HttpResponse) msg).status();
+                // 100-continue 等中间响应不结束请求
+                if (s.codeClass() != HttpStatusClass.INFORMATIONAL
+                        || s.code() == HttpResponseStatus.SWITCHING_PROTOCOLS.code()) {
+                    status = s.code();
+                }
+            }
+            if (msg instanceof HttpContent && status != 0) {
+                responseSize += ((HttpContent) msg).content().readableBytes();
+                if (msg instanceof LastHttpContent) {
+                    pop(status);
+                }
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // 连接在响应前关闭：只减少在途请求数，不计入耗时和状态码（访问日志中状态码记为 0）
+        while (size > 0) {
+            pop(0);
+        }
+        ctx.fireChannelInactive();
+    }
+
+    private void push(RouteMetrics metrics, String method, String uri) {
+        if (size == starts.length) {
+            grow();
+        }
+        int i = (head + size) & (starts.length - 1);
+        starts[i] = System.nanoTime();
+        requestSizes[i] = 0;
+        routes[i] = metrics;
+        methods[i] = method;
+        uris[i] = uri;
+        size++;
+    }
+
+    private void pop(int code) {
+        int i = head;
+        long elapsed = System.nanoTime() - starts[i];
+        routes[i].onRequestEnd(code, elapsed, requestSizes[i], responseSize);
+        AccessLog log = AccessLog.INSTANCE;
+        if (log != null) {
+            log.log(elapsed, code, methods[i], uris[i], routes[i].getRoute(),
+                    remoteAddress, remotePort, requestSizes[i], responseSize);
+        }
+        routes[i] = null;
+        methods[i] = null;
+        uris[i] = null;
+        head = (head + 1) & (starts.length - 1);
+        size--;
+        status = 0;
+        responseSize = 0;
+    }
+
+    private void grow() {
+        int n = starts.length;
+        long[] newStarts = new long[n << 1];
+        long[] newSizes = new long[n << 1];
+        RouteMetrics[] newRoutes = new RouteMetrics[n << 1];
+        String[] newMethods = new String[n << 1];
+        String[] newUris = new String[n << 1];
+        for (int k = 0; k < size; k++) {
+            int i = (head + k) & (n - 1);
+            newStarts[k] = starts[i];
+            newSizes[k] = requestSizes[i];
+            newRoutes[k] = routes[i];
+            newMethods[k] = methods[i];
+            newUris[k] = uris[i];
+        }
+        starts = newStarts;
+        requestSizes = newSizes;
+        routes = newRoutes;
+        methods = newMethods;
+        uris = newUris;
+        head = 0;
+    }
+
+    private void resolveRemoteAddress(SocketAddress address) {
+        if (address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null) {
+            remoteAddress = ((InetSocketAddress) address).getAddress().getAddress();
+            remotePort = ((InetSocketAddress) address).getPort();
+        } else {
+            remoteAddress = new byte[0];
+        }
+    }
+}
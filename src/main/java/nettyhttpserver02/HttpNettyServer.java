@@ -2,14 +2,20 @@ package nettyhttpserver02;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import nettyhttpclient02.HttpClients;
 import router01.ApiTagEnum;
+import router01.Endpoint;
+import router01.Route;
+import router01.RouteTables;
+import transport01.Transports;
 
 import java.net.URI;
+import java.util.List;
 
 /**
  * 一个 HTTP 服务器
@@ -26,13 +32,36 @@ public class HttpNettyServer {
      */
     static final int PORT = 8800;
 
+    /**
+     * 是否使用流式转发模式（-Dgateway.streaming=true），请求和响应都不聚合，按 HttpContent 逐段转发
+     */
+    static final boolean STREAMING = Boolean.getBoolean("gateway.streaming");
+
+    /**
+     * 用户侧连接写缓冲区的低水位 / 高水位（字节），流式转发时据此对后端连接做反压
+     */
+    static final int WRITE_BUFFER_LOW_WATER_MARK = Integer.getInteger("gateway.server.writeBufferLowWaterMark", 32 * 1024);
+    static final int WRITE_BUFFER_HIGH_WATER_MARK = Integer.getInteger("gateway.server.writeBufferHighWaterMark", 64 * 1024);
+
     /**
      * HTTP 服务启动器
      */
     public static void main(String[] args) throws Exception {
-        // 定义接收请求以及处理请求的 Reactor 线程池：bossGroup 和 workerGroup
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        // 定义接收请求以及处理请求的 Reactor 线程池：bossGroup 和 workerGroup（Linux 上使用 epoll，参见 Transports）
+        // SO_REUSEPORT 多监听时每个 worker 线程各有一个监听 Channel，不再需要单独的 boss 线程
+        EventLoopGroup workerGroup = Transports.newEventLoopGroup(0);
+        EventLoopGroup bossGroup = Transports.isReusePort() ? workerGroup : Transports.newEventLoopGroup(1);
+
+        // 提前创建路由表中所有后端节点的客户端（首次创建时预热连接池），重新加载后新增的节点在首次使用时创建，
+        // 不再使用的节点的客户端在在途请求结束后关闭
+        RouteTables.addReloadListener(HttpClients::retain);
+        for (Route route : RouteTables.current().routes()) {
+            if (!route.isLocal()) {
+                for (Endpoint endpoint : route.getRouter().endpoints()) {
+                    HttpClients.get(endpoint);
+                }
+            }
+        }
 
         try {
             // 构造 ServerBootstrap 实例，ServerBootstrap 是 Netty 服务端的启动辅助类
@@ -40,25 +69,36 @@ public class HttpNettyServer {
 
             /*
                1. 绑定接收请求的处理器和处理请求的处理器
-               2. 绑定服务器Channel，因为 Netty Server 需要创建 NioServerSocketChannel 对象
-               3. 绑定日志打印处理器（打印的日志级别大于等于INFO）
-               4. 绑定子处理器（自定义的 Netty Server 初始化类）
+               2. 绑定服务器Channel（NioServerSocketChannel 或 EpollServerSocketChannel）
+               3. 绑定日志打印处理器（DEBUG 级别：默认不打印，避免每个新连接都同步写日志；请求日志见 gateway.accessLog）
+               4. 设置用户侧连接的写缓冲区水位（流式转发的反压依据）
+               5. 绑定子处理器（自定义的 Netty Server 初始化类）
              */
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .handler(new LoggingHandler(LogLevel.INFO))
-                    .childHandler(new HttpNettyServerInitializer());
+                    .channel(Transports.serverChannelClass())
+                    .handler(new LoggingHandler(LogLevel.DEBUG))
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                            new WriteBufferWaterMark(WRITE_BUFFER_LOW_WATER_MARK, WRITE_BUFFER_HIGH_WATER_MARK))
+                    .childHandler(new HttpNettyServerInitializer(STREAMING));
+            Transports.configureServer(b);
 
             /*
                绑定监听端口并启动服务端，将 NioServerSocketChannel 注册到 Selector 上
                Selector 轮询，由 EventLoop 负责调度和执行 Selector 轮询操作
              */
             URI uri = new URI(ApiTagEnum.DEFAULT.getApiAddress());
-            Channel ch = b.bind(uri.getPort()).sync().channel();
+            List<Channel> channels = Transports.bind(b, uri.getPort());
+
+            // 管理端口（/metrics）
+            HttpAdminServer.start(bossGroup, workerGroup);
 
-            System.err.println("## Netty HTTP 服务端已启动，地址: " + uri);
-            ch.closeFuture().sync();
+            System.err.println("## Netty HTTP 服务端已启动，地址: " + uri + "，监听 Channel 数: " + channels.size());
+            for (Channel ch : channels) {
+                ch.closeFuture().sync();
+            }
         } finally {
+            // 先关闭后端连接池（事件循环亲和模式下连接池运行在 workerGroup 上）
+            HttpClients.closeAll();
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
         }
@@ -1,11 +1,19 @@
 package nettyhttpserver02;
 
-import filter01.ProxyBizFilter;
+import cache01.HttpResponseCache;
+import cache01.RequestCoalescer;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.*;
-import nettyhttpclient02.HttpClient;
-import router01.ApiTagEnum;
+import io.netty.util.ReferenceCountUtil;
+import nettyhttpclient02.HttpClientCallback;
+import nettyhttpclient02.HttpClientStream;
+import nettyhttpclient02.HttpProxyExchange;
+import nettyhttpclient02.HttpClients;
+import router01.Endpoint;
+import router01.Route;
+
+import java.util.function.UnaryOperator;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.*;
 import static io.netty.handler.codec.http.HttpHeaderValues.KEEP_ALIVE;
@@ -23,22 +31,9 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 public class HttpNettyServerHandler extends SimpleChannelInboundHandler<Object> {
 
     /**
-     * 连接后端服务 test01Api 的 HTTP 客户端（Netty编写的）
-     */
-    private HttpClient test01ApiHttpClient;
-
-    /**
-     * 代理业务过滤器
-     */
-    private ProxyBizFilter proxyBizFilter;
-
-    /**
-     * Netty HTTP 服务端处理器构造函数
+     * 流式转发模式下，当前正在转发的请求（同一用户连接上同时只有一个）
      */
-    HttpNettyServerHandler() {
-        this.test01ApiHttpClient = new HttpClient(8801, "127.0.0.1");
-        this.proxyBizFilter = new ProxyBizFilter();
-    }
+    private HttpClientStream stream;
 
     /**
      * 结束通道的读取任务后调用
@@ -47,6 +42,9 @@ public class HttpNettyServerHandler extends SimpleChannelInboundHandler<Object>
      */
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) {
+        if (stream != null) {
+            stream.flush();
+        }
         ctx.flush();
     }
 
@@ -59,6 +57,7 @@ public class HttpNettyServerHandler extends SimpleChannelInboundHandler<Object>
      * 一个完整的 HTTP 请求将被分为两个部分：
      *  - HttpRequest：请求信息
      *  - HttpContent：请求体
+     * 聚合模式下两者合并为一个 FullHttpRequest；流式模式或透传路由下分开到达，请求体逐段转发给后端
      * @param ctx 通道处理器上下文
      * @param msg 请求体
      */
@@ -67,23 +66,102 @@ public class HttpNettyServerHandler extends SimpleChannelInboundHandler<Object>
         if (msg instanceof FullHttpRequest) {
             FullHttpRequest request = (FullHttpRequest) msg;
 
-            System.err.println("## Netty 服务端接收到来自用户的请求:" + request.uri());
-
-            // 过滤器过滤请求 TODO: 可以按需定义过滤器用途
-            if (!proxyBizFilter.filter(request, ctx)) {
-                this.writeFailResponse(ctx);
+            // 请求已经通过前面 HttpFilterHandler 中的过滤器
+            // 转发给路由选中的后端节点（每个节点对应一个 Netty 编写的 HTTP 客户端，进程内共享连接池）
+            Route route = ctx.channel().attr(Route.KEY).get();
+            if (route != null && !route.isLocal()) {
+                UnaryOperator<HttpClientCallback> decorator = UnaryOperator.identity();
+                if (HttpResponseCache.INSTANCE.appliesTo(route, request)) {
+                    // 命中缓存时已直接响应用户
+                    decorator = HttpResponseCache.INSTANCE.lookup(ctx, request);
+                    if (decorator == null) {
+                        return;
+                    }
+                }
+                if (RequestCoalescer.INSTANCE.appliesTo(route, request)) {
+                    // 已有相同的请求在等待后端响应时，共用它的响应
+                    UnaryOperator<HttpClientCallback> coalescing = RequestCoalescer.INSTANCE.join(ctx, request);
+                    if (coalescing == null) {
+                        return;
+                    }
+                    // 缓存在外层：重新验证得到的 304 先换成完整响应，再分发给等待的请求
+                    UnaryOperator<HttpClientCallback> caching = decorator;
+                    decorator = callback -> caching.apply(coalescing.apply(callback));
+                }
+                // 按路由策略转发（截止时间、对冲请求），节点由路由选择
+                HttpProxyExchange.start(ctx, request, route, decorator);
                 return;
             }
 
-            // TODO: 做路由相关的工作
-            if (request.uri().startsWith(ApiTagEnum.TEST01.getApiTag())) {
-                test01ApiHttpClient.proxyRequest(ctx, request);
+            // 直接响应
+            this.handlerTest(request, ctx);
+            request.release();
+            return;
+        }
+
+        if (msg instanceof HttpRequest) {
+            this.readStreamingRequest(ctx, (HttpRequest) msg);
+            return;
+        }
+
+        if (msg instanceof HttpContent) {
+            HttpContent content = (HttpContent) msg;
+            if (stream != null) {
+                stream.write(content);
                 return;
             }
+            // 当前请求已被直接响应（或转发已失败），剩余的请求体直接丢弃
+            content.release();
+            return;
+        }
 
-            // 直接响应
-            this.handlerTest(request, ctx);
+        ReferenceCountUtil.release(msg);
+    }
+
+    /**
+     * 流式模式（或透传路由）下读取到请求头：需要转发的请求开始一次流式转发（请求已经通过过滤器）
+     * @param ctx 通道处理器上下文
+     * @param request 请求头
+     */
+    private void readStreamingRequest(ChannelHandlerContext ctx, HttpRequest request) {
+        Route route = ctx.channel().attr(Route.KEY).get();
+        if (route != null && !route.isLocal()) {
+            Endpoint endpoint = route.getRouter().route();
+            stream = HttpClients.get(endpoint).newStream(ctx, endpoint, () -> {
+                // 转发结束，恢复读取用户侧连接的下一个请求
+                stream = null;
+                ctx.channel().config().setAutoRead(true);
+            });
+            stream.start(request, route.getPolicy().getTimeoutNanos());
+            return;
+        }
+
+        this.handlerTest(request, ctx);
+    }
+
+    /**
+     * 流式模式下用户侧连接可写状态变化，据此暂停/恢复读取后端连接
+     * @param ctx 通道处理器上下文
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (stream != null) {
+            stream.onServerWritabilityChanged();
         }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    /**
+     * 用户断开连接时，中止正在进行的流式转发
+     * @param ctx 通道处理器上下文
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        if (stream != null) {
+            stream.abort();
+            stream = null;
+        }
+        ctx.fireChannelInactive();
     }
 
     /**
@@ -95,7 +173,6 @@ public class HttpNettyServerHandler extends SimpleChannelInboundHandler<Object>
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         cause.printStackTrace();
         ctx.close();
-        this.test01ApiHttpClient.close();
     }
 
     /**
@@ -109,10 +186,10 @@ public class HttpNettyServerHandler extends SimpleChannelInboundHandler<Object>
 
     /**
      * 处理器测试方法
-     * @param fullHttpRequest 完整的 HTTP 请求
+     * @param fullHttpRequest HTTP 请求（只使用请求头）
      * @param ctx 通道处理器上下文
      */
-    private void handlerTest(FullHttpRequest fullHttpRequest, ChannelHandlerContext ctx) {
+    private void handlerTest(HttpRequest fullHttpRequest, ChannelHandlerContext ctx) {
         FullHttpResponse response = null;
         try {
             String value = "Hello, netty";
@@ -132,13 +209,4 @@ public class HttpNettyServerHandler extends SimpleChannelInboundHandler<Object>
             }
         }
     }
-
-    /**
-     * 写入失败的响应（过滤器过滤失败时调用）
-     * @param ctx 通道处理器上下文
-     */
-    private void writeFailResponse(ChannelHandlerContext ctx) {
-        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, NO_CONTENT);
-        ctx.writeAndFlush(response);
-    }
 }
@@ -1,10 +1,8 @@
 package nettyhttpserver02;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpContentCompressor;
-import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
 import io.netty.handler.ssl.SslContext;
@@ -16,11 +14,20 @@ import io.netty.handler.ssl.SslContext;
  * @author junyangwei
  * @date 2021-10-11
  */
-public class HttpNettyServerInitializer extends ChannelInitializer<SocketChannel> {
+public class HttpNettyServerInitializer extends ChannelInitializer<Channel> {
+    /**
+     * 是否使用流式转发模式（不聚合请求，参见 nettyhttpclient02.HttpClientStream）
+     */
+    private final boolean streaming;
+
+    HttpNettyServerInitializer(boolean streaming) {
+        this.streaming = streaming;
+    }
 
     /**
      * 重写初始化通道方法
      *  - SocketChannel 是客户端和服务端的通信通道，可从中读取报文，或向其写入报文
+     *    （参数类型声明为 Channel，基准测试中可以用 EmbeddedChannel 驱动同一条 pipeline）
      * 扩展：
      *  - Worker Group 作为 IO 线程，负责 IO 的读写就是通过 SocketChannel 的类对象
      *  - Boss Group 作为服务端 Acceptor 线程，用于 accept 客户端链接，并转发给 WorkerGroup 中的线程
@@ -28,25 +35,37 @@ public class HttpNettyServerInitializer extends ChannelInitializer<SocketChannel
      * @param ch 通信通道
      */
     @Override
-    public void initChannel(SocketChannel ch) {
+    public void initChannel(Channel ch) {
         ChannelPipeline p = ch.pipeline();
 
         // 对客户端发送过来的 HTTP 请求进行解码
         p.addLast(new HttpRequestDecoder());
 
-        // 如果想要自己处理 Http 分块形式发送的数据，就注释掉下面一行
-        p.addLast(new HttpObjectAggregator(1024 * 1024));
-
-        // 对发送(响应)给客户端的 HTTP 响应体进行编码
+        // 对发送(响应)给客户端的 HTTP 响应体进行编码（只处理出站消息，放在这里不影响入站的顺序）
         p.addLast(new HttpResponseEncoder());
 
-        // 如果不想自动压缩内容，就删除下面一行内容
-        p.addLast(new HttpContentCompressor());
+        // 流水线上的请求逐个处理，保证响应按请求顺序写出（之后的处理器都可以按请求顺序对应响应）
+        p.addLast(new HttpRequestSequencer());
+
+        // 每个请求匹配一次路由表，匹配结果交给后面的处理器使用
+        p.addLast(HttpRouteHandler.INSTANCE);
+
+        // 流式转发模式下自己处理 Http 分块形式发送的数据，不聚合请求；否则只聚合非透传路由的请求
+        if (!streaming) {
+            p.addLast(new HttpProxyObjectAggregator(1024 * 1024));
+        }
+
+        // 记录每个请求的耗时、状态码和请求/响应体大小（位于压缩之后，记录的是实际写出的响应体大小）
+        p.addLast(new HttpMetricsHandler());
+
+        // 如果不想自动压缩内容，就删除下面一行内容（小响应、已压缩的内容类型、透传的后端响应不会被压缩）
+        p.addLast(new HttpProxyContentCompressor());
+
+        // 按路由执行请求/响应过滤器
+        p.addLast(new HttpFilterHandler());
 
         // 添加自定义 Http Netty 服务端处理器
         p.addLast(new HttpNettyServerHandler());
-
-        System.err.println("## Netty HTTP 服务端初始化与客户端的通信通道成功.");
     }
 
 }
@@ -0,0 +1,34 @@
+package nettyhttpserver02;
+
+import compress01.AdaptiveContentCompressor;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import nettyhttpclient02.PassThroughHttpResponse;
+import router01.Route;
+
+/**
+ * 网关的响应压缩
+ *  - 跳过透传响应：透传的后端响应体原样转发，不重新压缩（后端已压缩的响应本来就带有 Content-Encoding，也不会被压缩）
+ *  - 压缩级别按路由配置（route.name.compressionLevel），其余规则见 AdaptiveContentCompressor
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HttpProxyContentCompressor extends AdaptiveContentCompressor {
+
+    @Override
+    protected int compressionLevel(ChannelHandlerContext ctx, HttpRequest request) {
+        // 请求经过 HttpRouteHandler 后才到达这里，通道属性中是当前请求匹配到的路由
+        Route route = ctx.channel().attr(Route.KEY).get();
+        int level = route == null ? -1 : route.getPolicy().getCompressionLevel();
+        return level < 0 ? super.compressionLevel(ctx, request) : level;
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse httpResponse, String acceptEncoding) throws Exception {
+        if (httpResponse instanceof PassThroughHttpResponse) {
+            return null;
+        }
+        return super.beginEncode(httpResponse, acceptEncoding);
+    }
+}
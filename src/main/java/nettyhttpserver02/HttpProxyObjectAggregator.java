@@ -0,0 +1,49 @@
+package nettyhttpserver02;
+
+import cache01.HttpResponseCache;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import router01.Route;
+
+/**
+ * 按路由决定是否聚合的 HttpObjectAggregator
+ *  - 透传路由（Route#passThrough）的请求不聚合，请求头和请求体原样交给后面的处理器逐段转发
+ *  - 例外：使用响应缓存的请求（HttpResponseCache#appliesTo）仍然聚合，缓存只在聚合模式下生效
+ *  - 其它请求仍聚合为 FullHttpRequest，供需要读取请求体的过滤器使用
+ *  - 路由由前面的 HttpRouteHandler 匹配，保存在通道属性 Route.KEY 上
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HttpProxyObjectAggregator extends HttpObjectAggregator {
+    /**
+     * 所在的用户侧连接（用于读取当前请求匹配到的路由）
+     */
+    private Channel channel;
+
+    public HttpProxyObjectAggregator(int maxContentLength) {
+        super(maxContentLength);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        channel = ctx.channel();
+        super.handlerAdded(ctx);
+    }
+
+    /**
+     * 透传路由的请求头不被接收，之后的请求体因为不在聚合过程中，也不会被接收
+     */
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            Route route = channel.attr(Route.KEY).get();
+            if (route != null && route.isPassThrough()
+                    && !HttpResponseCache.INSTANCE.appliesTo(route, (HttpRequest) msg)) {
+                return false;
+            }
+        }
+        return super.acceptInboundMessage(msg);
+    }
+}
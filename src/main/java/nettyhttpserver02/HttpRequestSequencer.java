@@ -0,0 +1,156 @@
+package nettyhttpserver02;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+
+/**
+ * 流水线请求排队处理器（每个用户连接一个实例，紧跟在 HttpRequestDecoder / HttpResponseEncoder 之后）
+ *  - HTTP/1.1 要求流水线上的响应按请求顺序写出，而转发、缓存命中、合并请求各自异步完成，先完成的可能先写出
+ *  - 因此同一连接上同时只处理一个请求：上一个请求的最后一段响应写出之前，之后到达的请求（以及它的请求体）在这里排队，
+ *    响应写完后再按顺序交给后面的处理器
+ *  - 之后的处理器（HttpMetricsHandler、HttpProxyContentCompressor、HttpFilterHandler）按请求顺序排队记录的状态
+ *    因此总是与响应一一对应
+ *  - 队列不为空时不再读取用户连接（拦截出站的 read），排队的数据最多是一次读取解码出来的内容
+ *  - 1xx 信息性响应（例如 100 Continue，101 除外）不结束请求
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class HttpRequestSequencer extends ChannelDuplexHandler {
+    /**
+     * 排队中的请求头和请求体（按到达顺序）
+     */
+    private final ArrayDeque<Object> queued = new ArrayDeque<>();
+
+    /**
+     * 已交给后面的处理器、最后一段响应还没写出的请求数（0 或 1）
+     */
+    private int inFlight;
+
+    /**
+     * 正在写出的是 1xx 信息性响应
+     */
+    private boolean informational;
+
+    /**
+     * 队列不为空期间是否拦截过读取（排空后补上一次读取）
+     */
+    private boolean readSuppressed;
+
+    /**
+     * 是否已经安排了排空队列的任务
+     */
+    private boolean drainScheduled;
+
+    private ChannelHandlerContext ctx;
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest) {
+            if (inFlight == 0 && queued.isEmpty()) {
+                inFlight++;
+                ctx.fireChannelRead(msg);
+            } else {
+                queued.add(msg);
+            }
+            return;
+        }
+        if (!queued.isEmpty()) {
+            // 排队中的请求的请求体
+            queued.add(msg);
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) {
+        if (!queued.isEmpty()) {
+            readSuppressed = true;
+            return;
+        }
+        ctx.read();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof HttpResponse) {
+            HttpResponseStatus status = ((HttpResponse) msg).status();
+            informational = status.codeClass() == HttpStatusClass.INFORMATIONAL
+                    && status.code() != HttpResponseStatus.SWITCHING_PROTOCOLS.code();
+        }
+        if (msg instanceof LastHttpContent) {
+            if (informational) {
+                informational = false;
+            } else if (inFlight > 0 && --inFlight == 0 && !queued.isEmpty() && !drainScheduled) {
+                // 不在 write 的调用栈中重入 channelRead，交给 EventLoop 稍后处理
+                drainScheduled = true;
+                ctx.executor().execute(this::drain);
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    /**
+     * 按顺序把排队的请求交给后面的处理器，直到又有一个请求在等待响应
+     */
+    private void drain() {
+        drainScheduled = false;
+        if (!ctx.channel().isActive()) {
+            releaseQueued();
+            return;
+        }
+        boolean fired = false;
+        Object msg;
+        while ((msg = queued.peek()) != null && (inFlight == 0 || !(msg instanceof HttpRequest))) {
+            queued.poll();
+            if (msg instanceof HttpRequest) {
+                inFlight++;
+            }
+            ctx.fireChannelRead(msg);
+            fired = true;
+        }
+        if (fired) {
+            // 让后面的处理器像一次读取结束时一样刷新写出的内容
+            ctx.fireChannelReadComplete();
+        }
+        if (queued.isEmpty() && readSuppressed) {
+            // 关闭了自动读取时（例如流式转发在等待后端），由重新打开自动读取的一方恢复读取
+            readSuppressed = false;
+            if (ctx.channel().config().isAutoRead()) {
+                ctx.read();
+            }
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releaseQueued();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        releaseQueued();
+    }
+
+    private void releaseQueued() {
+        Object msg;
+        while ((msg = queued.poll()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+}
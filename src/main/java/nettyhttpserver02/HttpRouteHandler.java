@@ -0,0 +1,34 @@
+package nettyhttpserver02;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpRequest;
+import router01.Route;
+import router01.RouteTables;
+
+/**
+ * 路由匹配处理器（紧跟在 HttpRequestDecoder 之后）
+ *  - 每个请求只在请求头解码后匹配一次路由表，结果保存在通道属性 Route.KEY 上，
+ *    之后的聚合、过滤、转发都直接使用匹配结果，不再重复比较 uri
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@ChannelHandler.Sharable
+public class HttpRouteHandler extends ChannelInboundHandlerAdapter {
+    /**
+     * 无状态，所有连接共用一个实例
+     */
+    static final HttpRouteHandler INSTANCE = new HttpRouteHandler();
+
+    private HttpRouteHandler() {
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest) {
+            ctx.channel().attr(Route.KEY).set(RouteTables.match(((HttpRequest) msg).uri()));
+        }
+        ctx.fireChannelRead(msg);
+    }
+}
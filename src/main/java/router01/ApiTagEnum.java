@@ -4,6 +4,7 @@ import lombok.Getter;
 
 /**
  * 后端 API 标记枚举
+ *  - 没有指定路由配置文件时，由这里的标记生成默认路由表（参见 RouteTables）
  * @author junyangwei
  * @date 2021-10-10
  */
@@ -12,15 +13,15 @@ public enum ApiTagEnum {
     /**
      * 默认路径
      */
-    DEFAULT("/", "http://127.0.0.1:8800/"),
+    DEFAULT("/", false, "http://127.0.0.1:8800/"),
     /**
      * test01 后端服务 API
      */
-    TEST01("/test01api", "http://127.0.0.1:8801/"),
+    TEST01("/test01api", true, "http://127.0.0.1:8801/"),
     /**
      * test02 后端服务 API
      */
-    TEST02("/test02api", "http://127.0.0.1:8002/");
+    TEST02("/test02api", true, "http://127.0.0.1:8002/");
     // ...
 
     /**
@@ -28,12 +29,24 @@ public enum ApiTagEnum {
      */
     private String apiTag;
     /**
-     * 后端服务 host
+     * 后端服务 host（第一个后端节点的地址）
      */
     private String apiAddress;
+    /**
+     * 后端节点配置（多个后端节点之间负载均衡）
+     *  - 节点配置格式参见 Endpoint#parse，例如："http://127.0.0.1:8801/ weight=3"
+     */
+    private String[] endpoints;
+    /**
+     * 是否透传请求体/响应体（没有过滤器需要读取请求体时开启）
+     *  - 只解析并改写请求头/响应头，请求体和响应体的 ByteBuf 原样转发，不聚合、不复制、不重新压缩
+     */
+    private boolean passThrough;
 
-    ApiTagEnum(String apiTag, String apiAddress) {
+    ApiTagEnum(String apiTag, boolean passThrough, String... endpoints) {
         this.apiTag = apiTag;
-        this.apiAddress = apiAddress;
+        this.apiAddress = Endpoint.parse(endpoints[0]).getAddress();
+        this.endpoints = endpoints;
+        this.passThrough = passThrough;
     }
 }
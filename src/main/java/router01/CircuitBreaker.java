@@ -0,0 +1,351 @@
+package router01;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 后端节点的熔断器（被动的异常节点摘除）
+ *  - 关闭（CLOSED）：正常转发，在滑动窗口内统计请求数、失败数和慢请求数
+ *  - 打开（OPEN）：窗口内请求数达到 minimumRequests 且失败率或慢请求率超过阈值时打开，
+ *    期间不再转发给该节点（路由会跳过它，只剩它时直接响应 503），打开时长随连续打开次数线性增长
+ *  - 半开（HALF_OPEN）：打开时长结束后放行 halfOpenProbes 个探测请求，全部成功则关闭，任意一个失败、超时或成为慢请求
+ *    则重新打开；只有被取消的探测请求（用户断开、对冲中落后的一方）归还名额
+ *  - 每个阶段（关闭 / 打开 / 半开）是一个不可变的阶段对象，带有开始时间和自己的探测名额，状态转换时整体 CAS 替换，
+ *    只有替换成功的线程执行转换的副作用；请求按开始时间归属阶段，早于当前阶段开始的请求（例如打开之前发出、
+ *    半开期间才结束的请求）的结果不计入当前阶段
+ *  - 滑动窗口由 WINDOW_BUCKETS 个按秒划分的桶组成，全部为原子计数，不加锁；
+ *    桶轮换时与并发的计数存在竞争，统计是近似的
+ *  - 参数可以通过启动参数覆盖，例如：-Dgateway.breaker.failureRateThreshold=0.3
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class CircuitBreaker {
+    /**
+     * 启动参数前缀
+     */
+    private static final String PREFIX = "gateway.breaker.";
+
+    /**
+     * 是否开启熔断
+     */
+    private static final boolean ENABLED = !"false".equals(System.getProperty(PREFIX + "enabled"));
+
+    /**
+     * 滑动窗口的桶数（每个桶 1 秒）
+     */
+    private static final int WINDOW_BUCKETS = Integer.getInteger(PREFIX + "windowSeconds", 10);
+
+    private static final long BUCKET_NANOS = 1_000_000_000L;
+
+    /**
+     * 窗口内至少有多少个请求才判断是否打开
+     */
+    private static final int MINIMUM_REQUESTS = Integer.getInteger(PREFIX + "minimumRequests", 20);
+
+    /**
+     * 失败率阈值
+     */
+    private static final double FAILURE_RATE_THRESHOLD =
+            Double.parseDouble(System.getProperty(PREFIX + "failureRateThreshold", "0.5"));
+
+    /**
+     * 慢请求率阈值（大于 1 表示不按慢请求打开）
+     */
+    private static final double SLOW_RATE_THRESHOLD =
+            Double.parseDouble(System.getProperty(PREFIX + "slowRateThreshold", "0.8"));
+
+    /**
+     * 耗时超过多久算慢请求（纳秒）
+     */
+    private static final long SLOW_CALL_NANOS = Long.getLong(PREFIX + "slowCallMillis", 3000L) * 1_000_000L;
+
+    /**
+     * 第一次打开的时长（纳秒），连续打开时按次数线性增长
+     */
+    private static final long OPEN_NANOS = Long.getLong(PREFIX + "openMillis", 5000L) * 1_000_000L;
+
+    /**
+     * 打开时长最多是基础时长的多少倍
+     */
+    private static final int MAX_OPEN_MULTIPLIER = 10;
+
+    /**
+     * 半开状态放行的探测请求数
+     */
+    private static final int HALF_OPEN_PROBES = Integer.getInteger(PREFIX + "halfOpenProbes", 3);
+
+    /**
+     * 空桶的序号
+     */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int CLOSED = 0;
+
+    private static final int OPEN = 1;
+
+    private static final int HALF_OPEN = 2;
+
+    /**
+     * 当前阶段：每次状态转换都换成一个新的阶段对象（CAS 替换），阶段对象同时作为结果的纪元
+     */
+    private final AtomicReference<Phase> phase = new AtomicReference<>(new Phase(CLOSED, System.nanoTime(), 0, 0));
+
+    /**
+     * 每个桶对应的秒序号（nanoTime / BUCKET_NANOS），用于判断桶是否已过期
+     */
+    private final AtomicLongArray bucketEpochs = new AtomicLongArray(WINDOW_BUCKETS);
+
+    private final AtomicLongArray totals = new AtomicLongArray(WINDOW_BUCKETS);
+
+    private final AtomicLongArray failures = new AtomicLongArray(WINDOW_BUCKETS);
+
+    private final AtomicLongArray slowCalls = new AtomicLongArray(WINDOW_BUCKETS);
+
+    /**
+     * 第一次打开的时长（纳秒）
+     */
+    private final long openNanos;
+
+    public CircuitBreaker() {
+        this(OPEN_NANOS);
+    }
+
+    /**
+     * @param openNanos 第一次打开的时长（纳秒，包内可见，单元测试使用较短的时长）
+     */
+    CircuitBreaker(long openNanos) {
+        this.openNanos = openNanos;
+        resetWindow();
+    }
+
+    /**
+     * 当前是否可以向该节点转发（不占用半开的探测名额，供路由选择节点时使用）
+     * @return 是否可用
+     */
+    public boolean isAvailable() {
+        Phase p = phase.get();
+        switch (p.state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return System.nanoTime() - p.sinceNanos >= openDurationNanos(p.ejections);
+            default:
+                return p.probes.get() > 0;
+        }
+    }
+
+    /**
+     * 申请转发一个请求：关闭状态直接放行，打开时长结束后转为半开，半开状态占用一个探测名额
+     * @return 是否放行（放行的请求结束时必须调用 onResult 或 onCancelled）
+     */
+    public boolean tryAcquire() {
+        Phase p = phase.get();
+        if (p.state == CLOSED) {
+            return true;
+        }
+        if (p.state == OPEN) {
+            if (System.nanoTime() - p.sinceNanos < openDurationNanos(p.ejections)) {
+                return false;
+            }
+            // 探测名额随新阶段一起发布，并发的线程不会重置彼此的名额
+            if (phase.compareAndSet(p, new Phase(HALF_OPEN, System.nanoTime(), p.ejections, HALF_OPEN_PROBES))) {
+                System.err.println("#### 熔断器半开，放行 " + HALF_OPEN_PROBES + " 个探测请求");
+            }
+            p = phase.get();
+            if (p.state != HALF_OPEN) {
+                return p.state == CLOSED;
+            }
+        }
+        for (;;) {
+            int remaining = p.probes.get();
+            if (remaining <= 0) {
+                return false;
+            }
+            if (p.probes.compareAndSet(remaining, remaining - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 记录一个放行请求的结果
+     * @param success 是否成功
+     * @param startNanos 请求开始时间（纳秒），早于当前阶段开始的请求不计入
+     * @param elapsedNanos 耗时（纳秒）
+     */
+    public void onResult(boolean success, long startNanos, long elapsedNanos) {
+        Phase p = phase.get();
+        if (startNanos - p.sinceNanos < 0) {
+            // 上一个阶段放行的请求，结果不计入当前阶段
+            return;
+        }
+        if (p.state == HALF_OPEN) {
+            if (!success || elapsedNanos >= SLOW_CALL_NANOS) {
+                trip(p);
+            } else if (p.probeSuccesses.incrementAndGet() >= HALF_OPEN_PROBES) {
+                // 半开期间不统计窗口，先清空再发布关闭阶段
+                resetWindow();
+                if (phase.compareAndSet(p, new Phase(CLOSED, System.nanoTime(), 0, 0))) {
+                    System.err.println("#### 熔断器关闭，节点恢复");
+                }
+            }
+            return;
+        }
+        if (p.state != CLOSED) {
+            return;
+        }
+
+        long epoch = System.nanoTime() / BUCKET_NANOS;
+        int i = bucketFor(epoch);
+        totals.incrementAndGet(i);
+        if (!success) {
+            failures.incrementAndGet(i);
+        }
+        if (elapsedNanos >= SLOW_CALL_NANOS) {
+            slowCalls.incrementAndGet(i);
+        }
+        if (!success || elapsedNanos >= SLOW_CALL_NANOS) {
+            checkThresholds(p, epoch);
+        }
+    }
+
+    /**
+     * 放行的请求被取消（没有结果）：半开阶段的探测请求归还名额
+     *  - 只用于用户断开、对冲中落后的请求；超时不是取消，必须以 onResult(false, ...) 记录，半开阶段因此重新打开
+     * @param startNanos 请求开始时间（纳秒）
+     */
+    public void onCancelled(long startNanos) {
+        Phase p = phase.get();
+        if (p.state == HALF_OPEN && startNanos - p.sinceNanos >= 0) {
+            p.probes.incrementAndGet();
+        }
+    }
+
+    /**
+     * 当前状态
+     */
+    public State getState() {
+        return State.values()[phase.get().state];
+    }
+
+    /**
+     * 滑动窗口内的失败率
+     */
+    public double getFailureRate() {
+        long epoch = System.nanoTime() / BUCKET_NANOS;
+        long total = 0;
+        long failed = 0;
+        for (int i = 0; i < WINDOW_BUCKETS; i++) {
+            if (inWindow(bucketEpochs.get(i), epoch)) {
+                total += totals.get(i);
+                failed += failures.get(i);
+            }
+        }
+        return total == 0 ? 0 : (double) failed / total;
+    }
+
+    /**
+     * 失败或慢请求时检查窗口内的失败率和慢请求率
+     */
+    private void checkThresholds(Phase current, long epoch) {
+        long total = 0;
+        long failed = 0;
+        long slow = 0;
+        for (int i = 0; i < WINDOW_BUCKETS; i++) {
+            if (inWindow(bucketEpochs.get(i), epoch)) {
+                total += totals.get(i);
+                failed += failures.get(i);
+                slow += slowCalls.get(i);
+            }
+        }
+        if (total >= MINIMUM_REQUESTS
+                && ((double) failed / total >= FAILURE_RATE_THRESHOLD || (double) slow / total >= SLOW_RATE_THRESHOLD)) {
+            trip(current);
+        }
+    }
+
+    /**
+     * 打开熔断器（只有替换成功的线程记录打开次数）
+     * @param expected 当前阶段
+     */
+    private void trip(Phase expected) {
+        int ejections = Math.min(expected.ejections + 1, MAX_OPEN_MULTIPLIER);
+        if (phase.compareAndSet(expected, new Phase(OPEN, System.nanoTime(), ejections, 0))) {
+            System.err.println("####【ERROR】熔断器打开，暂停转发 " + openDurationNanos(ejections) / 1_000_000 + "ms");
+        }
+    }
+
+    private long openDurationNanos(int ejections) {
+        return openNanos * Math.max(1, ejections);
+    }
+
+    /**
+     * 取得秒序号对应的桶，桶已过期时清零（与并发计数的竞争会丢失少量计数）
+     */
+    private int bucketFor(long epoch) {
+        int i = (int) Math.floorMod(epoch, (long) WINDOW_BUCKETS);
+        long current = bucketEpochs.get(i);
+        if (current != epoch && bucketEpochs.compareAndSet(i, current, epoch)) {
+            totals.set(i, 0);
+            failures.set(i, 0);
+            slowCalls.set(i, 0);
+        }
+        return i;
+    }
+
+    private static boolean inWindow(long bucketEpoch, long epoch) {
+        return bucketEpoch != EMPTY && epoch - bucketEpoch < WINDOW_BUCKETS;
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < WINDOW_BUCKETS; i++) {
+            bucketEpochs.set(i, EMPTY);
+            totals.set(i, 0);
+            failures.set(i, 0);
+            slowCalls.set(i, 0);
+        }
+    }
+
+    /**
+     * 是否开启熔断（关闭时 Endpoint 不创建熔断器）
+     */
+    static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * 熔断器的一个阶段（不可变，探测计数只在半开阶段使用）
+     */
+    private static final class Phase {
+        private final int state;
+
+        /**
+         * 阶段开始时间（纳秒）
+         */
+        private final long sinceNanos;
+
+        /**
+         * 连续打开的次数（关闭后清零）
+         */
+        private final int ejections;
+
+        /**
+         * 半开阶段剩余的探测名额 / 已成功的探测数
+         */
+        private final AtomicInteger probes;
+
+        private final AtomicInteger probeSuccesses = new AtomicInteger();
+
+        private Phase(int state, long sinceNanos, int ejections, int probes) {
+            this.state = state;
+            this.sinceNanos = sinceNanos;
+            this.ejections = ejections;
+            this.probes = new AtomicInteger(probes);
+        }
+    }
+}
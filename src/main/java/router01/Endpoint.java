@@ -0,0 +1,203 @@
+package router01;
+
+import lombok.Getter;
+import metrics01.ShardedHistogram;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 后端服务节点（一个路由下可以有多个节点）
+ *  - 记录在途请求数和响应耗时的 EWMA（指数加权移动平均），供负载均衡策略使用
+ *  - 每个节点有自己的熔断器（CircuitBreaker）：失败率过高的节点暂时不再被路由选中，只剩它时直接响应 503
+ *  - 统计均为无锁更新，可以在任意 IO 线程上调用
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@Getter
+public class Endpoint {
+    /**
+     * EWMA 的平滑系数（新样本所占的权重）
+     */
+    private static final double EWMA_ALPHA = 0.3;
+
+    /**
+     * 请求失败时计入 EWMA 的耗时（纳秒），让失败的节点在一段时间内少被选中
+     */
+    private static final long FAILURE_PENALTY_NANOS = 1_000_000_000L;
+
+    /**
+     * 后端服务地址，例如：http://127.0.0.1:8801/
+     */
+    private final String address;
+
+    /**
+     * 后端服务 host
+     */
+    private final String host;
+
+    /**
+     * 后端服务端口
+     */
+    private final int port;
+
+    /**
+     * 权重（平滑加权轮询使用）
+     */
+    private final int weight;
+
+    /**
+     * 在途请求数
+     */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /**
+     * 响应耗时的 EWMA（纳秒，double 的二进制位），0 表示还没有样本
+     */
+    private final AtomicLong ewmaBits = new AtomicLong();
+
+    /**
+     * 响应耗时（微秒，按线程分片，导出指标时合并）
+     */
+    private final ShardedHistogram latency = new ShardedHistogram();
+
+    /**
+     * 成功 / 失败的请求数
+     */
+    private final LongAdder successes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * 熔断器（关闭熔断时为 null）
+     */
+    private final CircuitBreaker breaker = CircuitBreaker.isEnabled() ? new CircuitBreaker() : null;
+
+    public Endpoint(String address, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("endpoint weight must be positive: " + address);
+        }
+        URI uri = URI.create(address);
+        this.address = address;
+        this.host = uri.getHost();
+        this.port = uri.getPort();
+        this.weight = weight;
+    }
+
+    /**
+     * 解析节点配置，格式：地址[ weight=权重]，例如：http://127.0.0.1:8801/ weight=3
+     * @param spec 节点配置
+     * @return 后端服务节点
+     */
+    public static Endpoint parse(String spec) {
+        String[] parts = spec.trim().split("\\s+");
+        int weight = 1;
+        for (int i = 1; i < parts.length; i++) {
+            if (parts[i].startsWith("weight=")) {
+                weight = Integer.parseInt(parts[i].substring("weight=".length()));
+            }
+        }
+        return new Endpoint(parts[0], weight);
+    }
+
+    /**
+     * 节点当前是否可用（熔断器未打开，供路由选择节点时使用）
+     */
+    public boolean isAvailable() {
+        return breaker == null || breaker.isAvailable();
+    }
+
+    /**
+     * 申请向节点转发一个请求（熔断器打开时拒绝，半开时占用一个探测名额）
+     * @return 是否放行，放行后必须依次调用 onRequestStart 和 onRequestEnd
+     */
+    public boolean tryAcquire() {
+        return breaker == null || breaker.tryAcquire();
+    }
+
+    /**
+     * 从 start 开始依次查找第一个可用的节点（路由选中的节点被熔断时使用）
+     * @param endpoints 路由下的节点
+     * @param start 起始下标
+     * @return 可用的节点；全部被熔断时返回 start 处的节点（转发时会被拒绝并响应 503）
+     */
+    static Endpoint firstAvailable(Endpoint[] endpoints, int start) {
+        int n = endpoints.length;
+        for (int i = 0; i < n; i++) {
+            Endpoint candidate = endpoints[(start + i) % n];
+            if (candidate.isAvailable()) {
+                return candidate;
+            }
+        }
+        return endpoints[start];
+    }
+
+    /**
+     * 请求开始
+     * @return 开始时间（纳秒），请求结束时传给 onRequestEnd
+     */
+    public long onRequestStart() {
+        outstanding.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * 请求结束（收到完整响应或失败），更新在途请求数、耗时 EWMA、耗时直方图和熔断器
+     * @param startNanos onRequestStart 返回的开始时间
+     * @param success 是否成功（收到了非 5xx 的响应）
+     */
+    public void onRequestEnd(long startNanos, boolean success) {
+        outstanding.decrementAndGet();
+        long elapsed = System.nanoTime() - startNanos;
+        updateEwma(success ? elapsed : Math.max(elapsed, FAILURE_PENALTY_NANOS));
+        latency.record(elapsed / 1000);
+        (success ? successes : failures).increment();
+        if (breaker != null) {
+            breaker.onResult(success, startNanos, elapsed);
+        }
+    }
+
+    /**
+     * 请求被取消（用户断开、对冲请求中落后的一方），不是后端的问题：只减少在途请求数，不计入耗时、成功/失败和熔断器
+     *  - 截止时间到达（超时）不属于取消，使用 onRequestEnd(startNanos, false)，半开的探测请求超时会重新打开熔断器
+     * @param startNanos onRequestStart 返回的开始时间
+     */
+    public void onRequestCancelled(long startNanos) {
+        outstanding.decrementAndGet();
+        if (breaker != null) {
+            breaker.onCancelled(startNanos);
+        }
+    }
+
+    /**
+     * 当前的耗时 EWMA（纳秒），没有样本时为 0
+     */
+    public double getEwmaNanos() {
+        return Double.longBitsToDouble(ewmaBits.get());
+    }
+
+    /**
+     * 当前的在途请求数
+     */
+    public int getOutstandingRequests() {
+        return outstanding.get();
+    }
+
+    private void updateEwma(long sample) {
+        long prevBits;
+        long nextBits;
+        do {
+            prevBits = ewmaBits.get();
+            double prev = Double.longBitsToDouble(prevBits);
+            double next = prev == 0 ? sample : prev + EWMA_ALPHA * (sample - prev);
+            nextBits = Double.doubleToRawLongBits(next);
+        } while (!ewmaBits.compareAndSet(prevBits, nextBits));
+    }
+
+    @Override
+    public String toString() {
+        return address + " weight=" + weight;
+    }
+}
@@ -1,27 +1,37 @@
 package router01;
 
-import java.util.List;
-
 /**
+ * 后端节点路由（负载均衡策略）
+ *  - 每个路由（ApiTagEnum）持有一个路由器实例，实例内保存策略需要的状态
+ *  - route 方法在 IO 线程上调用，必须无锁、不分配对象
+ * 实现参见：LoadBalanceStrategy
  * @author junyangwei
  * @date 2021-10-09
  */
 public interface HttpEndpointRouter {
 
-    String route(List<String> endpoints);
+    /**
+     * 为一次请求选择一个后端节点
+     * @return 后端节点
+     */
+    Endpoint route();
+
+    /**
+     * 路由器管理的所有后端节点
+     * @return 后端节点（不要修改数组内容）
+     */
+    Endpoint[] endpoints();
 
     /**
-     * 获取 uri 对应的后端服务端口（其实还可以扩展到前端的应用）
+     * 获取 uri 对应的后端服务地址（其实还可以扩展到前端的应用）
      * @param uri 请求的 uri
-     * @return 端口字符串
+     * @return 后端服务地址，没有匹配的后端路由时返回网关自身的地址
      */
     static String getApiHost(String uri) {
-        if (uri.startsWith(ApiTagEnum.TEST01.getApiTag())) {
-            return ApiTagEnum.TEST01.getApiAddress();
-        } else if (uri.startsWith(ApiTagEnum.TEST02.getApiTag())) {
-            return ApiTagEnum.TEST02.getApiAddress();
-        } else {
+        Route route = RouteTables.match(uri);
+        if (route == null || route.isLocal()) {
             return ApiTagEnum.DEFAULT.getApiAddress();
         }
+        return route.getRouter().route().getAddress();
     }
 }
@@ -0,0 +1,43 @@
+package router01;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 最少在途请求
+ *  - 选择在途请求数最少的节点，从轮询的起点开始扫描，在途请求数相同时依次轮换，跳过被熔断的节点
+ *  - 扫描的是路由下固定的节点数组，节点数很少，不分配对象
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class LeastOutstandingRouter implements HttpEndpointRouter {
+    private final Endpoint[] endpoints;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    LeastOutstandingRouter(Endpoint[] endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    @Override
+    public Endpoint route() {
+        int n = endpoints.length;
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % n;
+        Endpoint best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < n && bestOutstanding > 0; i++) {
+            Endpoint candidate = endpoints[(start + i) % n];
+            int outstanding = candidate.getOutstandingRequests();
+            if (outstanding < bestOutstanding && candidate.isAvailable()) {
+                best = candidate;
+                bestOutstanding = outstanding;
+            }
+        }
+        // 全部被熔断时仍返回起点的节点，转发时会被拒绝
+        return best != null ? best : endpoints[start];
+    }
+
+    @Override
+    public Endpoint[] endpoints() {
+        return endpoints;
+    }
+}
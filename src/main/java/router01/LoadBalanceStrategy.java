@@ -0,0 +1,61 @@
+package router01;
+
+/**
+ * 负载均衡策略
+ *  - 默认策略可以通过启动参数覆盖，例如：-Dgateway.loadBalance=P2C_EWMA
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public enum LoadBalanceStrategy {
+    /**
+     * 轮询
+     */
+    ROUND_ROBIN {
+        @Override
+        public HttpEndpointRouter newRouter(Endpoint[] endpoints) {
+            return new RoundRobinRouter(endpoints);
+        }
+    },
+    /**
+     * 平滑加权轮询
+     */
+    SMOOTH_WEIGHTED_ROUND_ROBIN {
+        @Override
+        public HttpEndpointRouter newRouter(Endpoint[] endpoints) {
+            return new SmoothWeightedRoundRobinRouter(endpoints);
+        }
+    },
+    /**
+     * 最少在途请求
+     */
+    LEAST_OUTSTANDING {
+        @Override
+        public HttpEndpointRouter newRouter(Endpoint[] endpoints) {
+            return new LeastOutstandingRouter(endpoints);
+        }
+    },
+    /**
+     * 两次随机选择 + 耗时 EWMA
+     */
+    P2C_EWMA {
+        @Override
+        public HttpEndpointRouter newRouter(Endpoint[] endpoints) {
+            return new PowerOfTwoChoicesRouter(endpoints);
+        }
+    };
+
+    /**
+     * 创建该策略的路由器
+     * @param endpoints 后端节点（至少一个）
+     * @return 路由器
+     */
+    public abstract HttpEndpointRouter newRouter(Endpoint[] endpoints);
+
+    /**
+     * 启动参数指定的默认策略
+     * @return 默认负载均衡策略
+     */
+    public static LoadBalanceStrategy defaultStrategy() {
+        return valueOf(System.getProperty("gateway.loadBalance", ROUND_ROBIN.name()));
+    }
+}
@@ -0,0 +1,59 @@
+package router01;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 两次随机选择（Power of Two Choices）+ 耗时 EWMA
+ *  - 随机取两个不同的节点，选择负载更低的一个：负载 = 耗时 EWMA * (在途请求数 + 1)
+ *  - 还没有耗时样本的节点负载视为 0，会被优先选中，以便尽快获得样本；负载相同时选择在途请求较少的
+ *  - 每次选择只看两个节点，与节点数无关，且没有共享的计数器竞争
+ *  - 两个节点中被熔断的不参与比较，两个都被熔断时从其余节点中找一个可用的
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class PowerOfTwoChoicesRouter implements HttpEndpointRouter {
+    private final Endpoint[] endpoints;
+
+    PowerOfTwoChoicesRouter(Endpoint[] endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    @Override
+    public Endpoint route() {
+        int n = endpoints.length;
+        if (n == 1) {
+            return endpoints[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(n);
+        // 第二个节点从其余 n - 1 个节点中选，保证两次选择不同
+        int b = random.nextInt(n - 1);
+        if (b >= a) {
+            b++;
+        }
+        Endpoint first = endpoints[a];
+        Endpoint second = endpoints[b];
+        if (!first.isAvailable() || !second.isAvailable()) {
+            if (first.isAvailable()) {
+                return first;
+            }
+            return second.isAvailable() ? second : Endpoint.firstAvailable(endpoints, a);
+        }
+        double firstCost = cost(first);
+        double secondCost = cost(second);
+        if (firstCost == secondCost) {
+            // 负载相同（例如两个节点都还没有样本）时选择在途请求较少的
+            return first.getOutstandingRequests() <= second.getOutstandingRequests() ? first : second;
+        }
+        return firstCost < secondCost ? first : second;
+    }
+
+    @Override
+    public Endpoint[] endpoints() {
+        return endpoints;
+    }
+
+    private static double cost(Endpoint endpoint) {
+        return endpoint.getEwmaNanos() * (endpoint.getOutstandingRequests() + 1);
+    }
+}
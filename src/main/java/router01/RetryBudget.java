@@ -0,0 +1,100 @@
+package router01;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算（每条路由一个实例）
+ *  - 每个可重试的请求存入 ratio 个令牌（例如 0.1），每次重试取出 1 个，重试最多带来约 ratio 比例的额外负载
+ *  - 令牌最多积攒 maxBalance 个，后端长时间故障时预算很快耗尽，重试不会放大故障
+ *  - 另外每秒保底允许 minRetriesPerSecond 次重试（按 GCRA 计算，最多积攒 1 秒的量），流量很小的路由也能重试；
+ *    保底不随流量缩放，流量低于 minRetriesPerSecond / ratio 时重试的比例可以超过 ratio（仍受每个请求的重试次数限制）
+ *  - 令牌以千分之一为单位保存在 AtomicLong 中，存取都是 CAS，无锁、不分配对象
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public class RetryBudget {
+    /**
+     * 一个令牌对应的计数单位
+     */
+    private static final long UNIT = 1000;
+
+    /**
+     * 保底重试最多积攒的时间（纳秒）
+     */
+    private static final long MIN_BURST_NANOS = 1_000_000_000L;
+
+    /**
+     * 每个请求存入的令牌（千分之一个）
+     */
+    private final long depositPerRequest;
+
+    /**
+     * 最多积攒的令牌（千分之一个）
+     */
+    private final long maxBalance;
+
+    private final AtomicLong balance = new AtomicLong();
+
+    /**
+     * 保底重试的间隔（纳秒），0 表示没有保底
+     */
+    private final long minIntervalNanos;
+
+    /**
+     * 保底重试的理论到达时间（纳秒）
+     */
+    private final AtomicLong minTat = new AtomicLong(System.nanoTime() - MIN_BURST_NANOS);
+
+    RetryBudget(double ratio, int maxBalance, int minRetriesPerSecond) {
+        this.depositPerRequest = Math.max(0, Math.round(ratio * UNIT));
+        this.maxBalance = Math.max(1, maxBalance) * UNIT;
+        this.minIntervalNanos = minRetriesPerSecond > 0 ? 1_000_000_000L / minRetriesPerSecond : 0;
+    }
+
+    /**
+     * 一个可重试的请求开始，存入令牌
+     */
+    public void deposit() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(maxBalance, current + depositPerRequest)));
+    }
+
+    /**
+     * 申请一次重试
+     * @return 是否允许重试
+     */
+    public boolean tryWithdraw() {
+        long current;
+        while ((current = balance.get()) >= UNIT) {
+            if (balance.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+        return tryMinimum();
+    }
+
+    /**
+     * 每秒保底的重试次数（最多超前 1 秒，即积攒 minRetriesPerSecond 次）
+     */
+    private boolean tryMinimum() {
+        if (minIntervalNanos == 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        while (true) {
+            long tat = minTat.get();
+            long start = Math.max(tat, now - MIN_BURST_NANOS);
+            if (start + minIntervalNanos - now > 0) {
+                return false;
+            }
+            if (minTat.compareAndSet(tat, start + minIntervalNanos)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package router01;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 轮询
+ *  - 所有 IO 线程共用一个原子计数器，依次选择节点，跳过被熔断的节点
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class RoundRobinRouter implements HttpEndpointRouter {
+    private final Endpoint[] endpoints;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    RoundRobinRouter(Endpoint[] endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    @Override
+    public Endpoint route() {
+        // 计数器溢出后取非负值继续轮询
+        return Endpoint.firstAvailable(endpoints, (next.getAndIncrement() & Integer.MAX_VALUE) % endpoints.length);
+    }
+
+    @Override
+    public Endpoint[] endpoints() {
+        return endpoints;
+    }
+}
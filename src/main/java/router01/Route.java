@@ -0,0 +1,95 @@
+package router01;
+
+import io.netty.util.AttributeKey;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一条路由（路由表中的一项）
+ *  - 每个请求在解码后只匹配一次路由表，匹配结果通过通道属性 KEY 交给后续的过滤器和处理器
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@Getter
+public class Route {
+    /**
+     * 当前请求匹配到的路由（未匹配到时为 null）
+     *  - 用户侧连接上的请求按顺序处理，处理下一个请求时才会被覆盖，异步逻辑需要自行保存
+     */
+    public static final AttributeKey<Route> KEY = AttributeKey.valueOf("route");
+
+    /**
+     * 路由名称
+     */
+    private final String name;
+
+    /**
+     * 路径前缀（按 / 分段匹配），例如：/test01api
+     */
+    private final String path;
+
+    /**
+     * 是否只匹配路径本身（否则匹配路径及其所有子路径）
+     */
+    private final boolean exact;
+
+    /**
+     * 是否透传请求体/响应体（没有过滤器需要读取请求体时开启）
+     *  - 只解析并改写请求头/响应头，请求体和响应体的 ByteBuf 原样转发，不聚合、不复制、不重新压缩
+     */
+    private final boolean passThrough;
+
+    /**
+     * 后端节点路由（为 null 时由网关自身响应）
+     */
+    private final HttpEndpointRouter router;
+
+    /**
+     * 路由的其它配置（配置文件中 route.name. 之后的部分 -> 值），供过滤器等按路由读取
+     */
+    private final Map<String, String> attributes;
+
+    /**
+     * 转发策略（超时、对冲请求）
+     */
+    private final RoutePolicy policy;
+
+    public Route(String name, String path, boolean exact, boolean passThrough, HttpEndpointRouter router) {
+        this(name, path, exact, passThrough, router, Collections.emptyMap());
+    }
+
+    public Route(String name, String path, boolean exact, boolean passThrough, HttpEndpointRouter router,
+                 Map<String, String> attributes) {
+        this.name = name;
+        this.path = path;
+        this.exact = exact;
+        this.passThrough = passThrough;
+        this.router = router;
+        this.attributes = Collections.unmodifiableMap(new HashMap<>(attributes));
+        this.policy = new RoutePolicy(this.attributes);
+    }
+
+    /**
+     * 获取路由的配置项
+     * @param key 配置项名称，例如：filters
+     * @return 配置值，没有配置则返回 null
+     */
+    public String getAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    /**
+     * 是否由网关自身响应（没有后端节点）
+     */
+    public boolean isLocal() {
+        return router == null;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + path + (exact ? "" : "/**") + ")";
+    }
+}
@@ -0,0 +1,176 @@
+package router01;
+
+import lombok.Getter;
+import metrics01.RollingLatencyHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 路由的转发策略（超时、对冲请求、重试），由路由配置解析而来，每条路由一个实例
+ *  - route.name.timeoutMillis：转发的截止时间（毫秒），超时响应 504；0 表示不限，默认取 -Dgateway.timeoutMillis
+ *  - route.name.hedgePercentile：对冲请求的百分位（例如 95），请求耗时超过该路由最近的 p95 仍未响应时，
+ *    向另一个节点发送相同的请求，先到的响应返回给用户；0 表示不对冲，默认取 -Dgateway.hedge.percentile
+ *  - route.name.hedgeMinDelayMillis：对冲前至少等待的时间（毫秒），避免耗时普遍很短时大量对冲
+ *  - route.name.retries：幂等请求在连接失败（或响应 retryOn 中的状态码）时最多重试的次数，默认取 -Dgateway.retry.maxRetries
+ *    （默认 0：重试需要按路由显式开启，重复发送请求对后端不一定安全）
+ *  - route.name.retryOn：需要重试的响应状态码，逗号分隔，例如 502,503；默认只在连接失败时重试
+ *  - route.name.compressionLevel：响应的压缩级别（0-9，0 表示不压缩），默认取 -Dgateway.compress.level
+ *  - 只有幂等请求才会对冲或重试，对冲还要求路由下至少有两个节点；重试受重试预算（RetryBudget）限制
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+@Getter
+public class RoutePolicy {
+    /**
+     * 全局默认的截止时间（毫秒）
+     */
+    private static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("gateway.timeoutMillis", 30_000L);
+
+    /**
+     * 全局默认的对冲百分位
+     */
+    private static final double DEFAULT_HEDGE_PERCENTILE =
+            Double.parseDouble(System.getProperty("gateway.hedge.percentile", "0"));
+
+    /**
+     * 全局默认的对冲最小等待时间（毫秒）
+     */
+    private static final long DEFAULT_HEDGE_MIN_DELAY_MILLIS = Long.getLong("gateway.hedge.minDelayMillis", 5L);
+
+    /**
+     * 统计最近耗时的周期（毫秒）
+     */
+    private static final long LATENCY_PERIOD_MILLIS = 10_000L;
+
+    /**
+     * 全局默认的最大重试次数（默认不重试）
+     */
+    private static final int DEFAULT_MAX_RETRIES = Integer.getInteger("gateway.retry.maxRetries", 0);
+
+    /**
+     * 重试预算：每个请求存入的令牌比例
+     */
+    private static final double RETRY_BUDGET_RATIO =
+            Double.parseDouble(System.getProperty("gateway.retry.budgetRatio", "0.1"));
+
+    /**
+     * 重试预算：每秒保底的重试次数
+     *  - 保底不按流量缩放：每秒请求数低于 minPerSecond / budgetRatio（默认 100）的路由，重试可以超出 budgetRatio，
+     *    最多每个请求重试 retries 次；需要严格按比例限制时设为 0
+     */
+    private static final int RETRY_MIN_PER_SECOND = Integer.getInteger("gateway.retry.minPerSecond", 10);
+
+    /**
+     * 重试预算：最多积攒的令牌数
+     */
+    private static final int RETRY_MAX_BALANCE = 100;
+
+    /**
+     * 重试退避的基础时间（纳秒），第 n 次重试等待 base * 2^(n-1) 的 [50%, 100%] 之间的随机值
+     */
+    private static final long RETRY_BACKOFF_NANOS = Long.getLong("gateway.retry.backoffMillis", 25L) * 1_000_000L;
+
+    /**
+     * 截止时间（纳秒），0 表示不限
+     */
+    private final long timeoutNanos;
+
+    /**
+     * 对冲百分位，0 表示不对冲
+     */
+    private final double hedgePercentile;
+
+    /**
+     * 对冲前至少等待的时间（纳秒）
+     */
+    private final long hedgeMinDelayNanos;
+
+    /**
+     * 路由最近的响应耗时（只统计成功的响应）
+     */
+    private final RollingLatencyHistogram latency = new RollingLatencyHistogram(LATENCY_PERIOD_MILLIS);
+
+    /**
+     * 最大重试次数
+     */
+    private final int maxRetries;
+
+    /**
+     * 需要重试的响应状态码
+     */
+    private final int[] retryOn;
+
+    /**
+     * 响应的压缩级别，-1 表示使用全局默认
+     */
+    private final int compressionLevel;
+
+    /**
+     * 路由的重试预算
+     */
+    private final RetryBudget retryBudget = new RetryBudget(RETRY_BUDGET_RATIO, RETRY_MAX_BALANCE, RETRY_MIN_PER_SECOND);
+
+    RoutePolicy(Map<String, String> attributes) {
+        this.timeoutNanos = longAttribute(attributes, "timeoutMillis", DEFAULT_TIMEOUT_MILLIS) * 1_000_000L;
+        String percentile = attributes.get("hedgePercentile");
+        this.hedgePercentile = percentile == null ? DEFAULT_HEDGE_PERCENTILE : Double.parseDouble(percentile.trim());
+        this.hedgeMinDelayNanos = longAttribute(attributes, "hedgeMinDelayMillis",
+                DEFAULT_HEDGE_MIN_DELAY_MILLIS) * 1_000_000L;
+        this.maxRetries = (int) longAttribute(attributes, "retries", DEFAULT_MAX_RETRIES);
+        String statuses = attributes.get("retryOn");
+        if (statuses == null || statuses.trim().isEmpty()) {
+            this.retryOn = new int[0];
+        } else {
+            String[] parts = statuses.split(",");
+            this.retryOn = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                this.retryOn[i] = Integer.parseInt(parts[i].trim());
+            }
+        }
+        this.compressionLevel = (int) longAttribute(attributes, "compressionLevel", -1);
+        if (compressionLevel > 9) {
+            throw new IllegalArgumentException("compressionLevel: " + compressionLevel + " (expected: 0-9)");
+        }
+    }
+
+    /**
+     * 响应状态码是否需要重试
+     * @param status 响应状态码
+     */
+    public boolean isRetryable(int status) {
+        for (int code : retryOn) {
+            if (code == status) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 第 n 次重试前的等待时间（指数退避 + 随机抖动）
+     * @param retry 第几次重试（从 1 开始）
+     * @return 等待时间（纳秒）
+     */
+    public long retryBackoffNanos(int retry) {
+        long backoff = RETRY_BACKOFF_NANOS << Math.min(retry - 1, 10);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /**
+     * 当前的对冲等待时间
+     * @return 等待时间（纳秒），不对冲或最近的样本不足时返回 -1
+     */
+    public long hedgeDelayNanos() {
+        if (hedgePercentile <= 0) {
+            return -1;
+        }
+        long p = latency.percentileNanos(hedgePercentile);
+        return p < 0 ? -1 : Math.max(p, hedgeMinDelayNanos);
+    }
+
+    private static long longAttribute(Map<String, String> attributes, String key, long defaultValue) {
+        String value = attributes.get(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+}
@@ -0,0 +1,238 @@
+package router01;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 编译后的路由表（不可变）
+ *  - 按路径分段（/ 分隔）构建的基数树（radix trie），只有一个子节点且自身没有路由的节点会被合并到父节点的边上
+ *  - 每个节点的子边按首段排序，匹配时二分查找，匹配耗时与路由数量无关，只与路径深度有关
+ *  - 匹配时直接比较 uri 中的字符区间，不截取子串、不分配对象；查询串（? 之后）不参与匹配
+ *  - 返回最长的前缀匹配；精确匹配（exact）的路由只在路径完全一致（忽略结尾的 /）时命中
+ * 获取当前路由表参见：RouteTables#current
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class RouteTable {
+    /**
+     * 根节点（对应路径 /）
+     */
+    private final Node root;
+
+    /**
+     * 所有路由（按加入顺序）
+     */
+    private final List<Route> routes;
+
+    private RouteTable(Node root, List<Route> routes) {
+        this.root = root;
+        this.routes = routes;
+    }
+
+    /**
+     * 编译路由表
+     * @param routes 路由（路径与 exact 相同的路由不能重复）
+     * @return 路由表
+     */
+    public static RouteTable of(List<Route> routes) {
+        MutableNode root = new MutableNode();
+        for (Route route : routes) {
+            MutableNode node = root;
+            for (String segment : route.getPath().split("/")) {
+                if (!segment.isEmpty()) {
+                    node = node.children.computeIfAbsent(segment, s -> new MutableNode());
+                }
+            }
+            if (route.isExact()) {
+                if (node.exactRoute != null) {
+                    throw new IllegalArgumentException("duplicate exact route: " + route.getPath());
+                }
+                node.exactRoute = route;
+            } else {
+                if (node.prefixRoute != null) {
+                    throw new IllegalArgumentException("duplicate prefix route: " + route.getPath());
+                }
+                node.prefixRoute = route;
+            }
+        }
+        return new RouteTable(root.freeze(), Collections.unmodifiableList(new ArrayList<>(routes)));
+    }
+
+    /**
+     * 匹配请求的 uri
+     * @param uri 请求的 uri，例如：/test01api/users?id=1
+     * @return 匹配到的路由，没有则返回 null
+     */
+    public Route match(String uri) {
+        int end = pathEnd(uri);
+        Node node = root;
+        Route best = root.prefixRoute;
+        int pos = 0;
+        while (true) {
+            if (pos < end && uri.charAt(pos) == '/') {
+                pos++;
+            }
+            if (pos >= end) {
+                break;
+            }
+            int segmentEnd = indexOf(uri, '/', pos, end);
+            int i = node.find(uri, pos, segmentEnd);
+            if (i < 0) {
+                return best;
+            }
+            String label = node.labels[i];
+            int labelEnd = pos + label.length();
+            // 合并后的边包含多段，需要整体匹配，并且结束在段的边界上
+            if (labelEnd > end || !uri.regionMatches(pos, label, 0, label.length())
+                    || (labelEnd < end && uri.charAt(labelEnd) != '/')) {
+                return best;
+            }
+            node = node.children[i];
+            if (node.prefixRoute != null) {
+                best = node.prefixRoute;
+            }
+            pos = labelEnd;
+        }
+        return node.exactRoute != null ? node.exactRoute : best;
+    }
+
+    /**
+     * 所有路由
+     * @return 路由（不可修改）
+     */
+    public List<Route> routes() {
+        return routes;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteTable" + Arrays.toString(routes.toArray());
+    }
+
+    /**
+     * 路径部分的结束位置（查询串或片段之前）
+     */
+    private static int pathEnd(String uri) {
+        int n = uri.length();
+        for (int i = 0; i < n; i++) {
+            char c = uri.charAt(i);
+            if (c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    private static int indexOf(String s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * 编译后的节点
+     */
+    private static final class Node {
+        /**
+         * 子边的标签（一段或合并后的多段，例如 a/b），按首段排序
+         */
+        private final String[] labels;
+
+        /**
+         * 子边标签首段的长度
+         */
+        private final int[] firstSegmentLengths;
+
+        private final Node[] children;
+
+        private final Route prefixRoute;
+
+        private final Route exactRoute;
+
+        private Node(String[] labels, int[] firstSegmentLengths, Node[] children, Route prefixRoute, Route exactRoute) {
+            this.labels = labels;
+            this.firstSegmentLengths = firstSegmentLengths;
+            this.children = children;
+            this.prefixRoute = prefixRoute;
+            this.exactRoute = exactRoute;
+        }
+
+        /**
+         * 二分查找首段与 uri[from, to) 相同的子边
+         */
+        private int find(String uri, int from, int to) {
+            int low = 0;
+            int high = labels.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(labels[mid], firstSegmentLengths[mid], uri, from, to);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 比较 label[0, length) 与 uri[from, to)，规则与 String#compareTo 一致
+         */
+        private static int compare(String label, int length, String uri, int from, int to) {
+            int n = Math.min(length, to - from);
+            for (int i = 0; i < n; i++) {
+                int diff = label.charAt(i) - uri.charAt(from + i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length - (to - from);
+        }
+    }
+
+    /**
+     * 构建过程中的节点
+     */
+    private static final class MutableNode {
+        /**
+         * 段 -> 子节点（TreeMap 保证冻结后子边按首段排序）
+         */
+        private final TreeMap<String, MutableNode> children = new TreeMap<>();
+
+        private Route prefixRoute;
+
+        private Route exactRoute;
+
+        private Node freeze() {
+            int n = children.size();
+            String[] labels = new String[n];
+            int[] firstSegmentLengths = new int[n];
+            Node[] frozen = new Node[n];
+            int i = 0;
+            for (Map.Entry<String, MutableNode> entry : children.entrySet()) {
+                StringBuilder label = new StringBuilder(entry.getKey());
+                MutableNode child = entry.getValue();
+                // 压缩：只有一个子节点、且自身没有路由的节点合并到边上
+                while (child.children.size() == 1 && child.prefixRoute == null && child.exactRoute == null) {
+                    Map.Entry<String, MutableNode> only = child.children.firstEntry();
+                    label.append('/').append(only.getKey());
+                    child = only.getValue();
+                }
+                labels[i] = label.toString();
+                firstSegmentLengths[i] = entry.getKey().length();
+                frozen[i] = child.freeze();
+                i++;
+            }
+            return new Node(labels, firstSegmentLengths, frozen, prefixRoute, exactRoute);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package router01;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 当前生效的路由表
+ *  - 指定了路由配置文件（-Dgateway.routes=文件路径）时从文件加载，并监听文件变化自动重新加载
+ *  - 否则由 ApiTagEnum 生成默认路由表
+ *  - 重新加载时先完整编译出新的路由表，再一次性替换引用（写时复制），
+ *    请求线程读取路由表不加锁，也不会看到编译了一半的路由表；新配置有误时保留旧路由表
+ *  - 替换之后依次通知 addReloadListener 注册的回调（例如关闭不再使用的后端客户端）
+ * 配置文件格式（Properties，name 为路由名称）：
+ *  - route.name.path=/test01api                     路径前缀（必填）
+ *  - route.name.exact=false                         是否只匹配路径本身
+ *  - route.name.passThrough=true                    是否透传请求体/响应体
+ *  - route.name.loadBalance=P2C_EWMA                负载均衡策略，默认参见 LoadBalanceStrategy#defaultStrategy
+ *  - route.name.endpoints=http://127.0.0.1:8801/ weight=3, http://127.0.0.1:8811/
+ *                                                   后端节点（逗号分隔），不配置则由网关自身响应
+ *  - route.name.其它=值                              其它配置原样保存在 Route#attributes 中，供过滤器等读取
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class RouteTables {
+    private static final String PREFIX = "route.";
+
+    private static final String PATH_SUFFIX = ".path";
+
+    /**
+     * 当前路由表
+     */
+    private static final AtomicReference<RouteTable> CURRENT = new AtomicReference<>();
+
+    /**
+     * 路由表重新加载后的回调
+     */
+    private static final List<Consumer<RouteTable>> RELOAD_LISTENERS = new CopyOnWriteArrayList<>();
+
+    static {
+        String file = System.getProperty("gateway.routes");
+        if (file == null) {
+            CURRENT.set(fromApiTags());
+        } else {
+            Path path = Paths.get(file).toAbsolutePath();
+            try {
+                CURRENT.set(load(path, null));
+            } catch (IOException e) {
+                throw new IllegalStateException("failed to load routes from " + path, e);
+            }
+            watch(path);
+        }
+    }
+
+    private RouteTables() {
+    }
+
+    /**
+     * 获取当前路由表
+     * @return 路由表
+     */
+    public static RouteTable current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 注册路由表重新加载后的回调（在监听配置文件的线程上执行，参数是新的路由表）
+     * @param listener 回调
+     */
+    public static void addReloadListener(Consumer<RouteTable> listener) {
+        RELOAD_LISTENERS.add(listener);
+    }
+
+    /**
+     * 匹配请求的 uri（使用当前路由表）
+     * @param uri 请求的 uri
+     * @return 匹配到的路由，没有则返回 null
+     */
+    public static Route match(String uri) {
+        return CURRENT.get().match(uri);
+    }
+
+    /**
+     * 由 ApiTagEnum 生成默认路由表
+     *  - DEFAULT 是网关自身的地址，只精确匹配 /，由网关自身响应
+     */
+    static RouteTable fromApiTags() {
+        List<Route> routes = new ArrayList<>();
+        for (ApiTagEnum apiTag : ApiTagEnum.values()) {
+            String name = apiTag.name().toLowerCase(Locale.ROOT);
+            if (apiTag == ApiTagEnum.DEFAULT) {
+                routes.add(new Route(name, apiTag.getApiTag(), true, false, null));
+                continue;
+            }
+            Endpoint[] endpoints = new Endpoint[apiTag.getEndpoints().length];
+            for (int i = 0; i < endpoints.length; i++) {
+                endpoints[i] = Endpoint.parse(apiTag.getEndpoints()[i]);
+            }
+            routes.add(new Route(name, apiTag.getApiTag(), false, apiTag.isPassThrough(),
+                    LoadBalanceStrategy.defaultStrategy().newRouter(endpoints)));
+        }
+        return RouteTable.of(routes);
+    }
+
+    /**
+     * 从配置文件加载路由表
+     *  - 地址和权重都没有变化的后端节点沿用旧路由表中的实例，保留在途请求数和耗时统计
+     * @param file 配置文件
+     * @param previous 旧路由表（首次加载时为 null）
+     * @return 路由表
+     */
+    static RouteTable load(Path file, RouteTable previous) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+
+        Map<String, Endpoint> reusable = new HashMap<>();
+        if (previous != null) {
+            for (Route route : previous.routes()) {
+                if (!route.isLocal()) {
+                    for (Endpoint endpoint : route.getRouter().endpoints()) {
+                        reusable.put(endpoint.toString(), endpoint);
+                    }
+                }
+            }
+        }
+
+        // 按名称排序，保证同一份配置每次加载的结果一致
+        SortedSet<String> names = new TreeSet<>();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(PREFIX) && key.endsWith(PATH_SUFFIX)) {
+                names.add(key.substring(PREFIX.length(), key.length() - PATH_SUFFIX.length()));
+            }
+        }
+
+        List<Route> routes = new ArrayList<>(names.size());
+        for (String name : names) {
+            String prefix = PREFIX + name + ".";
+            String path = props.getProperty(prefix + "path").trim();
+            boolean exact = Boolean.parseBoolean(props.getProperty(prefix + "exact", "false").trim());
+            boolean passThrough = Boolean.parseBoolean(props.getProperty(prefix + "passThrough", "false").trim());
+            String endpointSpecs = props.getProperty(prefix + "endpoints", "").trim();
+
+            HttpEndpointRouter router = null;
+            if (!endpointSpecs.isEmpty()) {
+                String[] specs = endpointSpecs.split(",");
+                Endpoint[] endpoints = new Endpoint[specs.length];
+                for (int i = 0; i < specs.length; i++) {
+                    Endpoint parsed = Endpoint.parse(specs[i]);
+                    endpoints[i] = reusable.getOrDefault(parsed.toString(), parsed);
+                }
+                String strategy = props.getProperty(prefix + "loadBalance");
+                LoadBalanceStrategy loadBalance = strategy == null
+                        ? LoadBalanceStrategy.defaultStrategy() : LoadBalanceStrategy.valueOf(strategy.trim());
+                router = loadBalance.newRouter(endpoints);
+            }
+            Map<String, String> attributes = new HashMap<>();
+            for (String key : props.stringPropertyNames()) {
+                if (key.startsWith(prefix)) {
+                    attributes.put(key.substring(prefix.length()), props.getProperty(key).trim());
+                }
+            }
+            routes.add(new Route(name, path, exact, passThrough, router, attributes));
+        }
+        return RouteTable.of(routes);
+    }
+
+    /**
+     * 监听配置文件所在目录，文件变化时重新加载路由表（守护线程，不占用 IO 线程）
+     */
+    private static void watch(Path file) {
+        Thread watcher = new Thread(() -> {
+            try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+                file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey key = watchService.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (file.getFileName().equals(event.context())) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    if (changed) {
+                        // 编辑器保存文件时可能触发多次事件，稍等片刻让文件写完整
+                        Thread.sleep(100);
+                        reload(file);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.err.println("####【ERROR】路由配置文件监听失败:" + e);
+            }
+        }, "route-table-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * 重新加载路由表，失败时保留旧路由表
+     */
+    private static void reload(Path file) {
+        try {
+            RouteTable table = load(file, CURRENT.get());
+            CURRENT.set(table);
+            System.err.println("## 路由表已重新加载，路由数:" + table.routes().size());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("####【ERROR】路由表重新加载失败，继续使用旧路由表:" + e);
+            return;
+        }
+        for (Consumer<RouteTable> listener : RELOAD_LISTENERS) {
+            try {
+                listener.accept(CURRENT.get());
+            } catch (RuntimeException e) {
+                System.err.println("####【ERROR】路由表重新加载的回调执行失败:" + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package router01;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 平滑加权轮询（与 Nginx 的 smooth weighted round-robin 结果一致）
+ *  - 权重为 {5, 1, 1} 时选择顺序为 a a b a c a a，而不是 a a a a a b c
+ *  - 节点和权重在创建后不再变化，因此启动时预先算出一个完整周期的选择顺序，
+ *    之后每次选择只是对这个序列做轮询，不需要加锁更新各节点的 currentWeight
+ *  - 选中的节点被熔断时，改为按节点顺序选择下一个可用的节点
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class SmoothWeightedRoundRobinRouter implements HttpEndpointRouter {
+    /**
+     * 预计算序列的最大长度（权重约分后的总和超过该值时按比例缩小权重）
+     */
+    private static final int MAX_SEQUENCE_LENGTH = 4096;
+
+    private final Endpoint[] endpoints;
+
+    /**
+     * 一个完整周期的选择顺序
+     */
+    private final Endpoint[] sequence;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    SmoothWeightedRoundRobinRouter(Endpoint[] endpoints) {
+        this.endpoints = endpoints;
+        this.sequence = buildSequence(endpoints);
+    }
+
+    @Override
+    public Endpoint route() {
+        int i = (next.getAndIncrement() & Integer.MAX_VALUE) % sequence.length;
+        Endpoint endpoint = sequence[i];
+        return endpoint.isAvailable() ? endpoint : Endpoint.firstAvailable(endpoints, i % endpoints.length);
+    }
+
+    @Override
+    public Endpoint[] endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 按 Nginx 的算法模拟一个周期：每轮所有节点的 currentWeight 加上各自权重，
+     * 选出 currentWeight 最大的节点，并将其 currentWeight 减去总权重
+     */
+    private static Endpoint[] buildSequence(Endpoint[] endpoints) {
+        int[] weights = normalizedWeights(endpoints);
+        int total = 0;
+        for (int w : weights) {
+            total += w;
+        }
+
+        Endpoint[] sequence = new Endpoint[total];
+        int[] current = new int[weights.length];
+        for (int i = 0; i < total; i++) {
+            int best = 0;
+            for (int j = 0; j < weights.length; j++) {
+                current[j] += weights[j];
+                if (current[j] > current[best]) {
+                    best = j;
+                }
+            }
+            current[best] -= total;
+            sequence[i] = endpoints[best];
+        }
+        return sequence;
+    }
+
+    /**
+     * 权重除以最大公约数；总和仍超过 MAX_SEQUENCE_LENGTH 时按比例缩小（每个权重至少为 1）
+     */
+    private static int[] normalizedWeights(Endpoint[] endpoints) {
+        int gcd = 0;
+        long total = 0;
+        for (Endpoint endpoint : endpoints) {
+            gcd = gcd(gcd, endpoint.getWeight());
+            total += endpoint.getWeight();
+        }
+        total /= gcd;
+
+        int[] weights = new int[endpoints.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            long w = endpoints[i].getWeight() / gcd;
+            if (total > MAX_SEQUENCE_LENGTH) {
+                w = Math.max(1, w * MAX_SEQUENCE_LENGTH / total);
+            }
+            weights[i] = (int) w;
+        }
+        return weights;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,198 @@
+package transport01;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.MultithreadEventExecutorGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 传输层选择（Linux 上使用原生 epoll，其它平台或原生库不可用时退回 NIO）
+ *  - 所有服务端、客户端的 EventLoopGroup 和 Channel 类型都从这里获取，两者必须是同一种传输
+ *  - epoll 下额外支持：
+ *    - SO_REUSEPORT：同一端口绑定多个监听 Channel，分布在不同的 EventLoop 上，由内核分发新连接，
+ *      连接风暴时 accept 不再受限于单个 boss 线程
+ *    - TCP_FASTOPEN：服务端接受 TFO，再次连接的客户端可以在 SYN 中携带请求数据
+ *    - TCP_QUICKACK：立即发送 ACK，不等待延迟确认；Linux 不会一直保持这个选项（内核在连接进入交互模式后
+ *      会自动清除它），这里只在建立连接时设置一次，效果有限，默认关闭
+ *  - 配置：-Dgateway.transport=nio 强制使用 NIO；-Dgateway.server.reusePort=false 关闭多监听；
+ *    -Dgateway.server.acceptors=N 监听 Channel 数（默认等于 worker 线程数）；
+ *    -Dgateway.tcp.fastOpen=N TFO 队列长度（0 关闭）；-Dgateway.tcp.fastOpenConnect=true 客户端使用 TFO；
+ *    -Dgateway.tcp.quickAck=true 建立连接时设置 QUICKACK
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+public final class Transports {
+    /**
+     * 是否使用原生 epoll 传输
+     */
+    private static final boolean EPOLL = !"nio".equalsIgnoreCase(System.getProperty("gateway.transport"))
+            && Epoll.isAvailable();
+
+    /**
+     * 是否使用 SO_REUSEPORT 多监听（仅 epoll）
+     */
+    private static final boolean REUSE_PORT = EPOLL
+            && !"false".equals(System.getProperty("gateway.server.reusePort"));
+
+    /**
+     * 监听 Channel 数，0 表示等于 worker 线程数
+     */
+    private static final int ACCEPTORS = Integer.getInteger("gateway.server.acceptors", 0);
+
+    /**
+     * 服务端 TFO 队列长度，0 表示关闭
+     */
+    private static final int FAST_OPEN = Integer.getInteger("gateway.tcp.fastOpen", 256);
+
+    /**
+     * 客户端是否使用 TFO 建立连接
+     */
+    private static final boolean FAST_OPEN_CONNECT = Boolean.getBoolean("gateway.tcp.fastOpenConnect");
+
+    /**
+     * 是否在建立连接时设置 TCP_QUICKACK（只影响连接开始时的几次确认）
+     */
+    private static final boolean QUICK_ACK = Boolean.getBoolean("gateway.tcp.quickAck");
+
+    static {
+        if (EPOLL) {
+            System.err.println("## 使用 epoll 传输，SO_REUSEPORT:" + REUSE_PORT);
+        } else if (!"nio".equalsIgnoreCase(System.getProperty("gateway.transport"))) {
+            System.err.println("## epoll 不可用，使用 NIO 传输，原因:" + Epoll.unavailabilityCause());
+        }
+    }
+
+    private Transports() {
+    }
+
+    /**
+     * 是否使用原生 epoll 传输
+     */
+    public static boolean isEpoll() {
+        return EPOLL;
+    }
+
+    /**
+     * 是否使用 SO_REUSEPORT 多监听（此时不需要单独的 boss 线程，监听 Channel 分布在 worker 线程上）
+     */
+    public static boolean isReusePort() {
+        return REUSE_PORT;
+    }
+
+    /**
+     * 创建 EventLoopGroup
+     * @param threads 线程数，0 表示使用 Netty 的默认值（CPU 核数 * 2）
+     * @return EventLoopGroup
+     */
+    public static EventLoopGroup newEventLoopGroup(int threads) {
+        return EPOLL ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+    }
+
+    /**
+     * 服务端监听 Channel 的类型
+     */
+    public static Class<? extends ServerChannel> serverChannelClass() {
+        return EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * 客户端 Channel 的类型（必须与注册到的 EventLoopGroup 的传输一致）
+     * @param group 客户端 Channel 注册到的 EventLoopGroup（或单个 EventLoop）
+     * @return Channel 类型
+     */
+    public static Class<? extends SocketChannel> socketChannelClass(EventLoopGroup group) {
+        return isEpollGroup(group) ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * EventLoop 是否属于本传输层创建的 EventLoopGroup（可以直接注册客户端 Channel）
+     * @param loop EventLoop
+     * @return 是否可以注册客户端 Channel
+     */
+    public static boolean isTransportEventLoop(EventLoop loop) {
+        EventLoopGroup parent = loop.parent();
+        return parent instanceof NioEventLoopGroup || parent instanceof EpollEventLoopGroup;
+    }
+
+    /**
+     * 设置服务端选项（epoll 下的 SO_REUSEPORT、TCP_FASTOPEN、TCP_QUICKACK）
+     * @param b 服务端启动器
+     */
+    public static void configureServer(ServerBootstrap b) {
+        if (!EPOLL) {
+            return;
+        }
+        if (REUSE_PORT) {
+            b.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        if (FAST_OPEN > 0) {
+            b.option(ChannelOption.TCP_FASTOPEN, FAST_OPEN);
+        }
+        if (QUICK_ACK) {
+            b.childOption(EpollChannelOption.TCP_QUICKACK, true);
+        }
+    }
+
+    /**
+     * 设置客户端选项（epoll 下的 TCP_FASTOPEN_CONNECT、TCP_QUICKACK）
+     * @param b 客户端启动器（需要先设置 group）
+     */
+    public static void configureClient(Bootstrap b) {
+        if (!isEpollGroup(b.config().group())) {
+            return;
+        }
+        if (FAST_OPEN_CONNECT) {
+            b.option(ChannelOption.TCP_FASTOPEN_CONNECT, true);
+        }
+        if (QUICK_ACK) {
+            b.option(EpollChannelOption.TCP_QUICKACK, true);
+        }
+    }
+
+    /**
+     * 绑定端口：开启 SO_REUSEPORT 时绑定多个监听 Channel（依次注册到 boss EventLoopGroup 的各个 EventLoop 上）
+     * @param b 服务端启动器
+     * @param port 端口
+     * @return 监听 Channel
+     * @throws InterruptedException 等待绑定时被中断
+     */
+    public static List<Channel> bind(ServerBootstrap b, int port) throws InterruptedException {
+        int acceptors = 1;
+        if (REUSE_PORT) {
+            acceptors = ACCEPTORS;
+            EventLoopGroup group = b.config().group();
+            if (acceptors <= 0 && group instanceof MultithreadEventExecutorGroup) {
+                acceptors = ((MultithreadEventExecutorGroup) group).executorCount();
+            }
+            acceptors = Math.max(1, acceptors);
+        }
+        List<Channel> channels = new ArrayList<>(acceptors);
+        for (int i = 0; i < acceptors; i++) {
+            channels.add(b.bind(port).sync().channel());
+        }
+        return channels;
+    }
+
+    private static boolean isEpollGroup(EventLoopGroup group) {
+        if (group instanceof EventLoop) {
+            group = ((EventLoop) group).parent();
+        }
+        return group instanceof EpollEventLoopGroup;
+    }
+}
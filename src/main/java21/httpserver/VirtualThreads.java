@@ -0,0 +1,30 @@
+package httpserver;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程的入口（Java 21 版本，编译进多版本 jar 的 META-INF/versions/21）
+ *  - 与 src/main/java 下的同名类保持相同的方法签名
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的线程池
+     * @return 线程池
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * 是否支持虚拟线程
+     */
+    static boolean isSupported() {
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+package accesslog01;
+
+import io.netty.util.concurrent.FastThreadLocalThread;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 访问日志：退出线程的缓冲区在记录取完后被移除
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class AccessLogTest {
+    @TempDir
+    Path dir;
+
+    private AccessLog log;
+
+    @AfterEach
+    void tearDown() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private static void logFrom(Thread thread) throws InterruptedException {
+        thread.start();
+        thread.join(10_000);
+        assertFalse(thread.isAlive());
+    }
+
+    private void logOne(String uri) {
+        log.log(1_000_000, 200, "GET", uri, "api", new byte[]{127, 0, 0, 1}, 8080, 0, 2);
+    }
+
+    @Test
+    void exitedThreadsReleaseTheirRings() throws Exception {
+        Path file = dir.resolve("access.log");
+        log = new AccessLog(file);
+
+        // Netty 的线程退出时回调 onRemoval，普通线程退出由后台线程检查发现
+        logFrom(new FastThreadLocalThread(() -> logOne("/fast")));
+        logFrom(new Thread(() -> logOne("/plain")));
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (log.ringCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, log.ringCount());
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+        assertEquals(2, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.contains(" GET /fast api 200 0 2 1000")), lines.toString());
+        assertTrue(lines.stream().anyMatch(line -> line.contains(" GET /plain api 200 0 2 1000")), lines.toString());
+    }
+
+    @Test
+    void liveThreadKeepsItsRing() throws Exception {
+        log = new AccessLog(dir.resolve("access.log"));
+        logOne("/main");
+        Thread.sleep(100);
+        assertEquals(1, log.ringCount());
+    }
+}
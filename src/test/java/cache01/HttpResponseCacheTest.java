@@ -0,0 +1,266 @@
+package cache01;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
+import nettyhttpclient02.HttpClientCallback;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 响应缓存的新鲜度和回源重新验证
+ *  - 每个用例使用自己的 1MB 缓存实例，不依赖 -Dgateway.cache.maxBytes
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class HttpResponseCacheTest {
+    private static final String X_CACHE = "x-cache";
+
+    private final HttpResponseCache cache = new HttpResponseCache(1024 * 1024);
+
+    /**
+     * 记录交给转发回调的结果
+     */
+    static final class RecordingCallback implements HttpClientCallback {
+        final List<HttpObject> responses = new ArrayList<>();
+
+        HttpResponseStatus failure;
+
+        @Override
+        public void onResponse(HttpObject msg) {
+            responses.add(msg);
+        }
+
+        @Override
+        public void onFailure(HttpResponseStatus status) {
+            failure = status;
+        }
+    }
+
+    static EmbeddedChannel newChannel() {
+        return new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    }
+
+    static ChannelHandlerContext ctx(EmbeddedChannel channel) {
+        return channel.pipeline().firstContext();
+    }
+
+    static FullHttpRequest get(String uri) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        request.headers().set(HttpHeaderNames.HOST, "localhost");
+        return request;
+    }
+
+    static FullHttpResponse response(HttpResponseStatus status, String body) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+                Unpooled.copiedBuffer(body, CharsetUtil.UTF_8));
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+        return response;
+    }
+
+    /**
+     * 未命中时模拟后端响应
+     * @return 交给用户的响应
+     */
+    private static HttpObject miss(UnaryOperator<HttpClientCallback> decorator, FullHttpResponse backend) {
+        assertNotNull(decorator);
+        RecordingCallback delegate = new RecordingCallback();
+        decorator.apply(delegate).onResponse(backend);
+        assertEquals(1, delegate.responses.size());
+        return delegate.responses.get(0);
+    }
+
+    private static FullHttpResponse cacheable(String body, String cacheControl, String etag) {
+        FullHttpResponse response = response(HttpResponseStatus.OK, body);
+        response.headers().set(HttpHeaderNames.CACHE_CONTROL, cacheControl);
+        if (etag != null) {
+            response.headers().set(HttpHeaderNames.ETAG, etag);
+        }
+        return response;
+    }
+
+    @Test
+    void disabledByDefault() {
+        assertFalse(HttpResponseCache.INSTANCE.isEnabled());
+    }
+
+    @Test
+    void freshEntryIsServedWithoutTheBackend() {
+        assertTrue(cache.isEnabled());
+        EmbeddedChannel channel = newChannel();
+
+        FullHttpResponse stored = (FullHttpResponse) miss(cache.lookup(ctx(channel), get("/cache/fresh")),
+                cacheable("hello", "max-age=60", null));
+        assertEquals("MISS", stored.headers().get(X_CACHE));
+        stored.release();
+
+        FullHttpRequest again = get("/cache/fresh");
+        assertNull(cache.lookup(ctx(channel), again));
+        assertEquals(0, again.refCnt());
+        FullHttpResponse hit = channel.readOutbound();
+        assertEquals("HIT", hit.headers().get(X_CACHE));
+        assertEquals("hello", hit.content().toString(CharsetUtil.UTF_8));
+        assertTrue(hit.headers().contains(HttpHeaderNames.AGE));
+        hit.release();
+    }
+
+    @Test
+    void uncacheableResponsesAreNotStoredOrTagged() {
+        EmbeddedChannel channel = newChannel();
+        String[] cacheControls = {"no-store", "private, max-age=60", "no-cache", "max-age=0"};
+        for (int i = 0; i < cacheControls.length; i++) {
+            String uri = "/cache/uncacheable/" + i;
+            FullHttpResponse response = (FullHttpResponse) miss(cache.lookup(ctx(channel), get(uri)),
+                    cacheable("body", cacheControls[i], null));
+            assertNull(response.headers().get(X_CACHE), cacheControls[i]);
+            response.release();
+
+            UnaryOperator<HttpClientCallback> again = cache.lookup(ctx(channel), get(uri));
+            assertNotNull(again, cacheControls[i]);
+            again.apply(new RecordingCallback()).onFailure(HttpResponseStatus.BAD_GATEWAY);
+        }
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    void ifNoneMatchFromTheClientIsAnsweredWith304() {
+        EmbeddedChannel channel = newChannel();
+        ((FullHttpResponse) miss(cache.lookup(ctx(channel), get("/cache/etag")),
+                cacheable("tagged", "max-age=60", "\"v1\""))).release();
+
+        FullHttpRequest conditional = get("/cache/etag");
+        conditional.headers().set(HttpHeaderNames.IF_NONE_MATCH, "W/\"v1\"");
+        assertNull(cache.lookup(ctx(channel), conditional));
+        FullHttpResponse notModified = channel.readOutbound();
+        assertEquals(HttpResponseStatus.NOT_MODIFIED, notModified.status());
+        assertEquals("\"v1\"", notModified.headers().get(HttpHeaderNames.ETAG));
+        assertEquals(0, notModified.content().readableBytes());
+        notModified.release();
+    }
+
+    @Test
+    void staleEntryIsRevalidatedWithIfNoneMatch() throws InterruptedException {
+        EmbeddedChannel channel = newChannel();
+        // max-age=2、Age=1：剩余 1 秒后过期
+        FullHttpResponse backend = cacheable("revalidate me", "max-age=2", "\"v1\"");
+        backend.headers().setInt(HttpHeaderNames.AGE, 1);
+        ((FullHttpResponse) miss(cache.lookup(ctx(channel), get("/cache/stale")), backend)).release();
+        Thread.sleep(1100);
+
+        FullHttpRequest request = get("/cache/stale");
+        UnaryOperator<HttpClientCallback> decorator = cache.lookup(ctx(channel), request);
+        assertNotNull(decorator);
+        // 网关替用户带上缓存条目的 ETag 回源
+        assertEquals("\"v1\"", request.headers().get(HttpHeaderNames.IF_NONE_MATCH));
+
+        FullHttpResponse notModified = response(HttpResponseStatus.NOT_MODIFIED, "");
+        notModified.headers().set(HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+        FullHttpResponse full = (FullHttpResponse) miss(decorator, notModified);
+        assertEquals(0, notModified.refCnt());
+        assertEquals(HttpResponseStatus.OK, full.status());
+        assertEquals("REVALIDATED", full.headers().get(X_CACHE));
+        assertEquals("revalidate me", full.content().toString(CharsetUtil.UTF_8));
+        full.release();
+        request.release();
+
+        // 304 刷新了有效期，之后直接命中
+        assertNull(cache.lookup(ctx(channel), get("/cache/stale")));
+        FullHttpResponse hit = channel.readOutbound();
+        assertEquals("HIT", hit.headers().get(X_CACHE));
+        hit.release();
+    }
+
+    @Test
+    void revalidationSurvivesEvictionOfTheEntry() throws InterruptedException {
+        EmbeddedChannel channel = newChannel();
+        FullHttpResponse backend = cacheable("pinned", "max-age=2", "\"v1\"");
+        backend.headers().setInt(HttpHeaderNames.AGE, 1);
+        ((FullHttpResponse) miss(cache.lookup(ctx(channel), get("/cache/pinned")), backend)).release();
+        Thread.sleep(1100);
+
+        FullHttpRequest request = get("/cache/pinned");
+        UnaryOperator<HttpClientCallback> decorator = cache.lookup(ctx(channel), request);
+        assertEquals("\"v1\"", request.headers().get(HttpHeaderNames.IF_NONE_MATCH));
+        // 回源期间条目被替换（旧条目离开缓存）
+        cache.store("/cache/pinned", get("/cache/pinned").headers(), cacheable("other", "max-age=60", "\"v2\""));
+
+        // 用户的请求不带条件，304 仍然换成完整的响应
+        FullHttpResponse full = (FullHttpResponse) miss(decorator, response(HttpResponseStatus.NOT_MODIFIED, ""));
+        assertEquals(HttpResponseStatus.OK, full.status());
+        assertEquals("REVALIDATED", full.headers().get(X_CACHE));
+        assertEquals("pinned", full.content().toString(CharsetUtil.UTF_8));
+        full.release();
+        request.release();
+        assertEquals(0, full.content().refCnt());
+    }
+
+    @Test
+    void failedRevalidationKeepsTheEntry() throws InterruptedException {
+        EmbeddedChannel channel = newChannel();
+        FullHttpResponse backend = cacheable("kept", "max-age=2", "\"v1\"");
+        backend.headers().setInt(HttpHeaderNames.AGE, 1);
+        ((FullHttpResponse) miss(cache.lookup(ctx(channel), get("/cache/kept")), backend)).release();
+        Thread.sleep(1100);
+
+        UnaryOperator<HttpClientCallback> decorator = cache.lookup(ctx(channel), get("/cache/kept"));
+        decorator.apply(new RecordingCallback()).onFailure(HttpResponseStatus.BAD_GATEWAY);
+
+        // 失败时归还引用，条目仍在缓存中，可以再次重新验证
+        FullHttpRequest again = get("/cache/kept");
+        assertNotNull(cache.lookup(ctx(channel), again));
+        assertEquals("\"v1\"", again.headers().get(HttpHeaderNames.IF_NONE_MATCH));
+    }
+
+    @Test
+    void varyMismatchGoesToTheBackend() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpRequest english = get("/cache/vary");
+        english.headers().set(HttpHeaderNames.ACCEPT_LANGUAGE, "en");
+        FullHttpResponse backend = cacheable("hello", "max-age=60", null);
+        backend.headers().set(HttpHeaderNames.VARY, "Accept-Language");
+        ((FullHttpResponse) miss(cache.lookup(ctx(channel), english), backend)).release();
+        english.release();
+
+        FullHttpRequest french = get("/cache/vary");
+        french.headers().set(HttpHeaderNames.ACCEPT_LANGUAGE, "fr");
+        UnaryOperator<HttpClientCallback> decorator = cache.lookup(ctx(channel), french);
+        assertNotNull(decorator);
+        decorator.apply(new RecordingCallback()).onFailure(HttpResponseStatus.BAD_GATEWAY);
+        french.release();
+
+        FullHttpRequest englishAgain = get("/cache/vary");
+        englishAgain.headers().set(HttpHeaderNames.ACCEPT_LANGUAGE, "en");
+        assertNull(cache.lookup(ctx(channel), englishAgain));
+        FullHttpResponse hit = channel.readOutbound();
+        assertEquals("HIT", hit.headers().get(X_CACHE));
+        hit.release();
+    }
+
+    @Test
+    void requestNoCacheBypassesFreshEntry() {
+        EmbeddedChannel channel = newChannel();
+        ((FullHttpResponse) miss(cache.lookup(ctx(channel), get("/cache/no-cache")),
+                cacheable("v1", "max-age=60", null))).release();
+
+        FullHttpRequest request = get("/cache/no-cache");
+        request.headers().set(HttpHeaderNames.CACHE_CONTROL, "no-cache");
+        UnaryOperator<HttpClientCallback> decorator = cache.lookup(ctx(channel), request);
+        assertNotNull(decorator);
+        FullHttpResponse refreshed = (FullHttpResponse) miss(decorator, cacheable("v2", "max-age=60", null));
+        refreshed.release();
+        request.release();
+
+        assertNull(cache.lookup(ctx(channel), get("/cache/no-cache")));
+        FullHttpResponse hit = channel.readOutbound();
+        assertEquals("v2", hit.content().toString(CharsetUtil.UTF_8));
+        hit.release();
+    }
+}
@@ -0,0 +1,101 @@
+package cache01;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
+import nettyhttpclient02.HttpClientCallback;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.UnaryOperator;
+
+import static cache01.HttpResponseCacheTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 相同请求合并：只有 leader 回源，follower 共享它的响应
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class RequestCoalescerTest {
+    private final RequestCoalescer coalescer = RequestCoalescer.INSTANCE;
+
+    @Test
+    void followersShareTheLeadersResponse() {
+        EmbeddedChannel leaderChannel = newChannel();
+        EmbeddedChannel followerChannel = newChannel();
+        int before = coalescer.inFlight();
+
+        UnaryOperator<HttpClientCallback> leader = coalescer.join(ctx(leaderChannel), get("/coalesce/shared"));
+        assertNotNull(leader);
+        FullHttpRequest duplicate = get("/coalesce/shared");
+        assertNull(coalescer.join(ctx(followerChannel), duplicate));
+        // follower 的请求不再转发，已经释放
+        assertEquals(0, duplicate.refCnt());
+        assertEquals(before + 1, coalescer.inFlight());
+
+        RecordingCallback delegate = new RecordingCallback();
+        FullHttpResponse backend = response(HttpResponseStatus.OK, "shared body");
+        leader.apply(delegate).onResponse(backend);
+
+        assertEquals(before, coalescer.inFlight());
+        assertEquals(1, delegate.responses.size());
+        assertSame(backend, delegate.responses.get(0));
+        FullHttpResponse copy = followerChannel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, copy.status());
+        assertEquals("shared body", copy.content().toString(CharsetUtil.UTF_8));
+        // 响应体共享同一块内存
+        assertEquals(2, backend.refCnt());
+
+        copy.release();
+        backend.release();
+        assertEquals(0, backend.refCnt());
+    }
+
+    @Test
+    void requestsWithDifferentKeysAreNotMerged() {
+        EmbeddedChannel channel = newChannel();
+        UnaryOperator<HttpClientCallback> first = coalescer.join(ctx(channel), get("/coalesce/a"));
+        FullHttpRequest gzip = get("/coalesce/a");
+        gzip.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        UnaryOperator<HttpClientCallback> second = coalescer.join(ctx(channel), gzip);
+        UnaryOperator<HttpClientCallback> third = coalescer.join(ctx(channel), get("/coalesce/b"));
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotNull(third);
+
+        first.apply(new RecordingCallback()).onFailure(HttpResponseStatus.BAD_GATEWAY);
+        second.apply(new RecordingCallback()).onFailure(HttpResponseStatus.BAD_GATEWAY);
+        third.apply(new RecordingCallback()).onFailure(HttpResponseStatus.BAD_GATEWAY);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    void failureIsDeliveredToFollowers() {
+        EmbeddedChannel leaderChannel = newChannel();
+        EmbeddedChannel followerChannel = newChannel();
+        UnaryOperator<HttpClientCallback> leader = coalescer.join(ctx(leaderChannel), get("/coalesce/failing"));
+        assertNull(coalescer.join(ctx(followerChannel), get("/coalesce/failing")));
+
+        RecordingCallback delegate = new RecordingCallback();
+        leader.apply(delegate).onFailure(HttpResponseStatus.GATEWAY_TIMEOUT);
+
+        assertEquals(HttpResponseStatus.GATEWAY_TIMEOUT, delegate.failure);
+        FullHttpResponse response = followerChannel.readOutbound();
+        assertEquals(HttpResponseStatus.GATEWAY_TIMEOUT, response.status());
+        response.release();
+    }
+
+    @Test
+    void laterRequestStartsANewFlight() {
+        EmbeddedChannel channel = newChannel();
+        UnaryOperator<HttpClientCallback> leader = coalescer.join(ctx(channel), get("/coalesce/again"));
+        FullHttpResponse backend = response(HttpResponseStatus.OK, "first");
+        leader.apply(new RecordingCallback()).onResponse(backend);
+        backend.release();
+
+        // 响应已经分发，之后到达的相同请求重新回源
+        UnaryOperator<HttpClientCallback> next = coalescer.join(ctx(channel), get("/coalesce/again"));
+        assertNotNull(next);
+        next.apply(new RecordingCallback()).onFailure(HttpResponseStatus.BAD_GATEWAY);
+    }
+}
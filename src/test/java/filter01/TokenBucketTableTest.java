@@ -0,0 +1,112 @@
+package filter01;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 令牌桶表：同一个键只有一个令牌桶，表满时使用溢出桶
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class TokenBucketTableTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private static final long NOW = 1_000 * SECOND;
+
+    @Test
+    void keysHaveIndependentBuckets() {
+        TokenBucketTable table = new TokenBucketTable(1024, 10, 2);
+        for (int i = 0; i < 100; i++) {
+            String key = "client-" + i;
+            assertTrue(table.tryAcquire(key, NOW), key);
+            assertTrue(table.tryAcquire(key, NOW), key);
+            assertFalse(table.tryAcquire(key, NOW), key);
+        }
+    }
+
+    /**
+     * 哈希值相同的键；blocking 的键第一次被比较时阻塞，直到测试放行（用来固定两个线程的交错顺序）
+     */
+    private static final class BlockingKey {
+        private final String name;
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+
+        private final CountDownLatch proceed = new CountDownLatch(1);
+
+        private final AtomicBoolean first;
+
+        private BlockingKey(String name, boolean blocking) {
+            this.name = name;
+            this.first = new AtomicBoolean(blocking);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (first.compareAndSet(true, false)) {
+                blocked.countDown();
+                try {
+                    proceed.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return o instanceof BlockingKey && ((BlockingKey) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    @Test
+    void racingFirstRequestsShareOneBucket() throws Exception {
+        TokenBucketTable table = new TokenBucketTable(1024, 1, 1);
+        // 槽里已有一个哈希相同的键，它的桶恰好在 NOW 变为空闲
+        BlockingKey idle = new BlockingKey("idle", true);
+        assertTrue(table.tryAcquire(idle, NOW - SECOND));
+
+        BlockingKey key = new BlockingKey("key", false);
+        AtomicInteger granted = new AtomicInteger();
+        // 线程 A 的时间早 1 纳秒：看到的是不空闲的桶，探测到一半时阻塞
+        Thread a = new Thread(() -> {
+            if (table.tryAcquire(key, NOW - 1)) {
+                granted.incrementAndGet();
+            }
+        });
+        a.start();
+        assertTrue(idle.blocked.await(10, TimeUnit.SECONDS));
+
+        // 线程 B 回收空闲桶的槽，插入这个键并取走唯一的令牌
+        if (table.tryAcquire(key, NOW)) {
+            granted.incrementAndGet();
+        }
+        idle.proceed.countDown();
+        a.join(10_000);
+
+        // A 继续探测时不能在下一个空槽里再建一个桶
+        assertEquals(1, granted.get());
+        assertFalse(table.tryAcquire(key, NOW));
+    }
+
+    @Test
+    void fullProbeRangeFallsBackToTheOverflowBucket() {
+        // 8 个槽全部被不空闲的桶占用后，新的键共用溢出桶
+        TokenBucketTable table = new TokenBucketTable(8, 1, 1);
+        int inserted = 0;
+        for (int i = 0; i < 64; i++) {
+            if (table.tryAcquire(i, NOW)) {
+                inserted++;
+            }
+        }
+        // 最多 16 个槽各放行一次，再加溢出桶的一次
+        assertTrue(inserted <= 17, "granted " + inserted);
+    }
+}
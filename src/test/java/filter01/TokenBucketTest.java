@@ -0,0 +1,76 @@
+package filter01;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 令牌桶（GCRA）：时间由测试传入，不依赖真实时钟
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class TokenBucketTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void allowsBurstThenRejects() {
+        long now = 1_000 * SECOND;
+        TokenBucket bucket = new TokenBucket(null, 10, 5, now);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(now), "burst permit " + i);
+        }
+        assertFalse(bucket.tryAcquire(now));
+    }
+
+    @Test
+    void refillsOnePermitPerInterval() {
+        long now = 1_000 * SECOND;
+        TokenBucket bucket = new TokenBucket(null, 10, 1, now);
+
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now + SECOND / 10 - 1));
+        assertTrue(bucket.tryAcquire(now + SECOND / 10));
+        assertFalse(bucket.tryAcquire(now + SECOND / 10));
+    }
+
+    @Test
+    void sustainedRateIsBoundedByPermitsPerSecond() {
+        long now = 1_000 * SECOND;
+        TokenBucket bucket = new TokenBucket(null, 100, 10, now);
+
+        // 每毫秒尝试一次，持续 1 秒：最多 burst + rate 个
+        int granted = 0;
+        for (int ms = 0; ms < 1000; ms++) {
+            if (bucket.tryAcquire(now + ms * 1_000_000L)) {
+                granted++;
+            }
+        }
+        assertTrue(granted >= 100 && granted <= 110, "granted " + granted);
+    }
+
+    @Test
+    void idleOnceFullAgain() {
+        long now = 1_000 * SECOND;
+        TokenBucket bucket = new TokenBucket("client", 10, 3, now);
+        assertTrue(bucket.isIdle(now));
+
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.isIdle(now));
+        // 两个令牌在 0.2 秒后补满
+        assertFalse(bucket.isIdle(now + SECOND / 10));
+        assertTrue(bucket.isIdle(now + SECOND / 5));
+    }
+
+    @Test
+    void unusedTimeDoesNotAccumulateBeyondBurst() {
+        long now = 1_000 * SECOND;
+        TokenBucket bucket = new TokenBucket(null, 10, 2, now);
+
+        long later = now + 60 * SECOND;
+        assertTrue(bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later));
+        assertFalse(bucket.tryAcquire(later));
+    }
+}
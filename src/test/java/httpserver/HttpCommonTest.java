@@ -0,0 +1,89 @@
+package httpserver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import static httpserver.HttpServer04Test.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HttpCommon 的请求解析：keep-alive、流水线、请求体、不合法的请求
+ *  - 每个用例在本地端口上接受一个连接，交给 HttpCommon#server 处理，客户端读到连接关闭为止
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class HttpCommonTest {
+    private ServerSocket serverSocket;
+
+    private Thread acceptor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(() -> {
+            try {
+                HttpCommon.server(serverSocket.accept());
+            } catch (IOException e) {
+                // 用例结束时关闭了 ServerSocket
+            }
+        }, "http-common-test");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        serverSocket.close();
+        acceptor.join(5000);
+    }
+
+    private String exchange(String... parts) throws IOException, InterruptedException {
+        return HttpServer04Test.exchange(serverSocket.getLocalPort(), parts);
+    }
+
+    @Test
+    void pipelinedRequestsAreAnsweredInOneConnection() throws Exception {
+        String get = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        String response = exchange(get + get + "\r\n" + get + "GET / HTTP/1.1\r\nConnection: close\r\n\r\n");
+        assertEquals(repeat(KEEP_ALIVE, 3) + CLOSE, response);
+    }
+
+    @Test
+    void requestSplitAcrossReadsIsReassembled() throws Exception {
+        String response = exchange("GET /split HT", "TP/1.1\r\nHost: local", "host\r\nConnection: cl", "ose\r\n\r\n");
+        assertEquals(CLOSE, response);
+    }
+
+    @Test
+    void requestBodyIsSkippedByContentLength() throws Exception {
+        String response = exchange(
+                "POST /a HTTP/1.1\r\ncontent-length: 11\r\n\r\nhello",
+                " world",
+                "GET /b HTTP/1.1\r\nCONNECTION: Close\r\n\r\n");
+        assertEquals(KEEP_ALIVE + CLOSE, response);
+    }
+
+    @Test
+    void http10ClosesUnlessKeepAliveIsRequested() throws Exception {
+        assertEquals(KEEP_ALIVE + CLOSE,
+                exchange("GET / HTTP/1.0\r\nConnection: keep-alive\r\n\r\n", "GET / HTTP/1.0\r\n\r\n"));
+    }
+
+    @Test
+    void chunkedRequestBodyIsRejected() throws Exception {
+        String response = exchange("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhello\r\n0\r\n\r\n");
+        assertEquals(BAD_REQUEST, response);
+    }
+
+    @Test
+    void lineLongerThanTheBufferIsRejected() throws Exception {
+        // 恰好填满缓冲区、还没有换行（服务端读完全部数据后才关闭，避免未读数据导致连接被重置）
+        String response = exchange("GET /" + repeat("a", HttpCommon.BUFFER_SIZE - 5));
+        assertEquals(BAD_REQUEST, response);
+    }
+}
@@ -0,0 +1,141 @@
+package httpserver;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HttpServer04 的增量解析：报文分多次到达、流水线、写缓冲区放不下的响应、不合法的请求
+ *  - 所有用例共用一个从 Reactor，由测试线程之外的线程负责 accept
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class HttpServer04Test {
+    static final String KEEP_ALIVE = new String(HttpCommon.KEEP_ALIVE_RESPONSE, StandardCharsets.US_ASCII);
+
+    static final String CLOSE = new String(HttpCommon.CLOSE_RESPONSE, StandardCharsets.US_ASCII);
+
+    static final String BAD_REQUEST = new String(HttpCommon.BAD_REQUEST_RESPONSE, StandardCharsets.US_ASCII);
+
+    private static ServerSocketChannel server;
+
+    private static HttpServer04.SubReactor reactor;
+
+    @BeforeAll
+    static void start() throws IOException {
+        reactor = new HttpServer04.SubReactor(0);
+        reactor.setDaemon(true);
+        reactor.start();
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    SocketChannel ch = server.accept();
+                    ch.configureBlocking(false);
+                    reactor.register(ch);
+                }
+            } catch (IOException e) {
+                // 测试结束时关闭了 ServerSocketChannel
+            }
+        }, "http-server04-test-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        server.close();
+    }
+
+    /**
+     * 分段发送请求，读取全部响应直到连接关闭
+     * @param parts 依次写出的报文片段（片段之间稍作停顿，模拟报文分多次到达）
+     */
+    static String exchange(int port, String... parts) throws IOException, InterruptedException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(10_000);
+            OutputStream out = socket.getOutputStream();
+            for (String part : parts) {
+                out.write(part.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                Thread.sleep(20);
+            }
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                received.write(buf, 0, n);
+            }
+            return new String(received.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    private static String exchange(String... parts) throws IOException, InterruptedException {
+        return exchange(((InetSocketAddress) server.getLocalAddress()).getPort(), parts);
+    }
+
+    @Test
+    void requestSplitAcrossReadsIsReassembled() throws Exception {
+        String response = exchange("GET /split HT", "TP/1.1\r\nHost: local", "host\r\nConnection: cl", "ose\r\n", "\r\n");
+        assertEquals(CLOSE, response);
+    }
+
+    @Test
+    void pipelinedResponsesLargerThanTheWriteBufferAreQueued() throws Exception {
+        // 100 个响应远大于 4KB 的写缓冲区，放不下的响应排队，写出一部分后再补上
+        String get = "GET / HTTP/1.1\r\n\r\n";
+        String response = exchange(repeat(get, 99) + "GET / HTTP/1.1\r\nConnection: close\r\n\r\n");
+        assertEquals(repeat(KEEP_ALIVE, 99) + CLOSE, response);
+    }
+
+    @Test
+    void requestBodyIsSkippedAcrossReads() throws Exception {
+        String response = exchange(
+                "POST /a HTTP/1.1\r\nContent-Length: 11\r\n\r\nhel",
+                "lo wo",
+                "rld\r\nGET /b HTTP/1.1\r\nconnection: close\r\n\r\n");
+        assertEquals(KEEP_ALIVE + CLOSE, response);
+    }
+
+    @Test
+    void http10ClosesUnlessKeepAliveIsRequested() throws Exception {
+        assertEquals(KEEP_ALIVE + CLOSE,
+                exchange("GET / HTTP/1.0\r\nConnection: Keep-Alive\r\n\r\n", "GET / HTTP/1.0\r\n\r\n"));
+    }
+
+    @Test
+    void chunkedRequestBodyIsRejected() throws Exception {
+        String response = exchange("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n");
+        assertEquals(BAD_REQUEST, response);
+    }
+
+    @Test
+    void lineLongerThanTheBufferIsRejected() throws Exception {
+        String response = exchange("GET /" + repeat("a", HttpServer04.BUFFER_SIZE - 5));
+        assertEquals(BAD_REQUEST, response);
+    }
+}
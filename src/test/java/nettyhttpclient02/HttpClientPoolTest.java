@@ -0,0 +1,83 @@
+package nettyhttpclient02;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 连接池的空闲回收：并发回收之后连接数不低于最小连接数
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class HttpClientPoolTest {
+    private final NioEventLoopGroup group = new NioEventLoopGroup(1);
+
+    @AfterEach
+    void tearDown() {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private HttpClientPool newPool(int minConnections) {
+        HttpClientPoolConfig config = new HttpClientPoolConfig();
+        config.setMinConnections(minConnections);
+        return new HttpClientPool("127.0.0.1", 1, group, config);
+    }
+
+    @Test
+    void concurrentIdleEvictionsKeepMinConnections() throws Exception {
+        HttpClientPool pool = newPool(2);
+        pool.getOpenConnections().set(3);
+
+        int threads = 8;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        AtomicInteger evicted = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                EmbeddedChannel ch = new EmbeddedChannel();
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                if (pool.reserveEviction(ch)) {
+                    evicted.incrementAndGet();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join(10_000);
+        }
+
+        assertEquals(1, evicted.get());
+        assertEquals(2, pool.getOpenConnections().get());
+    }
+
+    @Test
+    void evictedChannelIsNotCountedTwiceWhenClosed() {
+        HttpClientPool pool = newPool(1);
+        pool.getOpenConnections().set(3);
+
+        EmbeddedChannel evicted = new EmbeddedChannel();
+        assertTrue(pool.reserveEviction(evicted));
+        assertEquals(2, pool.getOpenConnections().get());
+        pool.onChannelClosed(evicted);
+        assertEquals(2, pool.getOpenConnections().get());
+
+        // 因其它原因关闭的连接（后端断开等）在关闭时减少连接数
+        pool.onChannelClosed(new EmbeddedChannel());
+        assertEquals(1, pool.getOpenConnections().get());
+        assertFalse(pool.reserveEviction(new EmbeddedChannel()));
+    }
+}
@@ -0,0 +1,267 @@
+package nettyhttpclient02;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 连接池和在途队列：流水线上的每个响应都回到发出它的请求，非幂等请求只在空闲的连接上发送
+ *  - 后端是一个本地的 Netty 服务，响应体是请求的 uri，每个响应延迟 10 毫秒（按请求顺序）写出，让请求在连接上堆积；
+ *    /hold 不响应，/close 直接关闭连接
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class HttpClientTest {
+    private static final long RESPONSE_DELAY_MILLIS = 10;
+
+    private NioEventLoopGroup serverGroup;
+
+    private NioEventLoopGroup clientGroup;
+
+    private Channel server;
+
+    private HttpClient client;
+
+    /**
+     * 后端收到的连接数
+     */
+    private final AtomicInteger backendConnections = new AtomicInteger();
+
+    /**
+     * 后端收到某个 uri 时，同一连接上已收到但还没响应的请求数
+     */
+    private final Map<String, Integer> outstandingOnArrival = new ConcurrentHashMap<>();
+
+    /**
+     * 到达后端时同一连接上排着还没响应的非幂等请求的 uri
+     */
+    private final List<String> behindNonIdempotent = new CopyOnWriteArrayList<>();
+
+    /**
+     * 后端连接上同时堆积的最大请求数
+     */
+    private final AtomicInteger maxOutstanding = new AtomicInteger();
+
+    /**
+     * 后端：每个连接按请求顺序延迟响应
+     */
+    private final class DelayedEchoHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        /**
+         * 已收到但还没响应的请求的方法
+         */
+        private final ArrayDeque<HttpMethod> outstanding = new ArrayDeque<>();
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            backendConnections.incrementAndGet();
+            ctx.fireChannelActive();
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+            String uri = request.uri();
+            if (uri.equals("/close")) {
+                ctx.close();
+                return;
+            }
+            if (uri.equals("/hold")) {
+                return;
+            }
+            outstandingOnArrival.put(uri, outstanding.size());
+            for (HttpMethod method : outstanding) {
+                if (!HttpClientRequest.isIdempotent(method)) {
+                    behindNonIdempotent.add(uri);
+                }
+            }
+            outstanding.add(request.method());
+            maxOutstanding.accumulateAndGet(outstanding.size(), Math::max);
+            ctx.executor().schedule(() -> {
+                outstanding.poll();
+                FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                        Unpooled.copiedBuffer(uri, CharsetUtil.UTF_8));
+                response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+                ctx.writeAndFlush(response);
+            }, RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 记录响应体或失败
+     */
+    private static final class FutureCallback implements HttpClientCallback {
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        @Override
+        public void onResponse(HttpObject msg) {
+            FullHttpResponse response = (FullHttpResponse) msg;
+            result.complete(response.content().toString(CharsetUtil.UTF_8));
+            response.release();
+        }
+
+        @Override
+        public void onFailure(HttpResponseStatus status) {
+            result.complete("failure:" + status.code());
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        serverGroup = new NioEventLoopGroup(1);
+        clientGroup = new NioEventLoopGroup(2);
+        server = new ServerBootstrap()
+                .group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(64 * 1024),
+                                new DelayedEchoHandler());
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        server.close().syncUninterruptibly();
+        clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private HttpClient newClient(int maxConnections, int pipeliningDepth) {
+        HttpClientPoolConfig config = new HttpClientPoolConfig();
+        config.setMaxConnections(maxConnections);
+        config.setMinConnections(0);
+        config.setPipeliningDepth(pipeliningDepth);
+        config.setStreaming(false);
+        config.setEventLoopAffinity(false);
+        int port = ((InetSocketAddress) server.localAddress()).getPort();
+        client = new HttpClient("127.0.0.1", port, clientGroup, config);
+        return client;
+    }
+
+    private CompletableFuture<String> send(HttpMethod method, String uri) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+        request.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        FutureCallback callback = new FutureCallback();
+        client.proxyRequest(clientGroup.next(), request, callback);
+        return callback.result;
+    }
+
+    @Test
+    void pipelinedResponsesReachTheirOwnRequests() throws Exception {
+        newClient(2, 4);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            results.add(send(HttpMethod.GET, "/item/" + i));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("/item/" + i, results.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertTrue(backendConnections.get() <= 2, "connections " + backendConnections.get());
+        // 确实使用了流水线，且不超过流水线深度
+        assertTrue(maxOutstanding.get() > 1, "max outstanding " + maxOutstanding.get());
+        assertTrue(maxOutstanding.get() <= 4, "max outstanding " + maxOutstanding.get());
+    }
+
+    @Test
+    void withoutPipeliningEachConnectionCarriesOneRequest() throws Exception {
+        newClient(4, 1);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            results.add(send(HttpMethod.GET, "/single/" + i));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("/single/" + i, results.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, maxOutstanding.get());
+        assertTrue(backendConnections.get() <= 4, "connections " + backendConnections.get());
+    }
+
+    @Test
+    void nonIdempotentRequestsAreSentOnIdleConnections() throws Exception {
+        newClient(1, 8);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(send(HttpMethod.GET, "/before/" + i));
+        }
+        CompletableFuture<String> post = send(HttpMethod.POST, "/post");
+        for (int i = 0; i < 4; i++) {
+            results.add(send(HttpMethod.GET, "/after/" + i));
+        }
+
+        assertEquals("/post", post.get(10, TimeUnit.SECONDS));
+        for (CompletableFuture<String> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS).startsWith("/"));
+        }
+        // POST 到达后端时，同一连接上没有其它在途请求，之后的请求也没有排在它后面
+        assertEquals(0, outstandingOnArrival.get("/post"));
+        assertEquals(new ArrayList<String>(), behindNonIdempotent);
+        assertEquals(1, backendConnections.get());
+    }
+
+    @Test
+    void backendClosingFailsTheInFlightRequests() throws Exception {
+        newClient(1, 4);
+        CompletableFuture<String> held = send(HttpMethod.GET, "/hold");
+        CompletableFuture<String> closing = send(HttpMethod.GET, "/close");
+
+        // 连接断开时在途的请求都以 502 结束，不会挂起
+        assertEquals("failure:502", held.get(10, TimeUnit.SECONDS));
+        assertEquals("failure:502", closing.get(10, TimeUnit.SECONDS));
+        // 之后的请求使用新建的连接
+        assertEquals("/next", send(HttpMethod.GET, "/next").get(10, TimeUnit.SECONDS));
+        assertEquals(2, backendConnections.get());
+    }
+
+    @Test
+    void clientIsIdleOnlyWithoutInFlightRequests() throws Exception {
+        newClient(1, 4);
+        assertEquals("/warm", send(HttpMethod.GET, "/warm").get(10, TimeUnit.SECONDS));
+        awaitIdle();
+
+        // 流水线上归还了连接、还没有响应的请求同样算在途
+        CompletableFuture<String> held = send(HttpMethod.GET, "/hold");
+        Thread.sleep(200);
+        assertFalse(client.isIdle());
+
+        CompletableFuture<String> closing = send(HttpMethod.GET, "/close");
+        assertEquals("failure:502", held.get(10, TimeUnit.SECONDS));
+        assertEquals("failure:502", closing.get(10, TimeUnit.SECONDS));
+        awaitIdle();
+    }
+
+    /**
+     * 连接的归还在连接池的 EventLoop 上异步完成，稍等片刻
+     */
+    private void awaitIdle() throws InterruptedException {
+        for (int i = 0; i < 100 && !client.isIdle(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(client.isIdle());
+    }
+}
@@ -0,0 +1,157 @@
+package nettyhttpserver02;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流水线请求排队：同一连接上的请求在上一个响应写完之前不交给后面的处理器
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class HttpRequestSequencerTest {
+    /**
+     * 记录收到的消息，由测试决定何时响应
+     */
+    private static final class Recorder extends ChannelInboundHandlerAdapter {
+        private final List<Object> received = new ArrayList<>();
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            received.add(msg);
+        }
+
+        private List<String> uris() {
+            List<String> uris = new ArrayList<>();
+            for (Object msg : received) {
+                if (msg instanceof HttpRequest) {
+                    uris.add(((HttpRequest) msg).uri());
+                }
+            }
+            return uris;
+        }
+    }
+
+    private static FullHttpRequest get(String uri) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    }
+
+    private static FullHttpResponse ok(String body) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(body, CharsetUtil.UTF_8));
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+        return response;
+    }
+
+    @Test
+    void releasesPipelinedRequestsOneAtATime() {
+        Recorder recorder = new Recorder();
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestSequencer(), recorder);
+
+        channel.writeInbound(get("/1"), get("/2"), get("/3"));
+        assertEquals(Arrays.asList("/1"), recorder.uris());
+
+        // 下一个请求在 EventLoop 的下一个任务中交出（EmbeddedChannel 在 flush 之后执行这些任务）
+        channel.writeAndFlush(ok("one"));
+        channel.runPendingTasks();
+        assertEquals(Arrays.asList("/1", "/2"), recorder.uris());
+
+        channel.writeAndFlush(ok("two"));
+        channel.runPendingTasks();
+        assertEquals(Arrays.asList("/1", "/2", "/3"), recorder.uris());
+
+        channel.writeAndFlush(ok("three"));
+        channel.runPendingTasks();
+        assertEquals(3, recorder.received.size());
+        finish(channel, recorder);
+    }
+
+    @Test
+    void queuedRequestBodyFollowsItsRequest() {
+        Recorder recorder = new Recorder();
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestSequencer(), recorder);
+
+        HttpRequest post = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/2");
+        HttpContent part = new DefaultHttpContent(Unpooled.copiedBuffer("a", CharsetUtil.UTF_8));
+        LastHttpContent last = new DefaultLastHttpContent(Unpooled.copiedBuffer("b", CharsetUtil.UTF_8));
+        channel.writeInbound(get("/1"), post, part, last);
+        assertEquals(1, recorder.received.size());
+
+        channel.writeAndFlush(ok("one"));
+        channel.runPendingTasks();
+        assertEquals(4, recorder.received.size());
+        assertSame(post, recorder.received.get(1));
+        assertSame(part, recorder.received.get(2));
+        assertSame(last, recorder.received.get(3));
+        finish(channel, recorder);
+    }
+
+    @Test
+    void continueResponseDoesNotEndTheRequest() {
+        Recorder recorder = new Recorder();
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestSequencer(), recorder);
+
+        channel.writeInbound(get("/1"), get("/2"));
+        channel.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+        channel.runPendingTasks();
+        assertEquals(Arrays.asList("/1"), recorder.uris());
+
+        channel.writeAndFlush(ok("one"));
+        channel.runPendingTasks();
+        assertEquals(Arrays.asList("/1", "/2"), recorder.uris());
+        finish(channel, recorder);
+    }
+
+    @Test
+    void streamedResponseEndsAtLastContent() {
+        Recorder recorder = new Recorder();
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestSequencer(), recorder);
+
+        channel.writeInbound(get("/1"), get("/2"));
+        channel.writeAndFlush(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        channel.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("chunk", CharsetUtil.UTF_8)));
+        channel.runPendingTasks();
+        assertEquals(Arrays.asList("/1"), recorder.uris());
+
+        channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        channel.runPendingTasks();
+        assertEquals(Arrays.asList("/1", "/2"), recorder.uris());
+        finish(channel, recorder);
+    }
+
+    @Test
+    void queuedRequestsAreReleasedWhenTheConnectionCloses() {
+        Recorder recorder = new Recorder();
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestSequencer(), recorder);
+
+        FullHttpRequest first = get("/1");
+        FullHttpRequest queued = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/2",
+                Unpooled.copiedBuffer("body", CharsetUtil.UTF_8));
+        channel.writeInbound(first, queued);
+        assertEquals(1, queued.refCnt());
+
+        channel.close();
+        assertEquals(0, queued.refCnt());
+        assertEquals(Arrays.asList("/1"), recorder.uris());
+        first.release();
+    }
+
+    /**
+     * 释放收到的请求和写出的响应
+     */
+    private static void finish(EmbeddedChannel channel, Recorder recorder) {
+        recorder.received.forEach(ReferenceCountUtil::release);
+        channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,157 @@
+package router01;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 熔断器的状态转换（打开时长缩短为 100 毫秒，其余参数为默认值）
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class CircuitBreakerTest {
+    private static final long OPEN_MILLIS = 100;
+
+    private static CircuitBreaker newBreaker() {
+        return new CircuitBreaker(TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS));
+    }
+
+    /**
+     * 窗口内 20 个请求、一半失败：达到默认的 minimumRequests 和失败率阈值
+     */
+    private static void trip(CircuitBreaker breaker) {
+        for (int i = 0; i < 20; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onResult(i % 2 == 0, System.nanoTime(), 1_000_000L);
+        }
+    }
+
+    private static void awaitOpenDuration(int ejections) throws InterruptedException {
+        Thread.sleep(OPEN_MILLIS * ejections + 20);
+    }
+
+    @Test
+    void staysClosedBelowMinimumRequests() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 19; i++) {
+            breaker.onResult(false, System.nanoTime(), 1_000_000L);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(1.0, breaker.getFailureRate());
+    }
+
+    @Test
+    void opensWhenFailureRateExceedsThreshold() {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenProbesCloseTheBreaker() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+        awaitOpenDuration(1);
+
+        assertTrue(breaker.isAvailable());
+        assertTrue(breaker.tryAcquire());
+        // 请求在放行之后才开始（与 Endpoint 一致），归属半开阶段
+        long start = System.nanoTime();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // 默认只放行 3 个探测请求
+        assertFalse(breaker.tryAcquire());
+        assertFalse(breaker.isAvailable());
+
+        for (int i = 0; i < 3; i++) {
+            breaker.onResult(true, start, 1_000_000L);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate());
+    }
+
+    @Test
+    void failedProbeReopensWithLongerDuration() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+        awaitOpenDuration(1);
+
+        assertTrue(breaker.tryAcquire());
+        long start = System.nanoTime();
+        breaker.onResult(false, start, 1_000_000L);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // 第二次打开的时长是基础时长的 2 倍
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertFalse(breaker.tryAcquire());
+        Thread.sleep(OPEN_MILLIS);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void probeTimingOutReopensTheBreaker() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+        awaitOpenDuration(1);
+
+        assertTrue(breaker.tryAcquire());
+        long start = System.nanoTime();
+        assertTrue(breaker.tryAcquire());
+        // 截止时间到达：超时按失败记录，不归还探测名额
+        breaker.onResult(false, start, TimeUnit.SECONDS.toNanos(1));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void slowProbeReopensTheBreaker() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+        awaitOpenDuration(1);
+
+        assertTrue(breaker.tryAcquire());
+        long start = System.nanoTime();
+        // 默认 3 秒以上算慢请求
+        breaker.onResult(true, start, TimeUnit.SECONDS.toNanos(3));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void resultsFromAnEarlierPhaseAreIgnored() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        long beforeOpen = System.nanoTime();
+        trip(breaker);
+        awaitOpenDuration(1);
+
+        assertTrue(breaker.tryAcquire());
+        // 打开之前发出的请求在半开期间失败，不影响探测
+        breaker.onResult(false, beforeOpen, 1_000_000L);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void cancelledProbeReturnsItsSlot() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+        awaitOpenDuration(1);
+
+        assertTrue(breaker.tryAcquire());
+        long start = System.nanoTime();
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onCancelled(start);
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+    }
+}
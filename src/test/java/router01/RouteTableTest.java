@@ -0,0 +1,107 @@
+package router01;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 路由表（基数树）匹配
+ * @author junyangwei
+ * @date 2026-10-18
+ */
+class RouteTableTest {
+    private static Route prefix(String name, String path) {
+        return new Route(name, path, false, false, null);
+    }
+
+    private static Route exact(String name, String path) {
+        return new Route(name, path, true, false, null);
+    }
+
+    @Test
+    void matchesLongestPrefixOnSegmentBoundaries() {
+        Route root = prefix("root", "/");
+        Route api = prefix("api", "/api");
+        Route users = prefix("users", "/api/v1/users");
+        RouteTable table = RouteTable.of(Arrays.asList(root, api, users));
+
+        assertSame(users, table.match("/api/v1/users"));
+        assertSame(users, table.match("/api/v1/users/42"));
+        assertSame(api, table.match("/api/v1"));
+        assertSame(api, table.match("/api/v1/orders"));
+        // /apix 不是 /api 的子路径
+        assertSame(root, table.match("/apix"));
+        assertSame(api, table.match("/api/v1/usersx"));
+        assertSame(root, table.match("/"));
+        assertSame(root, table.match(""));
+    }
+
+    @Test
+    void ignoresQueryStringAndFragment() {
+        Route api = prefix("api", "/api");
+        RouteTable table = RouteTable.of(Arrays.asList(api, exact("health", "/health")));
+
+        assertSame(api, table.match("/api?x=/other"));
+        assertSame(api, table.match("/api/items#section"));
+        assertEquals("health", table.match("/health?verbose=1").getName());
+    }
+
+    @Test
+    void mergedEdgesMatchAsAWhole() {
+        // 只有一条深路由时 a/b/c 合并成一条边
+        Route deep = prefix("deep", "/a/b/c");
+        RouteTable table = RouteTable.of(Arrays.asList(deep));
+
+        assertSame(deep, table.match("/a/b/c"));
+        assertSame(deep, table.match("/a/b/c/d"));
+        assertNull(table.match("/a/b"));
+        assertNull(table.match("/a/b/cd"));
+        assertNull(table.match("/a/x/c"));
+    }
+
+    @Test
+    void exactRouteOnlyMatchesItsOwnPath() {
+        Route status = exact("status", "/status");
+        Route fallback = prefix("fallback", "/");
+        RouteTable table = RouteTable.of(Arrays.asList(status, fallback));
+
+        assertSame(status, table.match("/status"));
+        assertSame(status, table.match("/status/"));
+        assertSame(fallback, table.match("/status/extra"));
+    }
+
+    @Test
+    void exactAndPrefixRouteCanShareAPath() {
+        Route exactDocs = exact("docs-index", "/docs");
+        Route prefixDocs = prefix("docs", "/docs");
+        RouteTable table = RouteTable.of(Arrays.asList(exactDocs, prefixDocs));
+
+        assertSame(exactDocs, table.match("/docs"));
+        assertSame(prefixDocs, table.match("/docs/intro"));
+    }
+
+    @Test
+    void siblingsAreFoundByBinarySearch() {
+        Route[] routes = new Route[50];
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = prefix("r" + i, "/svc" + i);
+        }
+        RouteTable table = RouteTable.of(Arrays.asList(routes));
+
+        for (int i = 0; i < routes.length; i++) {
+            assertSame(routes[i], table.match("/svc" + i + "/x"));
+        }
+        assertNull(table.match("/svc50"));
+        assertNull(table.match("/svc"));
+    }
+
+    @Test
+    void rejectsDuplicateRoutes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RouteTable.of(Arrays.asList(prefix("a", "/x"), prefix("b", "/x/"))));
+        assertThrows(IllegalArgumentException.class,
+                () -> RouteTable.of(Arrays.asList(exact("a", "/x"), exact("b", "/x"))));
+    }
+}